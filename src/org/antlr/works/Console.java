@@ -2,10 +2,17 @@ package org.antlr.works;
 
 import org.antlr.Tool;
 import org.antlr.works.ate.syntax.generic.ATESyntaxEngineDelegate;
+import org.antlr.works.editor.EditorRules;
+import org.antlr.works.grammar.antlr.AnalysisProfile;
+import org.antlr.works.grammar.element.ElementRule;
 import org.antlr.works.grammar.engine.GrammarEngine;
 import org.antlr.works.grammar.engine.GrammarEngineDelegate;
 import org.antlr.works.grammar.engine.GrammarEngineImpl;
 import org.antlr.works.grammar.syntax.GrammarSyntaxEngine;
+import org.antlr.works.interpreter.InterpretedFile;
+import org.antlr.works.interpreter.InterpreterBenchmark;
+import org.antlr.works.interpreter.InterpreterBenchmarkDelegate;
+import org.antlr.works.interpreter.InterpreterBenchmarkResult;
 import org.antlr.works.utils.ConsoleHelper;
 import org.antlr.works.visualization.SDGenerator;
 import org.antlr.works.visualization.serializable.SEncoder;
@@ -14,6 +21,8 @@ import org.antlr.xjlib.foundation.XJUtils;
 
 import java.io.File;
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
 
 /*
 
@@ -51,6 +60,10 @@ public class Console {
     private String file;
     private String outputDirectory;
     private String outputFile;
+    private String profileFile;
+    private String interpretDirectory;
+    private String startRule;
+    private int threads = Runtime.getRuntime().availableProcessors();
     private boolean verbose;
 
     public static void main(String[] args) throws Exception {
@@ -70,7 +83,11 @@ public class Console {
         sb.append("Usage: java -cp antlrworks.jar org.antlr.works.Console [args]\n");
         sb.append(" -f grammarFile : ").append("specify the input grammar file (*.g)\n");
         sb.append(" -sd format : ").append("specify the format of the syntax diagram output file. For EPS, use 'eps'. For bitmap, use either 'png' or any available extensions\n");
-        sb.append(" -serialize outputFile : ").append("serialize all the syntax diagram of the specified files");
+        sb.append(" -serialize outputFile : ").append("serialize all the syntax diagram of the specified files\n");
+        sb.append(" -profile outputFile : ").append("analyze the grammar and write the time spent on each decision to the specified CSV file\n");
+        sb.append(" -interpret inputDir : ").append("interpret each file of the specified directory in parallel and report the throughput and errors\n");
+        sb.append(" -rule startRule : ").append("specify the start rule used by -interpret (default is the first rule)\n");
+        sb.append(" -threads count : ").append("specify the number of threads used by -interpret (default is the number of processors)\n");
         sb.append(" -o outputDir : ").append("specify the output directory\n");
         sb.append(" -verbose : ").append("prints the operations\n");
         System.out.println(sb.toString());
@@ -92,6 +109,14 @@ public class Console {
             if(verbose) System.out.println("Serializing syntax diagram ");
             serializeSyntaxDiagrams();
         }
+        if(hasArgument(args, "-profile")) {
+            if(verbose) System.out.println("Profiling the analysis of the grammar");
+            profileAnalysis();
+        }
+        if(hasArgument(args, "-interpret")) {
+            if(verbose) System.out.println("Interpreting the files of "+interpretDirectory);
+            interpretFiles();
+        }
     }
 
     private void readArguments(String args[]) {
@@ -113,6 +138,26 @@ public class Console {
             System.err.println("Output file not specified (-serialize)");
             return;
         }
+        profileFile = getArgumentValue(args, "-profile");
+        if(profileFile == null && hasArgument(args, "-profile")) {
+            System.err.println("Output file not specified (-profile)");
+            return;
+        }
+        interpretDirectory = getArgumentValue(args, "-interpret");
+        if(interpretDirectory == null && hasArgument(args, "-interpret")) {
+            System.err.println("Input directory not specified (-interpret)");
+            return;
+        }
+        startRule = getArgumentValue(args, "-rule");
+        String t = getArgumentValue(args, "-threads");
+        if(t != null) {
+            try {
+                threads = Math.max(1, Integer.parseInt(t));
+            } catch(NumberFormatException e) {
+                System.err.println("Invalid number of threads (-threads): "+t);
+                return;
+            }
+        }
         String v = getArgumentValue(args, "-verbose");
         if(v != null) {
             verbose = true;
@@ -127,7 +172,60 @@ public class Console {
         processSyntaxDiagram(new SerializePSDDelegate());
     }
 
-    private void processSyntaxDiagram(ProcessSyntaxDiagramDelegate delegate) throws Exception {
+    private void profileAnalysis() throws Exception {
+        GrammarEngine engine = createGrammarEngine();
+        engine.updateAll();
+        engine.analyze();
+
+        AnalysisProfile profile = engine.getANTLRGrammarEngine().getAnalysisProfile();
+        if(profile == null) {
+            System.err.println("The grammar could not be analyzed");
+            return;
+        }
+        if(verbose) System.out.println(profile.getPhasesDescription());
+
+        XJUtils.writeStringToFile(profile.toCSV(), profileFile);
+    }
+
+    private void interpretFiles() throws Exception {
+        List<File> files = InterpreterBenchmark.getInputFiles(new File(interpretDirectory));
+        if(files.isEmpty()) {
+            System.err.println("No input file found in "+interpretDirectory);
+            return;
+        }
+
+        GrammarEngine engine = createGrammarEngine();
+        engine.updateAll();
+
+        String rule = startRule;
+        if(rule == null) {
+            if(engine.getRuleNames().isEmpty()) {
+                System.err.println("The grammar does not contain any rule");
+                return;
+            }
+            rule = engine.getRuleNames().get(0);
+        }
+
+        List<String> ignoredTokens = new ArrayList<String>();
+        EditorRules.findTokensToIgnore(engine.getRules(), true);
+        for(ElementRule r : engine.getRules()) {
+            if(r.ignored) ignoredTokens.add(r.name);
+        }
+        engine.close();
+
+        InterpreterBenchmark benchmark = new InterpreterBenchmark(new EngineDelegate(), rule, ignoredTokens);
+        if(verbose) {
+            benchmark.setDelegate(new InterpreterBenchmarkDelegate() {
+                public void interpreterBenchmarkDidInterpretFile(InterpretedFile file, int interpreted, int total) {
+                    System.out.println("["+interpreted+"/"+total+"] "+file.file.getName());
+                }
+            });
+        }
+        InterpreterBenchmarkResult result = benchmark.run(files, threads);
+        System.out.println(result.getReport());
+    }
+
+    private GrammarEngine createGrammarEngine() throws Exception {
         GrammarEngine engine = new GrammarEngineImpl(new EngineDelegate());
         GrammarSyntaxEngine syntaxEngine = engine.getSyntaxEngine();
 
@@ -135,7 +233,12 @@ public class Console {
         syntaxEngine.processSyntax();
 
         engine.parserCompleted();
-        
+        return engine;
+    }
+
+    private void processSyntaxDiagram(ProcessSyntaxDiagramDelegate delegate) throws Exception {
+        GrammarEngine engine = createGrammarEngine();
+
         SDGenerator gen = new SDGenerator(engine);
 
         delegate.beginProcess();
@@ -222,7 +222,7 @@ public class IDE extends XJApplicationDelegate implements XJMenuItemDelegate {
         System.setErr(ps);
         try {
             ErrorManager.setTool(new Tool());
-            ErrorManager.setErrorListener(el);
+            el.install();
         } catch (Throwable e) {
             XJAlert.display(null, "Fatal Error", "ANTLRWorks will quit now because ANTLR reported an error:\n"+bos.getMessage());
             System.exit(0);
@@ -234,7 +234,7 @@ public class IDE extends XJApplicationDelegate implements XJMenuItemDelegate {
         el.clear();
         System.setErr(os);
         ps.close();
-        ErrorManager.removeErrorListener();
+        el.uninstall();
     }
 
     private class CheckStream extends ByteArrayOutputStream {
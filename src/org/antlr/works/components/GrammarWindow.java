@@ -18,6 +18,7 @@ import org.antlr.works.editor.navigation.GoToRuleDelegate;
 import org.antlr.works.find.FindAndReplace;
 import org.antlr.works.find.FindAndReplaceDelegate;
 import org.antlr.works.find.Usages;
+import org.antlr.works.grammar.ContinuousAnalysis;
 import org.antlr.works.grammar.GrammarAutoIndent;
 import org.antlr.works.grammar.decisiondfa.DecisionDFAEngine;
 import org.antlr.works.grammar.element.ElementImport;
@@ -27,6 +28,7 @@ import org.antlr.works.grammar.element.Jumpable;
 import org.antlr.works.grammar.engine.GrammarEngine;
 import org.antlr.works.grammar.engine.GrammarEngineDelegate;
 import org.antlr.works.grammar.engine.GrammarEngineImpl;
+import org.antlr.works.grammar.engine.GrammarEngineRegistry;
 import org.antlr.works.interpreter.InterpreterTab;
 import org.antlr.works.menu.*;
 import org.antlr.works.prefs.AWPrefs;
@@ -103,7 +105,7 @@ public class GrammarWindow
 
     /* Tabs */
 
-    private static final int CLOSING_INDEX_LIMIT = 4;
+    private static final int CLOSING_INDEX_LIMIT = 5;
     private final Map<Integer, GrammarWindowTab> indexToEditorTab = new HashMap<Integer, GrammarWindowTab>();
     private final List<GrammarWindowTab> tabs = new ArrayList<GrammarWindowTab>();
 
@@ -111,6 +113,7 @@ public class GrammarWindow
     public final InterpreterTab interpreterTab;
     private final DebuggerTab debuggerTab;
     public final ConsoleTab consoleTab;
+    private final AnalysisProfileTab analysisProfileTab;
 
     /* Components of the window */
 
@@ -128,6 +131,7 @@ public class GrammarWindow
 
     private ConsoleStatus consoleStatus;
     private GrammarMemoryStatus memoryStatus;
+    private JProgressBar analysisProgress;
     public AutoCompletionMenu autoCompletionMenu;
 
     /* TextEditor Managers */
@@ -170,6 +174,7 @@ public class GrammarWindow
     private String lastSelectedRule;
 
     private AfterParseOperations afterParserOp;
+    private ContinuousAnalysis continuousAnalysis;
 
     public GrammarWindow() {
         createTextEditor();
@@ -181,10 +186,12 @@ public class GrammarWindow
         debuggerTab = new DebuggerTab(new GrammarDebuggerDelegate(this));
         consoleTab = new ConsoleTab(this);
         consoleTab.makeCurrent();
+        analysisProfileTab = new AnalysisProfileTab(this);
 
         menu = new GrammarWindowMenu(this);
         toolbar = new GrammarWindowToolbar(this);        
         afterParserOp = new AfterParseOperations();
+        continuousAnalysis = new ContinuousAnalysis(this);
         grammarEngine = new GrammarEngineImpl(this);
         decisionDFAEngine = new DecisionDFAEngine(this);
         goToRule = new GoToRule(this, this, getTextPane());
@@ -224,6 +231,7 @@ public class GrammarWindow
         bottomTab.addTab("Syntax Diagram", syntaxDiagramTab.getTabComponent());
         bottomTab.addTab("Interpreter", interpreterTab.getTabComponent());
         bottomTab.addTab("Console", consoleTab.getTabComponent());
+        bottomTab.addTab(analysisProfileTab.getTabName(), analysisProfileTab.getTabComponent());
         bottomTab.addTab("Debugger", debuggerTab.getTabComponent());
 
         bottomTab.addMouseListener(ml = new BottomTabbedPaneMouseListener());
@@ -290,6 +298,11 @@ public class GrammarWindow
         consoleStatus = new ConsoleStatus();
         memoryStatus = new GrammarMemoryStatus();
 
+        analysisProgress = new JProgressBar();
+        analysisProgress.setStringPainted(true);
+        analysisProgress.setMaximumSize(new Dimension(150, 16));
+        analysisProgress.setVisible(false);
+
         statusBar = new GrammarStatusBar();
         statusBar.setPreferredSize(new Dimension(0, 30));
 
@@ -310,6 +323,8 @@ public class GrammarWindow
         statusBar.add(Box.createHorizontalStrut(5));
         statusBar.add(createSeparator());
         statusBar.add(Box.createHorizontalGlue());
+        statusBar.add(analysisProgress);
+        statusBar.add(Box.createHorizontalStrut(5));
         statusBar.add(memoryStatus);
     }
 
@@ -347,6 +362,7 @@ public class GrammarWindow
         editorInspector.close();
 
         editorPersistence.close();
+        GrammarEngineRegistry.shared().unregister(getFilePath(), grammarEngine);
         grammarEngine.close();
 
         editorRules.close();
@@ -355,6 +371,9 @@ public class GrammarWindow
         afterParserOp.stop();
         afterParserOp = null;
 
+        continuousAnalysis.close();
+        continuousAnalysis = null;
+
         gutterColumnManager.close();
         foldingManager.close();
         underlyingManager.close();
@@ -467,6 +486,8 @@ public class GrammarWindow
             case 2:
                 return getConsoleTab();
             case 3:
+                return analysisProfileTab;
+            case 4:
                 return debuggerTab;
             default:
                 return indexToEditorTab.get(index);
@@ -475,7 +496,7 @@ public class GrammarWindow
 
     public void addTab(GrammarWindowTab tab) {
         /** Replace any existing tab with this one if the title matches. Don't
-         * replace the first three tabs because they are always visible.
+         * replace the first tabs because they are always visible.
          */
         int index = getSimilarTab(tab);
         if(index == -1) {
@@ -774,6 +795,7 @@ public class GrammarWindow
         // Clear graphic cache because we have to redraw each rule again
         syntaxDiagramTab.clearCacheGraphs();
         editorRules.refreshRules();
+        analysisProfileTab.setProfile(grammarEngine.getANTLRGrammarEngine().getAnalysisProfile());
 
         // Try to update the graph first and if they cannot be updated (i.e. the cache is empty), draw them again.
         if(!syntaxDiagramTab.update()) {
@@ -782,6 +804,27 @@ public class GrammarWindow
         updateInformation();
     }
 
+    public ContinuousAnalysis getContinuousAnalysis() {
+        return continuousAnalysis;
+    }
+
+    public void setAnalysisProgress(int decision, int numberOfDecisions) {
+        analysisProgress.setMaximum(numberOfDecisions);
+        analysisProgress.setValue(decision);
+        analysisProgress.setString("Analyzing "+decision+"/"+numberOfDecisions);
+        analysisProgress.setVisible(true);
+    }
+
+    /**
+     * This method gets called when the background analysis has ended. The gutter and
+     * the analysis column have to be repainted to reflect the errors detected.
+     */
+    public void continuousAnalysisDidEnd() {
+        analysisProgress.setVisible(false);
+        textEditor.damage();
+        textEditor.repaint();
+    }
+
     public void createFile(String name) {
         // not used anymore
     }
@@ -1171,9 +1214,11 @@ public class GrammarWindow
         editorPersistence.restore();
 
         grammarEngine.parserCompleted();
+        GrammarEngineRegistry.shared().updateImports(getFilePath(), grammarEngine, getConsoleTab());
         grammarEngine.updateAll();
 
         interpreterTab.setRules(getNaturalRules());
+        interpreterTab.grammarChanged();
         editorRules.parserDidParse();
         decisionDFAEngine.reset();
         decisionDFAEngine.refreshMenu();
@@ -1189,6 +1234,8 @@ public class GrammarWindow
         // Damage the window and repaint it
         textEditor.damage();
         textEditor.repaint();
+
+        continuousAnalysis.grammarDidParse();
     }
 
     public void changeDone() {
@@ -1202,6 +1249,7 @@ public class GrammarWindow
 
     private void grammarChanged() {
         grammarEngine.markDirty();
+        GrammarEngineRegistry.shared().grammarDidChange(getFilePath());
     }
 
     public void consolePrint(String s, int level) {
@@ -1380,6 +1428,7 @@ public class GrammarWindow
     public void ateChangeUpdate(int offset, int length, boolean insert) {
         changeDone();
         syntaxDiagramTab.cancelDrawingProcess();
+        continuousAnalysis.grammarDidChange();
     }
 
     public void ateAutoIndent(int offset, int length) {
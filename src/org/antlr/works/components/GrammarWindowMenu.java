@@ -81,6 +81,7 @@ public class GrammarWindowMenu implements XJMenuItemDelegate {
     public static final int MI_SHOW_DEPENDENCY = 52;
     public static final int MI_SHOW_TOKENS_SD = 53;
     public static final int MI_SHOW_TOKENS_DFA = 54;
+    public static final int MI_CONTINUOUS_ANALYSIS = 55;
     public static final int MI_GROUP_RULE = 56;
     public static final int MI_UNGROUP_RULE = 57;
     public static final int MI_IGNORE_RULE = 58;
@@ -111,6 +112,8 @@ public class GrammarWindowMenu implements XJMenuItemDelegate {
     public static final int MI_DEBUG_REMOTE = 84;
     public static final int MI_DEBUG_SHOW_INPUT_TOKENS = 86;
     public static final int MI_EDIT_TEST_RIG = 87;
+    public static final int MI_DEBUG_OPEN_RECORDING = 88;
+    public static final int MI_DEBUG_SAVE_RECORDING = 89;
 
     // Help
     public static final int MI_SUBMIT_STATS = 100;
@@ -225,6 +228,9 @@ public class GrammarWindowMenu implements XJMenuItemDelegate {
         menu.addItem(new XJMenuItem(resourceBundle.getString("menu.item.debugAgain"), KeyEvent.VK_D, XJMenuItem.getKeyModifier() | Event.SHIFT_MASK, MI_DEBUG_AGAIN, this));
         menu.addItem(new XJMenuItem(resourceBundle.getString("menu.item.debugRemote"), MI_DEBUG_REMOTE, this));
         menu.addSeparator();
+        menu.addItem(new XJMenuItem(resourceBundle.getString("menu.item.openRecording"), MI_DEBUG_OPEN_RECORDING, this));
+        menu.addItem(new XJMenuItem(resourceBundle.getString("menu.item.saveRecording"), MI_DEBUG_SAVE_RECORDING, this));
+        menu.addSeparator();
         menu.addItem(new XJMenuItem(resourceBundle.getString("menu.item.showInputTokens"), MI_DEBUG_SHOW_INPUT_TOKENS, this));
         menu.addSeparator();
         menu.addItem(new XJMenuItem(getEditTestRigTitle(), MI_EDIT_TEST_RIG, this));
@@ -344,6 +350,7 @@ public class GrammarWindowMenu implements XJMenuItemDelegate {
         //menu.addItem(folding);
         menu.addSeparator();
         menu.addItem(new XJMenuItem(resourceBundle.getString("menu.item.checkGrammar"), KeyEvent.VK_R, MI_CHECK_GRAMMAR, this));
+        menu.addItem(new XJMenuItemCheck(resourceBundle.getString("menu.item.continuousAnalysis"), MI_CONTINUOUS_ANALYSIS, this, false));
 
         menubar.addCustomMenu(menu);
     }
@@ -536,9 +543,14 @@ public class GrammarWindowMenu implements XJMenuItemDelegate {
             case MI_RUN:
             case MI_DEBUG:
             case MI_DEBUG_REMOTE:
+            case MI_DEBUG_OPEN_RECORDING:
                 item.setEnabled(!isDebuggerRunning());
                 break;
 
+            case MI_DEBUG_SAVE_RECORDING:
+                item.setEnabled(debugMenu.canSaveRecording());
+                break;
+
             case MI_GOTO_BACK:
                 item.setEnabled(window.goToHistory.canGoBack());
                 break;
@@ -563,6 +575,10 @@ public class GrammarWindowMenu implements XJMenuItemDelegate {
                         resourceBundle.getString("menu.item.hideInputTokens") : resourceBundle.getString("menu.item.showInputTokens"));
                 break;
 
+            case MI_CONTINUOUS_ANALYSIS:
+                item.setSelected(window.getContinuousAnalysis().isEnabled());
+                break;
+
             case MI_HIGHLIGHT_DECISION_DFA:
                 if(window.decisionDFAEngine.getDecisionDFACount() == 0) {
                     item.setSelected(false);
@@ -662,6 +678,10 @@ public class GrammarWindowMenu implements XJMenuItemDelegate {
             case MI_CHECK_GRAMMAR:
                 actionGrammar.checkGrammar();
                 break;
+
+            case MI_CONTINUOUS_ANALYSIS:
+                actionGrammar.toggleContinuousAnalysis();
+                break;
         }
     }
 
@@ -783,6 +803,14 @@ public class GrammarWindowMenu implements XJMenuItemDelegate {
                 debugMenu.debugRemote();
                 break;
 
+            case MI_DEBUG_OPEN_RECORDING:
+                debugMenu.openRecording();
+                break;
+
+            case MI_DEBUG_SAVE_RECORDING:
+                debugMenu.saveRecording();
+                break;
+
             case MI_DEBUG_SHOW_INPUT_TOKENS:
                 debugMenu.toggleInputTokens();
                 window.refreshMainMenuBar();
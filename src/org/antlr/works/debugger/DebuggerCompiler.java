@@ -0,0 +1,260 @@
+package org.antlr.works.debugger;
+
+import org.antlr.works.utils.StreamWatcherDelegate;
+import org.antlr.works.utils.Utils;
+
+import javax.tools.*;
+import java.io.*;
+import java.net.URI;
+import java.security.MessageDigest;
+import java.util.*;
+/*
+
+[The "BSD licence"]
+Copyright (c) 2005 Jean Bovet
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions
+are met:
+
+1. Redistributions of source code must retain the above copyright
+notice, this list of conditions and the following disclaimer.
+2. Redistributions in binary form must reproduce the above copyright
+notice, this list of conditions and the following disclaimer in the
+documentation and/or other materials provided with the distribution.
+3. The name of the author may not be used to endorse or promote products
+derived from this software without specific prior written permission.
+
+THIS SOFTWARE IS PROVIDED BY THE AUTHOR ``AS IS'' AND ANY EXPRESS OR
+IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES
+OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED.
+IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY DIRECT, INDIRECT,
+INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT
+NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+(INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF
+THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+
+*/
+
+
+/** In-process compiler of the files of a grammar. The files are compiled with the
+ * javax.tools compiler into memory and their classes are kept in a cache keyed by the
+ * hash of their source: if none of the files changed since they were last compiled, they
+ * are not compiled again and their classes are only written back to the output directory
+ * if they are missing.
+ *
+ * When a file changed, all the files of the grammar known by the cache are compiled again
+ * with it: javac inlines the constants of other classes (like the token types of a lexer)
+ * so the classes of an unchanged file can depend on the source of a changed one.
+ *
+ * One compiler is used per grammar so its cache holds only the classes of that grammar.
+ */
+public class DebuggerCompiler {
+
+    protected Map<String,CacheEntry> cache = new HashMap<String, CacheEntry>();
+
+    /** Number of files compiled since this compiler was created */
+    protected int compiledFileCount = 0;
+
+    public synchronized String compileFiles(String[] files, String classPath, String outputFileDir, final StreamWatcherDelegate delegate) throws Exception {
+        List<SourceFile> sources = new ArrayList<SourceFile>();
+        Set<String> paths = new HashSet<String>();
+        boolean changed = false;
+        for(String file : files) {
+            SourceFile source = readSource(new File(file).getAbsolutePath());
+            if(!paths.add(source.path))
+                continue;
+
+            sources.add(source);
+            CacheEntry entry = cache.get(source.path);
+            if(entry == null || !entry.matches(source.hash, classPath))
+                changed = true;
+        }
+
+        if(!changed) {
+            for(SourceFile source : sources) {
+                cache.get(source.path).writeMissingClasses(outputFileDir);
+            }
+            return null;
+        }
+
+        // Compile again the other files of the grammar: they may depend on the changed files
+        for(Iterator<Map.Entry<String,CacheEntry>> iterator = cache.entrySet().iterator(); iterator.hasNext(); ) {
+            Map.Entry<String,CacheEntry> entry = iterator.next();
+            if(paths.contains(entry.getKey()))
+                continue;
+
+            if(new File(entry.getKey()).exists()) {
+                sources.add(readSource(entry.getKey()));
+            } else {
+                entry.getValue().deleteClasses(outputFileDir);
+                iterator.remove();
+            }
+        }
+
+        JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
+        if(compiler == null)
+            return "No Java compiler is available in this Java runtime. Select javac in the preferences.";
+
+        DiagnosticListener<JavaFileObject> listener = new DiagnosticListener<JavaFileObject>() {
+            public void report(Diagnostic<? extends JavaFileObject> diagnostic) {
+                if(delegate != null)
+                    delegate.streamWatcherDidReceiveString(diagnostic.toString()+"\n");
+            }
+        };
+
+        MemoryFileManager fileManager = new MemoryFileManager(compiler.getStandardFileManager(listener, null, null));
+        try {
+            // The output directory is in the class path: the classes of the cached files are read from it
+            List<String> options = Arrays.asList("-classpath", classPath);
+            if(!compiler.getTask(null, fileManager, listener, options, null, sources).call())
+                return "Compiler failed with errors";
+        } finally {
+            fileManager.close();
+        }
+
+        for(SourceFile source : sources) {
+            CacheEntry oldEntry = cache.get(source.path);
+            if(oldEntry != null)
+                oldEntry.deleteClasses(outputFileDir);
+
+            CacheEntry entry = new CacheEntry(source.hash, classPath, fileManager.getClasses(source));
+            entry.writeClasses(outputFileDir);
+            cache.put(source.path, entry);
+        }
+        compiledFileCount += sources.size();
+
+        return null;
+    }
+
+    protected SourceFile readSource(String path) throws Exception {
+        String text = Utils.stringFromFile(path);
+        byte[] hash = MessageDigest.getInstance("SHA-1").digest(text.getBytes("UTF-8"));
+        return new SourceFile(path, text, hash);
+    }
+
+    public synchronized int getCompiledFileCount() {
+        return compiledFileCount;
+    }
+
+    public synchronized void clear() {
+        cache.clear();
+    }
+
+    protected static class SourceFile extends SimpleJavaFileObject {
+
+        public String path;
+        public String text;
+        public byte[] hash;
+
+        public SourceFile(String path, String text, byte[] hash) {
+            super(new File(path).toURI(), Kind.SOURCE);
+            this.path = path;
+            this.text = text;
+            this.hash = hash;
+        }
+
+        public CharSequence getCharContent(boolean ignoreEncodingErrors) {
+            return text;
+        }
+    }
+
+    protected static class ClassFile extends SimpleJavaFileObject {
+
+        public String className;
+        public ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+
+        public ClassFile(String className) {
+            super(URI.create("bytes:///"+className.replace('.', '/')+Kind.CLASS.extension), Kind.CLASS);
+            this.className = className;
+        }
+
+        public OutputStream openOutputStream() {
+            return bytes;
+        }
+
+        public File getFile(String outputFileDir) {
+            return new File(outputFileDir, className.replace('.', File.separatorChar)+Kind.CLASS.extension);
+        }
+
+        public void write(String outputFileDir) throws IOException {
+            File file = getFile(outputFileDir);
+            file.getParentFile().mkdirs();
+            OutputStream os = new FileOutputStream(file);
+            try {
+                bytes.writeTo(os);
+            } finally {
+                os.close();
+            }
+        }
+    }
+
+    /** File manager keeping the compiled classes in memory, grouped by the source file they come from */
+    protected static class MemoryFileManager extends ForwardingJavaFileManager<StandardJavaFileManager> {
+
+        protected Map<FileObject,List<ClassFile>> classes = new HashMap<FileObject, List<ClassFile>>();
+
+        public MemoryFileManager(StandardJavaFileManager fileManager) {
+            super(fileManager);
+        }
+
+        public JavaFileObject getJavaFileForOutput(Location location, String className, JavaFileObject.Kind kind, FileObject sibling) throws IOException {
+            if(kind != JavaFileObject.Kind.CLASS)
+                return super.getJavaFileForOutput(location, className, kind, sibling);
+
+            ClassFile file = new ClassFile(className);
+            List<ClassFile> siblingClasses = classes.get(sibling);
+            if(siblingClasses == null) {
+                siblingClasses = new ArrayList<ClassFile>();
+                classes.put(sibling, siblingClasses);
+            }
+            siblingClasses.add(file);
+            return file;
+        }
+
+        public List<ClassFile> getClasses(FileObject source) {
+            List<ClassFile> sourceClasses = classes.get(source);
+            return sourceClasses == null ? Collections.<ClassFile>emptyList() : sourceClasses;
+        }
+    }
+
+    protected static class CacheEntry {
+
+        public byte[] hash;
+        public String classPath;
+        public List<ClassFile> classes;
+
+        public CacheEntry(byte[] hash, String classPath, List<ClassFile> classes) {
+            this.hash = hash;
+            this.classPath = classPath;
+            this.classes = classes;
+        }
+
+        public boolean matches(byte[] hash, String classPath) {
+            return Arrays.equals(this.hash, hash) && this.classPath.equals(classPath);
+        }
+
+        public void writeClasses(String outputFileDir) throws IOException {
+            for(ClassFile file : classes) {
+                file.write(outputFileDir);
+            }
+        }
+
+        public void writeMissingClasses(String outputFileDir) throws IOException {
+            for(ClassFile file : classes) {
+                if(!file.getFile(outputFileDir).exists())
+                    file.write(outputFileDir);
+            }
+        }
+
+        public void deleteClasses(String outputFileDir) {
+            for(ClassFile file : classes) {
+                file.getFile(outputFileDir).delete();
+            }
+        }
+    }
+
+}
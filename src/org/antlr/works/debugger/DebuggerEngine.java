@@ -10,7 +10,6 @@ import org.antlr.xjlib.foundation.XJSystem;
 import org.antlr.xjlib.foundation.XJUtils;
 
 import java.io.File;
-import java.lang.reflect.Method;
 import java.util.HashMap;
 import java.util.Map;
 /*
@@ -173,7 +172,10 @@ public class DebuggerEngine {
         return error;
     }
 
-    public static String compileFiles(Console console, String[] files, String outputFileDir, StreamWatcherDelegate delegate) {
+    /** Compiles the files into outputFileDir. The integrated compiler runs in-process and does not
+     * compile again the files found unchanged in the cache of inProcessCompiler.
+     */
+    public static String compileFiles(Console console, String[] files, String outputFileDir, DebuggerCompiler inProcessCompiler, StreamWatcherDelegate delegate) {
         String error = null;
 
         int result = 0;
@@ -219,18 +221,9 @@ public class DebuggerEngine {
                 new StreamWatcher(p.getInputStream(), "Compiler[stdout]", delegate).start();
                 result = p.waitFor();
             } else if(compiler.equalsIgnoreCase(AWPrefs.COMPILER_INTEGRATED)) {
-                String[] args = new String[2+files.length];
-                args[0] = "-d";
-                args[1] = outputFileDir;
-                System.arraycopy(files, 0, args, 2, files.length);
-
-                Class<?> javac = Class.forName("com.sun.tools.javac.Main");
-                Class[] p = new Class[] { String[].class };
-                Method m = javac.getMethod("compile", p);
-                Object[] a = new Object[] { args };
-                Object r = m.invoke(javac.newInstance(), a);
-                result = (Integer) r;
-                //result = com.sun.tools.javac.Main.compile(args);
+                IDE.debugVerbose(console, DebuggerEngine.class, "Compile in-process: "+Utils.toString(files));
+
+                error = inProcessCompiler.compileFiles(files, Utils.unquotePath(classPath), outputFileDir, delegate);
             }
 
         } catch(Error e) {
@@ -39,13 +39,20 @@ import org.antlr.works.debugger.events.DBEvent;
 import org.antlr.works.debugger.events.DBEventEnterRule;
 import org.antlr.works.debugger.events.DBEventExitRule;
 import org.antlr.works.debugger.events.DBEventLocation;
+import org.antlr.works.debugger.input.DBInputProcessor;
 import org.antlr.works.debugger.input.DBInputTextTokenInfo;
 import org.antlr.works.debugger.local.DBLocal;
 import org.antlr.works.debugger.panels.*;
 import org.antlr.works.debugger.remote.DBRemoteConnectDialog;
+import org.antlr.works.debugger.tivo.DBBreakpoints;
+import org.antlr.works.debugger.tivo.DBModelBuilder;
 import org.antlr.works.debugger.tivo.DBPlayer;
+import org.antlr.works.debugger.tivo.DBPlayerCheckpoint;
 import org.antlr.works.debugger.tivo.DBPlayerContextInfo;
+import org.antlr.works.debugger.tivo.DBPlayerDelegate;
 import org.antlr.works.debugger.tivo.DBRecorder;
+import org.antlr.works.debugger.tivo.DBRecording;
+import org.antlr.works.debugger.tivo.DBRecordingReader;
 import org.antlr.works.debugger.tree.DBASTModel;
 import org.antlr.works.debugger.tree.DBASTPanel;
 import org.antlr.works.debugger.tree.DBParseTreeModel;
@@ -62,18 +69,22 @@ import org.antlr.xjlib.appkit.frame.XJDialog;
 import org.antlr.xjlib.appkit.gview.GView;
 import org.antlr.xjlib.appkit.swing.XJRotableToggleButton;
 import org.antlr.xjlib.appkit.utils.XJAlert;
+import org.antlr.xjlib.appkit.utils.XJFileChooser;
 import org.antlr.xjlib.foundation.notification.XJNotificationCenter;
 
 import javax.swing.*;
 import java.awt.*;
 import java.awt.event.ActionEvent;
 import java.awt.event.ActionListener;
+import java.io.File;
+import java.io.IOException;
+import java.util.BitSet;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
 
-public class DebuggerTab extends GrammarWindowTab implements DetachablePanelDelegate {
+public class DebuggerTab extends GrammarWindowTab implements DetachablePanelDelegate, DBPlayerDelegate {
 
     public static final String DEFAULT_LOCAL_ADDRESS = "localhost";
 
@@ -85,6 +96,9 @@ public class DebuggerTab extends GrammarWindowTab implements DetachablePanelDele
     public static final int OPTION_BUILD = 2;
     public static final int OPTION_RUN = 4;
 
+    /** Minimum delay between two updates of the status when the recorder is running */
+    public static final int STATUS_UPDATE_DELAY = 16;
+
     public static final float PERCENT_WIDTH_LEFT = 0.2f;
     public static final float PERCENT_WIDTH_MIDDLE = 0.5f;
 
@@ -107,15 +121,19 @@ public class DebuggerTab extends GrammarWindowTab implements DetachablePanelDele
     protected CustomSplitPanel splitPanel;
     protected Map<Component, XJRotableToggleButton> components2toggle;
 
-    protected Map<Integer, Set<String>> breakpoints;
+    protected DBBreakpoints breakpoints = DBBreakpoints.EMPTY;
 
     protected DBLocal local;
     protected DBRecorder recorder;
     protected DBPlayer player;
+    /** Builder playing the events on a background thread, if any */
+    protected DBModelBuilder modelBuilder;
 
     protected boolean running;
     protected long dateOfModificationOnDisk = 0;
 
+    protected Timer statusTimer;
+
     private boolean closing = false;
     private String startRule;
 
@@ -134,6 +152,13 @@ public class DebuggerTab extends GrammarWindowTab implements DetachablePanelDele
 
         controlPanel = new DBControlPanel(this);
 
+        statusTimer = new Timer(STATUS_UPDATE_DELAY, new ActionListener() {
+            public void actionPerformed(ActionEvent e) {
+                updateStatusInfo();
+            }
+        });
+        statusTimer.setRepeats(false);
+
         inputPanel = new DBInputPanel(this);
         inputPanel.setTag(CustomSplitPanel.LEFT_INDEX);
         outputPanel = new DBOutputPanel(this);
@@ -165,6 +190,7 @@ public class DebuggerTab extends GrammarWindowTab implements DetachablePanelDele
 
     public void close() {
         closing = true;
+        statusTimer.stop();
 
         debuggerStop(true);
 
@@ -179,6 +205,7 @@ public class DebuggerTab extends GrammarWindowTab implements DetachablePanelDele
         stackPanel.close();
         eventsPanel.close();
 
+        discardModelBuilder();
         local.close();
         recorder.close();
         player.close();
@@ -358,22 +385,15 @@ public class DebuggerTab extends GrammarWindowTab implements DetachablePanelDele
         dateOfModificationOnDisk = delegate.getDocument().getDateOfModificationOnDisk();
     }
 
+    /** Compiles the grammar and input breakpoints for the recorder if they have changed */
     public void queryGrammarBreakpoints() {
-        this.breakpoints = delegate.getBreakpoints();
-    }
-
-    public boolean isBreakpointAtLine(int line, String name) {
-        if(breakpoints == null) return false;
-
-        Set<String> names = breakpoints.get(line);
-        if(names == null) return false;
-
-        // return true if the current grammar matches
-        return names.contains(name);
-    }
-
-    public boolean isBreakpointAtToken(Token token) {
-        return inputPanel.isBreakpointAtToken(token);
+        Map<Integer, Set<String>> lines = delegate.getBreakpoints();
+        DBInputProcessor processor = inputPanel.getInputBuffer();
+        BitSet tokens = processor == null ? null : processor.getBreakpointTokens();
+        if(!breakpoints.isSame(lines, tokens)) {
+            breakpoints = new DBBreakpoints(lines, tokens);
+            recorder.setBreakpoints(breakpoints);
+        }
     }
 
     public void selectToken(Token token, DBEventLocation location) {
@@ -503,6 +523,62 @@ public class DebuggerTab extends GrammarWindowTab implements DetachablePanelDele
         return true;
     }
 
+    /** Opens a recording file and replays its events as if they were coming from
+     * a remote parser.
+     */
+    public void openRecording() {
+        if(!XJFileChooser.shared().displayOpenDialog(getWindowContainer(), DBRecording.EXTENSION, "Debugger recording", false))
+            return;
+
+        String file = XJFileChooser.shared().getSelectedFilePath();
+        if(file == null)
+            return;
+
+        DBRecordingReader reader;
+        try {
+            reader = new DBRecordingReader(new File(file));
+        } catch (IOException e) {
+            XJAlert.display(getWindowContainer(), "Error", "Cannot open the debugger recording: "+file+"\nError: "+e);
+            return;
+        }
+
+        String grammarFileName = delegate.getGrammarEngine().getGrammarFileName();
+        if(reader.getGrammarFileName() != null && !reader.getGrammarFileName().equals(grammarFileName)) {
+            XJAlert.display(getWindowContainer(), "Grammar Mismatch",
+                    "Warning: the grammar used by the recording is not the same ("+reader.getGrammarFileName()+").");
+        }
+        if(!reader.isIndexed()) {
+            getConsole().println("The debugger recording "+file+" is incomplete: "+reader.size()+" events recovered", Console.LEVEL_WARNING);
+        }
+
+        queryGrammarBreakpoints();
+        rootGrammarName = delegate.getGrammarName();
+        inputPanel.prepareForGrammar(delegate.getGrammarEngine());
+        player.setInputBuffer(inputPanel.getInputBuffer());
+
+        connectionSuccess();
+        recorder.openRecording(reader);
+    }
+
+    public boolean canSaveRecording() {
+        return recorder != null && recorder.canSaveRecording();
+    }
+
+    public void saveRecording() {
+        if(!XJFileChooser.shared().displaySaveDialog(getWindowContainer(), DBRecording.EXTENSION, "Debugger recording", false))
+            return;
+
+        String file = XJFileChooser.shared().getSelectedFilePath();
+        if(file == null)
+            return;
+
+        try {
+            recorder.saveRecording(new File(file));
+        } catch (IOException e) {
+            XJAlert.display(getWindowContainer(), "Error", "Cannot save the debugger recording: "+file+"\nError: "+e);
+        }
+    }
+
     public void showEditTestRig() {
         local.showEditTestRig();
     }
@@ -552,26 +628,87 @@ public class DebuggerTab extends GrammarWindowTab implements DetachablePanelDele
         return running;
     }
 
-    public void resetGUI() {
+    public void playerReset(boolean first) {
         stackPanel.clear();
-        eventsPanel.clear();
+        if(first)
+            eventsPanel.clear();
+        else
+            eventsPanel.rewind();
         parseTreePanel.clear();
         astPanel.clear();
     }
 
-    public void addEvent(DBEvent event, DBPlayerContextInfo info) {
+    public void playerAddEvent(DBEvent event, DBPlayerContextInfo info) {
         eventsPanel.addEvent(event, info);
     }
 
-    public void playEvents(List events, int lastEventPosition, boolean reset) {
-        player.playEvents(events, lastEventPosition, reset);
+    /** Plays the events on the event dispatch thread or, if there are many of them, with
+     * a model builder on a background thread. A new request replaces the builder running.
+     */
+    public void playEvents(List<DBEvent> events, int lastEventPosition, boolean reset) {
+        discardModelBuilder();
+        eventsPanel.setEvents(events);
+
+        modelBuilder = player.createModelBuilder(this, events, lastEventPosition, reset);
+        if(modelBuilder == null) {
+            player.playEvents(events, lastEventPosition, reset);
+            breaksOnEvent();
+        } else {
+            modelBuilder.start();
+        }
+    }
+
+    public void discardModelBuilder() {
+        if(modelBuilder != null) {
+            modelBuilder.discard();
+            modelBuilder = null;
+        }
+    }
+
+    /** Publishes the models of a builder once its events are played. If the builder has been
+     * cancelled, the debugger stops on the last event played.
+     */
+    public void modelBuilderDidFinish(DBModelBuilder builder) {
+        if(builder != modelBuilder)
+            return;
+
+        modelBuilder = null;
+        stackPanel.setRules(builder.getRules());
+        eventsPanel.setNumberOfEvents(builder.getFirstEventPosition());
+        eventsPanel.addEvents(builder.getContexts(), builder.getContextCount());
+        parseTreeModel.set(builder.getParseTreeModel());
+        astModel.set(builder.getASTModel());
+        player.publish(builder.getPlayer());
+        if(builder.isCancelled())
+            recorder.setCurrentEventPosition(player.getEventPlayedCount());
         breaksOnEvent();
     }
 
+    public void playerCreateCheckpoint(DBPlayerCheckpoint checkpoint) {
+        checkpoint.rules = stackPanel.getRules();
+        checkpoint.parseTree = parseTreeModel.createCheckpoint();
+        checkpoint.ast = astModel.createCheckpoint();
+    }
+
+    /** Restores the models and the events list to the state of the checkpoint.
+     * The panels are refreshed when the player breaks.
+     */
+    public void playerRestoreCheckpoint(DBPlayerCheckpoint checkpoint) {
+        stackPanel.setRules(checkpoint.rules);
+        eventsPanel.setNumberOfEvents(checkpoint.eventIndex);
+        parseTreeModel.restoreCheckpoint(checkpoint.parseTree);
+        astModel.restoreCheckpoint(checkpoint.ast);
+    }
+
     public void playerSetLocation(DBEventLocation location) {
         parseTreeModel.setLocation(location);
     }
 
+    public void playerShowLocation(DBEventLocation location) {
+        resetGrammarLocation();
+        setGrammarLocation(location);
+    }
+
     public void playerPushRule(DBEventEnterRule rule) {
         stackPanel.pushRule(rule);
         parseTreeModel.pushRule(rule.name);
@@ -628,14 +765,14 @@ public class DebuggerTab extends GrammarWindowTab implements DetachablePanelDele
         /** Currently ignored */
     }
 
+    /** Called by the recorder thread: the changes are coalesced into at most one update
+     * of the status every STATUS_UPDATE_DELAY ms.
+     */
     public void recorderStatusDidChange() {
         if(closing) return;
 
-        SwingUtilities.invokeLater(new Runnable() {
-            public void run() {
-                updateStatusInfo();
-            }
-        });
+        if(!statusTimer.isRunning())
+            statusTimer.start();
     }
 
     public void recorderDidStop() {
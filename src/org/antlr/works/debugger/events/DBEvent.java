@@ -35,15 +35,6 @@ public class DBEvent {
 
     public static final int NO_EVENT = -1;
 
-    public static final Integer negOne = -1;
-    public static final Integer ints[] = new Integer[28];
-
-    static {
-        for(int i = 0, maxI = ints.length; i < maxI; i++) {
-            ints[i] = i;
-        }
-    }
-
     public static final int ALL = 0;
     public static final int NONE = 1;
     public static final int COMMENCE = 2;
@@ -114,19 +105,6 @@ public class DBEvent {
         return "?";
     }
 
-    public static Integer convertToInteger(int eventType) {
-        Integer retInt;
-        if(eventType < ints.length) {
-            retInt = ints[eventType];
-        } else if (eventType == -1) {
-            retInt = negOne;
-        } else {
-            retInt = eventType;
-        }
-
-        return(retInt);
-    }
-
     public int getEventType() {
         return eventType;
     }
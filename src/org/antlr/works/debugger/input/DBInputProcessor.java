@@ -2,6 +2,9 @@ package org.antlr.works.debugger.input;
 
 import org.antlr.runtime.Token;
 import org.antlr.works.debugger.events.DBEventLocation;
+
+import java.util.BitSet;
+import java.util.List;
 /*
 
 [The "BSD licence"]
@@ -46,9 +49,30 @@ public interface DBInputProcessor {
     public void rewindAll();
 
     public void LT(Token token);
+    /** Applies a burst of consecutive LT events. The result must be the same as calling
+     * LT() for each token in order.
+     */
+    public void LT(List<Token> tokens);
     public void consumeToken(Token token, int flavor);
     public void setLocation(DBEventLocation event);
 
     public int getCurrentTokenIndex();
     public DBInputTextTokenInfo getTokenInfoAtTokenIndex(int index);
+
+    /** Returns the indexes of the tokens with a breakpoint (the ids of the nodes for a tree input) */
+    public BitSet getBreakpointTokens();
+
+    /** Returns the state of the processor so it can be restored later without replaying
+     * the events received before
+     */
+    public Object createCheckpoint();
+    public void restoreCheckpoint(Object checkpoint);
+
+    /** Returns a copy of the processor without any view so the events can be played on
+     * another thread, or null if the processor can only be used on the event dispatch thread
+     */
+    public DBInputProcessor createHeadlessCopy();
+
+    /** Takes the state of a headless copy once its events have been played */
+    public void publish(DBInputProcessor copy);
 }
@@ -36,6 +36,8 @@ import org.antlr.works.debugger.DebuggerTab;
 import org.antlr.works.debugger.events.DBEventLocation;
 import org.antlr.works.dialog.AWPrefsDialog;
 import org.antlr.works.prefs.AWPrefs;
+import org.antlr.works.utils.IntObjectMap;
+import org.antlr.works.utils.IntSet;
 import org.antlr.works.utils.TextPane;
 import org.antlr.works.utils.TextPaneDelegate;
 import org.antlr.xjlib.foundation.XJSystem;
@@ -47,13 +49,15 @@ import javax.swing.text.AttributeSet;
 import javax.swing.text.BadLocationException;
 import javax.swing.text.SimpleAttributeSet;
 import javax.swing.text.StyleConstants;
+import javax.swing.text.Utilities;
 import java.awt.*;
 import java.awt.event.MouseAdapter;
 import java.awt.event.MouseEvent;
 import java.awt.event.MouseMotionAdapter;
 import java.awt.geom.Area;
-import java.awt.geom.GeneralPath;
+import java.awt.geom.Rectangle2D;
 import java.util.*;
+import java.util.List;
 
 public class DBInputProcessorToken implements DBInputProcessor, TextPaneDelegate, XJNotificationObserver {
 
@@ -64,10 +68,28 @@ public class DBInputProcessorToken implements DBInputProcessor, TextPaneDelegate
     protected TextPane textPane;
     protected int mouseIndex = -1;
 
-    protected LinkedList<Integer> inputTokenIndexes = new LinkedList<Integer>();
-    protected Map<Integer,DBInputTextTokenInfo> indexToTokenInfoMap = new HashMap<Integer, DBInputTextTokenInfo>();
-    protected Map<Integer,AttributeSet> indexToConsumeAttributeMap = new HashMap<Integer, AttributeSet>();
-    protected Set<Integer> lookaheadTokenIndexes = new HashSet<Integer>();
+    /** Sorted indexes of the tokens - used to render the tokens in order */
+    protected int[] inputTokenIndexes = new int[256];
+    protected int inputTokenCount = 0;
+
+    protected IntObjectMap<DBInputTextTokenInfo> indexToTokenInfoMap = new IntObjectMap<DBInputTextTokenInfo>();
+    protected IntObjectMap<AttributeSet> indexToConsumeAttributeMap = new IntObjectMap<AttributeSet>();
+    protected IntSet lookaheadTokenIndexes = new IntSet();
+
+    /** Set when the tokens or their attributes change: the text is rendered again only
+     * if it is invalid when the debugger breaks.
+     */
+    protected boolean textInvalid = true;
+    /** Indexes of the tokens seen by LT(List) */
+    protected IntSet burstTokenIndexes = new IntSet();
+
+    /** Tokens of the rendered text sorted by position and the shape of each token.
+     * The shapes are computed when a token is painted and kept until the text is rendered
+     * again or the width of the text pane changes.
+     */
+    protected DBInputTextTokenInfo[] renderedTokens = new DBInputTextTokenInfo[0];
+    protected Shape[] renderedTokenShapes = new Shape[0];
+    protected int renderedTokenShapesWidth = -1;
 
     /** Current token index */
     protected int currentTokenIndex;
@@ -80,7 +102,7 @@ public class DBInputProcessorToken implements DBInputProcessor, TextPaneDelegate
     protected int locationCharInLine;
 
     /** Input breakpoints */
-    protected Set<Integer> inputBreakpointIndexes = new HashSet<Integer>();
+    protected BitSet inputBreakpointIndexes = new BitSet();
 
     protected SimpleAttributeSet attributeNonConsumed;
     protected SimpleAttributeSet attributeConsume;
@@ -106,6 +128,26 @@ public class DBInputProcessorToken implements DBInputProcessor, TextPaneDelegate
         XJNotificationCenter.defaultCenter().addObserver(this, AWPrefsDialog.NOTIF_PREFS_APPLIED);
     }
 
+    /** Creates a copy of the state of a processor without text pane (see createHeadlessCopy()) */
+    protected DBInputProcessorToken(DBInputProcessorToken processor) {
+        debuggerTab = processor.debuggerTab;
+
+        inputTokenIndexes = processor.inputTokenIndexes.clone();
+        inputTokenCount = processor.inputTokenCount;
+        indexToTokenInfoMap = new IntObjectMap<DBInputTextTokenInfo>(processor.indexToTokenInfoMap);
+        indexToConsumeAttributeMap = new IntObjectMap<AttributeSet>(processor.indexToConsumeAttributeMap);
+        lookaheadTokenIndexes = new IntSet(processor.lookaheadTokenIndexes);
+
+        currentTokenIndex = processor.currentTokenIndex;
+        locationEvent = processor.locationEvent;
+
+        attributeNonConsumed = processor.attributeNonConsumed;
+        attributeConsume = processor.attributeConsume;
+        attributeConsumeHidden = processor.attributeConsumeHidden;
+        attributeConsumeDead = processor.attributeConsumeDead;
+        attributeLookahead = processor.attributeLookahead;
+    }
+
     public void close() {
         debuggerTab = null;
         textPane.setDelegate(null);
@@ -149,6 +191,23 @@ public class DBInputProcessorToken implements DBInputProcessor, TextPaneDelegate
         addTokenLT(token);
     }
 
+    /** Only the last LT of a token changes the state of the processor: each token is
+     * applied once, in the order of its last LT, so the current token is the one of the
+     * last LT of the burst.
+     */
+    public void LT(List<Token> tokens) {
+        int count = tokens.size();
+        boolean[] last = new boolean[count];
+        burstTokenIndexes.clear();
+        for(int i=count-1; i>=0; i--) {
+            last[i] = burstTokenIndexes.add(tokens.get(i).getTokenIndex());
+        }
+        for(int i=0; i<count; i++) {
+            if(last[i])
+                LT(tokens.get(i));
+        }
+    }
+
     /**
      * On Windows, ignore the LF token following a CR because each
      * end of line is represented by two characters while Swing
@@ -166,19 +225,30 @@ public class DBInputProcessorToken implements DBInputProcessor, TextPaneDelegate
     }
 
     public void addConsumeAttribute(Token token, AttributeSet attribute) {
-        indexToConsumeAttributeMap.put(token.getTokenIndex(), attribute);
+        AttributeSet previous;
+        if(attribute == null)
+            previous = indexToConsumeAttributeMap.remove(token.getTokenIndex());
+        else
+            previous = indexToConsumeAttributeMap.put(token.getTokenIndex(), attribute);
+        if(previous != attribute)
+            textInvalid = true;
     }
 
     public void addTokenLT(Token token) {
-        lookaheadTokenIndexes.add(token.getTokenIndex());
+        if(lookaheadTokenIndexes.add(token.getTokenIndex()))
+            textInvalid = true;
     }
 
     public void removeTokenLT(Token token) {
-        lookaheadTokenIndexes.remove(Integer.valueOf(token.getTokenIndex()));
+        if(lookaheadTokenIndexes.remove(token.getTokenIndex()))
+            textInvalid = true;
     }
 
     public void removeAllLT() {
-        lookaheadTokenIndexes.clear();
+        if(!lookaheadTokenIndexes.isEmpty()) {
+            lookaheadTokenIndexes.clear();
+            textInvalid = true;
+        }
     }
 
     public void stop() {
@@ -192,10 +262,13 @@ public class DBInputProcessorToken implements DBInputProcessor, TextPaneDelegate
         currentTokenIndex = -1;
         currentTokenIndexInText = 0;
 
-        inputTokenIndexes.clear();
+        inputTokenCount = 0;
+        renderedTokens = new DBInputTextTokenInfo[0];
+        renderedTokenShapes = new Shape[0];
         indexToTokenInfoMap.clear();
         indexToConsumeAttributeMap.clear();
         lookaheadTokenIndexes.clear();
+        textInvalid = true;
     }
 
     public void rewindAll() {
@@ -204,18 +277,58 @@ public class DBInputProcessorToken implements DBInputProcessor, TextPaneDelegate
 
     public void rewind(int start) {
         currentTokenIndex = start;
+        textInvalid = true;
 
         /** Remove any consume and lookahead attribute for any token with index
          * greater than start
          */
-        for (Integer idx : inputTokenIndexes) {
-            if (idx >= start) {
-                indexToConsumeAttributeMap.remove(idx);
-                lookaheadTokenIndexes.remove(idx);
-            }
+        for(int i=findTokenIndexPosition(start); i<inputTokenCount; i++) {
+            int idx = inputTokenIndexes[i];
+            indexToConsumeAttributeMap.remove(idx);
+            lookaheadTokenIndexes.remove(idx);
         }
     }
 
+    /** The tokens are never removed from the text when rewinding: the checkpoint only
+     * holds the state that the events modify.
+     */
+    public Object createCheckpoint() {
+        Checkpoint c = new Checkpoint();
+        c.currentTokenIndex = currentTokenIndex;
+        c.locationEvent = locationEvent;
+        c.indexToTokenInfoMap = new IntObjectMap<DBInputTextTokenInfo>(indexToTokenInfoMap);
+        c.indexToConsumeAttributeMap = new IntObjectMap<AttributeSet>(indexToConsumeAttributeMap);
+        c.lookaheadTokenIndexes = new IntSet(lookaheadTokenIndexes);
+        return c;
+    }
+
+    public void restoreCheckpoint(Object checkpoint) {
+        Checkpoint c = (Checkpoint) checkpoint;
+        currentTokenIndex = c.currentTokenIndex;
+        locationEvent = c.locationEvent;
+        indexToTokenInfoMap.putAll(c.indexToTokenInfoMap);
+        indexToConsumeAttributeMap = new IntObjectMap<AttributeSet>(c.indexToConsumeAttributeMap);
+        lookaheadTokenIndexes = new IntSet(c.lookaheadTokenIndexes);
+        textInvalid = true;
+    }
+
+    public DBInputProcessor createHeadlessCopy() {
+        return new DBInputProcessorToken(this);
+    }
+
+    /** The text is rendered from the tokens of the copy when the debugger breaks */
+    public void publish(DBInputProcessor copy) {
+        DBInputProcessorToken processor = (DBInputProcessorToken) copy;
+        inputTokenIndexes = processor.inputTokenIndexes;
+        inputTokenCount = processor.inputTokenCount;
+        indexToTokenInfoMap = processor.indexToTokenInfoMap;
+        indexToConsumeAttributeMap = processor.indexToConsumeAttributeMap;
+        lookaheadTokenIndexes = processor.lookaheadTokenIndexes;
+        currentTokenIndex = processor.currentTokenIndex;
+        locationEvent = processor.locationEvent;
+        textInvalid = true;
+    }
+
     public void addToken(Token token) {
         int index = token.getTokenIndex();
         if(index == -1) {
@@ -223,29 +336,53 @@ public class DBInputProcessorToken implements DBInputProcessor, TextPaneDelegate
             return;
         }
 
-        currentTokenIndex = index;
+        if(currentTokenIndex != index) {
+            currentTokenIndex = index;
+            textInvalid = true;
+        }
 
         /** Insert the index into the list of sorted indexes - used to render the token */
 
-        if(!indexToTokenInfoMap.containsKey(index)) {
-            if(inputTokenIndexes.isEmpty())
-                inputTokenIndexes.add((Integer)index);
-            else {
-                for(int i=inputTokenIndexes.size()-1; i >= 0; i--) {
-                    Integer n = inputTokenIndexes.get(i);
-                    if(n < index) {
-                        inputTokenIndexes.add(i+1, (Integer)index);
-                        break;
-                    }
-                }
-            }
-        }
+        DBInputTextTokenInfo info = indexToTokenInfoMap.get(index);
+        if(info == null)
+            insertTokenIndex(index);
+        else if(info.token == token && info.location == locationEvent)
+            return;
 
         /** Add the token even if it is already in the map because its position or attribute
          * may have changed
          */
 
         indexToTokenInfoMap.put(index, new DBInputTextTokenInfo(token, locationEvent));
+        textInvalid = true;
+    }
+
+    /** Inserts an index in the sorted indexes. The tokens usually come in order so
+     * the index is appended most of the time.
+     */
+    public void insertTokenIndex(int index) {
+        int position = inputTokenCount;
+        if(inputTokenCount > 0 && inputTokenIndexes[inputTokenCount-1] >= index) {
+            position = Arrays.binarySearch(inputTokenIndexes, 0, inputTokenCount, index);
+            if(position >= 0)
+                return;
+            position = -position-1;
+        }
+
+        if(inputTokenCount == inputTokenIndexes.length) {
+            int[] indexes = new int[inputTokenIndexes.length*2];
+            System.arraycopy(inputTokenIndexes, 0, indexes, 0, inputTokenCount);
+            inputTokenIndexes = indexes;
+        }
+        System.arraycopy(inputTokenIndexes, position, inputTokenIndexes, position+1, inputTokenCount-position);
+        inputTokenIndexes[position] = index;
+        inputTokenCount++;
+    }
+
+    /** Returns the position of the first index greater or equal to index in the sorted indexes */
+    public int findTokenIndexPosition(int index) {
+        int position = Arrays.binarySearch(inputTokenIndexes, 0, inputTokenCount, index);
+        return position >= 0?position:-position-1;
     }
 
     public Token getCurrentToken() {
@@ -258,11 +395,15 @@ public class DBInputProcessorToken implements DBInputProcessor, TextPaneDelegate
 
     public String renderTokensText() {
         currentTokenIndexInText = 0;
+        renderedTokens = new DBInputTextTokenInfo[inputTokenCount];
+        renderedTokenShapes = new Shape[inputTokenCount];
         StringBuilder text = new StringBuilder();
-        for (Integer idx : inputTokenIndexes) {
+        for(int i=0; i<inputTokenCount; i++) {
+            int idx = inputTokenIndexes[i];
             DBInputTextTokenInfo info = indexToTokenInfoMap.get(idx);
             info.setStart(text.length());
             text.append(info.getText());
+            renderedTokens[i] = info;
 
             if (idx == getCurrentTokenIndex())
                 currentTokenIndexInText = info.start;
@@ -271,6 +412,8 @@ public class DBInputProcessorToken implements DBInputProcessor, TextPaneDelegate
     }
 
     public void render() {
+        textInvalid = false;
+
         /** Apply the text */
 
         String text = renderTokensText();
@@ -278,8 +421,8 @@ public class DBInputProcessorToken implements DBInputProcessor, TextPaneDelegate
         textPane.getStyledDocument().setCharacterAttributes(0, text.length(), SimpleAttributeSet.EMPTY, true);
 
         /** Apply the style for each token */
-        for (Integer idx : inputTokenIndexes) {
-            DBInputTextTokenInfo info = indexToTokenInfoMap.get(idx);
+        for (DBInputTextTokenInfo info : renderedTokens) {
+            int idx = info.token.getTokenIndex();
             AttributeSet attribute = indexToConsumeAttributeMap.get(idx);
             if (attribute == null)
                 attribute = attributeNonConsumed;
@@ -293,7 +436,8 @@ public class DBInputProcessorToken implements DBInputProcessor, TextPaneDelegate
     }
 
     public void updateOnBreakEvent() {
-        render();
+        if(textInvalid)
+            render();
 
         /** Scroll the text pane to the current token position. Invoke that later on
          * so the pane scrolls at the correct position (otherwise the scroll will be reset).
@@ -301,7 +445,7 @@ public class DBInputProcessorToken implements DBInputProcessor, TextPaneDelegate
         SwingUtilities.invokeLater(new Runnable() {
             public void run() {
                 try {
-                    Rectangle r = textPane.modelToView(currentTokenIndexInText);
+                    Rectangle r = getCharacterBounds(currentTokenIndexInText);
                     if(r != null) {
                         textPane.scrollRectToVisible(r);                        
                     }
@@ -328,50 +472,106 @@ public class DBInputProcessorToken implements DBInputProcessor, TextPaneDelegate
         attributeLookahead = new SimpleAttributeSet();
         StyleConstants.setForeground(attributeLookahead, AWPrefs.getLookaheadTokenColor());
         StyleConstants.setItalic(attributeLookahead, true);
+
+        /** The font may have changed */
+        renderedTokenShapes = new Shape[renderedTokens.length];
+        textInvalid = true;
     }
 
+    /** Paints only the tokens in the clip. The tokens are sorted by position in the text
+     * so the first and last ones are found with a binary search.
+     */
     public void textPaneDidPaint(Graphics g) {
-        for (DBInputTextTokenInfo info : indexToTokenInfoMap.values()) {
+        if(renderedTokens.length == 0)
+            return;
+
+        if(renderedTokenShapesWidth != textPane.getWidth()) {
+            /** The text may wrap differently */
+            renderedTokenShapes = new Shape[renderedTokens.length];
+            renderedTokenShapesWidth = textPane.getWidth();
+        }
+
+        Rectangle clip = g.getClipBounds();
+        if(clip == null)
+            clip = textPane.getVisibleRect();
+
+        int first = Math.max(0, findRenderedTokenAtPosition(textPane.viewToModel2D(new Point(0, clip.y))));
+        int last = findRenderedTokenAtPosition(textPane.viewToModel2D(new Point(textPane.getWidth(), clip.y+clip.height)));
+        for(int i=first; i<=last && i<renderedTokens.length; i++) {
+            DBInputTextTokenInfo info = renderedTokens[i];
             if (drawTokensBox)
-                drawToken(info, (Graphics2D) g, Color.red, false);
+                drawToken(i, (Graphics2D) g, Color.red, false);
 
-            if (inputBreakpointIndexes.contains(Integer.valueOf(info.token.getTokenIndex())))
-                drawToken(info, (Graphics2D) g, INPUT_BREAKPOINT_COLOR, true);
+            if (info.token.getTokenIndex() >= 0 && inputBreakpointIndexes.get(info.token.getTokenIndex()))
+                drawToken(i, (Graphics2D) g, INPUT_BREAKPOINT_COLOR, true);
             else if (mouseIndex >= info.start && mouseIndex < info.end)
-                drawToken(info, (Graphics2D) g, HIGHLIGHTED_COLOR, true);
+                drawToken(i, (Graphics2D) g, HIGHLIGHTED_COLOR, true);
         }
     }
 
-    public void drawToken(DBInputTextTokenInfo info, Graphics2D g, Color c, boolean fill) {
+    public void drawToken(int i, Graphics2D g, Color c, boolean fill) {
+        Shape shape = renderedTokenShapes[i];
+        if(shape == null) {
+            try {
+                shape = renderedTokenShapes[i] = createTokenShape(renderedTokens[i]);
+            } catch (BadLocationException e) {
+                // Ignore exception
+                return;
+            }
+        }
+
         g.setColor(c);
-        try {
-            Rectangle r1 = textPane.modelToView(info.start);
-            Rectangle r2 = textPane.modelToView(info.end);
-
-            if(r2.y > r1.y) {
-                // token spans more than one line
-                GeneralPath gp = new GeneralPath();
-                Area area = new Area();
-                for(int index=info.start; index<info.end; index++) {
-                    Rectangle r = textPane.modelToView(index);
-                    // compute the width of the index
-                    r.width = Math.max(0,textPane.modelToView(index+1).x - r.x);
-                    area.add(new Area(r));
-                }
-                gp.append(area, true);
-                if(fill)
-                    g.fill(gp);
-                else
-                    g.draw(gp);
-            } else {
-                if(fill)
-                    g.fillRect(r1.x, r1.y, r2.x-r1.x, r1.height);
-                else
-                    g.drawRect(r1.x, r1.y, r2.x-r1.x, r1.height);
+        if(fill)
+            g.fill(shape);
+        else
+            g.draw(shape);
+    }
+
+    /** Returns the bounds of the character at a text index in the text pane */
+    public Rectangle getCharacterBounds(int index) throws BadLocationException {
+        Rectangle2D r = textPane.modelToView2D(index);
+        return r == null?null:r.getBounds();
+    }
+
+    /** Returns the shape covering the characters of a token in the text pane */
+    public Shape createTokenShape(DBInputTextTokenInfo info) throws BadLocationException {
+        Rectangle r1 = getCharacterBounds(info.start);
+        Rectangle r2 = getCharacterBounds(info.end);
+
+        if(r2.y > r1.y) {
+            // token spans more than one line: union of the part of the token on each line
+            Area area = new Area();
+            int start = info.start;
+            while(start < info.end) {
+                int end = Math.min(Math.max(start, Utilities.getRowEnd(textPane, start)), info.end-1);
+                Rectangle r = getCharacterBounds(start);
+                Rectangle last = getCharacterBounds(end);
+                Rectangle next = getCharacterBounds(end+1);
+                // the last character of the line has no width if the next one is on another line
+                int right = next.y == last.y?next.x:last.x;
+                area.add(new Area(new Rectangle(r.x, r.y, Math.max(0, right-r.x), r.height)));
+                start = end+1;
             }
-        } catch (BadLocationException e) {
-            // Ignore exception
+            return area;
+        } else {
+            return new Rectangle(r1.x, r1.y, r2.x-r1.x, r1.height);
+        }
+    }
+
+    /** Returns the position in the rendered tokens of the token containing the text index
+     * or -1 if the index is before the first token.
+     */
+    public int findRenderedTokenAtPosition(int index) {
+        int low = 0;
+        int high = renderedTokens.length-1;
+        while(low <= high) {
+            int mid = (low+high) >>> 1;
+            if(renderedTokens[mid].start <= index)
+                low = mid+1;
+            else
+                high = mid-1;
         }
+        return high;
     }
 
     public DBInputTextTokenInfo getTokenInfoAtTokenIndex(int index) {
@@ -379,15 +579,15 @@ public class DBInputProcessorToken implements DBInputProcessor, TextPaneDelegate
     }
 
     public DBInputTextTokenInfo getTokenInfoAtPositionIndex(int index) {
-        for (DBInputTextTokenInfo info : indexToTokenInfoMap.values()) {
-            if (index >= info.start && index < info.end)
-                return info;
-        }
-        return null;
+        int i = findRenderedTokenAtPosition(index);
+        if(i >= 0 && index < renderedTokens[i].end)
+            return renderedTokens[i];
+        else
+            return null;
     }
 
-    public boolean isBreakpointAtToken(Token token) {
-        return inputBreakpointIndexes.contains(Integer.valueOf(token.getTokenIndex()));
+    public BitSet getBreakpointTokens() {
+        return inputBreakpointIndexes;
     }
 
     /** This method highlights the token at the specified index
@@ -415,13 +615,12 @@ public class DBInputProcessorToken implements DBInputProcessor, TextPaneDelegate
     }
 
     public DBInputTextTokenInfo getTokenInfoForToken(Token t) {
-        for (DBInputTextTokenInfo info : indexToTokenInfoMap.values()) {
-            // FIX AW-61 - compare also the token type to avoid selecting the wrong one (e.g. imaginary)
-            if (info.token.getTokenIndex() == t.getTokenIndex() &&
-                    info.token.getType() == t.getType())
-                return info;
-        }
-        return null;
+        DBInputTextTokenInfo info = indexToTokenInfoMap.get(t.getTokenIndex());
+        // FIX AW-61 - compare also the token type to avoid selecting the wrong one (e.g. imaginary)
+        if (info != null && info.token.getType() == t.getType())
+            return info;
+        else
+            return null;
     }
 
     public void notificationFire(Object source, String name) {
@@ -430,6 +629,14 @@ public class DBInputProcessorToken implements DBInputProcessor, TextPaneDelegate
         }
     }
 
+    protected static class Checkpoint {
+        public int currentTokenIndex;
+        public DBEventLocation locationEvent;
+        public IntObjectMap<DBInputTextTokenInfo> indexToTokenInfoMap;
+        public IntObjectMap<AttributeSet> indexToConsumeAttributeMap;
+        public IntSet lookaheadTokenIndexes;
+    }
+
     protected class MyMouseListener extends MouseAdapter {
 
         public void mousePressed(MouseEvent e) {
@@ -445,11 +652,11 @@ public class DBInputProcessorToken implements DBInputProcessor, TextPaneDelegate
             if(e.getButton() == MouseEvent.BUTTON1 && !shiftKey) {
                 debuggerTab.selectToken(info.token, info.getLocation());
             } else {
-                Integer index = info.token.getTokenIndex();
-                if(inputBreakpointIndexes.contains(index))
-                    inputBreakpointIndexes.remove(index);
-                else
-                    inputBreakpointIndexes.add(index);
+                int index = info.token.getTokenIndex();
+                if(index >= 0) {
+                    inputBreakpointIndexes.flip(index);
+                    debuggerTab.queryGrammarBreakpoints();
+                }
             }
         }
 
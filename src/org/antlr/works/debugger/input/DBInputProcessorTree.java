@@ -7,12 +7,15 @@ import org.antlr.works.debugger.tree.DBTreeNode;
 import org.antlr.works.debugger.tree.DBTreeToken;
 import org.antlr.works.dialog.AWPrefsDialog;
 import org.antlr.works.prefs.AWPrefs;
+import org.antlr.works.utils.IntObjectMap;
 import org.antlr.works.utils.awtree.AWTreePanel;
 import org.antlr.xjlib.foundation.notification.XJNotificationCenter;
 import org.antlr.xjlib.foundation.notification.XJNotificationObserver;
 
 import java.awt.*;
-import java.util.HashMap;
+import java.util.BitSet;
+import java.util.IdentityHashMap;
+import java.util.List;
 import java.util.Map;
 /*
 
@@ -50,12 +53,15 @@ public class DBInputProcessorTree implements DBInputProcessor, XJNotificationObs
     public AWTreePanel treePanel;
     public DebuggerTab debuggerTab;
 
+    /** Ids of the nodes with a breakpoint */
+    protected BitSet breakpointIds = new BitSet();
+
     public InputTreeNode rootNode;
     public InputTreeNode currentNode;
     public InputTreeNode lastNode;
 
     /** Map of token to tree node information */
-    public Map<Integer,NodeInfo> nodeInfoForToken = new HashMap<Integer, NodeInfo>();
+    public IntObjectMap<NodeInfo> nodeInfoForToken = new IntObjectMap<NodeInfo>();
 
     /** Last position in the grammar received from the parser */
     public DBEventLocation location;
@@ -100,6 +106,7 @@ public class DBInputProcessorTree implements DBInputProcessor, XJNotificationObs
 
     public void reset() {
         nodeInfoForToken.clear();
+        breakpointIds.clear();
 
         rootNode = createNode(null);
         treePanel.setRoot(rootNode);
@@ -131,6 +138,13 @@ public class DBInputProcessorTree implements DBInputProcessor, XJNotificationObs
         }
     }
 
+    /** The order of the tokens matters: a token can create a node or move the current node */
+    public void LT(List<Token> tokens) {
+        for(Token token : tokens) {
+            LT(token);
+        }
+    }
+
     public void consumeToken(Token token, int flavor) {
         InputTreeNode node = processToken(token);
         if(node != null) {
@@ -204,6 +218,42 @@ public class DBInputProcessorTree implements DBInputProcessor, XJNotificationObs
         return info;
     }
 
+    /** The nodes are never removed from the tree when rewinding: the checkpoint only
+     * holds the colors and the current position.
+     */
+    public Object createCheckpoint() {
+        Checkpoint c = new Checkpoint();
+        for(NodeInfo info : nodeInfoForToken.values()) {
+            if(info.node != null)
+                c.colors.put(info.node, info.node.getTokenColor());
+        }
+        c.currentNode = currentNode;
+        c.lastNode = lastNode;
+        c.location = location;
+        return c;
+    }
+
+    public void restoreCheckpoint(Object checkpoint) {
+        Checkpoint c = (Checkpoint) checkpoint;
+        applyColor(nonConsumedColor);
+        for(Map.Entry<InputTreeNode, Color> entry : c.colors.entrySet()) {
+            entry.getKey().setColor(entry.getValue());
+        }
+        currentNode = c.currentNode;
+        lastNode = c.lastNode;
+        location = c.location;
+    }
+
+    /** The nodes are added to the tree displayed by the panel: the events are always
+     * played on the event dispatch thread.
+     */
+    public DBInputProcessor createHeadlessCopy() {
+        return null;
+    }
+
+    public void publish(DBInputProcessor copy) {
+    }
+
     public void setLocation(DBEventLocation event) {
         this.location = event;
     }
@@ -226,9 +276,8 @@ public class DBInputProcessorTree implements DBInputProcessor, XJNotificationObs
         }
     }
 
-    public boolean isBreakpointAtToken(Token token) {
-        NodeInfo info = getNode(token);
-        return !(info == null || info.node == null) && info.node.breakpoint;
+    public BitSet getBreakpointTokens() {
+        return breakpointIds;
     }
 
     public static class NodeInfo {
@@ -248,6 +297,13 @@ public class DBInputProcessorTree implements DBInputProcessor, XJNotificationObs
 
     }
     
+    public static class Checkpoint {
+        public Map<InputTreeNode, Color> colors = new IdentityHashMap<InputTreeNode, Color>();
+        public InputTreeNode currentNode;
+        public InputTreeNode lastNode;
+        public DBEventLocation location;
+    }
+
     public class InputTreeNode extends DBTreeNode {
 
         public boolean breakpoint = false;
@@ -258,10 +314,20 @@ public class DBInputProcessorTree implements DBInputProcessor, XJNotificationObs
 
         public void toggleBreakpoint() {
             breakpoint = !breakpoint;
+            int id = ((DBTreeToken)token).ID;
+            if(id >= 0) {
+                breakpointIds.set(id, breakpoint);
+                debuggerTab.queryGrammarBreakpoints();
+            }
             /** Repaint the node to reflect the new state */
             treePanel.getGraphView().repaintNode(this);
         }
 
+        /** Returns the color of the node regardless of its breakpoint */
+        public Color getTokenColor() {
+            return super.getColor();
+        }
+
         public Color getColor() {
             if(breakpoint)
                 return Color.red;
@@ -0,0 +1,228 @@
+package org.antlr.works.debugger.local;
+
+import java.io.*;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Properties;
+/*
+
+[The "BSD licence"]
+Copyright (c) 2005 Jean Bovet
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions
+are met:
+
+1. Redistributions of source code must retain the above copyright
+notice, this list of conditions and the following disclaimer.
+2. Redistributions in binary form must reproduce the above copyright
+notice, this list of conditions and the following disclaimer in the
+documentation and/or other materials provided with the distribution.
+3. The name of the author may not be used to endorse or promote products
+derived from this software without specific prior written permission.
+
+THIS SOFTWARE IS PROVIDED BY THE AUTHOR ``AS IS'' AND ANY EXPRESS OR
+IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES
+OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED.
+IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY DIRECT, INDIRECT,
+INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT
+NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+(INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF
+THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+
+*/
+
+
+/** Manifest of the stages run to build the debugged parser (code generation, compilation,
+ * glue code and input text). Each completed stage records the hash of its inputs and the
+ * hash of the files it produced: a stage is up-to-date, and can be skipped, as long as its
+ * inputs are the same and its output files have not been modified since.
+ *
+ * The manifest is saved with the generated files so it survives from one session to the next.
+ */
+public class DBBuildManifest {
+
+    public static final String STAGE_GENERATE = "generate";
+    public static final String STAGE_COMPILE = "compile";
+    public static final String STAGE_GLUE_CODE = "glue";
+    public static final String STAGE_INPUT = "input";
+
+    protected static final String KEY_INPUTS = ".inputs";
+    protected static final String KEY_OUTPUTS = ".outputs";
+    protected static final String KEY_OUTPUTS_HASH = ".outputsHash";
+
+    protected String file;
+    protected Properties properties = new Properties();
+
+    public DBBuildManifest(String file) {
+        this.file = file;
+        load();
+    }
+
+    public void load() {
+        properties.clear();
+        if(!new File(file).exists())
+            return;
+
+        try {
+            InputStream is = new FileInputStream(file);
+            try {
+                properties.load(is);
+            } finally {
+                is.close();
+            }
+        } catch (IOException e) {
+            // An unreadable manifest only means that every stage will run again
+            properties.clear();
+        }
+    }
+
+    public void save() throws IOException {
+        OutputStream os = new FileOutputStream(file);
+        try {
+            properties.store(os, "ANTLRWorks debugger build manifest");
+        } finally {
+            os.close();
+        }
+    }
+
+    public String getInputsHash(String stage) {
+        return properties.getProperty(stage+KEY_INPUTS);
+    }
+
+    /** Returns true if the stage was completed with the same inputs and if its output files
+     * still exist with the content they had when the stage completed.
+     */
+    public boolean isUpToDate(String stage, String inputsHash) {
+        if(inputsHash == null || !inputsHash.equals(getInputsHash(stage)))
+            return false;
+
+        String outputs = properties.getProperty(stage+KEY_OUTPUTS);
+        String outputsHash = properties.getProperty(stage+KEY_OUTPUTS_HASH);
+        if(outputs == null || outputsHash == null)
+            return false;
+
+        List<String> files = new ArrayList<String>();
+        if(outputs.length() > 0)
+            Collections.addAll(files, outputs.split(File.pathSeparator));
+        for(String output : files) {
+            if(!new File(output).exists())
+                return false;
+        }
+
+        try {
+            return outputsHash.equals(hashFiles(files));
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    public void completeStage(String stage, String inputsHash, List<String> outputs) throws IOException {
+        StringBuilder sb = new StringBuilder();
+        for(String output : outputs) {
+            if(sb.length() > 0)
+                sb.append(File.pathSeparator);
+            sb.append(output);
+        }
+        properties.setProperty(stage+KEY_INPUTS, inputsHash);
+        properties.setProperty(stage+KEY_OUTPUTS, sb.toString());
+        properties.setProperty(stage+KEY_OUTPUTS_HASH, hashFiles(outputs));
+        save();
+    }
+
+    /** Returns the hash of the strings. A null string is hashed differently from an empty one. */
+    public static String hash(String... parts) {
+        MessageDigest digest = createDigest();
+        for(String part : parts) {
+            update(digest, part);
+        }
+        return toHex(digest.digest());
+    }
+
+    /** Returns the hash of the path and content of the files */
+    public static String hashFiles(List<String> files) throws IOException {
+        MessageDigest digest = createDigest();
+        byte[] buffer = new byte[8192];
+        for(String file : files) {
+            update(digest, file);
+            InputStream is = new FileInputStream(file);
+            try {
+                int count;
+                while((count = is.read(buffer)) != -1) {
+                    digest.update(buffer, 0, count);
+                }
+            } finally {
+                is.close();
+            }
+        }
+        return toHex(digest.digest());
+    }
+
+    /** Returns the sorted paths of the files of the directory ending with one of the extensions */
+    public static List<String> listFiles(String dir, boolean recursive, String... extensions) {
+        List<String> files = new ArrayList<String>();
+        listFiles(new File(dir), recursive, extensions, files);
+        Collections.sort(files);
+        return files;
+    }
+
+    private static void listFiles(File dir, boolean recursive, String[] extensions, List<String> files) {
+        File[] children = dir.listFiles();
+        if(children == null)
+            return;
+
+        for(File child : children) {
+            if(child.isDirectory()) {
+                if(recursive)
+                    listFiles(child, true, extensions, files);
+                continue;
+            }
+            for(String extension : extensions) {
+                if(child.getName().endsWith(extension)) {
+                    files.add(child.getPath());
+                    break;
+                }
+            }
+        }
+    }
+
+    private static MessageDigest createDigest() {
+        try {
+            return MessageDigest.getInstance("SHA-1");
+        } catch (NoSuchAlgorithmException e) {
+            // Every Java platform is required to support SHA-1
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static void update(MessageDigest digest, String part) {
+        if(part == null) {
+            digest.update((byte)0);
+        } else {
+            digest.update((byte)1);
+            try {
+                digest.update(part.getBytes("UTF-8"));
+            } catch (UnsupportedEncodingException e) {
+                throw new IllegalStateException(e);
+            }
+            // Separates the parts so "ab"+"c" and "a"+"bc" are different
+            digest.update((byte)0);
+        }
+    }
+
+    private static String toHex(byte[] bytes) {
+        StringBuilder sb = new StringBuilder();
+        for(byte b : bytes) {
+            sb.append(Character.forDigit((b >> 4) & 0xF, 16));
+            sb.append(Character.forDigit(b & 0xF, 16));
+        }
+        return sb.toString();
+    }
+
+}
@@ -31,12 +31,14 @@ THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
 
 package org.antlr.works.debugger.local;
 
+import org.antlr.Tool;
 import org.antlr.stringtemplate.StringTemplate;
 import org.antlr.stringtemplate.StringTemplateGroup;
 import org.antlr.stringtemplate.language.DefaultTemplateLexer;
 import org.antlr.works.IDE;
 import org.antlr.works.ate.syntax.generic.ATESyntaxLexer;
 import org.antlr.works.ate.syntax.misc.ATEToken;
+import org.antlr.works.debugger.DebuggerCompiler;
 import org.antlr.works.debugger.DebuggerEngine;
 import org.antlr.works.debugger.DebuggerTab;
 import org.antlr.works.debugger.tivo.DBRecorder;
@@ -58,6 +60,9 @@ import javax.swing.*;
 import java.io.File;
 import java.io.IOException;
 import java.net.ServerSocket;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
@@ -85,9 +90,11 @@ public class DBLocal implements Runnable, XJDialogProgressDelegate, StreamWatche
     protected String fileRemoteParser;
     protected String fileRemoteParserInputTextFile;
     protected String fileRemoteParserTemplateTextFile;
+    protected String fileBuildManifest;
+
+    protected DBBuildManifest manifest;
 
     protected String startRule;
-    protected String lastStartRule;
 
     protected Process remoteParserProcess;
 
@@ -95,18 +102,14 @@ public class DBLocal implements Runnable, XJDialogProgressDelegate, StreamWatche
     protected int options;
 
     protected CodeGenerate codeGenerator;
+    protected DebuggerCompiler compiler = new DebuggerCompiler();
     protected DebuggerTab debuggerTab;
 
     protected int inputMode;
-    protected int lastInputMode;
     protected String testTemplateMode;
-    protected String lastTestTemplateMode;
     protected String testTemplateClass;
-    protected String lastTestTemplateClass;
     protected String inputFile;
-    protected String lastInputFile;
     protected String testTemplateText;
-    protected String lastTestTemplateText;
     protected String inputText;
     protected String rawInputText;
 
@@ -221,7 +224,7 @@ public class DBLocal implements Runnable, XJDialogProgressDelegate, StreamWatche
         if(prepare()) {
             if(optionBuild()) generateAndCompileGrammar();
             if(!cancelled() && !optionAgain()) askUserForInputText();
-            if(!cancelled() && !AWPrefs.TEST_RIG_MODE_CLASS.equals(testTemplateMode)) generateAndCompileGlueCode(optionBuild());
+            if(!cancelled() && !AWPrefs.TEST_RIG_MODE_CLASS.equals(testTemplateMode)) generateAndCompileGlueCode();
             if(!cancelled()) generateInputText();
             if(!cancelled()) launchRemoteParser();
         }
@@ -341,9 +344,12 @@ public class DBLocal implements Runnable, XJDialogProgressDelegate, StreamWatche
             fileRemoteParser = XJUtils.concatPath(codeGenerator.getOutputPath(), remoteParserClassName+".java");
             fileRemoteParserInputTextFile = XJUtils.concatPath(codeGenerator.getOutputPath(), remoteParserClassName+"_input.txt");
             fileRemoteParserTemplateTextFile = XJUtils.concatPath(codeGenerator.getOutputPath(), remoteParserClassName+"_template.st");
+            fileBuildManifest = XJUtils.concatPath(codeGenerator.getOutputPath(), remoteParserClassName+"_manifest.properties");
 
             outputFileDir = XJUtils.concatPath(codeGenerator.getOutputPath(), "classes");
             new File(outputFileDir).mkdirs();
+
+            manifest = new DBBuildManifest(fileBuildManifest);
         } catch(Exception e) {
             debuggerTab.getConsole().println(e);
             String msg = ErrorListener.getThreadInstance().getFirstErrorMessage();
@@ -360,23 +366,91 @@ public class DBLocal implements Runnable, XJDialogProgressDelegate, StreamWatche
     }
 
     protected void generateAndCompileGrammar() {
-        progress.setInfo("Analyzing...");
-        progress.setProgress(1);
-        analyzeGrammar();
+        String generateInputs = getGenerateInputsHash();
+        if(!manifest.isUpToDate(DBBuildManifest.STAGE_GENERATE, generateInputs)) {
+            progress.setInfo("Analyzing...");
+            progress.setProgress(1);
+            analyzeGrammar();
 
-        if(cancelled())
-            return;
+            if(cancelled())
+                return;
 
-        progress.setInfo("Generating...");
-        progress.setProgress(2);
-        generateGrammar();
+            progress.setInfo("Generating...");
+            progress.setProgress(2);
+            generateGrammar();
 
-        if(cancelled())
+            if(cancelled())
+                return;
+
+            completeStage(DBBuildManifest.STAGE_GENERATE, generateInputs, grammarGeneratedFiles);
+        }
+
+        String compileInputs = getCompileInputsHash();
+        if(!manifest.isUpToDate(DBBuildManifest.STAGE_COMPILE, compileInputs)) {
+            progress.setInfo("Compiling...");
+            progress.setProgress(3);
+            compileGrammar();
+
+            if(cancelled())
+                return;
+
+            completeStage(DBBuildManifest.STAGE_COMPILE, compileInputs, getGrammarClassFiles());
+        }
+    }
+
+    /** Returns the hash of what ANTLR reads to generate the grammar: the grammar, the grammars
+     * and token vocabularies it can import from its folder and the options of ANTLR.
+     */
+    protected String getGenerateInputsHash() {
+        try {
+            String grammarFile = debuggerTab.getDelegate().getDocument().getDocumentPath();
+            List<String> files = DBBuildManifest.listFiles(XJUtils.getPathByDeletingLastComponent(grammarFile), false, ".g", ".tokens");
+            files.add(grammarFile);
+            String tokenVocab = debuggerTab.getDelegate().getTokenVocab();
+            if(tokenVocab != null) {
+                String tokenVocabFile = debuggerTab.getDelegate().getGrammarEngine().getTokenVocabFile(tokenVocab+".tokens");
+                if(tokenVocabFile != null)
+                    files.add(tokenVocabFile);
+            }
+            Tool antlr = debuggerTab.getDelegate().getGrammarEngine().getANTLRTool();
+            return DBBuildManifest.hash(antlr == null ? null : antlr.VERSION, Utils.toString(AWPrefs.getANTLR3Options()),
+                    codeGenerator.getOutputPath(), DBBuildManifest.hashFiles(files));
+        } catch (Exception e) {
+            debuggerTab.getConsole().println(e);
+            return null;
+        }
+    }
+
+    protected String getCompileInputsHash() {
+        try {
+            return DBBuildManifest.hash(AWPrefs.getCompiler(), DebuggerEngine.getClassPath(outputFileDir),
+                    DBBuildManifest.hashFiles(grammarGeneratedFiles));
+        } catch (Exception e) {
+            debuggerTab.getConsole().println(e);
+            return null;
+        }
+    }
+
+    /** Returns the class files of the grammar, that is all the classes except the ones of the glue code */
+    protected List<String> getGrammarClassFiles() {
+        List<String> files = new ArrayList<String>();
+        for(String file : DBBuildManifest.listFiles(outputFileDir, true, ".class")) {
+            if(!XJUtils.getLastPathComponent(file).startsWith(remoteParserClassName))
+                files.add(file);
+        }
+        return files;
+    }
+
+    protected void completeStage(String stage, String inputsHash, List<String> outputs) {
+        if(inputsHash == null)
             return;
 
-        progress.setInfo("Compiling...");
-        progress.setProgress(3);
-        compileGrammar();
+        try {
+            manifest.completeStage(stage, inputsHash, outputs);
+        } catch (IOException e) {
+            // The stage will only run again next time
+            debuggerTab.getConsole().println(e);
+        }
     }
 
     protected void analyzeGrammar() {
@@ -411,34 +485,39 @@ public class DBLocal implements Runnable, XJDialogProgressDelegate, StreamWatche
     }
 
     protected void compileGrammar() {
-        XJUtils.deleteDirectory(outputFileDir);
-        new File(outputFileDir).mkdirs();
+        // The in-process compiler replaces only the classes of the files it compiles again:
+        // the classes of the unchanged files are kept in the output directory
+        if(!AWPrefs.getCompiler().equalsIgnoreCase(AWPrefs.COMPILER_INTEGRATED)) {
+            XJUtils.deleteDirectory(outputFileDir);
+            new File(outputFileDir).mkdirs();
+        }
         compileFiles(grammarGeneratedFiles.toArray(new String[grammarGeneratedFiles.size()]));
     }
 
-    protected void generateAndCompileGlueCode(boolean build) {
+    protected void generateAndCompileGlueCode() {
         progress.setInfo("Preparing...");
         progress.setIndeterminate(true);
 
-        if(!build && lastStartRule != null && startRule.equals(lastStartRule) &&
-                inputFile.equals(lastInputFile) && lastInputMode == inputMode &&
-                testTemplateClass.equals(lastTestTemplateClass) && lastTestTemplateMode.equals(testTemplateMode) &&
-                testTemplateText.equals(lastTestTemplateText))
+        // The glue code is compiled against the classes of the grammar: it is built again
+        // when the sources of the grammar have changed
+        String glueCodeInputs = DBBuildManifest.hash(startRule, inputFile, String.valueOf(inputMode),
+                testTemplateMode, testTemplateClass, testTemplateText,
+                String.valueOf(AWPrefs.getDebugDefaultLocalPort()), manifest.getInputsHash(DBBuildManifest.STAGE_COMPILE));
+        if(manifest.isUpToDate(DBBuildManifest.STAGE_GLUE_CODE, glueCodeInputs))
             return;
 
-        lastStartRule = startRule;
-        lastTestTemplateMode = testTemplateMode;
-        lastTestTemplateClass = testTemplateClass;
-        lastTestTemplateText = testTemplateText;
-        lastInputMode = inputMode;
-        lastInputFile = inputFile;
-
         generateGlueCode();
 
         if(cancelled())
             return;
 
         compileGlueCode();
+
+        if(cancelled())
+            return;
+
+        completeStage(DBBuildManifest.STAGE_GLUE_CODE, glueCodeInputs, Arrays.asList(fileRemoteParser,
+                XJUtils.concatPath(outputFileDir, remoteParserClassName+".class")));
     }
 
     protected String getLexerName() throws Exception {
@@ -556,14 +635,19 @@ public class DBLocal implements Runnable, XJDialogProgressDelegate, StreamWatche
     }
 
     protected void compileFiles(String[] files) {
-        String error = DebuggerEngine.compileFiles(debuggerTab.getConsole(), files, outputFileDir, this);
+        String error = DebuggerEngine.compileFiles(debuggerTab.getConsole(), files, outputFileDir, compiler, this);
         if(error != null)
             reportError(error);
     }
 
     protected void generateInputText() {
+        String inputTextHash = DBBuildManifest.hash(inputText);
+        if(manifest.isUpToDate(DBBuildManifest.STAGE_INPUT, inputTextHash))
+            return;
+
         try {
             XJUtils.writeStringToFile(inputText, fileRemoteParserInputTextFile);
+            completeStage(DBBuildManifest.STAGE_INPUT, inputTextHash, Collections.singletonList(fileRemoteParserInputTextFile));
         } catch (IOException e) {
             debuggerTab.getConsole().println(e);
             reportError("Error while generating the input text:\n"+e.toString());
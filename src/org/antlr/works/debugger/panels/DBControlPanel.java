@@ -2,12 +2,12 @@ package org.antlr.works.debugger.panels;
 
 import org.antlr.works.debugger.DebuggerTab;
 import org.antlr.works.debugger.events.DBEvent;
+import org.antlr.works.debugger.tivo.DBBreakpoints;
 import org.antlr.works.debugger.tivo.DBPlayerContextInfo;
 import org.antlr.works.debugger.tivo.DBRecorder;
 import org.antlr.works.prefs.AWPrefs;
 import org.antlr.works.stats.StatisticsAW;
 import org.antlr.works.utils.IconManager;
-import org.antlr.works.utils.NumberSet;
 import org.antlr.works.utils.Toolbar;
 import org.antlr.xjlib.appkit.swing.XJRollOverButton;
 
@@ -15,7 +15,6 @@ import javax.swing.*;
 import java.awt.*;
 import java.awt.event.ActionEvent;
 import java.awt.event.ActionListener;
-import java.util.Set;
 /*
 
 [The "BSD licence"]
@@ -215,7 +214,7 @@ public class DBControlPanel extends JPanel {
         button.addActionListener(new ActionListener() {
             public void actionPerformed(ActionEvent e) {
                 /** Select 'All' if no events are selected */
-                if(getBreakEvent().isEmpty()) {
+                if(getBreakEvent() == 0) {
                     breakAllButton.setSelected(true);
                     AWPrefs.getPreferences().setBoolean(AWPrefs.PREF_DEBUG_BREAK_ALL, true);
                 }
@@ -229,25 +228,26 @@ public class DBControlPanel extends JPanel {
         return infoLabel;
     }
 
-    public Set getBreakEvent() {
-        NumberSet set = new NumberSet();
+    /** Returns the mask of the event types to break on */
+    public long getBreakEvent() {
+        long mask = 0;
 
         if(breakAllButton.isSelected())
-            set.add(DBEvent.ALL);
+            mask |= DBBreakpoints.mask(DBEvent.ALL);
 
         if(breakLocationButton.isSelected())
-            set.add(DBEvent.LOCATION);
+            mask |= DBBreakpoints.mask(DBEvent.LOCATION);
 
         if(breakConsumeButton.isSelected())
-            set.add(DBEvent.CONSUME_TOKEN);
+            mask |= DBBreakpoints.mask(DBEvent.CONSUME_TOKEN);
 
         if(breakLTButton.isSelected())
-            set.add(DBEvent.LT);
+            mask |= DBBreakpoints.mask(DBEvent.LT);
 
         if(breakExceptionButton.isSelected())
-            set.add(DBEvent.RECOGNITION_EXCEPTION);
+            mask |= DBBreakpoints.mask(DBEvent.RECOGNITION_EXCEPTION);
 
-        return set;
+        return mask;
     }
 
     public void updateStatusInfo() {
@@ -10,7 +10,7 @@ import org.antlr.xjlib.appkit.swing.XJTableView;
 import javax.swing.*;
 import javax.swing.table.AbstractTableModel;
 import java.awt.*;
-import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 /*
 
@@ -52,6 +52,9 @@ public class DBEventsPanel extends DetachablePanel {
     public static final int INFO_COLUMN_MARK = 4;
     public static final int INFO_COLUMN_BACKTRACK = 5;
 
+    /** Number of rows measured to size the columns */
+    public static final int AUTORESIZE_SAMPLE_SIZE = 200;
+
     protected XJTableView infoTableView;
 
     protected EventTableDataModel eventTableDataModel;
@@ -63,6 +66,7 @@ public class DBEventsPanel extends DetachablePanel {
 
         infoTableView = new XJTableView();
         infoTableView.setFocusable(true);
+        infoTableView.setAutoresizeSampleSize(AUTORESIZE_SAMPLE_SIZE);
         setInfoTableModel(infoTableView.getTable(), eventTableDataModel);
 
         mainPanel.add(infoTableView, BorderLayout.CENTER);
@@ -87,6 +91,10 @@ public class DBEventsPanel extends DetachablePanel {
         eventTableDataModel.clear();
     }
 
+    public void rewind() {
+        eventTableDataModel.rewind();
+    }
+
     public void updateOnBreakEvent() {
         eventTableDataModel.update();
 
@@ -97,8 +105,25 @@ public class DBEventsPanel extends DetachablePanel {
         });
     }
 
+    /** Sets the list of events being played. The rows of the table are read from this list */
+    public void setEvents(List<DBEvent> events) {
+        eventTableDataModel.setEvents(events);
+    }
+
     public void addEvent(DBEvent event, DBPlayerContextInfo info) {
-        eventTableDataModel.add(event, info);
+        eventTableDataModel.add(info);
+    }
+
+    /** Appends the rows of events played by a model builder */
+    public void addEvents(int[] packedContexts, int count) {
+        eventTableDataModel.addAll(packedContexts, count);
+    }
+
+    /** Shows only the first count events. The rows of the events already played are kept
+     * so a restored checkpoint can show them again without replaying them.
+     */
+    public void setNumberOfEvents(int count) {
+        eventTableDataModel.setRowCount(count);
     }
 
     public String getEventsAsString() {
@@ -106,37 +131,83 @@ public class DBEventsPanel extends DetachablePanel {
         sb.append(eventTableDataModel.getHeadersAsString());
         sb.append("\n");
 
-        List<EventTableDataModel.EventInfo> events = eventTableDataModel.events;
-        for(int i=0; i<events.size(); i++) {
+        for(int i=0; i<eventTableDataModel.getRowCount(); i++) {
             sb.append(i);
             sb.append(":\t");
-            sb.append(events.get(i).toString());
+            sb.append(eventTableDataModel.getRowAsString(i));
             sb.append("\n");
         }
         return sb.toString();
     }
 
+    /** Table model reading its rows from the list of events being played. Only the
+     * context of each row (subrule, decision, mark and backtrack) is kept by the model,
+     * packed in an array of int: the cells are formatted when the table asks for them,
+     * that is only for the visible rows.
+     */
     public class EventTableDataModel extends AbstractTableModel {
 
-        protected List<EventInfo> events = new ArrayList<EventInfo>();
+        protected static final int CONTEXT_SIZE = DBPlayerContextInfo.PACKED_SIZE;
 
-        public void add(DBEvent event, DBPlayerContextInfo info) {
-            events.add(new EventInfo(event, info));
+        protected List<DBEvent> events = Collections.emptyList();
+        protected int[] contexts = new int[CONTEXT_SIZE*1024];
+        /** Number of rows whose context is available */
+        protected int size = 0;
+        protected int count = 0;
+
+        public void setEvents(List<DBEvent> events) {
+            this.events = events;
+        }
+
+        public void add(DBPlayerContextInfo info) {
+            ensureCapacity(count+1);
+            info.pack(contexts, count*CONTEXT_SIZE);
+            count++;
+            size = Math.max(size, count);
+        }
+
+        /** Appends rows whose contexts have been packed by DBPlayerContextInfo.pack() */
+        public void addAll(int[] packedContexts, int rows) {
+            ensureCapacity(count+rows);
+            System.arraycopy(packedContexts, 0, contexts, count*CONTEXT_SIZE, rows*CONTEXT_SIZE);
+            count += rows;
+            size = Math.max(size, count);
+        }
+
+        protected void ensureCapacity(int rows) {
+            if(rows*CONTEXT_SIZE > contexts.length) {
+                int[] newContexts = new int[Math.max(contexts.length*2, rows*CONTEXT_SIZE)];
+                System.arraycopy(contexts, 0, newContexts, 0, size*CONTEXT_SIZE);
+                contexts = newContexts;
+            }
         }
 
         public void clear() {
-            events.clear();
+            events = Collections.emptyList();
+            contexts = new int[CONTEXT_SIZE*1024];
+            size = 0;
+            count = 0;
             fireTableDataChanged();
             infoTableView.autoresizeColumns();
         }
 
+        /** Rewinds the rows: the rows after count are overwritten when the events are played again */
+        public void rewind() {
+            count = 0;
+            fireTableDataChanged();
+        }
+
+        public void setRowCount(int count) {
+            this.count = Math.min(count, size);
+        }
+
         public void update() {
             fireTableDataChanged();
             infoTableView.autoresizeColumns();
         }
 
         public int getRowCount() {
-            return events.size();
+            return count;
         }
 
         public int getColumnCount() {
@@ -168,74 +239,41 @@ public class DBEventsPanel extends DetachablePanel {
         }
 
         public Object getValueAt(int rowIndex, int columnIndex) {
-            EventInfo info = events.get(rowIndex);
             switch(columnIndex) {
                 case INFO_COLUMN_COUNT: return String.valueOf(rowIndex);
-                case INFO_COLUMN_EVENT: return info.event;
-                case INFO_COLUMN_SUBRULE: return info.getSubrule();
-                case INFO_COLUMN_DECISION: return info.getDecision();
-                case INFO_COLUMN_MARK: return info.getMark();
-                case INFO_COLUMN_BACKTRACK: return info.getBacktrack();
+                case INFO_COLUMN_EVENT: return events.get(rowIndex);
+                case INFO_COLUMN_SUBRULE: return getContextValue(rowIndex, 0);
+                case INFO_COLUMN_DECISION: return getContextValue(rowIndex, 1);
+                case INFO_COLUMN_MARK: return getContextValue(rowIndex, 2);
+                case INFO_COLUMN_BACKTRACK: return getContextValue(rowIndex, 3);
             }
             return null;
         }
 
+        public Object getContextValue(int rowIndex, int field) {
+            int value = contexts[rowIndex*CONTEXT_SIZE+field];
+            return value==-1?null:String.valueOf(value);
+        }
+
         public String getHeadersAsString() {
             return "#\tEvent\tSubrule\tDecision\tMark\tBacktrack";
         }
 
-        public class EventInfo {
-
-            public DBEvent event;
-            public int subrule;
-            public int decision;
-            public int mark;
-            public int backtrack;
-
-            public EventInfo(DBEvent event, DBPlayerContextInfo info) {
-                this.event = event;
-                this.subrule = info.getSubrule();
-                this.decision = info.getDecision();
-                this.mark = info.getMark();
-                this.backtrack = info.getBacktrack();
-            }
-
-            public Object getSubrule() {
-                return subrule==-1?null:String.valueOf(subrule);
-            }
-
-            public Object getDecision() {
-                return decision==-1?null:String.valueOf(decision);
-            }
-
-            public Object getMark() {
-                return mark==-1?null:String.valueOf(mark);
-            }
-
-            public Object getBacktrack() {
-                return backtrack==-1?null:String.valueOf(backtrack);
-            }
-
-            public String getTextForExport(int value) {
-                if(value == -1)
-                    return "-";
-                else
-                    return String.valueOf(value);
-            }
+        public String getTextForExport(int value) {
+            if(value == -1)
+                return "-";
+            else
+                return String.valueOf(value);
+        }
 
-            public String toString() {
-                StringBuilder sb = new StringBuilder();
-                sb.append(event.toString());
-                sb.append("\t");
-                sb.append(getTextForExport(subrule));
-                sb.append("\t");
-                sb.append(getTextForExport(decision));
-                sb.append("\t");
-                sb.append(getTextForExport(mark));
+        public String getRowAsString(int rowIndex) {
+            StringBuilder sb = new StringBuilder();
+            sb.append(events.get(rowIndex).toString());
+            for(int field=0; field<CONTEXT_SIZE; field++) {
                 sb.append("\t");
-                sb.append(getTextForExport(backtrack));
-                return sb.toString();
+                sb.append(getTextForExport(contexts[rowIndex*CONTEXT_SIZE+field]));
             }
+            return sb.toString();
         }
     }
 
@@ -47,8 +47,6 @@ public interface DBInputConcretePanel {
     public void toggleInputTextTokensBox();
     public boolean isInputTokensBoxVisible();
 
-    public boolean isBreakpointAtToken(Token token);
-
     public void selectToken(Token token);
     public DBInputTextTokenInfo getTokenInfoForToken(Token token);
 
@@ -101,10 +101,6 @@ public class DBInputPanel extends DetachablePanel {
         currentPanel.updateOnBreakEvent();
     }
 
-    public boolean isBreakpointAtToken(Token token) {
-        return currentPanel.isBreakpointAtToken(token);
-    }
-
     public void stop() {
         currentPanel.stop();
     }
@@ -88,10 +88,6 @@ public class DBInputTokenPanel implements DBInputConcretePanel {
         return processorToken.isTokensBoxVisible();
     }
 
-    public boolean isBreakpointAtToken(Token token) {
-        return processorToken.isBreakpointAtToken(token);
-    }
-
     public void selectToken(Token token) {
         processorToken.selectToken(token);
     }
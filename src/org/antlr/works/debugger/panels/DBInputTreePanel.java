@@ -84,10 +84,6 @@ public class DBInputTreePanel implements DBInputConcretePanel, AWTreePanelDelega
         return false;
     }
 
-    public boolean isBreakpointAtToken(Token token) {
-        return processorTree.isBreakpointAtToken(token);
-    }
-
     public void selectToken(Token token) {
         /** Not applicable here. Ignore */
     }
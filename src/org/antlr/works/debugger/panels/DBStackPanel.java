@@ -98,6 +98,19 @@ public class DBStackPanel extends DetachablePanel {
         rules.pop();
     }
 
+    public java.util.List<DBEventEnterRule> getRules() {
+        return new ArrayList<DBEventEnterRule>(rules);
+    }
+
+    /** Replaces the stack of rules (used when restoring a checkpoint of the debugger) */
+    public void setRules(java.util.List<DBEventEnterRule> rules) {
+        this.rules.clear();
+        ruleTableDataModel.rules.clear();
+        for(DBEventEnterRule rule : rules) {
+            pushRule(rule);
+        }
+    }
+
     public DBEventEnterRule peekRule() {
         if(rules.isEmpty()) {
             return null;
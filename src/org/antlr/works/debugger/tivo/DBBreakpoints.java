@@ -0,0 +1,127 @@
+/*
+
+[The "BSD licence"]
+Copyright (c) 2005 Jean Bovet
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions
+are met:
+
+1. Redistributions of source code must retain the above copyright
+notice, this list of conditions and the following disclaimer.
+2. Redistributions in binary form must reproduce the above copyright
+notice, this list of conditions and the following disclaimer in the
+documentation and/or other materials provided with the distribution.
+3. The name of the author may not be used to endorse or promote products
+derived from this software without specific prior written permission.
+
+THIS SOFTWARE IS PROVIDED BY THE AUTHOR ``AS IS'' AND ANY EXPRESS OR
+IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES
+OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED.
+IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY DIRECT, INDIRECT,
+INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT
+NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+(INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF
+THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+
+*/
+
+package org.antlr.works.debugger.tivo;
+
+import org.antlr.runtime.Token;
+import org.antlr.works.debugger.tree.DBTreeToken;
+
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+
+/** Grammar and input breakpoints compiled for the recorder, which evaluates them for
+ * each event received. The lines with a breakpoint are kept in a bitset per grammar
+ * and the input tokens with a breakpoint in a bitset of token indexes (node ids for
+ * a tree input), so evaluating an event does not allocate anything.
+ *
+ * The breakpoints are immutable: a new instance is compiled when they change.
+ */
+public class DBBreakpoints {
+
+    public static final DBBreakpoints EMPTY = new DBBreakpoints(null, null);
+
+    protected final Map<String, BitSet> lines = new HashMap<String, BitSet>();
+    protected final BitSet tokens;
+
+    /** Source of the breakpoints, used to detect the changes */
+    protected final Map<Integer, Set<String>> lineBreakpoints;
+
+    /** Lines of the grammar of the last evaluated event: the events of a grammar
+     * usually follow each other and share the same name instance.
+     */
+    protected String lastGrammarName;
+    protected BitSet lastLines;
+
+    /** Creates the breakpoints from the grammar names with a breakpoint at each line
+     * (starting at 0) and from the tokens with a breakpoint.
+     */
+    public DBBreakpoints(Map<Integer, Set<String>> lineBreakpoints, BitSet tokens) {
+        this.lineBreakpoints = lineBreakpoints;
+        this.tokens = tokens == null ? new BitSet() : (BitSet)tokens.clone();
+
+        if(lineBreakpoints != null) {
+            for(Map.Entry<Integer, Set<String>> entry : lineBreakpoints.entrySet()) {
+                if(entry.getKey() < 0)
+                    continue;
+
+                for(String name : entry.getValue()) {
+                    BitSet bits = lines.get(name);
+                    if(bits == null) {
+                        bits = new BitSet();
+                        lines.put(name, bits);
+                    }
+                    bits.set(entry.getKey());
+                }
+            }
+        }
+    }
+
+    /** Returns the mask of an event type */
+    public static long mask(int eventType) {
+        return eventType >= 0 && eventType < 64 ? 1L << eventType : 0;
+    }
+
+    public static boolean contains(long mask, int eventType) {
+        return (mask & mask(eventType)) != 0;
+    }
+
+    /** Returns true if these breakpoints were compiled from the same breakpoints */
+    public boolean isSame(Map<Integer, Set<String>> lineBreakpoints, BitSet tokens) {
+        if(lineBreakpoints == null ? this.lineBreakpoints != null : !lineBreakpoints.equals(this.lineBreakpoints))
+            return false;
+        return tokens == null ? this.tokens.isEmpty() : tokens.equals(this.tokens);
+    }
+
+    public boolean isEmpty() {
+        return lines.isEmpty() && tokens.isEmpty();
+    }
+
+    public boolean isBreakpointAtLine(int line, String grammarName) {
+        if(lines.isEmpty() || line < 0 || grammarName == null)
+            return false;
+
+        if(grammarName != lastGrammarName) {
+            lastGrammarName = grammarName;
+            lastLines = lines.get(grammarName);
+        }
+        return lastLines != null && lastLines.get(line);
+    }
+
+    public boolean isBreakpointAtToken(Token token) {
+        if(tokens.isEmpty())
+            return false;
+
+        int index = token instanceof DBTreeToken ? ((DBTreeToken)token).ID : token.getTokenIndex();
+        return index >= 0 && tokens.get(index);
+    }
+}
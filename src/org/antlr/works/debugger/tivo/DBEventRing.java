@@ -0,0 +1,173 @@
+/*
+
+[The "BSD licence"]
+Copyright (c) 2005 Jean Bovet
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions
+are met:
+
+1. Redistributions of source code must retain the above copyright
+notice, this list of conditions and the following disclaimer.
+2. Redistributions in binary form must reproduce the above copyright
+notice, this list of conditions and the following disclaimer in the
+documentation and/or other materials provided with the distribution.
+3. The name of the author may not be used to endorse or promote products
+derived from this software without specific prior written permission.
+
+THIS SOFTWARE IS PROVIDED BY THE AUTHOR ``AS IS'' AND ANY EXPRESS OR
+IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES
+OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED.
+IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY DIRECT, INDIRECT,
+INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT
+NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+(INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF
+THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+
+*/
+
+package org.antlr.works.debugger.tivo;
+
+import org.antlr.works.debugger.events.DBEvent;
+
+import java.util.concurrent.locks.LockSupport;
+
+/** Bounded queue between the thread receiving the events from the remote parser
+ * (the single producer) and the thread recording them (the single consumer).
+ * The consumer takes the events by batches. The producer waits when the queue is
+ * full and can also wait until the consumer has processed all its events.
+ */
+public class DBEventRing {
+
+    public static final int DEFAULT_CAPACITY = 1 << 14;
+
+    /** Maximum time a thread is parked before checking the queue again */
+    protected static final long PARK_NANOS = 10*1000*1000;
+
+    protected final DBEvent[] events;
+    protected final int mask;
+
+    /** Index of the next event to take. Written only by the consumer */
+    protected volatile long head;
+    /** Index of the next event to put. Written only by the producer */
+    protected volatile long tail;
+    /** Number of events processed after being taken. Written only by the consumer */
+    protected volatile long processed;
+
+    protected volatile Thread parkedProducer;
+    protected volatile Thread parkedConsumer;
+    protected volatile boolean closed;
+
+    public DBEventRing() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    /** The capacity is rounded up to a power of two */
+    public DBEventRing(int capacity) {
+        int size = Integer.highestOneBit(Math.max(2, capacity)-1) << 1;
+        events = new DBEvent[size];
+        mask = size-1;
+    }
+
+    public int getCapacity() {
+        return events.length;
+    }
+
+    /** Adds the event, waiting for some room if the queue is full. Returns false
+     * if the queue has been closed.
+     */
+    public boolean put(DBEvent event) {
+        long t = tail;
+        while(t-head == events.length) {
+            if(closed)
+                return false;
+            parkedProducer = Thread.currentThread();
+            if(t-head == events.length)
+                LockSupport.parkNanos(this, PARK_NANOS);
+            parkedProducer = null;
+        }
+        if(closed)
+            return false;
+
+        events[(int)t & mask] = event;
+        tail = t+1;
+
+        Thread consumer = parkedConsumer;
+        if(consumer != null)
+            LockSupport.unpark(consumer);
+        return true;
+    }
+
+    /** Moves the available events into the batch, waiting for at least one event.
+     * Returns the number of events or -1 if the queue has been closed.
+     */
+    public int take(DBEvent[] batch) {
+        long h = head;
+        while(tail == h) {
+            if(closed)
+                return -1;
+            parkedConsumer = Thread.currentThread();
+            if(tail == h)
+                LockSupport.parkNanos(this, PARK_NANOS);
+            parkedConsumer = null;
+        }
+        if(closed)
+            return -1;
+
+        int count = (int)Math.min(tail-h, batch.length);
+        for(int i=0; i<count; i++) {
+            int index = (int)(h+i) & mask;
+            batch[i] = events[index];
+            events[index] = null;
+        }
+        head = h+count;
+
+        Thread producer = parkedProducer;
+        if(producer != null)
+            LockSupport.unpark(producer);
+        return count;
+    }
+
+    /** Called by the consumer each time it has processed an event taken from the queue */
+    public void eventProcessed() {
+        processed++;
+
+        Thread producer = parkedProducer;
+        if(producer != null)
+            LockSupport.unpark(producer);
+    }
+
+    /** Waits until the consumer has processed all the events put so far. Returns false
+     * if the queue has been closed.
+     */
+    public boolean awaitProcessed() {
+        long t = tail;
+        while(processed < t) {
+            if(closed)
+                return false;
+            parkedProducer = Thread.currentThread();
+            if(processed < t)
+                LockSupport.parkNanos(this, PARK_NANOS);
+            parkedProducer = null;
+        }
+        return !closed;
+    }
+
+    public int size() {
+        return (int)(tail-head);
+    }
+
+    /** Releases the waiting threads: the events not yet taken are dropped */
+    public void close() {
+        closed = true;
+        Thread thread = parkedProducer;
+        if(thread != null)
+            LockSupport.unpark(thread);
+        thread = parkedConsumer;
+        if(thread != null)
+            LockSupport.unpark(thread);
+    }
+}
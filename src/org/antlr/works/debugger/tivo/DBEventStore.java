@@ -0,0 +1,505 @@
+/*
+
+[The "BSD licence"]
+Copyright (c) 2005 Jean Bovet
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions
+are met:
+
+1. Redistributions of source code must retain the above copyright
+notice, this list of conditions and the following disclaimer.
+2. Redistributions in binary form must reproduce the above copyright
+notice, this list of conditions and the following disclaimer in the
+documentation and/or other materials provided with the distribution.
+3. The name of the author may not be used to endorse or promote products
+derived from this software without specific prior written permission.
+
+THIS SOFTWARE IS PROVIDED BY THE AUTHOR ``AS IS'' AND ANY EXPRESS OR
+IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES
+OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED.
+IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY DIRECT, INDIRECT,
+INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT
+NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+(INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF
+THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+
+*/
+
+package org.antlr.works.debugger.tivo;
+
+import org.antlr.runtime.RecognitionException;
+import org.antlr.runtime.Token;
+import org.antlr.works.debugger.events.*;
+import org.antlr.works.debugger.tree.DBTreeToken;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.*;
+
+/** Compact storage of the events received from the remote parser.
+ *
+ * The events are stored in fixed-size segments of primitive columns: the event type,
+ * the grammar name and three integer arguments whose meaning depends on the type
+ * (rule, decision, token index, location, node ids...). Grammar and rule names are
+ * interned into ids and the objects carried by an event (tokens, texts, exceptions)
+ * are kept in a side table, the tokens being shared by all the events referring to
+ * the same token index. When too many segments are in memory, the oldest ones are
+ * written to a temporary file and read back through a memory mapping.
+ *
+ * The DBEvent objects are created only when requested.
+ */
+public class DBEventStore implements DBEventSource {
+
+    public static final int SEGMENT_SHIFT = 16;
+    public static final int SEGMENT_SIZE = 1 << SEGMENT_SHIFT;
+
+    /** Number of segments kept in the heap before the oldest one is spilled to the disk */
+    public static final int MAX_HEAP_SEGMENTS = 16;
+
+    protected static final int COLUMN_GRAMMAR = 0;
+    protected static final int COLUMN_A = 1;
+    protected static final int COLUMN_B = 2;
+    protected static final int COLUMN_C = 3;
+    protected static final int COLUMN_PAYLOAD = 4;
+    protected static final int COLUMNS = 5;
+
+    protected static final int NONE = -1;
+
+    protected final List<Segment> segments = new ArrayList<Segment>();
+    protected int size;
+    protected int heapSegments;
+
+    protected final List<String> names = new ArrayList<String>();
+    protected final Map<String, Integer> nameIds = new HashMap<String, Integer>();
+
+    protected final List<Object> payloads = new ArrayList<Object>();
+    /** Payload of the last token recorded for each token index, plus one */
+    protected int[] tokenPayloads = new int[1024];
+
+    protected File spillFile;
+    protected RandomAccessFile spillAccess;
+    protected long spillLength;
+    protected boolean spillDisabled;
+
+    /** The last added event is kept because the recorder examines it right away */
+    protected int cachedIndex = NONE;
+    protected DBEvent cachedEvent;
+
+    public DBEventStore() {
+    }
+
+    public synchronized void close() {
+        segments.clear();
+        payloads.clear();
+        size = 0;
+        heapSegments = 0;
+        cachedIndex = NONE;
+        cachedEvent = null;
+        if(spillAccess != null) {
+            try {
+                spillAccess.close();
+            } catch (IOException e) {
+                // the file is deleted anyway
+            }
+            spillAccess = null;
+        }
+        if(spillFile != null) {
+            spillFile.delete();
+            spillFile = null;
+        }
+    }
+
+    public synchronized int size() {
+        return size;
+    }
+
+    public synchronized int getNumberOfSpilledSegments() {
+        return segments.size()-heapSegments;
+    }
+
+    public synchronized void add(DBEvent event) {
+        int a = 0;
+        int b = 0;
+        int c = 0;
+        int payload = NONE;
+
+        switch(event.getEventType()) {
+            case DBEvent.LOCATION: {
+                DBEventLocation e = (DBEventLocation)event;
+                a = e.line;
+                b = e.pos;
+                break;
+            }
+            case DBEvent.CONSUME_TOKEN: {
+                Token t = ((DBEventConsumeToken)event).token;
+                a = t.getTokenIndex();
+                payload = addToken(t);
+                break;
+            }
+            case DBEvent.CONSUME_HIDDEN_TOKEN: {
+                Token t = ((DBEventConsumeHiddenToken)event).token;
+                a = t.getTokenIndex();
+                payload = addToken(t);
+                break;
+            }
+            case DBEvent.LT: {
+                DBEventLT e = (DBEventLT)event;
+                a = e.token.getTokenIndex();
+                b = e.index;
+                payload = addToken(e.token);
+                break;
+            }
+            case DBEvent.ENTER_RULE: {
+                DBEventEnterRule e = (DBEventEnterRule)event;
+                a = intern(e.grammarFileName);
+                b = intern(e.name);
+                break;
+            }
+            case DBEvent.EXIT_RULE: {
+                DBEventExitRule e = (DBEventExitRule)event;
+                a = intern(e.grammarFileName);
+                b = intern(e.name);
+                break;
+            }
+            case DBEvent.ENTER_SUBRULE:
+                a = ((DBEventEnterSubRule)event).decision;
+                break;
+            case DBEvent.EXIT_SUBRULE:
+                a = ((DBEventExitSubRule)event).decision;
+                break;
+            case DBEvent.ENTER_DECISION:
+                a = ((DBEventEnterDecision)event).decision;
+                break;
+            case DBEvent.EXIT_DECISION:
+                a = ((DBEventExitDecision)event).decision;
+                break;
+            case DBEvent.ENTER_ALT:
+                a = ((DBEventEnterAlt)event).alt;
+                break;
+            case DBEvent.MARK:
+                a = ((DBEventMark)event).id;
+                break;
+            case DBEvent.REWIND:
+                a = ((DBEventRewind)event).id;
+                break;
+            case DBEvent.BEGIN_BACKTRACK:
+                a = ((DBEventBeginBacktrack)event).level;
+                break;
+            case DBEvent.END_BACKTRACK: {
+                DBEventEndBacktrack e = (DBEventEndBacktrack)event;
+                a = e.level;
+                b = e.successful ? 1 : 0;
+                break;
+            }
+            case DBEvent.RECOGNITION_EXCEPTION:
+                payload = addPayload(((DBEventRecognitionException)event).e);
+                break;
+            case DBEvent.NIL_NODE:
+                a = ((DBEventNilNode)event).id;
+                break;
+            case DBEvent.ERROR_NODE: {
+                DBEventErrorNode e = (DBEventErrorNode)event;
+                a = e.id;
+                b = e.type;
+                payload = addPayload(e.text);
+                break;
+            }
+            case DBEvent.CREATE_NODE: {
+                DBEventCreateNode e = (DBEventCreateNode)event;
+                a = e.id;
+                b = e.tokenIndex;
+                c = e.type;
+                payload = addPayload(e.text);
+                break;
+            }
+            case DBEvent.BECOME_ROOT: {
+                DBEventBecomeRoot e = (DBEventBecomeRoot)event;
+                a = e.newRootID;
+                b = e.oldRootID;
+                break;
+            }
+            case DBEvent.ADD_CHILD: {
+                DBEventAddChild e = (DBEventAddChild)event;
+                a = e.rootID;
+                b = e.childID;
+                break;
+            }
+            case DBEvent.SET_TOKEN_BOUNDARIES: {
+                DBEventSetTokenBoundaries e = (DBEventSetTokenBoundaries)event;
+                a = e.id;
+                b = e.startIndex;
+                c = e.stopIndex;
+                break;
+            }
+        }
+
+        int offset = size & (SEGMENT_SIZE-1);
+        if(offset == 0) {
+            addSegment();
+        }
+        Segment s = segments.get(segments.size()-1);
+        s.types[offset] = (byte)event.getEventType();
+        s.columns[COLUMN_GRAMMAR][offset] = intern(event.getGrammarName());
+        s.columns[COLUMN_A][offset] = a;
+        s.columns[COLUMN_B][offset] = b;
+        s.columns[COLUMN_C][offset] = c;
+        s.columns[COLUMN_PAYLOAD][offset] = payload;
+
+        cachedIndex = size;
+        cachedEvent = event;
+        size++;
+    }
+
+    public synchronized int getEventType(int index) {
+        checkIndex(index);
+        return getSegment(index).getType(index & (SEGMENT_SIZE-1));
+    }
+
+    /** Returns the event at the specified index. Except for the last added event,
+     * a new event object is created at each call.
+     */
+    public synchronized DBEvent get(int index) {
+        checkIndex(index);
+        if(index == cachedIndex)
+            return cachedEvent;
+
+        Segment s = getSegment(index);
+        int offset = index & (SEGMENT_SIZE-1);
+        int a = s.getInt(COLUMN_A, offset);
+        int b = s.getInt(COLUMN_B, offset);
+        int c = s.getInt(COLUMN_C, offset);
+        int payload = s.getInt(COLUMN_PAYLOAD, offset);
+
+        DBEvent event;
+        switch(s.getType(offset)) {
+            case DBEvent.LOCATION:
+                event = DBEventFactory.createLocation(a, b);
+                break;
+            case DBEvent.CONSUME_TOKEN:
+                event = DBEventFactory.createConsumeToken((Token)payloads.get(payload));
+                break;
+            case DBEvent.CONSUME_HIDDEN_TOKEN:
+                event = DBEventFactory.createConsumeHiddenToken((Token)payloads.get(payload));
+                break;
+            case DBEvent.LT:
+                event = DBEventFactory.createLT(b, (Token)payloads.get(payload));
+                break;
+            case DBEvent.ENTER_RULE:
+                event = DBEventFactory.createEnterRule(names.get(a), names.get(b));
+                break;
+            case DBEvent.EXIT_RULE:
+                event = DBEventFactory.createExitRule(names.get(a), names.get(b));
+                break;
+            case DBEvent.ENTER_SUBRULE:
+                event = DBEventFactory.createEnterSubRule(a);
+                break;
+            case DBEvent.EXIT_SUBRULE:
+                event = DBEventFactory.createExitSubRule(a);
+                break;
+            case DBEvent.ENTER_DECISION:
+                event = DBEventFactory.createEnterDecision(a);
+                break;
+            case DBEvent.EXIT_DECISION:
+                event = DBEventFactory.createExitDecision(a);
+                break;
+            case DBEvent.ENTER_ALT:
+                event = DBEventFactory.createEnterAlt(a);
+                break;
+            case DBEvent.MARK:
+                event = DBEventFactory.createMark(a);
+                break;
+            case DBEvent.REWIND:
+                event = DBEventFactory.createRewind(a);
+                break;
+            case DBEvent.BEGIN_BACKTRACK:
+                event = DBEventFactory.createBeginBacktrack(a);
+                break;
+            case DBEvent.END_BACKTRACK:
+                event = DBEventFactory.createEndBacktrack(a, b == 1);
+                break;
+            case DBEvent.RECOGNITION_EXCEPTION:
+                event = DBEventFactory.createRecognitionException((RecognitionException)payloads.get(payload));
+                break;
+            case DBEvent.NIL_NODE:
+                event = DBEventFactory.createNilNode(a);
+                break;
+            case DBEvent.ERROR_NODE:
+                event = DBEventFactory.createErrorNode(a, getPayloadText(payload), b);
+                break;
+            case DBEvent.CREATE_NODE:
+                if(b == -1)
+                    event = DBEventFactory.createCreateNode(a, getPayloadText(payload), c);
+                else
+                    event = DBEventFactory.createCreateNode(a, b);
+                break;
+            case DBEvent.BECOME_ROOT:
+                event = DBEventFactory.createBecomeRoot(a, b);
+                break;
+            case DBEvent.ADD_CHILD:
+                event = DBEventFactory.createAddChild(a, b);
+                break;
+            case DBEvent.SET_TOKEN_BOUNDARIES:
+                event = DBEventFactory.createSetTokenBoundaries(a, b, c);
+                break;
+            default:
+                event = new DBEvent(s.getType(offset));
+                break;
+        }
+
+        int grammar = s.getInt(COLUMN_GRAMMAR, offset);
+        event.setGrammarName(grammar == NONE ? null : names.get(grammar));
+        return event;
+    }
+
+    /** Returns a read-only list view of the events */
+    public List<DBEvent> asList() {
+        return new AbstractList<DBEvent>() {
+            @Override
+            public DBEvent get(int index) {
+                return DBEventStore.this.get(index);
+            }
+
+            @Override
+            public int size() {
+                return DBEventStore.this.size();
+            }
+        };
+    }
+
+    protected void checkIndex(int index) {
+        if(index < 0 || index >= size)
+            throw new IndexOutOfBoundsException("Event "+index+" of "+size);
+    }
+
+    protected Segment getSegment(int index) {
+        return segments.get(index >> SEGMENT_SHIFT);
+    }
+
+    protected int intern(String name) {
+        if(name == null)
+            return NONE;
+
+        Integer id = nameIds.get(name);
+        if(id == null) {
+            id = names.size();
+            names.add(name);
+            nameIds.put(name, id);
+        }
+        return id;
+    }
+
+    protected int addPayload(Object payload) {
+        if(payload == null)
+            return NONE;
+
+        payloads.add(payload);
+        return payloads.size()-1;
+    }
+
+    protected String getPayloadText(int payload) {
+        return payload == NONE ? null : (String)payloads.get(payload);
+    }
+
+    /** The same token is usually sent many times (LT events then consume event):
+     * the token already recorded for the index is reused if it is identical.
+     */
+    protected int addToken(Token t) {
+        int index = t.getTokenIndex();
+        if(index < 0 || t instanceof DBTreeToken)
+            return addPayload(t);
+
+        if(index < tokenPayloads.length) {
+            int payload = tokenPayloads[index]-1;
+            if(payload != NONE && isSameToken((Token)payloads.get(payload), t))
+                return payload;
+        } else {
+            tokenPayloads = Arrays.copyOf(tokenPayloads, Math.max(index+1, tokenPayloads.length*2));
+        }
+
+        int payload = addPayload(t);
+        tokenPayloads[index] = payload+1;
+        return payload;
+    }
+
+    protected static boolean isSameToken(Token a, Token b) {
+        if(a.getType() != b.getType() || a.getChannel() != b.getChannel())
+            return false;
+        if(a.getLine() != b.getLine() || a.getCharPositionInLine() != b.getCharPositionInLine())
+            return false;
+        return a.getText() == null ? b.getText() == null : a.getText().equals(b.getText());
+    }
+
+    protected void addSegment() {
+        segments.add(new Segment());
+        heapSegments++;
+
+        if(heapSegments > MAX_HEAP_SEGMENTS && !spillDisabled) {
+            int index = segments.size()-heapSegments;
+            try {
+                segments.get(index).spill(getSpillAccess().getChannel(), spillLength);
+                spillLength += Segment.BYTES;
+                heapSegments--;
+            } catch (IOException e) {
+                // keep the segments in memory
+                spillDisabled = true;
+            }
+        }
+    }
+
+    protected RandomAccessFile getSpillAccess() throws IOException {
+        if(spillAccess == null) {
+            spillFile = File.createTempFile("antlrworks-events", ".tmp");
+            spillFile.deleteOnExit();
+            spillAccess = new RandomAccessFile(spillFile, "rw");
+        }
+        return spillAccess;
+    }
+
+    protected static class Segment {
+
+        public static final int BYTES = SEGMENT_SIZE+COLUMNS*SEGMENT_SIZE*4;
+
+        protected byte[] types = new byte[SEGMENT_SIZE];
+        protected int[][] columns = new int[COLUMNS][SEGMENT_SIZE];
+
+        /** Content of the segment once it has been written to the disk */
+        protected ByteBuffer mapped;
+
+        public int getType(int offset) {
+            return mapped == null ? types[offset] : mapped.get(offset);
+        }
+
+        public int getInt(int column, int offset) {
+            if(mapped == null)
+                return columns[column][offset];
+            else
+                return mapped.getInt(SEGMENT_SIZE+(column*SEGMENT_SIZE+offset)*4);
+        }
+
+        public void spill(FileChannel channel, long position) throws IOException {
+            ByteBuffer buffer = ByteBuffer.allocate(BYTES);
+            buffer.put(types);
+            for(int[] column : columns) {
+                buffer.asIntBuffer().put(column);
+                buffer.position(buffer.position()+column.length*4);
+            }
+            buffer.flip();
+            while(buffer.hasRemaining()) {
+                channel.write(buffer, position+buffer.position());
+            }
+
+            MappedByteBuffer m = channel.map(FileChannel.MapMode.READ_ONLY, position, BYTES);
+            mapped = m;
+            types = null;
+            columns = null;
+        }
+    }
+}
@@ -0,0 +1,315 @@
+package org.antlr.works.debugger.tivo;
+
+import org.antlr.runtime.ClassicToken;
+import org.antlr.runtime.Token;
+import org.antlr.works.debugger.DebuggerTab;
+import org.antlr.works.debugger.events.DBEvent;
+import org.antlr.works.debugger.events.DBEventEnterRule;
+import org.antlr.works.debugger.events.DBEventExitRule;
+import org.antlr.works.debugger.events.DBEventLocation;
+import org.antlr.works.debugger.tree.DBASTModel;
+import org.antlr.works.debugger.tree.DBParseTreeModel;
+import org.antlr.works.utils.Console;
+import org.antlr.xjlib.appkit.utils.XJDialogProgress;
+import org.antlr.xjlib.appkit.utils.XJDialogProgressDelegate;
+
+import javax.swing.*;
+import java.awt.event.ActionEvent;
+import java.awt.event.ActionListener;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Stack;
+/*
+
+[The "BSD licence"]
+Copyright (c) 2005 Jean Bovet
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions
+are met:
+
+1. Redistributions of source code must retain the above copyright
+notice, this list of conditions and the following disclaimer.
+2. Redistributions in binary form must reproduce the above copyright
+notice, this list of conditions and the following disclaimer in the
+documentation and/or other materials provided with the distribution.
+3. The name of the author may not be used to endorse or promote products
+derived from this software without specific prior written permission.
+
+THIS SOFTWARE IS PROVIDED BY THE AUTHOR ``AS IS'' AND ANY EXPRESS OR
+IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES
+OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED.
+IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY DIRECT, INDIRECT,
+INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT
+NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+(INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF
+THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+
+*/
+
+
+/** Plays a long sequence of events on a background thread (for example when going to the
+ * end of a session with millions of events) so the user interface stays responsive.
+ *
+ * The events are applied to headless copies of the models of the debugger, starting from
+ * the last checkpoint of the player. The panels keep displaying their own models in the
+ * meantime. Once all the events are played, the models of the builder are published in one
+ * step on the event dispatch thread (see DebuggerTab.modelBuilderDidFinish()).
+ *
+ * A progress dialog is displayed if the replay takes more than PROGRESS_DELAY ms. Cancelling
+ * it publishes the models as they are after the last event played.
+ */
+public class DBModelBuilder implements DBPlayerDelegate, XJDialogProgressDelegate, Runnable {
+
+    /** Minimum number of events to play for the models to be built on a background thread */
+    public static final int MIN_EVENTS = 50000;
+
+    /** Delay before the progress dialog is displayed (ms) */
+    public static final int PROGRESS_DELAY = 500;
+    public static final int PROGRESS_UPDATE_DELAY = 100;
+
+    /** The parse tree nodes are laid out all at once when the model is published: the list
+     * of new nodes kept by the model is cleared when it reaches this size.
+     */
+    protected static final int MAX_NEW_NODES = 1024;
+
+    protected DebuggerTab debuggerTab;
+    protected DBPlayer player;
+
+    protected List<DBEvent> events;
+    protected int firstEventPosition;
+    protected int lastEventPosition;
+
+    protected Stack<DBEventEnterRule> rules = new Stack<DBEventEnterRule>();
+    protected DBParseTreeModel parseTreeModel;
+    protected DBASTModel astModel;
+
+    /** Contexts of the events played, packed by DBPlayerContextInfo.pack() */
+    protected int[] contexts;
+    protected int contextCount;
+
+    /** Set when another builder replaces this one: its models are not published */
+    protected volatile boolean discarded;
+
+    protected Timer progressTimer;
+    protected XJDialogProgress progress;
+    protected long startTime;
+
+    public DBModelBuilder(DebuggerTab debuggerTab, List<DBEvent> events, int firstEventPosition, int lastEventPosition) {
+        this.debuggerTab = debuggerTab;
+        this.events = events;
+        this.firstEventPosition = firstEventPosition;
+        this.lastEventPosition = lastEventPosition;
+
+        player = new DBPlayer(this);
+        parseTreeModel = new DBParseTreeModel(debuggerTab);
+        astModel = new DBASTModel(debuggerTab);
+        contexts = new int[Math.min(lastEventPosition-firstEventPosition, 1024)*DBPlayerContextInfo.PACKED_SIZE];
+    }
+
+    public DBPlayer getPlayer() {
+        return player;
+    }
+
+    public List<DBEventEnterRule> getRules() {
+        return rules;
+    }
+
+    public DBParseTreeModel getParseTreeModel() {
+        return parseTreeModel;
+    }
+
+    public DBASTModel getASTModel() {
+        return astModel;
+    }
+
+    public int[] getContexts() {
+        return contexts;
+    }
+
+    public int getContextCount() {
+        return contextCount;
+    }
+
+    public int getFirstEventPosition() {
+        return firstEventPosition;
+    }
+
+    public boolean isCancelled() {
+        return player.isCancelled();
+    }
+
+    /** Starts playing the events. Called on the event dispatch thread. */
+    public void start() {
+        startTime = System.currentTimeMillis();
+        progressTimer = new Timer(PROGRESS_UPDATE_DELAY, new ActionListener() {
+            public void actionPerformed(ActionEvent e) {
+                updateProgress();
+            }
+        });
+        progressTimer.start();
+
+        new Thread(this, "Debugger Model Builder").start();
+    }
+
+    /** Stops the builder without publishing its models. Called on the event dispatch thread. */
+    public void discard() {
+        discarded = true;
+        player.cancel();
+        hideProgress();
+    }
+
+    public void run() {
+        player.playEvents(events, lastEventPosition, false);
+
+        SwingUtilities.invokeLater(new Runnable() {
+            public void run() {
+                finish();
+            }
+        });
+    }
+
+    protected void finish() {
+        hideProgress();
+        parseTreeModel.close();
+        astModel.close();
+        if(!discarded)
+            debuggerTab.modelBuilderDidFinish(this);
+    }
+
+    public void updateProgress() {
+        if(progress == null) {
+            if(System.currentTimeMillis()-startTime < PROGRESS_DELAY)
+                return;
+
+            progress = new XJDialogProgress(debuggerTab.getContainer());
+            progress.setInfo("Replaying events...");
+            progress.setIndeterminate(false);
+            progress.setProgress(0);
+            progress.setProgressMax(lastEventPosition-firstEventPosition);
+            progress.setDelegate(this);
+            progress.display();
+        }
+        progress.setProgress(player.getEventPlayedCount()-firstEventPosition);
+    }
+
+    public void hideProgress() {
+        if(progressTimer != null)
+            progressTimer.stop();
+        if(progress != null) {
+            progress.close();
+            progress = null;
+        }
+    }
+
+    public void dialogDidCancel() {
+        player.cancel();
+    }
+
+    public void playerReset(boolean first) {
+        rules.clear();
+        parseTreeModel.clear();
+        astModel.clear();
+        contextCount = 0;
+    }
+
+    public void playerAddEvent(DBEvent event, DBPlayerContextInfo info) {
+        int offset = contextCount*DBPlayerContextInfo.PACKED_SIZE;
+        if(offset == contexts.length) {
+            int[] newContexts = new int[Math.max(contexts.length*2, DBPlayerContextInfo.PACKED_SIZE)];
+            System.arraycopy(contexts, 0, newContexts, 0, offset);
+            contexts = newContexts;
+        }
+        info.pack(contexts, offset);
+        contextCount++;
+
+        if(parseTreeModel.getNewNodesCount() > MAX_NEW_NODES)
+            parseTreeModel.clearNewNodes();
+    }
+
+    public void playerCreateCheckpoint(DBPlayerCheckpoint checkpoint) {
+        checkpoint.rules = new ArrayList<DBEventEnterRule>(rules);
+        checkpoint.parseTree = parseTreeModel.createCheckpoint();
+        checkpoint.ast = astModel.createCheckpoint();
+    }
+
+    /** The events played before the checkpoint are already in the events panel */
+    public void playerRestoreCheckpoint(DBPlayerCheckpoint checkpoint) {
+        rules.clear();
+        rules.addAll(checkpoint.rules);
+        parseTreeModel.restoreCheckpoint(checkpoint.parseTree);
+        astModel.restoreCheckpoint(checkpoint.ast);
+        contextCount = 0;
+    }
+
+    public void playerSetLocation(DBEventLocation location) {
+        parseTreeModel.setLocation(location);
+    }
+
+    /** The location is shown when the models are published */
+    public void playerShowLocation(DBEventLocation location) {
+    }
+
+    public void playerPushRule(DBEventEnterRule rule) {
+        rules.push(rule);
+        parseTreeModel.pushRule(rule.name);
+        astModel.pushRule(rule.name);
+    }
+
+    public void playerPopRule(DBEventExitRule rule) {
+        rules.pop();
+        parseTreeModel.popRule();
+        astModel.popRule();
+    }
+
+    public void playerConsumeToken(Token token) {
+        parseTreeModel.addToken(token);
+    }
+
+    public void playerRecognitionException(Exception e) {
+        parseTreeModel.addException(e);
+    }
+
+    public void playerBeginBacktrack(int level) {
+        parseTreeModel.beginBacktrack(level);
+    }
+
+    public void playerEndBacktrack(int level, boolean success) {
+        parseTreeModel.endBacktrack(level, success);
+    }
+
+    public void playerNilNode(int id) {
+        astModel.nilNode(id);
+    }
+
+    public void playerErrorNode(int id, String text) {
+        astModel.errorNode(id, text);
+    }
+
+    public void playerCreateNode(int id, Token token) {
+        astModel.createNode(id, token);
+    }
+
+    public void playerCreateNode(int id, String text, int type) {
+        astModel.createNode(id, new ClassicToken(type, text));
+    }
+
+    public void playerBecomeRoot(int newRootID, int oldRootID) {
+        astModel.becomeRoot(newRootID, oldRootID);
+    }
+
+    public void playerAddChild(int rootID, int childID) {
+        astModel.addChild(rootID, childID);
+    }
+
+    public void playerSetTokenBoundaries(int id, int startIndex, int stopIndex) {
+        /** Currently ignored */
+    }
+
+    public Console getConsole() {
+        return debuggerTab.getConsole();
+    }
+}
@@ -36,82 +36,238 @@ import org.antlr.works.debugger.DebuggerTab;
 import org.antlr.works.debugger.events.*;
 import org.antlr.works.debugger.input.DBInputProcessor;
 import org.antlr.works.debugger.input.DBInputTextTokenInfo;
+import org.antlr.works.utils.IntStack;
 
+import java.util.ArrayList;
+import java.util.Iterator;
 import java.util.List;
-import java.util.Stack;
 
 public class DBPlayer {
 
-    protected DebuggerTab debuggerTab;
+    /** Number of events played between two checkpoints. The interval doubles each time
+     * there are more than MAX_CHECKPOINTS checkpoints so the memory used stays bounded.
+     */
+    public static final int CHECKPOINT_INTERVAL = 5000;
+    public static final int MAX_CHECKPOINTS = 32;
+
+    protected DBPlayerDelegate delegate;
     protected DBInputProcessor processor;
 
     protected DBPlayerContextInfo contextInfo;
-    protected Stack<Integer> markStack;
+    protected IntStack markStack;
 
     protected int resyncing = 0;
-    protected int eventPlayedCount = 0;
-
-    public DBPlayer(DebuggerTab debuggerTab) {
-        this.debuggerTab = debuggerTab;
+    /** Number of events played. Read by the event dispatch thread to display the progress
+     * of a DBModelBuilder.
+     */
+    protected volatile int eventPlayedCount = 0;
+    protected volatile boolean cancelled;
+
+    /** Tokens of the burst of LT events being played. They are applied to the processor
+     * in one step before the next event of another type (see flushLT()).
+     */
+    protected List<Token> lookaheadTokens = new ArrayList<Token>();
+    /** False if no lookahead token has been applied to the processor since the last
+     * call to removeAllLT(): the bursts of enter/exit events don't call it again.
+     */
+    protected boolean processorHasLT = true;
+
+    protected List<DBPlayerCheckpoint> checkpoints = new ArrayList<DBPlayerCheckpoint>();
+    protected int checkpointInterval = CHECKPOINT_INTERVAL;
+
+    public DBPlayer(DBPlayerDelegate delegate) {
+        this.delegate = delegate;
         contextInfo = new DBPlayerContextInfo();
-        markStack = new Stack<Integer>();
+        markStack = new IntStack();
     }
 
     public void close() {
-        debuggerTab = null;
+        delegate = null;
     }
 
     public void setInputBuffer(DBInputProcessor processor) {
         this.processor = processor;
+        clearCheckpoints();
     }
 
     public DBPlayerContextInfo getContextInfo() {
         return contextInfo;
     }
 
+    public DBInputProcessor getProcessor() {
+        return processor;
+    }
+
+    public int getEventPlayedCount() {
+        return eventPlayedCount;
+    }
+
+    /** Stops playEvents() after the event being played. Can be called from any thread. */
+    public void cancel() {
+        cancelled = true;
+    }
+
+    public boolean isCancelled() {
+        return cancelled;
+    }
+
     public synchronized void resetPlayEvents(boolean first) {
-        debuggerTab.resetGUI();
+        delegate.playerReset(first);
 
         /** Only reset the input text the first time
          the events are reset (when the debugger starts).
          Then, keep rewinding the input text so already received
          tokens are displayed */
-        if(first)
+        if(first) {
             processor.reset();
-        else
+            clearCheckpoints();
+        } else
             processor.rewindAll();
 
         contextInfo.clear();
         markStack.clear();
+        lookaheadTokens.clear();
+        processorHasLT = true;
 
         resyncing = 0;
         eventPlayedCount = 0;
     }
 
-    public void playEvents(List events, int lastEventPosition, boolean reset) {
-        if(reset)
-            resetPlayEvents(false);
+    public void playEvents(List<DBEvent> events, int lastEventPosition, boolean reset) {
+        if(reset) {
+            /* Start from the nearest checkpoint and replay only the following events */
+            DBPlayerCheckpoint checkpoint = getCheckpoint(lastEventPosition);
+            if(checkpoint == null) {
+                resetPlayEvents(false);
+            } else {
+                restoreCheckpoint(checkpoint);
+                if(eventPlayedCount == lastEventPosition)
+                    playLocation();
+            }
+        }
 
         int lastIndex = lastEventPosition - 1;
-        for(int i=eventPlayedCount; i< lastEventPosition; i++) {
-            DBEvent event = (DBEvent)events.get(i);
+        for(int i=eventPlayedCount; i< lastEventPosition && !cancelled; i++) {
+            DBEvent event = events.get(i);
 
             try {
                 playEvent(event);
             } catch(Exception e) {
-                debuggerTab.getConsole().println(e);
+                delegate.getConsole().println(e);
             }
 
-            debuggerTab.addEvent(event, contextInfo);
+            delegate.playerAddEvent(event, contextInfo);
+            eventPlayedCount = i+1;
             if(i == lastIndex) {
                 // Last event, play the location
                 playLocation();
             }
+            if((i+1) % checkpointInterval == 0)
+                createCheckpoint(i+1);
+        }
+        flushLT();
+        if(!cancelled)
+            eventPlayedCount = lastEventPosition;
+    }
+
+    /** Returns a model builder replaying the events up to lastEventPosition on a background
+     * thread, or null if the events are few enough to be played on the event dispatch thread
+     * or if the input processor cannot be copied. The builder starts from the last checkpoint
+     * so the models of the panels are not used until the builder publishes its own.
+     */
+    public DBModelBuilder createModelBuilder(DebuggerTab debuggerTab, List<DBEvent> events, int lastEventPosition, boolean reset) {
+        DBPlayerCheckpoint checkpoint = getCheckpoint(reset?lastEventPosition:eventPlayedCount);
+        int firstEventPosition = checkpoint == null?0:checkpoint.eventIndex;
+        if(lastEventPosition - (reset?firstEventPosition:eventPlayedCount) < DBModelBuilder.MIN_EVENTS)
+            return null;
+
+        DBInputProcessor copy = processor.createHeadlessCopy();
+        if(copy == null)
+            return null;
+
+        DBModelBuilder builder = new DBModelBuilder(debuggerTab, events, firstEventPosition, lastEventPosition);
+        DBPlayer player = builder.getPlayer();
+        player.processor = copy;
+        player.checkpoints = new ArrayList<DBPlayerCheckpoint>(checkpoints);
+        player.checkpointInterval = checkpointInterval;
+        if(checkpoint == null)
+            player.resetPlayEvents(false);
+        else
+            player.restoreCheckpoint(checkpoint);
+        return builder;
+    }
+
+    /** Takes the state of the player of a model builder once it has played its events.
+     * Called on the event dispatch thread after the models of the builder have been published.
+     */
+    public void publish(DBPlayer player) {
+        processor.publish(player.processor);
+        contextInfo.set(player.contextInfo);
+        markStack.set(player.markStack);
+        resyncing = player.resyncing;
+        lastLocationEvent = player.lastLocationEvent;
+        eventPlayedCount = player.eventPlayedCount;
+        processorHasLT = true;
+        checkpoints = player.checkpoints;
+        checkpointInterval = player.checkpointInterval;
+        playLocation();
+    }
+
+    public void clearCheckpoints() {
+        checkpoints.clear();
+        checkpointInterval = CHECKPOINT_INTERVAL;
+    }
+
+    /** Returns the last checkpoint created before the event at the specified position */
+    public DBPlayerCheckpoint getCheckpoint(int eventPosition) {
+        DBPlayerCheckpoint checkpoint = null;
+        for(DBPlayerCheckpoint c : checkpoints) {
+            if(c.eventIndex > eventPosition)
+                break;
+            checkpoint = c;
+        }
+        return checkpoint;
+    }
+
+    protected void createCheckpoint(int eventIndex) {
+        /* The events are replayed after a checkpoint is restored: don't create it again */
+        if(!checkpoints.isEmpty() && checkpoints.get(checkpoints.size()-1).eventIndex >= eventIndex)
+            return;
+
+        flushLT();
+        DBPlayerCheckpoint c = new DBPlayerCheckpoint(eventIndex);
+        c.contextInfo = contextInfo.copy();
+        c.markStack = new IntStack(markStack);
+        c.resyncing = resyncing;
+        c.lastLocationEvent = lastLocationEvent;
+        c.processor = processor.createCheckpoint();
+        delegate.playerCreateCheckpoint(c);
+        checkpoints.add(c);
+
+        if(checkpoints.size() > MAX_CHECKPOINTS) {
+            checkpointInterval *= 2;
+            for(Iterator<DBPlayerCheckpoint> iterator = checkpoints.iterator(); iterator.hasNext(); ) {
+                if(iterator.next().eventIndex % checkpointInterval != 0)
+                    iterator.remove();
+            }
         }
-        eventPlayedCount = lastEventPosition;
+    }
+
+    protected void restoreCheckpoint(DBPlayerCheckpoint c) {
+        delegate.playerRestoreCheckpoint(c);
+        processor.restoreCheckpoint(c.processor);
+        contextInfo.set(c.contextInfo);
+        markStack.set(c.markStack);
+        resyncing = c.resyncing;
+        lastLocationEvent = c.lastLocationEvent;
+        eventPlayedCount = c.eventIndex;
+        processorHasLT = true;
     }
 
     public void playEvent(DBEvent event) {
+        if(event.getEventType() != DBEvent.LT)
+            flushLT();
+
         switch(event.getEventType()) {
             case DBEvent.ENTER_RULE:
                 playEnterRule((DBEventEnterRule)event);
@@ -215,33 +371,50 @@ public class DBPlayer {
     }
 
     public void playEnterRule(DBEventEnterRule event) {
-        debuggerTab.playerPushRule(event);
-        processor.removeAllLT();
+        delegate.playerPushRule(event);
+        removeAllLT();
     }
 
     public void playExitRule(DBEventExitRule event) {
-        debuggerTab.playerPopRule(event);
-        processor.removeAllLT();
+        delegate.playerPopRule(event);
+        removeAllLT();
     }
 
     public void playEnterSubrule(DBEventEnterSubRule event) {
         contextInfo.enterSubrule(event.decision);
-        processor.removeAllLT();
+        removeAllLT();
     }
 
     public void playExitSubrule(DBEventExitSubRule event) {
         contextInfo.exitSubrule();
-        processor.removeAllLT();
+        removeAllLT();
     }
 
     public void playEnterDecision(DBEventEnterDecision event) {
         contextInfo.enterDecision(event.decision);
-        processor.removeAllLT();
+        removeAllLT();
     }
 
     public void playExitDecision(DBEventExitDecision event) {
         contextInfo.exitDecision();
-        processor.removeAllLT();
+        removeAllLT();
+    }
+
+    /** Applies the tokens of the last burst of LT events to the processor */
+    public void flushLT() {
+        if(lookaheadTokens.isEmpty())
+            return;
+
+        processor.LT(lookaheadTokens);
+        lookaheadTokens.clear();
+        processorHasLT = true;
+    }
+
+    public void removeAllLT() {
+        if(processorHasLT) {
+            processor.removeAllLT();
+            processorHasLT = false;
+        }
     }
 
     public void playEnterAlt(DBEventEnterAlt event) {
@@ -262,7 +435,7 @@ public class DBPlayer {
         if(contextInfo.getDecision() == -1)
             return;
 
-        processor.LT(event.token);
+        lookaheadTokens.add(event.token);
     }
 
     public void playConsumeToken(DBEventConsumeToken event) {
@@ -281,7 +454,7 @@ public class DBPlayer {
 
         /* If backtracking add token only */
         if(contextInfo.isBacktracking()) {
-            debuggerTab.playerConsumeToken(token);
+            delegate.playerConsumeToken(token);
             return;
         }
 
@@ -291,7 +464,7 @@ public class DBPlayer {
 
         /* Add only visible token */
         if(!hidden)
-            debuggerTab.playerConsumeToken(token);
+            delegate.playerConsumeToken(token);
 
         /* Consume the token */
         processor.consumeToken(token, hidden?DBInputProcessor.TOKEN_HIDDEN:DBInputProcessor.TOKEN_NORMAL);
@@ -306,13 +479,12 @@ public class DBPlayer {
         // in the grammar (not needed)
         lastLocationEvent = event;
 
-        debuggerTab.playerSetLocation(lastLocationEvent);
+        delegate.playerSetLocation(lastLocationEvent);
         processor.setLocation(lastLocationEvent);
     }
 
     public void playLocation() {
-        debuggerTab.resetGrammarLocation();
-        debuggerTab.setGrammarLocation(lastLocationEvent);
+        delegate.playerShowLocation(lastLocationEvent);
     }
 
     public void playMark(DBEventMark event) {
@@ -333,7 +505,7 @@ public class DBPlayer {
 
         /* Tell the debugger about the backtracking so the parse
         tree coloring can be properly done */
-        debuggerTab.playerBeginBacktrack(event.level);
+        delegate.playerBeginBacktrack(event.level);
     }
 
     public void playEndBacktrack(DBEventEndBacktrack event) {
@@ -341,7 +513,7 @@ public class DBPlayer {
 
         /* Tell the debugger about the backtracking so the parse
         tree coloring can be properly done */
-        debuggerTab.playerEndBacktrack(event.level, event.successful);
+        delegate.playerEndBacktrack(event.level, event.successful);
     }
 
     public void playRecognitionException(DBEventRecognitionException event) {
@@ -350,7 +522,7 @@ public class DBPlayer {
 		if ( info!=null ) {
 			event.e.token = info.token;
 		}
-		debuggerTab.playerRecognitionException(event.e);
+		delegate.playerRecognitionException(event.e);
     }
 
     public void playBeginResync() {
@@ -362,36 +534,36 @@ public class DBPlayer {
     }
 
     public void playNilNode(DBEventNilNode event) {
-        debuggerTab.playerNilNode(event.id);
+        delegate.playerNilNode(event.id);
     }
 
     public void playErrorNode(DBEventErrorNode event) {
-        debuggerTab.playerErrorNode(event.id, event.text);
+        delegate.playerErrorNode(event.id, event.text);
     }
 
     public void playCreateNode(DBEventCreateNode event) {
         if(event.tokenIndex == -1) {
             /** Imaginary token. Use the 'text' and 'type' info instead. */
-            debuggerTab.playerCreateNode(event.id, event.text, event.type);
+            delegate.playerCreateNode(event.id, event.text, event.type);
         } else {
             DBInputTextTokenInfo info = processor.getTokenInfoAtTokenIndex(event.tokenIndex);
             if(info == null)
-                debuggerTab.getConsole().println("No token info for token index "+event.tokenIndex);
+                delegate.getConsole().println("No token info for token index "+event.tokenIndex);
             else
-                debuggerTab.playerCreateNode(event.id, info.token);
+                delegate.playerCreateNode(event.id, info.token);
         }
     }
 
     public void playBecomeRoot(DBEventBecomeRoot event) {
-        debuggerTab.playerBecomeRoot(event.newRootID, event.oldRootID);
+        delegate.playerBecomeRoot(event.newRootID, event.oldRootID);
     }
 
     public void playAddChild(DBEventAddChild event) {
-        debuggerTab.playerAddChild(event.rootID, event.childID);
+        delegate.playerAddChild(event.rootID, event.childID);
     }
 
     public void playSetTokenBoundaries(DBEventSetTokenBoundaries event) {
-        debuggerTab.playerSetTokenBoundaries(event.id, event.startIndex, event.stopIndex);
+        delegate.playerSetTokenBoundaries(event.id, event.startIndex, event.stopIndex);
     }
 
 }
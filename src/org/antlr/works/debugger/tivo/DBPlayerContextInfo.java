@@ -1,6 +1,6 @@
 package org.antlr.works.debugger.tivo;
 
-import java.util.Stack;
+import org.antlr.works.utils.IntStack;
 /*
 
 [The "BSD licence"]
@@ -34,10 +34,13 @@ THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
 
 public class DBPlayerContextInfo {
 
-    public Stack<Integer> subrule = new Stack<Integer>();
-    public Stack<Integer> decision = new Stack<Integer>();
-    public Stack<Integer> mark = new Stack<Integer>();
-    public Stack<Integer> backtrack = new Stack<Integer>();
+    /** Number of int used by pack() */
+    public static final int PACKED_SIZE = 4;
+
+    public IntStack subrule = new IntStack();
+    public IntStack decision = new IntStack();
+    public IntStack mark = new IntStack();
+    public IntStack backtrack = new IntStack();
 
     public void enterSubrule(int i) {
         subrule.push(i);
@@ -91,11 +94,29 @@ public class DBPlayerContextInfo {
         return !backtrack.isEmpty();
     }
 
-    public int getPeekValue(Stack<Integer> s) {
-        if(s.isEmpty())
-            return -1;
-        else
-            return s.peek();
+    public int getPeekValue(IntStack s) {
+        return s.peek(-1);
+    }
+
+    /** Writes the subrule, decision, mark and backtrack values in the array at offset */
+    public void pack(int[] values, int offset) {
+        values[offset] = getSubrule();
+        values[offset+1] = getDecision();
+        values[offset+2] = getMark();
+        values[offset+3] = getBacktrack();
+    }
+
+    public DBPlayerContextInfo copy() {
+        DBPlayerContextInfo info = new DBPlayerContextInfo();
+        info.set(this);
+        return info;
+    }
+
+    public void set(DBPlayerContextInfo info) {
+        subrule.set(info.subrule);
+        decision.set(info.decision);
+        mark.set(info.mark);
+        backtrack.set(info.backtrack);
     }
 
     public void clear() {
@@ -0,0 +1,74 @@
+package org.antlr.works.debugger.tivo;
+
+import org.antlr.runtime.Token;
+import org.antlr.works.debugger.events.DBEvent;
+import org.antlr.works.debugger.events.DBEventEnterRule;
+import org.antlr.works.debugger.events.DBEventExitRule;
+import org.antlr.works.debugger.events.DBEventLocation;
+import org.antlr.works.utils.Console;
+/*
+
+[The "BSD licence"]
+Copyright (c) 2005 Jean Bovet
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions
+are met:
+
+1. Redistributions of source code must retain the above copyright
+notice, this list of conditions and the following disclaimer.
+2. Redistributions in binary form must reproduce the above copyright
+notice, this list of conditions and the following disclaimer in the
+documentation and/or other materials provided with the distribution.
+3. The name of the author may not be used to endorse or promote products
+derived from this software without specific prior written permission.
+
+THIS SOFTWARE IS PROVIDED BY THE AUTHOR ``AS IS'' AND ANY EXPRESS OR
+IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES
+OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED.
+IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY DIRECT, INDIRECT,
+INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT
+NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+(INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF
+THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+
+*/
+
+
+/** Models the player applies the events to: the panels of the debugger on the event
+ * dispatch thread or the headless models of a DBModelBuilder.
+ */
+public interface DBPlayerDelegate {
+
+    public void playerReset(boolean first);
+    public void playerAddEvent(DBEvent event, DBPlayerContextInfo info);
+
+    public void playerCreateCheckpoint(DBPlayerCheckpoint checkpoint);
+    public void playerRestoreCheckpoint(DBPlayerCheckpoint checkpoint);
+
+    public void playerSetLocation(DBEventLocation location);
+    /** Shows the location of the last event played in the grammar */
+    public void playerShowLocation(DBEventLocation location);
+
+    public void playerPushRule(DBEventEnterRule rule);
+    public void playerPopRule(DBEventExitRule rule);
+
+    public void playerConsumeToken(Token token);
+    public void playerRecognitionException(Exception e);
+
+    public void playerBeginBacktrack(int level);
+    public void playerEndBacktrack(int level, boolean success);
+
+    public void playerNilNode(int id);
+    public void playerErrorNode(int id, String text);
+    public void playerCreateNode(int id, Token token);
+    public void playerCreateNode(int id, String text, int type);
+    public void playerBecomeRoot(int newRootID, int oldRootID);
+    public void playerAddChild(int rootID, int childID);
+    public void playerSetTokenBoundaries(int id, int startIndex, int stopIndex);
+
+    public Console getConsole();
+}
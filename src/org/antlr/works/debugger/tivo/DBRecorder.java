@@ -38,13 +38,13 @@ import org.antlr.works.debugger.DebuggerTab;
 import org.antlr.works.debugger.events.*;
 import org.antlr.works.prefs.AWPrefs;
 import org.antlr.works.utils.Console;
-import org.antlr.works.utils.NumberSet;
 import org.antlr.xjlib.appkit.utils.XJAlert;
 import org.antlr.xjlib.appkit.utils.XJDialogProgress;
 import org.antlr.xjlib.appkit.utils.XJDialogProgressDelegate;
 import org.antlr.xjlib.foundation.XJUtils;
 
 import javax.swing.*;
+import java.io.File;
 import java.io.IOException;
 import java.util.*;
 
@@ -58,8 +58,11 @@ public class DBRecorder implements Runnable, XJDialogProgressDelegate {
 
     public static final int MAX_RETRY = 12;
 
+    /** Maximum number of events recorded while holding the lock of the recorder */
+    public static final int BATCH_SIZE = 1024;
+
     protected DebuggerTab debuggerTab;
-    protected int status = STATUS_STOPPED;
+    protected volatile int status = STATUS_STOPPED;
     protected boolean cancelled;
 
 	public static class FixBugRemoteDebugEventSocketListener
@@ -90,17 +93,32 @@ public class DBRecorder implements Runnable, XJDialogProgressDelegate {
     protected String address;
     protected int port;
 
-    protected List<DBEvent> events;
+    protected DBEventSource events;
+    protected DBEventStore store;
     protected int position;
-    protected NumberSet breakEvents = new NumberSet();
+    /** Mask of the event types to break on (see DBBreakpoints.mask()) */
+    protected volatile long breakEvents;
+    protected volatile DBBreakpoints breakpoints = DBBreakpoints.EMPTY;
     protected int stoppedOnEvent = DBEvent.NO_EVENT;
-    protected boolean ignoreBreakpoints = false;
+    protected volatile boolean ignoreBreakpoints = false;
     protected StepOver stepOver = new StepOver();
 
     protected int lastTokenIndexEventNumber;
     protected int currentTokenIndexEventNumber;
     protected int currentTokenIndex;
 
+    /** Recording file of the current session. The events are streamed to it as they
+     * are received so the session can be saved at any time. The file is guarded by its
+     * own lock so the disk is never accessed with the lock of the recorder.
+     */
+    protected DBRecordingWriter recording;
+    protected boolean recordingFailed;
+    protected final Object recordingLock = new Object();
+
+    /** Queue of the events received from the remote parser and not yet recorded */
+    protected volatile DBEventRing ring;
+    protected PlayEventRunnable pendingPlay;
+
     protected DBRecorderEventListener eventListener;
     protected RemoteDebugEventSocketListener listener;
 
@@ -115,7 +133,7 @@ public class DBRecorder implements Runnable, XJDialogProgressDelegate {
      * with the remote parser state. It ensure the message is only displayed once
      * during a debugging session.
      */
-    protected boolean remoteParserStateWarned = false;
+    protected volatile boolean remoteParserStateWarned = false;
 
     /**
      * Current grammar the recorder is in
@@ -129,6 +147,9 @@ public class DBRecorder implements Runnable, XJDialogProgressDelegate {
 
     public void close() {
         debuggerTab = null;
+        closeRing();
+        events.close();
+        closeRecording();
     }
 
     public void showProgress() {
@@ -156,12 +177,93 @@ public class DBRecorder implements Runnable, XJDialogProgressDelegate {
     }
 
     public synchronized void reset() {
-        events = Collections.synchronizedList(new ArrayList<DBEvent>());
+        closeRing();
+        if(events != null)
+            events.close();
+        closeRecording();
+        store = new DBEventStore();
+        events = store;
         position = -1;
         currentTokenIndex = -1;
         remoteParserStateWarned = false;
     }
 
+    /** Replays the events of a recording file instead of a remote parser. The recording
+     * behaves like a session whose terminate event has been received.
+     */
+    public synchronized void openRecording(DBRecordingReader reader) {
+        reset();
+        store = null;
+        events = reader;
+        debuggerReceivedTerminateEvent = true;
+        stepOver.endStepOver();
+        setIgnoreBreakpoints(false);
+
+        position = 0;
+        if(events.size() > 0)
+            setStoppedOnEvent(events.get(0).getEventType());
+        setStatus(STATUS_BREAK);
+        playEvents(true);
+    }
+
+    public boolean canSaveRecording() {
+        synchronized(recordingLock) {
+            return recording != null;
+        }
+    }
+
+    /** Saves the events received so far as a recording file */
+    public void saveRecording(File file) throws IOException {
+        synchronized(recordingLock) {
+            recording.saveTo(file);
+        }
+    }
+
+    /** Writes a batch of events taken from the queue to the recording file. This is done
+     * by the recorder thread before the events are recorded, without the lock of the recorder.
+     */
+    protected void recordToFile(DBEventRing ring, DBEvent[] batch, int count) {
+        synchronized(recordingLock) {
+            /* The session has been reset */
+            if(ring != this.ring)
+                return;
+
+            for(int i=0; i<count; i++) {
+                handleGrammarName(batch[i]);
+                record(batch[i]);
+            }
+        }
+    }
+
+    protected void record(DBEvent event) {
+        if(recordingFailed)
+            return;
+
+        try {
+            if(recording == null) {
+                File file = File.createTempFile("antlrworks-session", "."+DBRecording.EXTENSION);
+                file.deleteOnExit();
+                String grammarFileName = listener == null ? null : XJUtils.getLastPathComponent(listener.grammarFileName);
+                recording = new DBRecordingWriter(file, grammarFileName);
+            }
+            recording.write(event);
+        } catch (IOException e) {
+            recordingFailed = true;
+            closeRecording();
+            if(debuggerTab != null)
+                debuggerTab.getConsole().println("Cannot record the debugger events: "+e, Console.LEVEL_WARNING);
+        }
+    }
+
+    protected void closeRecording() {
+        synchronized(recordingLock) {
+            if(recording != null) {
+                recording.discard();
+                recording = null;
+            }
+        }
+    }
+
     public synchronized DBEvent getEvent() {
         if(position<0 || position>=events.size())
             return null;
@@ -175,13 +277,13 @@ public class DBRecorder implements Runnable, XJDialogProgressDelegate {
 
     public synchronized List<DBEvent> getCurrentEvents() {
         if(events.size() == 0)
-            return events;
+            return events.asList();
 
         int toIndex = position+1;
         if(toIndex >= events.size())
             toIndex = events.size();
 
-        return events.subList(0, toIndex);
+        return events.asList().subList(0, toIndex);
     }
 
     public synchronized int getCurrentEventPosition() {
@@ -195,18 +297,35 @@ public class DBRecorder implements Runnable, XJDialogProgressDelegate {
         return(toIndex);
     }
 
+    /** Moves the current event back to the last event played when the replay of the
+     * events has been cancelled. The position is not changed while the events of the
+     * remote parser are being received.
+     */
+    public synchronized void setCurrentEventPosition(int eventPosition) {
+        if(status != STATUS_BREAK || eventPosition == 0)
+            return;
+
+        position = eventPosition-1;
+        setStoppedOnEvent(events.get(position).getEventType());
+        debuggerTab.recorderStatusDidChange();
+    }
+
     public void setPositionToEnd() {
         position = events.size()-1;
     }
 
-    public void setBreakEvents(Set events) {
-        this.breakEvents.replaceAll(events);
+    public void setBreakEvents(long events) {
+        this.breakEvents = events;
     }
 
-    public Set getBreakEvents() {
+    public long getBreakEvents() {
         return breakEvents;
     }
 
+    public void setBreakpoints(DBBreakpoints breakpoints) {
+        this.breakpoints = breakpoints;
+    }
+
     public void setStoppedOnEvent(int event) {
         stoppedOnEvent = event;
     }
@@ -256,28 +375,29 @@ public class DBRecorder implements Runnable, XJDialogProgressDelegate {
                 return DBEvent.NO_EVENT;
         }
 
-        if(event.getEventType() == DBEvent.COMMENCE)
-            return event.getEventType();
+        int type = event.getEventType();
+        if(type == DBEvent.COMMENCE)
+            return type;
 
-        if(breakEvents.contains(DBEvent.convertToInteger(DBEvent.ALL)))
-            return event.getEventType();
+        long breakEvents = this.breakEvents;
+        if(DBBreakpoints.contains(breakEvents, DBEvent.ALL))
+            return type;
 
-        // Stop on debugger breakpoints
-        if(event.getEventType() == DBEvent.LOCATION && !ignoreBreakpoints())
-            if(debuggerTab.isBreakpointAtLine(((DBEventLocation)event).line-1, event.getGrammarName())) {
-                return event.getEventType();
-            }
+        if(!ignoreBreakpoints()) {
+            // Stop on debugger breakpoints
+            if(type == DBEvent.LOCATION && breakpoints.isBreakpointAtLine(((DBEventLocation)event).line-1, event.getGrammarName()))
+                return type;
 
-        // Stop on input text breakpoint
-        if(event.getEventType() == DBEvent.CONSUME_TOKEN && !ignoreBreakpoints())
-            if(debuggerTab.isBreakpointAtToken(((DBEventConsumeToken)event).token))
-                return event.getEventType();
+            // Stop on input text breakpoint
+            if(type == DBEvent.CONSUME_TOKEN && breakpoints.isBreakpointAtToken(((DBEventConsumeToken)event).token))
+                return type;
+        }
 
-        if(event.getEventType() == DBEvent.CONSUME_TOKEN && breakEvents.contains(DBEvent.convertToInteger(DBEvent.CONSUME_TOKEN))) {
+        if(type == DBEvent.CONSUME_TOKEN && DBBreakpoints.contains(breakEvents, DBEvent.CONSUME_TOKEN)) {
             // Breaks only on consume token from channel 0
-            return ((DBEventConsumeToken)event).token.getChannel() == Token.DEFAULT_CHANNEL?event.getEventType() :DBEvent.NO_EVENT;
+            return ((DBEventConsumeToken)event).token.getChannel() == Token.DEFAULT_CHANNEL?type :DBEvent.NO_EVENT;
         } else
-            return breakEvents.contains(DBEvent.convertToInteger(event.getEventType()))?event.getEventType() :DBEvent.NO_EVENT;
+            return DBBreakpoints.contains(breakEvents, type)?type :DBEvent.NO_EVENT;
     }
 
     public synchronized void setStatus(int status) {
@@ -303,7 +423,7 @@ public class DBRecorder implements Runnable, XJDialogProgressDelegate {
             return e.getEventType() == DBEvent.TERMINATE;
     }
 
-    public void stepBackward(Set breakEvents) {
+    public void stepBackward(long breakEvents) {
         setIgnoreBreakpoints(false);
         stepContinue(breakEvents);
         stepMove(-1);
@@ -312,7 +432,7 @@ public class DBRecorder implements Runnable, XJDialogProgressDelegate {
         playEvents(true);
     }
 
-    public synchronized void stepForward(Set breakEvents) {
+    public synchronized void stepForward(long breakEvents) {
         setIgnoreBreakpoints(false);
         stepContinue(breakEvents);
         if(stepMove(1)) {
@@ -334,7 +454,7 @@ public class DBRecorder implements Runnable, XJDialogProgressDelegate {
         fastForward();
     }
 
-    public void stepContinue(Set breakEvents) {
+    public void stepContinue(long breakEvents) {
         setBreakEvents(breakEvents);
         queryGrammarBreakpoints();
         setStatus(STATUS_RUNNING);
@@ -374,7 +494,7 @@ public class DBRecorder implements Runnable, XJDialogProgressDelegate {
 
     public void goToEnd() {
         setIgnoreBreakpoints(true);
-        stepContinue(new NumberSet(DBEvent.TERMINATE));
+        stepContinue(DBBreakpoints.mask(DBEvent.TERMINATE));
         if(stepMove(1))
             playEvents(false);
         else
@@ -382,7 +502,7 @@ public class DBRecorder implements Runnable, XJDialogProgressDelegate {
     }
 
     public void fastForward() {
-        stepForward(new NumberSet(DBEvent.TERMINATE));
+        stepForward(DBBreakpoints.mask(DBEvent.TERMINATE));
     }
 
     public void connect(String address, int port) {
@@ -443,6 +563,10 @@ public class DBRecorder implements Runnable, XJDialogProgressDelegate {
             debuggerReceivedTerminateEvent = false;
 
             reset();
+            synchronized(recordingLock) {
+                recordingFailed = false;
+            }
+            startRing();
             listener.start();
 
             connectionSuccess();
@@ -511,7 +635,7 @@ public class DBRecorder implements Runnable, XJDialogProgressDelegate {
      to be paused
      */
     public boolean checkRemoteParserState() {
-        if(remoteParserStateWarned)
+        if(remoteParserStateWarned || listener == null)
             return false;
 
         if(listener.tokenIndexesAreInvalid()) {
@@ -564,12 +688,100 @@ public class DBRecorder implements Runnable, XJDialogProgressDelegate {
         }
     }
 
+    protected synchronized void startRing() {
+        final DBEventRing ring = new DBEventRing();
+        this.ring = ring;
+
+        Thread thread = new Thread(new Runnable() {
+            public void run() {
+                DBEvent[] batch = new DBEvent[BATCH_SIZE];
+                int count;
+                while((count = ring.take(batch)) >= 0) {
+                    try {
+                        recordToFile(ring, batch, count);
+                        recordEvents(ring, batch, count);
+                    } catch (RuntimeException e) {
+                        /* Keep taking the events: the remote parser would wait forever otherwise */
+                        DebuggerTab tab = debuggerTab;
+                        if(tab != null)
+                            tab.getConsole().println(e);
+                    }
+                }
+            }
+        }, "Debugger Recorder");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    protected synchronized void closeRing() {
+        if(ring != null) {
+            ring.close();
+            ring = null;
+        }
+    }
+
     /** This method is called by DBRecorderEventListener for each event received from
-     * the remote parser. It is running on another thread than the event thread.
+     * the remote parser. It is running on the thread reading the socket: the event
+     * is queued and recorded by the recorder thread. If the event can make the recorder
+     * break, this thread waits until the event has been recorded and the break resumed
+     * so the remote parser doesn't run past the break.
+     */
+    public void listenerEvent(DBEvent event) {
+        DBEventRing ring = this.ring;
+        if(ring != null && ring.put(event) && canBreakOnEvent(event))
+            ring.awaitProcessed();
+    }
+
+    /** Returns true if the event can make the recorder break. This is checked before the
+     * event is recorded, on the thread reading the socket, so it returns true whenever
+     * getOnBreakEvent() might return a break event.
+     */
+    protected boolean canBreakOnEvent(DBEvent event) {
+        if(status != STATUS_RUNNING)
+            return true;
+
+        int type = event.getEventType();
+        if(type == DBEvent.COMMENCE || type == DBEvent.TERMINATE)
+            return true;
+
+        if(stepOver.isSteppingOver() && type == DBEvent.LOCATION)
+            return true;
+
+        long breakEvents = this.breakEvents;
+        if(DBBreakpoints.contains(breakEvents, DBEvent.ALL) || DBBreakpoints.contains(breakEvents, type))
+            return true;
+
+        if(!ignoreBreakpoints && !breakpoints.isEmpty() && (type == DBEvent.LOCATION || type == DBEvent.CONSUME_TOKEN))
+            return true;
+
+        return !remoteParserStateWarned && listener != null && listener.tokenIndexesAreInvalid();
+    }
+
+    /** Records a batch of events taken from the queue. The lock of the recorder is
+     * released only when the recorder waits on a break.
      */
-    public synchronized void listenerEvent(DBEvent event) {
-        events.add(event);
-        handleGrammarName(event);
+    protected synchronized void recordEvents(DBEventRing ring, DBEvent[] batch, int count) {
+        for(int i=0; i<count; i++) {
+            DBEvent event = batch[i];
+            batch[i] = null;
+            /* The session has been reset while waiting on a break */
+            if(ring != this.ring)
+                continue;
+
+            try {
+                recordEvent(event);
+            } catch (RuntimeException e) {
+                /* Keep recording the events: the remote parser might wait for this one */
+                DebuggerTab tab = debuggerTab;
+                if(tab != null)
+                    tab.getConsole().println(e);
+            }
+            ring.eventProcessed();
+        }
+    }
+
+    protected void recordEvent(DBEvent event) {
+        store.add(event);
         recordIndexes(event);
         setPositionToEnd();
 
@@ -633,11 +845,18 @@ public class DBRecorder implements Runnable, XJDialogProgressDelegate {
     }
 
     protected synchronized void playEvents(boolean reset) {
-        /** Make sure this method is called on the event dispatch thread */
-        if(!SwingUtilities.isEventDispatchThread())
-            SwingUtilities.invokeLater(new PlayEventRunnable(reset));
-        else
-            debuggerTab.playEvents(events, getCurrentEventPosition(), reset);
+        /** Make sure this method is called on the event dispatch thread. The requests
+         * made before the event thread plays the events are merged.
+         */
+        if(!SwingUtilities.isEventDispatchThread()) {
+            if(pendingPlay != null) {
+                pendingPlay.reset |= reset;
+            } else {
+                pendingPlay = new PlayEventRunnable(reset);
+                SwingUtilities.invokeLater(pendingPlay);
+            }
+        } else
+            debuggerTab.playEvents(events.asList(), getCurrentEventPosition(), reset);
     }
 
     public void dialogDidCancel() {
@@ -651,7 +870,7 @@ public class DBRecorder implements Runnable, XJDialogProgressDelegate {
         public static final int MODE_WAIT_EXIT_RULE = 2;
         public static final int MODE_WAIT_LOCATION = 3;
 
-        public int mode = MODE_DISABLED;
+        public volatile int mode = MODE_DISABLED;
 
         /** Count the number of nested stepped over rule name */
         public int nested;
@@ -716,6 +935,12 @@ public class DBRecorder implements Runnable, XJDialogProgressDelegate {
         }
 
         public void run() {
+            boolean reset;
+            synchronized(DBRecorder.this) {
+                if(pendingPlay == this)
+                    pendingPlay = null;
+                reset = this.reset;
+            }
             playEvents(reset);
         }
     }
@@ -0,0 +1,465 @@
+/*
+
+[The "BSD licence"]
+Copyright (c) 2005 Jean Bovet
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions
+are met:
+
+1. Redistributions of source code must retain the above copyright
+notice, this list of conditions and the following disclaimer.
+2. Redistributions in binary form must reproduce the above copyright
+notice, this list of conditions and the following disclaimer in the
+documentation and/or other materials provided with the distribution.
+3. The name of the author may not be used to endorse or promote products
+derived from this software without specific prior written permission.
+
+THIS SOFTWARE IS PROVIDED BY THE AUTHOR ``AS IS'' AND ANY EXPRESS OR
+IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES
+OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED.
+IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY DIRECT, INDIRECT,
+INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT
+NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+(INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF
+THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+
+*/
+
+package org.antlr.works.debugger.tivo;
+
+import org.antlr.runtime.RecognitionException;
+import org.antlr.runtime.Token;
+import org.antlr.runtime.debug.RemoteDebugEventSocketListener;
+import org.antlr.works.debugger.events.*;
+import org.antlr.works.debugger.tree.DBTreeToken;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+
+/** Binary format of the debugger recording files.
+ *
+ * A recording starts with a header (magic number, format version and name of the
+ * grammar file) followed by the events, one record per event. The integers are
+ * variable-length encoded and the grammar and rule names are defined once by a
+ * name record before the first event using them. The tokens are stored in each
+ * event so any block of events can be decoded on its own.
+ *
+ * When the recording is complete, an index follows the events: the offset of every
+ * INDEX_INTERVAL-th event and the names table. The file ends with the position of
+ * the index and a trailer magic number. A recording without index (the debugger
+ * was interrupted) can still be opened: the events are scanned to rebuild it.
+ */
+public class DBRecording {
+
+    public static final String EXTENSION = "awrec";
+
+    public static final int MAGIC = 0x41574452;
+    public static final int INDEX_MAGIC = 0x41574958;
+    public static final int TRAILER_MAGIC = 0x4157454e;
+    public static final int VERSION = 1;
+
+    /** Number of events between two entries of the offset index */
+    public static final int INDEX_INTERVAL = 4096;
+
+    /** Size of the trailer: position of the index and trailer magic number */
+    public static final int TRAILER_SIZE = 12;
+
+    /** Record defining the next name id. The event types are all lower */
+    protected static final int RECORD_NAME = 0x7f;
+
+    protected static final int TOKEN_NONE = 0;
+    protected static final int TOKEN_PROXY = 1;
+    protected static final int TOKEN_TREE = 2;
+
+    public static void writeHeader(DataOutput out, String grammarFileName) throws IOException {
+        out.writeInt(MAGIC);
+        out.writeInt(VERSION);
+        writeString(out, grammarFileName);
+    }
+
+    /** Reads the header and returns the name of the grammar file */
+    public static String readHeader(DataInput in) throws IOException {
+        if(in.readInt() != MAGIC)
+            throw new IOException("Not a debugger recording");
+
+        int version = in.readInt();
+        if(version != VERSION)
+            throw new IOException("Unsupported debugger recording version "+version);
+
+        return readString(in);
+    }
+
+    /** Writes the event. The names not yet in the map are defined before the event
+     * and added to the map.
+     */
+    public static void writeEvent(DataOutput out, DBEvent event, Map<String, Integer> names) throws IOException {
+        int type = event.getEventType();
+        switch(type) {
+            case DBEvent.ENTER_RULE: {
+                DBEventEnterRule e = (DBEventEnterRule)event;
+                defineName(out, e.grammarFileName, names);
+                defineName(out, e.name, names);
+                break;
+            }
+            case DBEvent.EXIT_RULE: {
+                DBEventExitRule e = (DBEventExitRule)event;
+                defineName(out, e.grammarFileName, names);
+                defineName(out, e.name, names);
+                break;
+            }
+        }
+        defineName(out, event.getGrammarName(), names);
+
+        out.writeByte(type);
+        writeInt(out, getNameId(event.getGrammarName(), names));
+
+        switch(type) {
+            case DBEvent.LOCATION: {
+                DBEventLocation e = (DBEventLocation)event;
+                writeInt(out, e.line);
+                writeInt(out, e.pos);
+                break;
+            }
+            case DBEvent.CONSUME_TOKEN:
+                writeToken(out, ((DBEventConsumeToken)event).token);
+                break;
+            case DBEvent.CONSUME_HIDDEN_TOKEN:
+                writeToken(out, ((DBEventConsumeHiddenToken)event).token);
+                break;
+            case DBEvent.LT: {
+                DBEventLT e = (DBEventLT)event;
+                writeInt(out, e.index);
+                writeToken(out, e.token);
+                break;
+            }
+            case DBEvent.ENTER_RULE: {
+                DBEventEnterRule e = (DBEventEnterRule)event;
+                writeInt(out, getNameId(e.grammarFileName, names));
+                writeInt(out, getNameId(e.name, names));
+                break;
+            }
+            case DBEvent.EXIT_RULE: {
+                DBEventExitRule e = (DBEventExitRule)event;
+                writeInt(out, getNameId(e.grammarFileName, names));
+                writeInt(out, getNameId(e.name, names));
+                break;
+            }
+            case DBEvent.ENTER_SUBRULE:
+                writeInt(out, ((DBEventEnterSubRule)event).decision);
+                break;
+            case DBEvent.EXIT_SUBRULE:
+                writeInt(out, ((DBEventExitSubRule)event).decision);
+                break;
+            case DBEvent.ENTER_DECISION:
+                writeInt(out, ((DBEventEnterDecision)event).decision);
+                break;
+            case DBEvent.EXIT_DECISION:
+                writeInt(out, ((DBEventExitDecision)event).decision);
+                break;
+            case DBEvent.ENTER_ALT:
+                writeInt(out, ((DBEventEnterAlt)event).alt);
+                break;
+            case DBEvent.MARK:
+                writeInt(out, ((DBEventMark)event).id);
+                break;
+            case DBEvent.REWIND:
+                writeInt(out, ((DBEventRewind)event).id);
+                break;
+            case DBEvent.BEGIN_BACKTRACK:
+                writeInt(out, ((DBEventBeginBacktrack)event).level);
+                break;
+            case DBEvent.END_BACKTRACK: {
+                DBEventEndBacktrack e = (DBEventEndBacktrack)event;
+                writeInt(out, e.level);
+                out.writeBoolean(e.successful);
+                break;
+            }
+            case DBEvent.RECOGNITION_EXCEPTION: {
+                RecognitionException e = ((DBEventRecognitionException)event).e;
+                writeString(out, e.getClass().getName());
+                writeInt(out, e.index);
+                writeInt(out, e.line);
+                writeInt(out, e.charPositionInLine);
+                writeToken(out, e.token);
+                break;
+            }
+            case DBEvent.NIL_NODE:
+                writeInt(out, ((DBEventNilNode)event).id);
+                break;
+            case DBEvent.ERROR_NODE: {
+                DBEventErrorNode e = (DBEventErrorNode)event;
+                writeInt(out, e.id);
+                writeInt(out, e.type);
+                writeString(out, e.text);
+                break;
+            }
+            case DBEvent.CREATE_NODE: {
+                DBEventCreateNode e = (DBEventCreateNode)event;
+                writeInt(out, e.id);
+                writeInt(out, e.tokenIndex);
+                if(e.tokenIndex == -1) {
+                    writeInt(out, e.type);
+                    writeString(out, e.text);
+                }
+                break;
+            }
+            case DBEvent.BECOME_ROOT: {
+                DBEventBecomeRoot e = (DBEventBecomeRoot)event;
+                writeInt(out, e.newRootID);
+                writeInt(out, e.oldRootID);
+                break;
+            }
+            case DBEvent.ADD_CHILD: {
+                DBEventAddChild e = (DBEventAddChild)event;
+                writeInt(out, e.rootID);
+                writeInt(out, e.childID);
+                break;
+            }
+            case DBEvent.SET_TOKEN_BOUNDARIES: {
+                DBEventSetTokenBoundaries e = (DBEventSetTokenBoundaries)event;
+                writeInt(out, e.id);
+                writeInt(out, e.startIndex);
+                writeInt(out, e.stopIndex);
+                break;
+            }
+        }
+    }
+
+    /** Reads the next event. The name records preceding it are added to the names
+     * if defineNames is true, otherwise the names must already be known.
+     */
+    public static DBEvent readEvent(DataInput in, List<String> names, boolean defineNames) throws IOException {
+        int type;
+        while((type = in.readUnsignedByte()) == RECORD_NAME) {
+            String name = readString(in);
+            if(defineNames)
+                names.add(name);
+        }
+
+        String grammarName = getName(readInt(in), names);
+
+        DBEvent event;
+        switch(type) {
+            case DBEvent.LOCATION: {
+                int line = readInt(in);
+                event = DBEventFactory.createLocation(line, readInt(in));
+                break;
+            }
+            case DBEvent.CONSUME_TOKEN:
+                event = DBEventFactory.createConsumeToken(readToken(in));
+                break;
+            case DBEvent.CONSUME_HIDDEN_TOKEN:
+                event = DBEventFactory.createConsumeHiddenToken(readToken(in));
+                break;
+            case DBEvent.LT: {
+                int index = readInt(in);
+                event = DBEventFactory.createLT(index, readToken(in));
+                break;
+            }
+            case DBEvent.ENTER_RULE: {
+                String grammarFileName = getName(readInt(in), names);
+                event = DBEventFactory.createEnterRule(grammarFileName, getName(readInt(in), names));
+                break;
+            }
+            case DBEvent.EXIT_RULE: {
+                String grammarFileName = getName(readInt(in), names);
+                event = DBEventFactory.createExitRule(grammarFileName, getName(readInt(in), names));
+                break;
+            }
+            case DBEvent.ENTER_SUBRULE:
+                event = DBEventFactory.createEnterSubRule(readInt(in));
+                break;
+            case DBEvent.EXIT_SUBRULE:
+                event = DBEventFactory.createExitSubRule(readInt(in));
+                break;
+            case DBEvent.ENTER_DECISION:
+                event = DBEventFactory.createEnterDecision(readInt(in));
+                break;
+            case DBEvent.EXIT_DECISION:
+                event = DBEventFactory.createExitDecision(readInt(in));
+                break;
+            case DBEvent.ENTER_ALT:
+                event = DBEventFactory.createEnterAlt(readInt(in));
+                break;
+            case DBEvent.MARK:
+                event = DBEventFactory.createMark(readInt(in));
+                break;
+            case DBEvent.REWIND:
+                event = DBEventFactory.createRewind(readInt(in));
+                break;
+            case DBEvent.BEGIN_BACKTRACK:
+                event = DBEventFactory.createBeginBacktrack(readInt(in));
+                break;
+            case DBEvent.END_BACKTRACK: {
+                int level = readInt(in);
+                event = DBEventFactory.createEndBacktrack(level, in.readBoolean());
+                break;
+            }
+            case DBEvent.RECOGNITION_EXCEPTION: {
+                RecognitionException e = createException(readString(in));
+                e.index = readInt(in);
+                e.line = readInt(in);
+                e.charPositionInLine = readInt(in);
+                e.token = readToken(in);
+                event = DBEventFactory.createRecognitionException(e);
+                break;
+            }
+            case DBEvent.NIL_NODE:
+                event = DBEventFactory.createNilNode(readInt(in));
+                break;
+            case DBEvent.ERROR_NODE: {
+                int id = readInt(in);
+                int nodeType = readInt(in);
+                event = DBEventFactory.createErrorNode(id, readString(in), nodeType);
+                break;
+            }
+            case DBEvent.CREATE_NODE: {
+                int id = readInt(in);
+                int tokenIndex = readInt(in);
+                if(tokenIndex == -1) {
+                    int nodeType = readInt(in);
+                    event = DBEventFactory.createCreateNode(id, readString(in), nodeType);
+                } else {
+                    event = DBEventFactory.createCreateNode(id, tokenIndex);
+                }
+                break;
+            }
+            case DBEvent.BECOME_ROOT: {
+                int newRootID = readInt(in);
+                event = DBEventFactory.createBecomeRoot(newRootID, readInt(in));
+                break;
+            }
+            case DBEvent.ADD_CHILD: {
+                int rootID = readInt(in);
+                event = DBEventFactory.createAddChild(rootID, readInt(in));
+                break;
+            }
+            case DBEvent.SET_TOKEN_BOUNDARIES: {
+                int id = readInt(in);
+                int startIndex = readInt(in);
+                event = DBEventFactory.createSetTokenBoundaries(id, startIndex, readInt(in));
+                break;
+            }
+            default:
+                event = new DBEvent(type);
+                break;
+        }
+        event.setGrammarName(grammarName);
+        return event;
+    }
+
+    protected static void defineName(DataOutput out, String name, Map<String, Integer> names) throws IOException {
+        if(name == null || names.containsKey(name))
+            return;
+
+        out.writeByte(RECORD_NAME);
+        writeString(out, name);
+        names.put(name, names.size());
+    }
+
+    protected static int getNameId(String name, Map<String, Integer> names) {
+        return name == null ? 0 : names.get(name)+1;
+    }
+
+    protected static String getName(int id, List<String> names) throws IOException {
+        if(id == 0)
+            return null;
+        if(id > names.size())
+            throw new IOException("Undefined name "+id);
+        return names.get(id-1);
+    }
+
+    protected static void writeToken(DataOutput out, Token t) throws IOException {
+        if(t == null) {
+            out.writeByte(TOKEN_NONE);
+        } else if(t instanceof DBTreeToken) {
+            out.writeByte(TOKEN_TREE);
+            writeInt(out, ((DBTreeToken)t).ID);
+        } else {
+            out.writeByte(TOKEN_PROXY);
+            writeInt(out, t.getChannel());
+        }
+        if(t == null)
+            return;
+
+        writeInt(out, t.getTokenIndex());
+        writeInt(out, t.getType());
+        writeInt(out, t.getLine());
+        writeInt(out, t.getCharPositionInLine());
+        writeString(out, t.getText());
+    }
+
+    protected static Token readToken(DataInput in) throws IOException {
+        int kind = in.readUnsignedByte();
+        if(kind == TOKEN_NONE)
+            return null;
+
+        int idOrChannel = readInt(in);
+        int index = readInt(in);
+        int type = readInt(in);
+        int line = readInt(in);
+        int pos = readInt(in);
+        String text = readString(in);
+        if(kind == TOKEN_TREE)
+            return new DBTreeToken(new RemoteDebugEventSocketListener.ProxyTree(idOrChannel, type, line, pos, index, text));
+        else
+            return new RemoteDebugEventSocketListener.ProxyToken(index, type, idOrChannel, line, pos, text);
+    }
+
+    /** Creates the exception the same way the remote listener does */
+    protected static RecognitionException createException(String className) {
+        try {
+            return (RecognitionException)Class.forName(className).getDeclaredConstructor().newInstance();
+        } catch (Exception e) {
+            return new RecognitionException();
+        }
+    }
+
+    /** Writes a variable-length zig-zag encoded integer */
+    public static void writeInt(DataOutput out, int value) throws IOException {
+        int v = (value << 1) ^ (value >> 31);
+        while((v & ~0x7f) != 0) {
+            out.writeByte((v & 0x7f) | 0x80);
+            v >>>= 7;
+        }
+        out.writeByte(v);
+    }
+
+    public static int readInt(DataInput in) throws IOException {
+        int v = 0;
+        for(int shift = 0; shift < 35; shift += 7) {
+            int b = in.readUnsignedByte();
+            v |= (b & 0x7f) << shift;
+            if((b & 0x80) == 0)
+                return (v >>> 1) ^ -(v & 1);
+        }
+        throw new IOException("Malformed integer");
+    }
+
+    public static void writeString(DataOutput out, String s) throws IOException {
+        if(s == null) {
+            writeInt(out, 0);
+        } else {
+            byte[] bytes = s.getBytes("UTF-8");
+            writeInt(out, bytes.length+1);
+            out.write(bytes);
+        }
+    }
+
+    public static String readString(DataInput in) throws IOException {
+        int length = readInt(in)-1;
+        if(length < 0)
+            return null;
+
+        byte[] bytes = new byte[length];
+        in.readFully(bytes);
+        return new String(bytes, "UTF-8");
+    }
+}
@@ -0,0 +1,259 @@
+/*
+
+[The "BSD licence"]
+Copyright (c) 2005 Jean Bovet
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions
+are met:
+
+1. Redistributions of source code must retain the above copyright
+notice, this list of conditions and the following disclaimer.
+2. Redistributions in binary form must reproduce the above copyright
+notice, this list of conditions and the following disclaimer in the
+documentation and/or other materials provided with the distribution.
+3. The name of the author may not be used to endorse or promote products
+derived from this software without specific prior written permission.
+
+THIS SOFTWARE IS PROVIDED BY THE AUTHOR ``AS IS'' AND ANY EXPRESS OR
+IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES
+OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED.
+IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY DIRECT, INDIRECT,
+INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT
+NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+(INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF
+THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+
+*/
+
+package org.antlr.works.debugger.tivo;
+
+import org.antlr.works.debugger.events.DBEvent;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.*;
+
+/** Reads the events of a recording file lazily. Only the header and the index are read
+ * when the file is opened: the events are decoded by blocks of INDEX_INTERVAL events
+ * when they are requested and the last used blocks are kept in a cache.
+ */
+public class DBRecordingReader implements DBEventSource {
+
+    public static final int MAX_CACHED_BLOCKS = 8;
+
+    protected File file;
+    protected RandomAccessFile access;
+    protected FileChannel channel;
+
+    protected String grammarFileName;
+    protected int size;
+    protected int interval = DBRecording.INDEX_INTERVAL;
+    protected long[] offsets;
+    protected long dataEnd;
+    protected boolean indexed;
+
+    protected List<String> names = new ArrayList<String>();
+
+    protected Map<Integer, DBEvent[]> blocks = new LinkedHashMap<Integer, DBEvent[]>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Integer, DBEvent[]> eldest) {
+            return size() > MAX_CACHED_BLOCKS;
+        }
+    };
+
+    public DBRecordingReader(File file) throws IOException {
+        this.file = file;
+        access = new RandomAccessFile(file, "r");
+        channel = access.getChannel();
+        try {
+            DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file), 1024));
+            try {
+                grammarFileName = DBRecording.readHeader(in);
+            } finally {
+                in.close();
+            }
+            if(!readIndex())
+                scan();
+        } catch (IOException e) {
+            close();
+            throw e;
+        }
+    }
+
+    public File getFile() {
+        return file;
+    }
+
+    public String getGrammarFileName() {
+        return grammarFileName;
+    }
+
+    /** Returns false if the recording has no index (it was interrupted) */
+    public boolean isIndexed() {
+        return indexed;
+    }
+
+    public synchronized int size() {
+        return size;
+    }
+
+    public synchronized DBEvent get(int index) {
+        if(index < 0 || index >= size)
+            throw new IndexOutOfBoundsException("Event "+index+" of "+size);
+
+        try {
+            return getBlock(index / interval)[index % interval];
+        } catch (IOException e) {
+            throw new IllegalStateException("Cannot read event "+index+" from "+file, e);
+        }
+    }
+
+    public List<DBEvent> asList() {
+        return new AbstractList<DBEvent>() {
+            @Override
+            public DBEvent get(int index) {
+                return DBRecordingReader.this.get(index);
+            }
+
+            @Override
+            public int size() {
+                return DBRecordingReader.this.size();
+            }
+        };
+    }
+
+    public synchronized void close() {
+        blocks.clear();
+        try {
+            access.close();
+        } catch (IOException e) {
+            // nothing to do
+        }
+    }
+
+    protected DBEvent[] getBlock(int block) throws IOException {
+        DBEvent[] events = blocks.get(block);
+        if(events != null)
+            return events;
+
+        long end = block+1 < offsets.length ? offsets[block+1] : dataEnd;
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(read(offsets[block], end)));
+        events = new DBEvent[Math.min(interval, size-block*interval)];
+        for(int i=0; i<events.length; i++) {
+            events[i] = DBRecording.readEvent(in, names, false);
+        }
+        blocks.put(block, events);
+        return events;
+    }
+
+    protected byte[] read(long start, long end) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate((int)(end-start));
+        while(buffer.hasRemaining()) {
+            if(channel.read(buffer, start+buffer.position()) < 0)
+                throw new EOFException();
+        }
+        return buffer.array();
+    }
+
+    /** Reads the index written at the end of a complete recording */
+    protected boolean readIndex() throws IOException {
+        long length = channel.size();
+        if(length < DBRecording.TRAILER_SIZE)
+            return false;
+
+        ByteBuffer trailer = ByteBuffer.allocate(DBRecording.TRAILER_SIZE);
+        channel.read(trailer, length-DBRecording.TRAILER_SIZE);
+        trailer.flip();
+        long indexPosition = trailer.getLong();
+        if(trailer.getInt() != DBRecording.TRAILER_MAGIC || indexPosition <= 0 || indexPosition >= length)
+            return false;
+
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(read(indexPosition, length-DBRecording.TRAILER_SIZE)));
+        if(in.readInt() != DBRecording.INDEX_MAGIC)
+            return false;
+
+        size = in.readInt();
+        interval = in.readInt();
+        int count = in.readInt();
+        for(int i=0; i<count; i++) {
+            names.add(DBRecording.readString(in));
+        }
+        offsets = new long[in.readInt()];
+        for(int i=0; i<offsets.length; i++) {
+            offsets[i] = in.readLong();
+        }
+        dataEnd = indexPosition;
+        indexed = true;
+        return true;
+    }
+
+    /** Rebuilds the index of a recording that has not been completed. A truncated
+     * last event is ignored.
+     */
+    protected void scan() throws IOException {
+        CountingInputStream counter = new CountingInputStream(new BufferedInputStream(new FileInputStream(file), 64*1024));
+        DataInputStream in = new DataInputStream(counter);
+        List<Long> positions = new ArrayList<Long>();
+        List<String> scannedNames = new ArrayList<String>();
+        try {
+            DBRecording.readHeader(in);
+            while(true) {
+                long position = counter.count;
+                try {
+                    DBRecording.readEvent(in, scannedNames, true);
+                } catch (EOFException e) {
+                    break;
+                }
+                if(size % interval == 0)
+                    positions.add(position);
+                size++;
+                dataEnd = counter.count;
+            }
+        } finally {
+            in.close();
+        }
+
+        offsets = new long[positions.size()];
+        for(int i=0; i<offsets.length; i++) {
+            offsets[i] = positions.get(i);
+        }
+        names.addAll(scannedNames);
+    }
+
+    protected static class CountingInputStream extends FilterInputStream {
+
+        public long count;
+
+        public CountingInputStream(InputStream in) {
+            super(in);
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b = super.read();
+            if(b >= 0)
+                count++;
+            return b;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            int n = super.read(b, off, len);
+            if(n > 0)
+                count += n;
+            return n;
+        }
+
+        @Override
+        public long skip(long n) throws IOException {
+            long skipped = super.skip(n);
+            count += skipped;
+            return skipped;
+        }
+    }
+}
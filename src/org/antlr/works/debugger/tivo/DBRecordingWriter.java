@@ -0,0 +1,162 @@
+/*
+
+[The "BSD licence"]
+Copyright (c) 2005 Jean Bovet
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions
+are met:
+
+1. Redistributions of source code must retain the above copyright
+notice, this list of conditions and the following disclaimer.
+2. Redistributions in binary form must reproduce the above copyright
+notice, this list of conditions and the following disclaimer in the
+documentation and/or other materials provided with the distribution.
+3. The name of the author may not be used to endorse or promote products
+derived from this software without specific prior written permission.
+
+THIS SOFTWARE IS PROVIDED BY THE AUTHOR ``AS IS'' AND ANY EXPRESS OR
+IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES
+OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED.
+IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY DIRECT, INDIRECT,
+INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT
+NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+(INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF
+THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+
+*/
+
+package org.antlr.works.debugger.tivo;
+
+import org.antlr.works.debugger.events.DBEvent;
+
+import java.io.*;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/** Streams the events of a debugging session to a recording file as they are received.
+ * The recording is complete once the index has been written by close() or by saveTo(),
+ * which copies the events streamed so far to another file.
+ */
+public class DBRecordingWriter {
+
+    protected File file;
+    protected DataOutputStream out;
+    protected long position;
+    protected int size;
+
+    protected Map<String, Integer> names = new HashMap<String, Integer>();
+    protected List<Long> offsets = new ArrayList<Long>();
+
+    /** Each event is encoded here first to know its size */
+    protected ByteArrayOutputStream record = new ByteArrayOutputStream(256);
+    protected DataOutputStream recordOut = new DataOutputStream(record);
+
+    public DBRecordingWriter(File file, String grammarFileName) throws IOException {
+        this.file = file;
+        out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file), 64*1024));
+        DBRecording.writeHeader(recordOut, grammarFileName);
+        flushRecord();
+    }
+
+    public File getFile() {
+        return file;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public void write(DBEvent event) throws IOException {
+        if(size % DBRecording.INDEX_INTERVAL == 0)
+            offsets.add(position);
+
+        DBRecording.writeEvent(recordOut, event, names);
+        flushRecord();
+        size++;
+    }
+
+    /** Writes the index: the file is a complete recording after this call */
+    public void close() throws IOException {
+        if(out == null)
+            return;
+
+        writeIndex(out, position);
+        out.close();
+        out = null;
+    }
+
+    /** Closes the file without writing the index */
+    public void discard() {
+        if(out == null)
+            return;
+
+        try {
+            out.close();
+        } catch (IOException e) {
+            // the file is deleted anyway
+        }
+        out = null;
+        file.delete();
+    }
+
+    /** Saves the events written so far as a complete recording in the specified file.
+     * The writer can continue to record the following events.
+     */
+    public void saveTo(File destination) throws IOException {
+        out.flush();
+
+        FileInputStream in = new FileInputStream(file);
+        FileOutputStream os = new FileOutputStream(destination);
+        try {
+            FileChannel source = in.getChannel();
+            FileChannel target = os.getChannel();
+            long copied = 0;
+            while(copied < position) {
+                copied += source.transferTo(copied, position-copied, target);
+            }
+
+            DataOutputStream dos = new DataOutputStream(new BufferedOutputStream(os));
+            writeIndex(dos, position);
+            dos.flush();
+        } finally {
+            in.close();
+            os.close();
+        }
+    }
+
+    protected void flushRecord() throws IOException {
+        record.writeTo(out);
+        position += record.size();
+        record.reset();
+    }
+
+    protected void writeIndex(DataOutputStream dos, long indexPosition) throws IOException {
+        dos.writeInt(DBRecording.INDEX_MAGIC);
+        dos.writeInt(size);
+        dos.writeInt(DBRecording.INDEX_INTERVAL);
+
+        String[] table = new String[names.size()];
+        for(Map.Entry<String, Integer> entry : names.entrySet()) {
+            table[entry.getValue()] = entry.getKey();
+        }
+        dos.writeInt(table.length);
+        for(String name : table) {
+            DBRecording.writeString(dos, name);
+        }
+
+        dos.writeInt(offsets.size());
+        for(Long offset : offsets) {
+            dos.writeLong(offset);
+        }
+
+        dos.writeLong(indexPosition);
+        dos.writeInt(DBRecording.TRAILER_MAGIC);
+    }
+}
@@ -3,6 +3,7 @@ package org.antlr.works.debugger.tree;
 import org.antlr.runtime.CommonToken;
 import org.antlr.runtime.Token;
 import org.antlr.works.debugger.DebuggerTab;
+import org.antlr.works.utils.IntObjectMap;
 
 import java.util.*;
 /*
@@ -42,7 +43,17 @@ public class DBASTModel {
     public Stack<Rule> rules = new Stack<Rule>();
 
     /** Map of nodes */
-    public Map<Integer, ASTNode> nodesMap = new HashMap<Integer, ASTNode>();
+    public IntObjectMap<ASTNode> nodesMap = new IntObjectMap<ASTNode>();
+
+    /** Nodes created or changed since the last checkpoint. The set is shared with the nodes
+     * so it is cleared instead of being replaced. */
+    protected Set<ASTNode> changedNodes = new HashSet<ASTNode>();
+
+    /** Nodes mapped since the last checkpoint */
+    protected IntObjectMap<ASTNode> changedIds = new IntObjectMap<ASTNode>();
+
+    /** Last checkpoint created with the nodes of this model */
+    protected Checkpoint lastCheckpoint;
 
     public List<DBASTModelListener> listeners = new ArrayList<DBASTModelListener>();
 
@@ -69,6 +80,9 @@ public class DBASTModel {
     public void clear() {
         rules.clear();
         nodesMap.clear();
+        changedNodes.clear();
+        changedIds = new IntObjectMap<ASTNode>();
+        lastCheckpoint = null;
         fireDataChanged();
     }
 
@@ -165,6 +179,98 @@ public class DBASTModel {
         root.addChild(child);
     }
 
+    /** Returns a checkpoint of the rules and nodes of the model. The checkpoint only contains
+     * the state of the nodes changed since the previous checkpoint.
+     */
+    public Checkpoint createCheckpoint() {
+        Checkpoint c = new Checkpoint(lastCheckpoint, changedIds);
+        for(ASTNode node : changedNodes) {
+            c.states.put(node, node.createState());
+        }
+        for(Rule rule : rules) {
+            Stack<ASTNode> roots = new Stack<ASTNode>();
+            roots.addAll(rule.roots);
+            c.rules.push(new Rule(rule.name, roots));
+        }
+        changedNodes.clear();
+        changedIds = new IntObjectMap<ASTNode>();
+        lastCheckpoint = c;
+        return c;
+    }
+
+    /** Restores the state of a checkpoint. The nodes are shared with the model that created
+     * the checkpoint, maybe on another thread, so they are copied from their state in the
+     * checkpoint and all the nodes reachable from the map or from the roots are mapped.
+     */
+    public void restoreCheckpoint(Checkpoint checkpoint) {
+        Map<ASTNode, NodeState> states = new IdentityHashMap<ASTNode, NodeState>();
+        IntObjectMap<ASTNode> ids = new IntObjectMap<ASTNode>();
+        for(Checkpoint c = checkpoint; c != null; c = c.previous) {
+            // the most recent state of each node and identifier is the one of the checkpoint
+            for(Map.Entry<ASTNode, NodeState> entry : c.states.entrySet()) {
+                if(!states.containsKey(entry.getKey()))
+                    states.put(entry.getKey(), entry.getValue());
+            }
+            for(int slot=0; slot<c.ids.getCapacity(); slot++) {
+                ASTNode node = c.ids.valueAt(slot);
+                if(node != null && !ids.containsKey(c.ids.keyAt(slot)))
+                    ids.put(c.ids.keyAt(slot), node);
+            }
+        }
+
+        Map<ASTNode, ASTNode> copies = new IdentityHashMap<ASTNode, ASTNode>();
+        LinkedList<ASTNode> queue = new LinkedList<ASTNode>(ids.values());
+        for(Rule rule : checkpoint.rules) {
+            queue.addAll(rule.roots);
+        }
+        while(!queue.isEmpty()) {
+            ASTNode node = queue.removeFirst();
+            if(copies.containsKey(node))
+                continue;
+
+            copies.put(node, copyNode(node));
+            NodeState state = states.get(node);
+            queue.addAll(state.getChildren());
+            if(state.parentNode != null)
+                queue.add(state.parentNode);
+        }
+        for(Map.Entry<ASTNode, ASTNode> entry : copies.entrySet()) {
+            entry.getValue().copyLinks(states.get(entry.getKey()), copies);
+        }
+
+        rules = new Stack<Rule>();
+        for(Rule rule : checkpoint.rules) {
+            Stack<ASTNode> roots = new Stack<ASTNode>();
+            for(ASTNode root : rule.roots) {
+                roots.push(copies.get(root));
+            }
+            rules.push(new Rule(rule.name, roots));
+        }
+        nodesMap = new IntObjectMap<ASTNode>(ids.size());
+        for(int slot=0; slot<ids.getCapacity(); slot++) {
+            ASTNode node = ids.valueAt(slot);
+            if(node != null)
+                nodesMap.put(ids.keyAt(slot), copies.get(node));
+        }
+
+        // the copies are new nodes: the next checkpoint contains all of them
+        changedNodes.clear();
+        changedNodes.addAll(copies.values());
+        changedIds = new IntObjectMap<ASTNode>(nodesMap);
+        lastCheckpoint = null;
+    }
+
+    /** Takes the nodes of a model built on another thread (see DBModelBuilder). The model
+     * must not be used afterwards.
+     */
+    public void set(DBASTModel model) {
+        rules = model.rules;
+        nodesMap = model.nodesMap;
+        changedNodes = model.changedNodes;
+        changedIds = model.changedIds;
+        lastCheckpoint = model.lastCheckpoint;
+    }
+
     /* Utility methods */
 
 	protected ASTNode createNilTreeNode(int id) {
@@ -182,9 +288,21 @@ public class DBASTModel {
     protected ASTNode createTreeNode(int id) {
         ASTNode node = new ASTNode(id);
         nodesMap.put(id, node);
+        changedIds.put(id, node);
+        changedNodes.add(node);
         return node;
     }
 
+    /** Creates a copy of the node without its parent and children */
+    protected ASTNode copyNode(ASTNode node) {
+        ASTNode copy = new ASTNode(node.id);
+        copy.nil = node.nil;
+        copy.token = node.token;
+        copy.location = node.location;
+        copy.color = node.color;
+        return copy;
+    }
+
     protected ASTNode getTreeNode(int id) {
         return nodesMap.get(id);
     }
@@ -196,6 +314,52 @@ public class DBASTModel {
             return (rules.peek()).roots;
     }
 
+    /** The checkpoints of a model are chained: each one contains the nodes and identifiers
+     * changed since the previous one and the rules with their roots.
+     */
+    public class Checkpoint {
+
+        protected final Checkpoint previous;
+        protected final IntObjectMap<ASTNode> ids;
+        protected final Map<ASTNode, NodeState> states = new IdentityHashMap<ASTNode, NodeState>();
+        protected final Stack<Rule> rules = new Stack<Rule>();
+
+        public Checkpoint(Checkpoint previous, IntObjectMap<ASTNode> ids) {
+            this.previous = previous;
+            this.ids = ids;
+        }
+    }
+
+    /** Parent and children of a node when a checkpoint has been created. If children have only
+     * been added since the previous state of the node, only these children are stored.
+     */
+    protected static class NodeState {
+
+        public final ASTNode parentNode;
+        public final NodeState base;
+        public final ASTNode[] children;
+        public final int childCount;
+
+        public NodeState(ASTNode parentNode, NodeState base, ASTNode[] children) {
+            this.parentNode = parentNode;
+            this.base = base;
+            this.children = children;
+            this.childCount = (base == null ? 0 : base.childCount)+children.length;
+        }
+
+        public List<ASTNode> getChildren() {
+            LinkedList<NodeState> states = new LinkedList<NodeState>();
+            for(NodeState s = this; s != null; s = s.base) {
+                states.addFirst(s);
+            }
+            List<ASTNode> nodes = new ArrayList<ASTNode>(childCount);
+            for(NodeState s : states) {
+                nodes.addAll(Arrays.asList(s.children));
+            }
+            return nodes;
+        }
+    }
+
     public class Rule {
 
         public String name;
@@ -222,12 +386,42 @@ public class DBASTModel {
 
         public ASTNode parentNode = null;
 
+        /** State of the node in the last checkpoint */
+        protected NodeState state;
+        /** True if children have been removed or inserted since the last checkpoint */
+        protected boolean childrenReplaced;
+
         public ASTNode(int id) {
             this.id = id;
             /** Children is defined in DefaultMutableTreeNode */
             children = new Vector();
         }
 
+        /** Links the copy to the copies of the parent and children of the original node */
+        public void copyLinks(NodeState original, Map<ASTNode, ASTNode> copies) {
+            parentNode = original.parentNode == null ? null : copies.get(original.parentNode);
+            for(ASTNode child : original.getChildren()) {
+                children.add(copies.get(child));
+            }
+        }
+
+        /** Returns the state of the node for a checkpoint */
+        public NodeState createState() {
+            NodeState base = childrenReplaced ? null : state;
+            int first = base == null ? 0 : base.childCount;
+            ASTNode[] added = new ASTNode[children.size()-first];
+            for(int i=0; i<added.length; i++) {
+                added[i] = (ASTNode) children.get(first+i);
+            }
+            state = new NodeState(parentNode, base, added);
+            childrenReplaced = false;
+            return state;
+        }
+
+        protected void changed() {
+            changedNodes.add(this);
+        }
+
         /** Add a child */
         public void addChild(ASTNode node) {
             if(node.nil) {
@@ -235,17 +429,22 @@ public class DBASTModel {
                 for (int i = 0; i < node.children.size(); i++) {
                     ASTNode child = (ASTNode) node.children.get(i);
                     child.parentNode = this;
+                    child.changed();
                     children.add(child);
                 }
             } else {
                 node.parentNode = this;
+                node.changed();
                 children.add(node);
             }
+            changed();
         }
 
         /** Remove a child */
         public void removeChild(ASTNode node) {
             children.remove(node);
+            childrenReplaced = true;
+            changed();
         }
 
         /** Replace the current parent node with another one */
@@ -269,6 +468,8 @@ public class DBASTModel {
                 children.addAll(index, newNode.children);
             } else
                 children.add(index, newNode);
+            childrenReplaced = true;
+            changed();
         }
 
         /** Detach this node from its parent */
@@ -276,6 +477,7 @@ public class DBASTModel {
             if(parentNode != null) {
                 parentNode.removeChild(this);
                 parentNode = null;
+                changed();
             }
         }
 
@@ -12,10 +12,8 @@ import org.antlr.xjlib.foundation.notification.XJNotificationObserver;
 
 import javax.swing.tree.TreeNode;
 import java.awt.*;
-import java.util.ArrayList;
-import java.util.LinkedList;
+import java.util.*;
 import java.util.List;
-import java.util.Stack;
 /*
 
 [The "BSD licence"]
@@ -177,6 +175,53 @@ public class DBParseTreeModel extends AWTreeModel implements XJNotificationObser
         setLastNode(b.getLastNode());
     }
 
+    /** Returns a checkpoint of the tree. The tree only grows so the checkpoint shares its nodes
+     * and only remembers what can still change: the number of children of the rules on the stack
+     * and the color of the nodes of the pending backtracks.
+     */
+    public Checkpoint createCheckpoint() {
+        Checkpoint c = new Checkpoint();
+        for(ParseTreeNode rule : rules) {
+            c.rules.push(rule);
+            c.childCounts.put(rule, rule.getChildCount());
+        }
+        for(Backtrack b : backtrackStack) {
+            Backtrack copy = new Backtrack(b.level, b.lookaheadTokenColor);
+            for(DBTreeNode node : b.nodes) {
+                copy.nodes.add(node);
+                c.colors.put(node, node.getColor());
+            }
+            c.backtrackStack.push(copy);
+        }
+        c.lastNode = lastNode;
+        c.location = location;
+        return c;
+    }
+
+    /** Restores the state of a checkpoint. The nodes are shared with the tree that created
+     * the checkpoint, maybe on another thread, so the tree of the checkpoint is copied.
+     */
+    public void restoreCheckpoint(Checkpoint checkpoint) {
+        Checkpoint c = checkpoint.copy();
+
+        clearNewNodes();
+        rules = c.rules;
+        backtrackStack = c.backtrackStack;
+        lastNode = c.lastNode;
+        location = c.location;
+    }
+
+    /** Takes the tree of a model built on another thread (see DBModelBuilder). The model
+     * must not be used afterwards.
+     */
+    public void set(DBParseTreeModel model) {
+        clearNewNodes();
+        rules = model.rules;
+        backtrackStack = model.backtrackStack;
+        lastNode = model.lastNode;
+        location = model.location;
+    }
+
     public void notificationFire(Object source, String name) {
         if(name.equals(AWPrefsDialog.NOTIF_PREFS_APPLIED)) {
             initColors();
@@ -202,6 +247,14 @@ public class DBParseTreeModel extends AWTreeModel implements XJNotificationObser
             super(token, location);
         }
 
+        /** Creates a copy of the node without its children */
+        public ParseTreeNode(ParseTreeNode node) {
+            super(node.token, node.location);
+            this.s = node.s;
+            this.e = node.e;
+            this.color = node.color;
+        }
+
         public String toString() {
             if(s != null)
                 return s;
@@ -213,6 +266,67 @@ public class DBParseTreeModel extends AWTreeModel implements XJNotificationObser
 
     }
 
+    public static class Checkpoint {
+
+        protected Stack<ParseTreeNode> rules = new Stack<ParseTreeNode>();
+        protected Stack<Backtrack> backtrackStack = new Stack<Backtrack>();
+        protected TreeNode lastNode;
+        protected DBEventLocation location;
+
+        /** Number of children of the rules on the stack: only these rules get new children */
+        protected Map<TreeNode, Integer> childCounts = new IdentityHashMap<TreeNode, Integer>();
+
+        /** Color of the nodes of the pending backtracks: only these nodes change color */
+        protected Map<TreeNode, Color> colors = new IdentityHashMap<TreeNode, Color>();
+
+        /** Copies the tree as it was when the checkpoint has been created, breadth-first
+         * (the tree can be too deep for a recursive copy), and maps the references to its nodes.
+         */
+        protected Checkpoint copy() {
+            Map<TreeNode, ParseTreeNode> copies = new IdentityHashMap<TreeNode, ParseTreeNode>();
+            ParseTreeNode root = rules.firstElement();
+            copies.put(root, copyNode(root));
+
+            LinkedList<ParseTreeNode> queue = new LinkedList<ParseTreeNode>();
+            queue.add(root);
+            while(!queue.isEmpty()) {
+                ParseTreeNode node = queue.removeFirst();
+                ParseTreeNode copy = copies.get(node);
+                Integer count = childCounts.get(node);
+                for(int i=0; i<(count == null ? node.getChildCount() : count); i++) {
+                    ParseTreeNode child = (ParseTreeNode) node.getChildAt(i);
+                    ParseTreeNode childCopy = copyNode(child);
+                    copies.put(child, childCopy);
+                    copy.add(childCopy);
+                    queue.add(child);
+                }
+            }
+
+            Checkpoint c = new Checkpoint();
+            for(ParseTreeNode rule : rules) {
+                c.rules.push(copies.get(rule));
+            }
+            for(Backtrack b : backtrackStack) {
+                Backtrack copy = new Backtrack(b.level, b.lookaheadTokenColor);
+                for(DBTreeNode node : b.nodes) {
+                    copy.nodes.add(copies.get(node));
+                }
+                c.backtrackStack.push(copy);
+            }
+            c.lastNode = lastNode == null ? null : copies.get(lastNode);
+            c.location = location;
+            return c;
+        }
+
+        protected ParseTreeNode copyNode(ParseTreeNode node) {
+            ParseTreeNode copy = new ParseTreeNode(node);
+            Color color = colors.get(node);
+            if(color != null)
+                copy.setColor(color);
+            return copy;
+        }
+    }
+
     public static class Backtrack {
 
         public int level;
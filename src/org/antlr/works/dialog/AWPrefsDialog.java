@@ -1069,7 +1069,7 @@ public class AWPrefsDialog extends XJPanel {
         				tabCompiler.add(jikesRadio, cc.xywh(3, 7, 2, 1));
 
         				//---- integratedRadio ----
-        				integratedRadio.setText("com.sun.tools.javac");
+        				integratedRadio.setText("javax.tools (in-process)");
         				integratedRadio.setActionCommand("integrated");
         				tabCompiler.add(integratedRadio, cc.xywh(3, 11, 3, 1));
 
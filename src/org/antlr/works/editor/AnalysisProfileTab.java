@@ -0,0 +1,204 @@
+/*
+
+[The "BSD licence"]
+Copyright (c) 2005 Jean Bovet
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions
+are met:
+
+1. Redistributions of source code must retain the above copyright
+notice, this list of conditions and the following disclaimer.
+2. Redistributions in binary form must reproduce the above copyright
+notice, this list of conditions and the following disclaimer in the
+documentation and/or other materials provided with the distribution.
+3. The name of the author may not be used to endorse or promote products
+derived from this software without specific prior written permission.
+
+THIS SOFTWARE IS PROVIDED BY THE AUTHOR ``AS IS'' AND ANY EXPRESS OR
+IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES
+OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED.
+IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY DIRECT, INDIRECT,
+INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT
+NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+(INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF
+THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+
+*/
+
+package org.antlr.works.editor;
+
+import org.antlr.works.components.GrammarWindow;
+import org.antlr.works.grammar.antlr.AnalysisProfile;
+import org.antlr.works.grammar.antlr.DecisionProfile;
+import org.antlr.works.utils.Toolbar;
+import org.antlr.xjlib.appkit.swing.XJTable;
+import org.antlr.xjlib.appkit.swing.XJTableView;
+
+import javax.swing.*;
+import javax.swing.table.AbstractTableModel;
+import javax.swing.table.DefaultTableCellRenderer;
+import java.awt.*;
+import java.awt.event.MouseAdapter;
+import java.awt.event.MouseEvent;
+import java.util.ArrayList;
+import java.util.List;
+
+/** Displays the time spent by the last analysis of the grammar for each decision */
+public class AnalysisProfileTab extends GrammarWindowTab {
+
+    public static final int COLUMN_GRAMMAR = 0;
+    public static final int COLUMN_RULE = 1;
+    public static final int COLUMN_DECISION = 2;
+    public static final int COLUMN_LINE = 3;
+    public static final int COLUMN_TIME = 4;
+    public static final int COLUMN_STATES = 5;
+    public static final int COLUMN_LOOKAHEAD = 6;
+    public static final int COLUMN_BACKTRACKING = 7;
+    public static final int COLUMN_NOTE = 8;
+
+    protected JPanel panel;
+    protected JLabel phasesLabel;
+    protected XJTableView tableView;
+    protected ProfileTableModel model;
+
+    public AnalysisProfileTab(GrammarWindow window) {
+        super(window);
+
+        model = new ProfileTableModel();
+
+        tableView = new XJTableView();
+        final XJTable table = tableView.getTable();
+        table.setModel(model);
+        table.setAutoCreateRowSorter(true);
+        table.getColumnModel().getColumn(COLUMN_LOOKAHEAD).setCellRenderer(new DefaultTableCellRenderer() {
+            @Override
+            protected void setValue(Object value) {
+                Integer k = (Integer) value;
+                setText(k == null ? "" : (k == DecisionProfile.LOOKAHEAD_ARBITRARY ? "*" : k.toString()));
+            }
+        });
+        table.addMouseListener(new MouseAdapter() {
+            @Override
+            public void mouseClicked(MouseEvent e) {
+                int row = table.rowAtPoint(e.getPoint());
+                if(row >= 0) {
+                    goToDecision(model.getDecision(table.convertRowIndexToModel(row)));
+                }
+            }
+        });
+
+        phasesLabel = new JLabel();
+        Toolbar box = Toolbar.createHorizontalToolbar();
+        box.addElement(phasesLabel);
+        box.add(Box.createHorizontalGlue());
+
+        panel = new JPanel(new BorderLayout());
+        panel.add(tableView, BorderLayout.CENTER);
+        panel.add(box, BorderLayout.SOUTH);
+    }
+
+    public Container getContainer() {
+        return panel;
+    }
+
+    public void setProfile(AnalysisProfile profile) {
+        model.setProfile(profile);
+        phasesLabel.setText(profile == null ? "" : profile.getPhasesDescription());
+        tableView.autoresizeColumns();
+    }
+
+    private void goToDecision(DecisionProfile decision) {
+        int position = window.decisionDFAEngine.getDecisionTextPosition(decision.line, decision.column);
+        if(position >= 0) {
+            window.goToHistoryRememberCurrentPosition();
+            window.setCaretPosition(position);
+        }
+    }
+
+    public String getTabName() {
+        return "Analysis Profile";
+    }
+
+    public Component getTabComponent() {
+        return getContainer();
+    }
+
+    protected class ProfileTableModel extends AbstractTableModel {
+
+        static final long serialVersionUID = 1L;
+
+        protected List<DecisionProfile> decisions = new ArrayList<DecisionProfile>();
+
+        public void setProfile(AnalysisProfile profile) {
+            decisions.clear();
+            if(profile != null) {
+                decisions.addAll(profile.decisions);
+            }
+            fireTableDataChanged();
+        }
+
+        public DecisionProfile getDecision(int row) {
+            return decisions.get(row);
+        }
+
+        public int getRowCount() {
+            return decisions.size();
+        }
+
+        public int getColumnCount() {
+            return 9;
+        }
+
+        @Override
+        public String getColumnName(int column) {
+            switch(column) {
+                case COLUMN_GRAMMAR: return "Grammar";
+                case COLUMN_RULE: return "Rule";
+                case COLUMN_DECISION: return "Decision";
+                case COLUMN_LINE: return "Line";
+                case COLUMN_TIME: return "Time (ms)";
+                case COLUMN_STATES: return "States";
+                case COLUMN_LOOKAHEAD: return "Lookahead";
+                case COLUMN_BACKTRACKING: return "Backtracking";
+                case COLUMN_NOTE: return "Note";
+            }
+            return super.getColumnName(column);
+        }
+
+        @Override
+        public Class<?> getColumnClass(int column) {
+            switch(column) {
+                case COLUMN_DECISION:
+                case COLUMN_LINE:
+                case COLUMN_STATES:
+                case COLUMN_LOOKAHEAD:
+                    return Integer.class;
+                case COLUMN_TIME:
+                    return Double.class;
+                case COLUMN_BACKTRACKING:
+                    return Boolean.class;
+            }
+            return String.class;
+        }
+
+        public Object getValueAt(int row, int column) {
+            DecisionProfile d = decisions.get(row);
+            switch(column) {
+                case COLUMN_GRAMMAR: return d.grammarName;
+                case COLUMN_RULE: return d.ruleName;
+                case COLUMN_DECISION: return d.decision;
+                case COLUMN_LINE: return d.line;
+                case COLUMN_TIME: return d.getTimeInMS();
+                case COLUMN_STATES: return d.states;
+                case COLUMN_LOOKAHEAD: return d.maxLookahead;
+                case COLUMN_BACKTRACKING: return d.backtracking;
+                case COLUMN_NOTE: return d.getNote();
+            }
+            return null;
+        }
+    }
+}
@@ -55,6 +55,7 @@ public class EditorOverlayManager extends ATEOverlayManager {
         renderItems(g, window.editorInspector.getErrors());
         renderItems(g, window.editorInspector.getWarnings());
         renderItems(g, window.editorInspector.getDecisionDFAs());
+        renderItems(g, window.interpreterTab.getCoverageOverlayItems());
     }
 
     private void renderItems(Graphics g, List<EditorInspectorItem> items) {
@@ -32,7 +32,6 @@ THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
 package org.antlr.works.generate;
 
 import org.antlr.Tool;
-import org.antlr.tool.ErrorManager;
 import org.antlr.works.components.GrammarWindow;
 import org.antlr.works.prefs.AWPrefs;
 import org.antlr.works.utils.Console;
@@ -90,7 +89,7 @@ public class CodeGenerate implements Runnable {
 
     public boolean generate() {
         ErrorListener el = ErrorListener.getThreadInstance();
-        ErrorManager.setErrorListener(el);
+        el.install();
 
         String[] params;
         if(debug)
@@ -109,7 +108,7 @@ public class CodeGenerate implements Runnable {
         }
         lastError = el.getFirstErrorMessage();
         el.clear();
-        ErrorManager.removeErrorListener();
+        el.uninstall();
         return success;
     }
 
@@ -0,0 +1,227 @@
+/*
+
+[The "BSD licence"]
+Copyright (c) 2005 Jean Bovet
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions
+are met:
+
+1. Redistributions of source code must retain the above copyright
+notice, this list of conditions and the following disclaimer.
+2. Redistributions in binary form must reproduce the above copyright
+notice, this list of conditions and the following disclaimer in the
+documentation and/or other materials provided with the distribution.
+3. The name of the author may not be used to endorse or promote products
+derived from this software without specific prior written permission.
+
+THIS SOFTWARE IS PROVIDED BY THE AUTHOR ``AS IS'' AND ANY EXPRESS OR
+IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES
+OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED.
+IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY DIRECT, INDIRECT,
+INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT
+NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+(INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF
+THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+
+*/
+
+
+package org.antlr.works.grammar;
+
+import org.antlr.tool.Grammar;
+import org.antlr.works.ate.syntax.misc.ATEThread;
+import org.antlr.works.components.GrammarWindow;
+import org.antlr.works.grammar.antlr.GrammarAnalysisDelegate;
+import org.antlr.works.prefs.AWPrefs;
+
+import javax.swing.*;
+import java.util.concurrent.Semaphore;
+
+/** This class analyzes the grammar in the background each time the user pauses typing.
+ * A running analysis is cancelled as soon as the text changes and a new one is started
+ * after the syntax parser completed. The number of windows analyzing their grammar at
+ * the same time is limited and the analysis runs with a low priority so the editor
+ * stays responsive.
+ */
+public class ContinuousAnalysis extends ATEThread implements GrammarAnalysisDelegate {
+
+    private static Semaphore slots;
+    private static int slotCount;
+
+    private GrammarWindow window;
+
+    private volatile boolean analyzing;
+
+    /** An analysis has been requested and has not started yet. Guarded by this. */
+    private boolean pending;
+    /** The thread is between taking and completing a request, including while waiting for a slot. Guarded by this. */
+    private boolean requestInFlight;
+
+    private volatile int decision;
+    private volatile int numberOfDecisions;
+    private volatile boolean progressPending;
+
+    public ContinuousAnalysis(GrammarWindow window) {
+        this.window = window;
+        start();
+        thread.setPriority(Thread.MIN_PRIORITY);
+    }
+
+    public void close() {
+        cancelAnalysis();
+        stop();
+        window = null;
+    }
+
+    public boolean isEnabled() {
+        return AWPrefs.getContinuousAnalysis();
+    }
+
+    public void setEnabled(boolean flag) {
+        AWPrefs.setContinuousAnalysis(flag);
+        if(flag) {
+            requestAnalysis(0);
+        } else {
+            cancelAnalysis();
+        }
+    }
+
+    /** Called each time the text of the grammar changes */
+    public void grammarDidChange() {
+        cancelAnalysis();
+    }
+
+    /** Called each time the syntax parser completed: analyze the grammar if the user doesn't type anymore */
+    public void grammarDidParse() {
+        if(!isEnabled()) return;
+
+        requestAnalysis(getDelay());
+    }
+
+    /** Records the request so it cannot be lost: a request arriving while another one is in flight
+     * is taken by the thread once its current analysis is completed.
+     */
+    private synchronized void requestAnalysis(int delay) {
+        pending = true;
+        if(!requestInFlight) {
+            // Interrupt even if the thread is not asleep yet: the interrupt is then
+            // delivered by its next sleep instead of being dropped
+            threshold = delay;
+            thread.interrupt();
+        }
+    }
+
+    private synchronized boolean takeRequest() {
+        if(!pending) return false;
+        pending = false;
+        requestInFlight = true;
+        return true;
+    }
+
+    private synchronized void completeRequest() {
+        requestInFlight = false;
+        if(pending) {
+            // Another request arrived during this run: wake up the thread right
+            // after it, then wait for the next pause in typing
+            threshold = getDelay();
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    protected int getDelay() {
+        return AWPrefs.getContinuousAnalysisDelay();
+    }
+
+    protected int getMaxThreads() {
+        return AWPrefs.getContinuousAnalysisThreads();
+    }
+
+    private void cancelAnalysis() {
+        GrammarWindow w = window;
+        if(analyzing && w != null) {
+            w.getGrammarEngine().cancelAnalyze();
+        }
+    }
+
+    /** Returns the slots shared by all the windows. They are created again when the maximum
+     * number of threads changes: the analyses holding a slot of the previous ones release it there.
+     */
+    static synchronized Semaphore getSlots(int maxThreads) {
+        int count = Math.max(1, maxThreads);
+        if(slots == null || slotCount != count) {
+            slots = new Semaphore(count);
+            slotCount = count;
+        }
+        return slots;
+    }
+
+    @Override
+    protected void threadRun() throws Exception {
+        if(!takeRequest()) return;
+
+        try {
+            if(!isEnabled()) return;
+
+            Semaphore s = getSlots(getMaxThreads());
+            // Not interruptible: an interrupt only delays the next request and must not abort this one
+            s.acquireUninterruptibly();
+            try {
+                if(!isEnabled()) return;
+
+                analyzing = true;
+                try {
+                    analyze();
+                } finally {
+                    analyzing = false;
+                    analysisDidEnd();
+                }
+            } finally {
+                s.release();
+            }
+        } finally {
+            completeRequest();
+        }
+    }
+
+    protected void analyze() throws Exception {
+        GrammarWindow w = window;
+        if(w != null) {
+            w.getGrammarEngine().analyze(this);
+        }
+    }
+
+    public void analysisDidProcessDecision(Grammar g, int decision, int numberOfDecisions) {
+        this.decision = decision;
+        this.numberOfDecisions = numberOfDecisions;
+
+        // coalesce the progress so the event thread is not flooded when decisions are quick to analyze
+        if(progressPending) return;
+        progressPending = true;
+
+        SwingUtilities.invokeLater(new Runnable() {
+            public void run() {
+                progressPending = false;
+                GrammarWindow w = window;
+                if(w != null && analyzing) {
+                    w.setAnalysisProgress(ContinuousAnalysis.this.decision, ContinuousAnalysis.this.numberOfDecisions);
+                }
+            }
+        });
+    }
+
+    private void analysisDidEnd() {
+        SwingUtilities.invokeLater(new Runnable() {
+            public void run() {
+                GrammarWindow w = window;
+                if(w != null) {
+                    w.continuousAnalysisDidEnd();
+                }
+            }
+        });
+    }
+
+}
@@ -55,6 +55,9 @@ public interface ANTLRGrammarEngine {
     void computeRuleErrors(ElementRule rule);
 
     GrammarResult analyze() throws Exception;
+    GrammarResult analyze(GrammarAnalysisDelegate delegate) throws Exception;
     void cancel();
 
+    AnalysisProfile getAnalysisProfile();
+
 }
@@ -40,6 +40,7 @@ import org.antlr.works.ate.syntax.misc.ATEToken;
 import org.antlr.works.grammar.element.ElementGrammarName;
 import org.antlr.works.grammar.element.ElementRule;
 import org.antlr.works.grammar.engine.GrammarEngine;
+import org.antlr.works.prefs.AWPrefs;
 import org.antlr.works.utils.ErrorListener;
 
 import javax.swing.*;
@@ -51,18 +52,28 @@ import java.util.Set;
 
 public class ANTLRGrammarEngineImpl implements ANTLRGrammarEngine {
 
-    private Grammar parserGrammar;
-    private Grammar lexerGrammar;
+    private volatile AWGrammar parserGrammar;
+    private volatile AWGrammar lexerGrammar;
     private List<GrammarError> errors;
 
-    private boolean needsToCreateGrammar;
-    private boolean needsToAnalyzeGrammar;
+    private volatile boolean needsToCreateGrammar;
+    private volatile boolean needsToAnalyzeGrammar;
 
     private final GrammarResult createGrammarResult = new GrammarResult();
     private final GrammarResult analyzeResult = new GrammarResult();
 
+    /** Time spent to build the NFA of the grammars since the last analysis */
+    private long nfaConstructionTime;
+    private volatile AnalysisProfile analysisProfile;
+
     private GrammarEngine engine;
 
+    /**
+     * Serializes the creation and the analysis of the grammars requested by the background
+     * and foreground threads: the grammars are never re-created while they are analyzed.
+     */
+    private final Object analyzeLock = new Object();
+
     public ANTLRGrammarEngineImpl() {
         errors = new ArrayList<GrammarError>();
         markDirty();
@@ -94,22 +105,20 @@ public class ANTLRGrammarEngineImpl implements ANTLRGrammarEngine {
     }
 
     public NFAState getRuleStartState(String name) throws Exception {
-        Grammar g;
-        createGrammars();
-        if(ATEToken.isLexerName(name))
-            g = getLexerGrammar();
-        else
-            g = getParserGrammar();
-
-        return g == null ? null:g.getRuleStartState(name);
+        synchronized(analyzeLock) {
+            Grammar g = getGrammarForRule(name);
+            return g == null ? null:g.getRuleStartState(name);
+        }
     }
 
     public Grammar getGrammarForRule(String name) throws Exception {
-        createGrammars();
-        if(ATEToken.isLexerName(name))
-            return getLexerGrammar();
-        else
-            return getParserGrammar();
+        synchronized(analyzeLock) {
+            createGrammars();
+            if(ATEToken.isLexerName(name))
+                return getLexerGrammar();
+            else
+                return getParserGrammar();
+        }
     }
 
     public List<GrammarError> getErrors() {
@@ -143,6 +152,12 @@ public class ANTLRGrammarEngineImpl implements ANTLRGrammarEngine {
     }
 
     public void createGrammars() throws Exception {
+        synchronized(analyzeLock) {
+            createGrammarsLocked();
+        }
+    }
+
+    private void createGrammarsLocked() throws Exception {
         if(!needsToCreateGrammar) {
             if(createGrammarResult.isSuccess()) {
                 return;
@@ -151,8 +166,8 @@ public class ANTLRGrammarEngineImpl implements ANTLRGrammarEngine {
             }
         }
 
-        ErrorListener el = ErrorListener.getThreadInstance();
-        ErrorManager.setErrorListener(el);
+        ErrorListener el = ErrorListener.getJobInstance();
+        el.install();
 
         parserGrammar = null;
         lexerGrammar = null;
@@ -180,22 +195,25 @@ public class ANTLRGrammarEngineImpl implements ANTLRGrammarEngine {
             createGrammarResult.setErrors(el.errors);
             createGrammarResult.setWarnings(el.warnings);
 
-            el.clear();
-            ErrorManager.removeErrorListener();
+            el.uninstall();
         }
     }
 
-    private Grammar createNewGrammar() throws TokenStreamException, RecognitionException, IOException {
-        Grammar g = new Grammar();
+    private AWGrammar createNewGrammar() throws TokenStreamException, RecognitionException, IOException {
+        AWGrammar g = new AWGrammar();
+        g.setMaxDFAStatesPerDecision(AWPrefs.getAnalysisMaxDFAStates());
         g.setTool(engine.getANTLRTool());
         g.setFileName(engine.getGrammarFileName());
         g.setGrammarContent(engine.getGrammarText());
+        long t = System.nanoTime();
         g.composite.createNFAs();
+        nfaConstructionTime += System.nanoTime()-t;
 
         // don't want errors from a previous grammar to interfere with this new grammar.
         // must reset error state otherwise analysis will not proceed if
-        // there were previous errors.
-        ErrorManager.resetErrorState();
+        // there were previous errors. Only the state of this thread is reset so
+        // the analysis running in other threads is not affected.
+        ErrorListener.resetErrorState();
         return g;
     }
 
@@ -204,19 +222,22 @@ public class ANTLRGrammarEngineImpl implements ANTLRGrammarEngine {
         lexerGrammar = createLexerGrammarFromCombinedGrammar(parserGrammar);
     }
 
-    private Grammar createLexerGrammarFromCombinedGrammar(Grammar grammar) throws Exception {
+    private AWGrammar createLexerGrammarFromCombinedGrammar(Grammar grammar) throws Exception {
         String lexerGrammarStr = grammar.getLexerGrammar();
         if(lexerGrammarStr == null)
             return null;
 
-        Grammar lexerGrammar = new Grammar();
+        AWGrammar lexerGrammar = new AWGrammar();
         lexerGrammar.implicitLexer = true;
+        lexerGrammar.setMaxDFAStatesPerDecision(AWPrefs.getAnalysisMaxDFAStates());
         lexerGrammar.setTool(engine.getANTLRTool());
         lexerGrammar.setFileName("<internally-generated-lexer>");
         lexerGrammar.importTokenVocabulary(grammar);
 
         lexerGrammar.setGrammarContent(lexerGrammarStr);
+        long t = System.nanoTime();
         lexerGrammar.composite.createNFAs();
+        nfaConstructionTime += System.nanoTime()-t;
 
         return lexerGrammar;
     }
@@ -255,9 +276,29 @@ public class ANTLRGrammarEngineImpl implements ANTLRGrammarEngine {
     }
 
     public GrammarResult analyze() throws Exception {
+        return analyze(null);
+    }
+
+    /**
+     * Analyzes the grammar. If a delegate is specified, the analysis is considered to be running
+     * in the background: the delegate is notified after each decision and the engine is notified
+     * asynchronously of the completion so the calling thread never waits for the event thread.
+     */
+    public GrammarResult analyze(GrammarAnalysisDelegate delegate) throws Exception {
+        GrammarResult result;
+        synchronized(analyzeLock) {
+            result = analyzeLocked(delegate);
+        }
+        // notify the engine once the lock is released: the event thread may be waiting
+        // for the lock to create the grammars while this thread waits for the event thread.
+        notifyAnalyzeCompleted(delegate);
+        return result;
+    }
+
+    private GrammarResult analyzeLocked(GrammarAnalysisDelegate delegate) throws Exception {
         // if there is no need to analyze the grammar, return the previous result
         if(!needsToAnalyzeGrammar) {
-            GrammarResult r = analyzeCompleted(null);
+            GrammarResult r = analyzeCompleted(null, null);
             if(r.isSuccess()) {
                 return r;
             } else {
@@ -265,37 +306,56 @@ public class ANTLRGrammarEngineImpl implements ANTLRGrammarEngine {
             }
         }
 
-        // Set the error listener
-        ErrorListener el = ErrorListener.getThreadInstance();
-        ErrorManager.setErrorListener(el);
+        // Each analysis collects its messages in its own listener
+        ErrorListener el = ErrorListener.getJobInstance();
+        el.install();
+        try {
+            return analyze(el, new AnalysisProfile(), delegate);
+        } finally {
+            el.uninstall();
+        }
+    }
 
+    private GrammarResult analyze(ErrorListener el, AnalysisProfile profile, GrammarAnalysisDelegate delegate) throws Exception {
         createGrammars();
 
+        profile.addPhaseTime(AnalysisProfile.PHASE_NFA_CONSTRUCTION, nfaConstructionTime);
+        nfaConstructionTime = 0;
+
         Grammar g = getDefaultGrammar();
         if(g == null) {
-            return analyzeCompleted(el);
+            return analyzeCompleted(el, profile);
         }
 
+        long t = System.nanoTime();
         List rules = g.checkAllRulesForLeftRecursion();
+        profile.addPhaseTime(AnalysisProfile.PHASE_LEFT_RECURSION, System.nanoTime()-t);
         if(!rules.isEmpty()) {
-            printLeftRecursionToConsole(rules);
+            // don't flood the console each time the grammar is analyzed in the background
+            if(delegate == null) {
+                printLeftRecursionToConsole(rules);
+            }
             markLeftRecursiveRules(rules);
         }
 
         if(ErrorManager.doNotAttemptAnalysis()) {
-            return analyzeCompleted(el);
+            return analyzeCompleted(el, profile);
         }
 
         try {
             if ( g.nfa==null ) {
+                t = System.nanoTime();
                 g.composite.createNFAs();
+                profile.addPhaseTime(AnalysisProfile.PHASE_NFA_CONSTRUCTION, System.nanoTime()-t);
             }
-            g.createLookaheadDFAs();
+            ((AWGrammar)g).createLookaheadDFAs(delegate, profile);
             if(engine.isCombinedGrammar()) {
                 // If the grammar is combined, analyze also the lexer
                 if(lexerGrammar != null) {
+                    t = System.nanoTime();
                     lexerGrammar.composite.createNFAs();
-                    lexerGrammar.createLookaheadDFAs();
+                    profile.addPhaseTime(AnalysisProfile.PHASE_NFA_CONSTRUCTION, System.nanoTime()-t);
+                    lexerGrammar.createLookaheadDFAs(delegate, profile);
                 }
             }
 
@@ -305,24 +365,42 @@ public class ANTLRGrammarEngineImpl implements ANTLRGrammarEngine {
             // ignore
         }
 
-        return analyzeCompleted(el);
+        return analyzeCompleted(el, profile);
     }
 
-    private GrammarResult analyzeCompleted(ErrorListener el) throws InvocationTargetException, InterruptedException {
+    private void notifyAnalyzeCompleted(GrammarAnalysisDelegate delegate) throws InvocationTargetException, InterruptedException {
         if(SwingUtilities.isEventDispatchThread()) {
             engine.antlrGrammarEngineAnalyzeCompleted();
         } else {
-            SwingUtilities.invokeAndWait(new Runnable() {
+            Runnable r = new Runnable() {
                 public void run() {
                     engine.antlrGrammarEngineAnalyzeCompleted();
                 }
-            });
+            };
+            if(delegate == null) {
+                SwingUtilities.invokeAndWait(r);
+            } else {
+                SwingUtilities.invokeLater(r);
+            }
+        }
+    }
+
+    private GrammarResult analyzeCompleted(ErrorListener el, AnalysisProfile profile) {
+        if(profile != null) {
+            analysisProfile = profile;
         }
 
         if(el != null) {
             // no need to analyze the grammar
             needsToAnalyzeGrammar = false;
 
+            if(isAborted()) {
+                // the analysis was cancelled: the result is incomplete and the grammars
+                // cannot be analyzed anymore, so make sure they are created again next time.
+                needsToCreateGrammar = true;
+                needsToAnalyzeGrammar = true;
+            }
+
             // store the analyze result
             analyzeResult.clear();
             analyzeResult.setErrors(el.errors);
@@ -334,10 +412,6 @@ public class ANTLRGrammarEngineImpl implements ANTLRGrammarEngine {
                 // turn this flag on again (see AW-182).
                 needsToAnalyzeGrammar = true;
             }
-
-            // clear the error listener
-            el.clear();
-            ErrorManager.removeErrorListener();
         }
 
         return getCompleteResult();
@@ -356,10 +430,21 @@ public class ANTLRGrammarEngineImpl implements ANTLRGrammarEngine {
         return result;
     }
 
+    public AnalysisProfile getAnalysisProfile() {
+        return analysisProfile;
+    }
+
     public void cancel() {
         Grammar g = getDefaultGrammar();
         if(g != null)
             g.externallyAbortNFAToDFAConversion();
+        if(lexerGrammar != null && lexerGrammar != g)
+            lexerGrammar.externallyAbortNFAToDFAConversion();
+    }
+
+    private boolean isAborted() {
+        Grammar g = getDefaultGrammar();
+        return g != null && g.NFAToDFAConversionExternallyAborted();
     }
 
     private void buildNonDeterministicErrors(ErrorListener el) {
@@ -379,6 +464,8 @@ public class ANTLRGrammarEngineImpl implements ANTLRGrammarEngine {
             errors.add(buildNonDeterministicError((GrammarNonDeterminismMessage)o));
         else if(o instanceof NonRegularDecisionMessage)
             errors.add(buildNonRegularDecisionError((NonRegularDecisionMessage)o));
+        else if(o instanceof AnalysisBudgetMessage)
+            errors.add(buildAnalysisBudgetError((AnalysisBudgetMessage)o));
     }
 
     private GrammarError buildNonDeterministicError(GrammarNonDeterminismMessage message) {
@@ -415,6 +502,17 @@ public class ANTLRGrammarEngineImpl implements ANTLRGrammarEngine {
         return error;
     }
 
+    private GrammarError buildAnalysisBudgetError(AnalysisBudgetMessage message) {
+        GrammarError error = new GrammarError();
+
+        error.setLine(message.line-1);
+        error.setMessageText(message.getDescription());
+        error.setMessage(message);
+        error.addRule(message.decisionState.enclosingRule.name);
+
+        return error;
+    }
+
     private void markRulesWithWarningsOrErrors() throws Exception {
         for (ElementRule rule : engine.getRules()) {
             updateRuleWithErrors(rule, fetchErrorsForRule(rule));
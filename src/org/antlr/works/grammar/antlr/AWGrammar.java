@@ -0,0 +1,254 @@
+/*
+
+[The "BSD licence"]
+Copyright (c) 2005 Jean Bovet
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions
+are met:
+
+1. Redistributions of source code must retain the above copyright
+notice, this list of conditions and the following disclaimer.
+2. Redistributions in binary form must reproduce the above copyright
+notice, this list of conditions and the following disclaimer in the
+documentation and/or other materials provided with the distribution.
+3. The name of the author may not be used to endorse or promote products
+derived from this software without specific prior written permission.
+
+THIS SOFTWARE IS PROVIDED BY THE AUTHOR ``AS IS'' AND ANY EXPRESS OR
+IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES
+OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED.
+IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY DIRECT, INDIRECT,
+INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT
+NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+(INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF
+THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+
+*/
+
+
+package org.antlr.works.grammar.antlr;
+
+import org.antlr.analysis.DFA;
+import org.antlr.analysis.NFAState;
+import org.antlr.misc.BitSet;
+import org.antlr.tool.ErrorManager;
+import org.antlr.tool.Grammar;
+import org.antlr.tool.Rule;
+import org.antlr.works.utils.ErrorListener;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.lang.management.MemoryUsage;
+import java.util.List;
+
+/** Grammar used by ANTLRWorks for its analysis. It performs the same NFA to DFA conversion
+ * than ANTLR's Grammar.createLookaheadDFAs() but one decision at a time so the analysis
+ * can report its progress and stop as soon as it is externally aborted.
+ *
+ * The conversion of each decision is also given a budget: it is aborted if it creates too many
+ * DFA states or if the heap is almost exhausted. The decision is then left without DFA and the
+ * analysis continues with the next decision.
+ */
+public class AWGrammar extends Grammar {
+
+    public static final int DEFAULT_MAX_DFA_STATES_PER_DECISION = 20000;
+
+    /** The conversion is aborted when the live heap exceeds this ratio of the maximum heap */
+    private static final double MAX_HEAP_USAGE = 0.85;
+
+    /** Number of DFA states between two checks of the heap */
+    private static final int HEAP_CHECK_INTERVAL = 64;
+
+    private int maxDFAStatesPerDecision = DEFAULT_MAX_DFA_STATES_PER_DECISION;
+
+    /** Number of DFA states converted for the current decision (-1 if no decision is being converted) */
+    private int decisionStates = -1;
+    private boolean decisionOverBudget;
+
+    public AWGrammar() {
+        super();
+    }
+
+    public void setMaxDFAStatesPerDecision(int max) {
+        this.maxDFAStatesPerDecision = max;
+    }
+
+    /** ANTLR invokes this method for each DFA state it converts: this is where the budget is enforced */
+    @Override
+    public boolean NFAToDFAConversionExternallyAborted() {
+        return super.NFAToDFAConversionExternallyAborted() || isDecisionOverBudget();
+    }
+
+    private boolean isDecisionOverBudget() {
+        if(decisionStates < 0 || decisionOverBudget) {
+            return decisionOverBudget;
+        }
+
+        decisionStates++;
+        if(decisionStates > maxDFAStatesPerDecision) {
+            decisionOverBudget = true;
+        } else if(decisionStates % HEAP_CHECK_INTERVAL == 0 && isHeapExhausted()) {
+            decisionOverBudget = true;
+        }
+        return decisionOverBudget;
+    }
+
+    /** Returns true if the heap still used after the last garbage collection is close to the maximum */
+    private static boolean isHeapExhausted() {
+        long max = Runtime.getRuntime().maxMemory();
+        if(max == Long.MAX_VALUE) return false;
+
+        long used = 0;
+        for(MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            if(pool.getType() != MemoryType.HEAP) continue;
+            MemoryUsage usage = pool.getCollectionUsage();
+            if(usage != null) {
+                used += usage.getUsed();
+            }
+        }
+        return used > max*MAX_HEAP_USAGE;
+    }
+
+    /** Creates the lookahead DFA of each decision. The delegate and the profile are optional. */
+    public void createLookaheadDFAs(GrammarAnalysisDelegate delegate, AnalysisProfile profile) {
+        if(nfa == null) {
+            long t = System.nanoTime();
+            buildNFA();
+            if(profile != null) profile.addPhaseTime(AnalysisProfile.PHASE_NFA_CONSTRUCTION, System.nanoTime()-t);
+        }
+
+        // check for left recursion to make sure the analysis can actually be done
+        long t = System.nanoTime();
+        checkAllRulesForLeftRecursion();
+        if(profile != null) profile.addPhaseTime(AnalysisProfile.PHASE_LEFT_RECURSION, System.nanoTime()-t);
+
+        t = System.nanoTime();
+        long start = System.currentTimeMillis();
+        int numberOfDecisions = getNumberOfDecisions();
+        for(int decision = 1; decision <= numberOfDecisions; decision++) {
+            if(NFAToDFAConversionExternallyAborted()) {
+                break;
+            }
+            createLookaheadDFAForDecision(decision, profile);
+            if(delegate != null) {
+                delegate.analysisDidProcessDecision(this, decision, numberOfDecisions);
+            }
+        }
+        DFACreationWallClockTimeInMS = System.currentTimeMillis() - start;
+        if(profile != null) profile.addPhaseTime(AnalysisProfile.PHASE_DFA_CONVERSION, System.nanoTime()-t);
+
+        // indicate that the DFA have been built so the interpreter doesn't build them again
+        allDecisionDFACreated = !NFAToDFAConversionExternallyAborted();
+    }
+
+    private void createLookaheadDFAForDecision(int decision, AnalysisProfile profile) {
+        NFAState decisionStartState = getDecisionNFAStartState(decision);
+        Rule r = decisionStartState.enclosingRule;
+
+        // don't bother to process decisions within left recursive rules
+        if(leftRecursiveRules.contains(r)) return;
+        if(decisionStartState.getNumberOfTransitions() <= 1) return;
+        if(r.isSynPred && !synPredNamesUsedInDFA.contains(r.name)) return;
+
+        // remember the messages and the error counts so far to discard the ones of a decision that is over budget
+        ErrorListener listener = ErrorListener.getInstalledInstance();
+        int errors = listener != null ? listener.errors.size() : 0;
+        int warnings = listener != null ? listener.warnings.size() : 0;
+        ErrorManager.ErrorState state = ErrorManager.getErrorState();
+        int stateErrors = state.errors;
+        int stateWarnings = state.warnings;
+        BitSet stateErrorMsgIDs = (BitSet) state.errorMsgIDs.clone();
+        BitSet stateWarningMsgIDs = (BitSet) state.warningMsgIDs.clone();
+
+        long start = System.nanoTime();
+        DFA dfa = null;
+        boolean ll1 = false;
+        decisionStates = 0;
+        decisionOverBudget = false;
+        try {
+            // if k=* or k=1, try LL(1)
+            int k = getUserMaxLookahead(decision);
+            if(k == 0 || k == 1) {
+                dfa = createLL_1_LookaheadDFA(decision);
+            }
+            ll1 = dfa != null;
+            if(dfa == null) {
+                dfa = createLookaheadDFA(decision, true);
+            }
+        } catch(OutOfMemoryError e) {
+            // the budget didn't catch the explosion early enough: give up this decision only
+            dfa = null;
+            decisionOverBudget = true;
+        } finally {
+            decisionStates = -1;
+        }
+        long time = System.nanoTime() - start;
+
+        boolean overBudget = decisionOverBudget;
+        decisionOverBudget = false;
+        if(overBudget) {
+            // the DFA is incomplete: release it and replace the messages of the decision by the budget one
+            setLookaheadDFA(decision, null);
+            if(listener != null) {
+                truncate(listener.errors, errors);
+                truncate(listener.warnings, warnings);
+            }
+            state.errors = stateErrors;
+            state.warnings = stateWarnings;
+            state.errorMsgIDs = stateErrorMsgIDs;
+            state.warningMsgIDs = stateWarningMsgIDs;
+
+            AnalysisBudgetMessage message = new AnalysisBudgetMessage(this, decisionStartState, time);
+            state.warnings++;
+            state.warningMsgIDs.add(message.msgID);
+            ErrorManager.getErrorListener().warning(message);
+        } else if(dfa.startState == null) {
+            // something went wrong; wipe out the DFA
+            setLookaheadDFA(decision, null);
+        }
+        if(profile != null) {
+            DecisionProfile p = createDecisionProfile(decision, overBudget ? null : dfa, ll1, time);
+            p.overBudget = overBudget;
+            profile.addDecision(p);
+        }
+    }
+
+    private static void truncate(List<?> list, int size) {
+        while(list.size() > size) {
+            list.remove(list.size()-1);
+        }
+    }
+
+    private DecisionProfile createDecisionProfile(int decision, DFA dfa, boolean ll1, long time) {
+        DecisionProfile p = new DecisionProfile();
+        NFAState decisionStartState = getDecisionNFAStartState(decision);
+        p.grammarName = getRecognizerName();
+        p.ruleName = decisionStartState.enclosingRule.name;
+        p.decision = decision;
+        if(decisionStartState.associatedASTNode != null) {
+            p.line = decisionStartState.associatedASTNode.getLine();
+            p.column = decisionStartState.associatedASTNode.getCharPositionInLine();
+        }
+        p.time = time;
+        p.ll1 = ll1;
+        if(dfa == null) {
+            return p;
+        }
+        if(dfa.startState != null) {
+            p.states = dfa.getNumberOfStates() != 0 ? dfa.getNumberOfStates() : dfa.getMaxStateNumber();
+            p.maxLookahead = dfa.getMaxLookaheadDepth();
+            p.backtracking = dfa.hasSynPred();
+        }
+        if(dfa.probe != null) {
+            p.overflowed = dfa.probe.analysisOverflowed();
+            p.nonLLStar = dfa.probe.isNonLLStarDecision();
+        }
+        return p;
+    }
+
+}
@@ -0,0 +1,75 @@
+/*
+
+[The "BSD licence"]
+Copyright (c) 2005 Jean Bovet
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions
+are met:
+
+1. Redistributions of source code must retain the above copyright
+notice, this list of conditions and the following disclaimer.
+2. Redistributions in binary form must reproduce the above copyright
+notice, this list of conditions and the following disclaimer in the
+documentation and/or other materials provided with the distribution.
+3. The name of the author may not be used to endorse or promote products
+derived from this software without specific prior written permission.
+
+THIS SOFTWARE IS PROVIDED BY THE AUTHOR ``AS IS'' AND ANY EXPRESS OR
+IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES
+OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED.
+IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY DIRECT, INDIRECT,
+INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT
+NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+(INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF
+THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+
+*/
+
+package org.antlr.works.grammar.antlr;
+
+import org.antlr.analysis.NFAState;
+import org.antlr.tool.ErrorManager;
+import org.antlr.tool.Grammar;
+import org.antlr.tool.Message;
+import org.stringtemplate.v4.ST;
+
+/** Warning reported when the conversion of a decision is aborted because it exceeded its budget */
+public class AnalysisBudgetMessage extends Message {
+
+    public static final String TEXT = "analysis aborted: budget";
+
+    public final Grammar grammar;
+    public final NFAState decisionState;
+    public final long time;
+
+    public AnalysisBudgetMessage(Grammar grammar, NFAState decisionState, long time) {
+        this.grammar = grammar;
+        this.decisionState = decisionState;
+        this.time = time;
+        this.msgID = ErrorManager.MSG_ANALYSIS_ABORTED;
+        this.file = grammar.getFileName();
+        if(decisionState.associatedASTNode != null) {
+            this.line = decisionState.associatedASTNode.getLine();
+            this.column = decisionState.associatedASTNode.getCharPositionInLine();
+        }
+    }
+
+    public String getDescription() {
+        return TEXT+" (decision "+decisionState.getDecisionNumber()+" of rule "+decisionState.enclosingRule.name
+                +" was not analyzed after "+time/1000000+" ms)";
+    }
+
+    @Override
+    public String toString(ST messageST) {
+        return toString();
+    }
+
+    @Override
+    public String toString() {
+        return "warning: "+file+":"+line+":"+column+": "+getDescription();
+    }
+}
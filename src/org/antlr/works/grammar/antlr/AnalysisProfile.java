@@ -0,0 +1,90 @@
+/*
+
+[The "BSD licence"]
+Copyright (c) 2005 Jean Bovet
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions
+are met:
+
+1. Redistributions of source code must retain the above copyright
+notice, this list of conditions and the following disclaimer.
+2. Redistributions in binary form must reproduce the above copyright
+notice, this list of conditions and the following disclaimer in the
+documentation and/or other materials provided with the distribution.
+3. The name of the author may not be used to endorse or promote products
+derived from this software without specific prior written permission.
+
+THIS SOFTWARE IS PROVIDED BY THE AUTHOR ``AS IS'' AND ANY EXPRESS OR
+IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES
+OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED.
+IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY DIRECT, INDIRECT,
+INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT
+NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+(INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF
+THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+
+*/
+
+package org.antlr.works.grammar.antlr;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/** Time spent in each phase of the analysis of a grammar and in the conversion of each decision */
+public class AnalysisProfile {
+
+    public static final String PHASE_NFA_CONSTRUCTION = "NFA construction";
+    public static final String PHASE_LEFT_RECURSION = "Left-recursion check";
+    public static final String PHASE_DFA_CONVERSION = "DFA conversion";
+
+    /** Time in nanoseconds of each phase, in the order they were performed */
+    public final Map<String,Long> phases = new LinkedHashMap<String, Long>();
+    public final List<DecisionProfile> decisions = new ArrayList<DecisionProfile>();
+
+    public AnalysisProfile() {
+    }
+
+    public void addPhaseTime(String phase, long time) {
+        Long t = phases.get(phase);
+        phases.put(phase, t == null ? time : t + time);
+    }
+
+    public void addDecision(DecisionProfile decision) {
+        decisions.add(decision);
+    }
+
+    public String getPhasesDescription() {
+        StringBuilder sb = new StringBuilder();
+        for(Map.Entry<String,Long> phase : phases.entrySet()) {
+            if(sb.length() > 0) sb.append(", ");
+            sb.append(phase.getKey()).append(": ").append(phase.getValue()/1000000).append(" ms");
+        }
+        return sb.toString();
+    }
+
+    public String toCSV() {
+        StringBuilder sb = new StringBuilder();
+        sb.append("grammar,rule,decision,line,column,time_ms,states,max_k,ll1,backtracking,note\n");
+        for(DecisionProfile d : decisions) {
+            sb.append(d.grammarName).append(',');
+            sb.append(d.ruleName).append(',');
+            sb.append(d.decision).append(',');
+            sb.append(d.line).append(',');
+            sb.append(d.column).append(',');
+            sb.append(String.format(Locale.US, "%.3f", d.getTimeInMS())).append(',');
+            sb.append(d.states).append(',');
+            sb.append(d.getLookaheadDescription()).append(',');
+            sb.append(d.ll1).append(',');
+            sb.append(d.backtracking).append(',');
+            sb.append(d.getNote()).append('\n');
+        }
+        return sb.toString();
+    }
+}
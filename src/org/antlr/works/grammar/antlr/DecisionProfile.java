@@ -0,0 +1,83 @@
+/*
+
+[The "BSD licence"]
+Copyright (c) 2005 Jean Bovet
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions
+are met:
+
+1. Redistributions of source code must retain the above copyright
+notice, this list of conditions and the following disclaimer.
+2. Redistributions in binary form must reproduce the above copyright
+notice, this list of conditions and the following disclaimer in the
+documentation and/or other materials provided with the distribution.
+3. The name of the author may not be used to endorse or promote products
+derived from this software without specific prior written permission.
+
+THIS SOFTWARE IS PROVIDED BY THE AUTHOR ``AS IS'' AND ANY EXPRESS OR
+IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES
+OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED.
+IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY DIRECT, INDIRECT,
+INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT
+NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+(INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF
+THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+
+*/
+
+package org.antlr.works.grammar.antlr;
+
+/** Profile of the conversion of one decision to its lookahead DFA */
+public class DecisionProfile {
+
+    public static final int LOOKAHEAD_ARBITRARY = Integer.MAX_VALUE;
+
+    public String grammarName;
+    public String ruleName;
+    public int decision;
+
+    /** Position of the decision in the grammar file (line is 1-based, column 0-based) */
+    public int line;
+    public int column;
+
+    /** Conversion time in nanoseconds */
+    public long time;
+
+    public int states;
+    public int maxLookahead;
+    public boolean ll1;
+    public boolean backtracking;
+    public boolean overflowed;
+    public boolean nonLLStar;
+    public boolean overBudget;
+
+    public DecisionProfile() {
+    }
+
+    public double getTimeInMS() {
+        return time/1000000.0;
+    }
+
+    public String getLookaheadDescription() {
+        if(maxLookahead == LOOKAHEAD_ARBITRARY)
+            return "*";
+        else
+            return String.valueOf(maxLookahead);
+    }
+
+    public String getNote() {
+        if(overBudget)
+            return AnalysisBudgetMessage.TEXT;
+        if(overflowed)
+            return "analysis overflow";
+        if(nonLLStar)
+            return "non-LL(*)";
+        if(ll1)
+            return "LL(1)";
+        return "";
+    }
+}
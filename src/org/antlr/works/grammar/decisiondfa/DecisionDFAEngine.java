@@ -5,6 +5,7 @@ import org.antlr.analysis.NFAState;
 import org.antlr.tool.Grammar;
 import org.antlr.tool.Rule;
 import org.antlr.works.ate.ATEOverlayManager;
+import org.antlr.works.ate.syntax.misc.ATELine;
 import org.antlr.works.components.GrammarWindow;
 import org.antlr.works.grammar.antlr.ANTLRGrammarEngine;
 
@@ -191,6 +192,23 @@ public class DecisionDFAEngine {
         return items;
     }
 
+    /** Returns the position in the text of the decision located at the specified line (1-based)
+     * and column in the grammar file, or -1 if the line doesn't exist.
+     */
+    public int getDecisionTextPosition(int line, int column) {
+        List<ATELine> lines = window.textEditor.getLines();
+        if(lines == null || line < 1 || line > lines.size()) {
+            return -1;
+        }
+
+        Point p = window.textEditor.getLineTextPositionsAtLineIndex(line-1);
+        if(p == null) {
+            return -1;
+        } else {
+            return Math.min(p.x+column, p.y);
+        }
+    }
+
     public DFA getDFAAtPosition(int line, int column) {
         DFA dfa = null;
         if(discoveredParserGrammar != null) {
@@ -3,6 +3,7 @@ package org.antlr.works.grammar.engine;
 import org.antlr.Tool;
 import org.antlr.works.ate.syntax.misc.ATEToken;
 import org.antlr.works.grammar.antlr.ANTLRGrammarEngine;
+import org.antlr.works.grammar.antlr.GrammarAnalysisDelegate;
 import org.antlr.works.grammar.antlr.GrammarResult;
 import org.antlr.works.grammar.element.*;
 import org.antlr.works.grammar.syntax.GrammarSyntaxEngine;
@@ -92,6 +93,7 @@ public interface GrammarEngine {
     void updateHierarchy(Map<String, GrammarEngine> engines, Set<GrammarEngine> alreadyVisitedEngines);
 
     GrammarResult analyze() throws Exception;
+    GrammarResult analyze(GrammarAnalysisDelegate delegate) throws Exception;
     void cancelAnalyze();
 
     void computeRuleErrors(ElementRule rule);
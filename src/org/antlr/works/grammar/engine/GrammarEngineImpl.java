@@ -5,6 +5,7 @@ import org.antlr.tool.Grammar;
 import org.antlr.works.ate.syntax.misc.ATEToken;
 import org.antlr.works.grammar.antlr.ANTLRGrammarEngine;
 import org.antlr.works.grammar.antlr.ANTLRGrammarEngineImpl;
+import org.antlr.works.grammar.antlr.GrammarAnalysisDelegate;
 import org.antlr.works.grammar.antlr.GrammarResult;
 import org.antlr.works.grammar.element.*;
 import org.antlr.works.grammar.syntax.GrammarSyntaxEngine;
@@ -50,7 +51,9 @@ public class GrammarEngineImpl implements GrammarEngine {
     private GrammarEngineDelegate delegate;
 
     private GrammarEngine parent;
-    private final List<GrammarEngine> importedEngines = new ArrayList<GrammarEngine>();
+    /** Grammars imported by this grammar. The imported engines can be shared by several windows so
+     * the hierarchy is kept here instead of linking the engines to each other. */
+    private volatile ImportNode hierarchy = new ImportNode(this);
 
     private final GrammarProperties properties = new GrammarPropertiesImpl();
     private final ANTLRGrammarEngine antlrEngine = new ANTLRGrammarEngineImpl();
@@ -169,7 +172,8 @@ public class GrammarEngineImpl implements GrammarEngine {
     }
 
     private boolean isEngineExisting(String grammarName) {
-        for(GrammarEngine e : importedEngines) {
+        for(ImportNode child : hierarchy.children) {
+            GrammarEngine e = child.engine;
             if(e.getGrammarName() == null) continue;
             if(e.getGrammarName().equals(grammarName)) return true;
         }
@@ -265,16 +269,20 @@ public class GrammarEngineImpl implements GrammarEngine {
      */
     public List<String> getGrammarsOverriddenByRule(String name) {
         List<String> grammars = new ArrayList<String>();
-        for(GrammarEngine child : importedEngines) {
-            for(ATEToken decl : child.getDecls()) {
+        addGrammarsOverriddenByRule(hierarchy, name, grammars);
+        return grammars;
+    }
+
+    private static void addGrammarsOverriddenByRule(ImportNode node, String name, List<String> grammars) {
+        for(ImportNode child : node.children) {
+            for(ATEToken decl : child.engine.getDecls()) {
                 if(decl.getAttribute().equals(name)) {
-                    grammars.add(child.getGrammarName());
+                    grammars.add(child.engine.getGrammarName());
                     break;
                 }
             }
-            grammars.addAll(child.getGrammarsOverriddenByRule(name));
+            addGrammarsOverriddenByRule(child, name, grammars);
         }
-        return grammars;
     }
 
     /**
@@ -300,31 +308,39 @@ public class GrammarEngineImpl implements GrammarEngine {
 
     public void updateHierarchy(Map<String, GrammarEngine> engines,
                                 Set<GrammarEngine> alreadyVisitedEngines) {
-        importedEngines.clear();
+        ImportNode root = new ImportNode(this);
+        buildHierarchy(root, engines, alreadyVisitedEngines);
+        hierarchy = root;
+        resetRules();
+    }
+
+    private static void buildHierarchy(ImportNode node, Map<String, GrammarEngine> engines,
+                                       Set<GrammarEngine> alreadyVisitedEngines) {
         // traverse all the imports for this grammar
-        for(ElementImport element : properties.getImports()) {
+        for(ElementImport element : node.engine.getImports()) {
             GrammarEngine d = engines.get(element.getName());
             if(d == null) continue;
             if(alreadyVisitedEngines.contains(d)) continue;
 
             // add the engine that is visited
             alreadyVisitedEngines.add(d);
-            if(parent != d) {
-                d.setParent(this);                
-            }
-            importedEngines.add(d);
-            d.updateHierarchy(engines, alreadyVisitedEngines);
+            ImportNode child = new ImportNode(d);
+            node.children.add(child);
+            buildHierarchy(child, engines, alreadyVisitedEngines);
             // remove the engine that was visited - so each branch
             // of the tree is checked separately
             alreadyVisitedEngines.remove(d);
         }
-        resetRules();
     }
 
     public GrammarResult analyze() throws Exception {
         return antlrEngine.analyze();
     }
 
+    public GrammarResult analyze(GrammarAnalysisDelegate delegate) throws Exception {
+        return antlrEngine.analyze(delegate);
+    }
+
     public void cancelAnalyze() {
         antlrEngine.cancel();
     }
@@ -394,4 +410,15 @@ public class GrammarEngineImpl implements GrammarEngine {
         }
     }
 
+    /** Engine of an imported grammar in the hierarchy of this grammar */
+    private static class ImportNode {
+
+        public final GrammarEngine engine;
+        public final List<ImportNode> children = new ArrayList<ImportNode>();
+
+        public ImportNode(GrammarEngine engine) {
+            this.engine = engine;
+        }
+    }
+
 }
@@ -0,0 +1,383 @@
+/*
+
+[The "BSD licence"]
+Copyright (c) 2005 Jean Bovet
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions
+are met:
+
+1. Redistributions of source code must retain the above copyright
+notice, this list of conditions and the following disclaimer.
+2. Redistributions in binary form must reproduce the above copyright
+notice, this list of conditions and the following disclaimer in the
+documentation and/or other materials provided with the distribution.
+3. The name of the author may not be used to endorse or promote products
+derived from this software without specific prior written permission.
+
+THIS SOFTWARE IS PROVIDED BY THE AUTHOR ``AS IS'' AND ANY EXPRESS OR
+IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES
+OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED.
+IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY DIRECT, INDIRECT,
+INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT
+NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+(INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF
+THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+
+*/
+
+package org.antlr.works.grammar.engine;
+
+import org.antlr.Tool;
+import org.antlr.works.ate.syntax.generic.ATESyntaxEngineDelegate;
+import org.antlr.works.grammar.element.ElementImport;
+import org.antlr.works.utils.Console;
+import org.antlr.xjlib.foundation.XJUtils;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.*;
+import java.util.concurrent.*;
+
+/**
+ * Workspace-level registry of the grammar engines. Each grammar file (identified by its canonical path)
+ * has at most one engine: the one of the window displaying the file or, if the file is not open, an
+ * engine that is parsed from the disk and shared by every grammar importing it. The imports of a grammar
+ * are loaded in parallel and the registry remembers which engines depend on each file so only these
+ * engines are invalidated when the file changes. The engines loaded from the disk are reference-counted
+ * by the hierarchies using them and are closed when the last one releases them.
+ */
+public class GrammarEngineRegistry {
+
+    private static GrammarEngineRegistry shared = new GrammarEngineRegistry();
+
+    /** Engines of the grammars open in a window */
+    private final Map<String, GrammarEngine> openEngines = new HashMap<String, GrammarEngine>();
+
+    /** Engines of the grammars loaded from the disk */
+    private final Map<String, LoadedEngine> loadedEngines = new HashMap<String, LoadedEngine>();
+
+    /** Engines loaded from the disk that are used by the hierarchy of each open grammar */
+    private final Map<GrammarEngine, List<LoadedEngine>> usedEngines = new HashMap<GrammarEngine, List<LoadedEngine>>();
+
+    /** Engines that import (directly or not) each grammar file */
+    private final Map<String, Set<GrammarEngine>> dependents = new HashMap<String, Set<GrammarEngine>>();
+
+    private final ExecutorService executor = Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors(),
+            new ThreadFactory() {
+                public Thread newThread(Runnable r) {
+                    Thread t = new Thread(r, "Grammar Import Loader");
+                    t.setDaemon(true);
+                    return t;
+                }
+            });
+
+    public static GrammarEngineRegistry shared() {
+        return shared;
+    }
+
+    /**
+     * Registers the engine of a grammar open in a window: it will be used instead of loading the grammar
+     * from the disk when another grammar imports it.
+     */
+    public void register(String filePath, GrammarEngine engine) {
+        String path = getCanonicalPath(filePath);
+        if(path == null) return;
+
+        synchronized(this) {
+            if(openEngines.get(path) == engine) return;
+            openEngines.put(path, engine);
+            loadedEngines.remove(path);
+        }
+        grammarDidChange(filePath);
+    }
+
+    public void unregister(String filePath, GrammarEngine engine) {
+        String path = getCanonicalPath(filePath);
+        synchronized(this) {
+            if(path != null && openEngines.get(path) == engine) {
+                openEngines.remove(path);
+            }
+            removeDependent(engine);
+            List<LoadedEngine> used = usedEngines.remove(engine);
+            if(used != null) {
+                release(used);
+            }
+        }
+        if(path != null) {
+            grammarDidChange(filePath);
+        }
+    }
+
+    /**
+     * Loads in parallel all the grammars imported (directly or not) by the grammar and updates its hierarchy.
+     * The imported grammars are looked up in the folder of the grammar, like ANTLR does and the errors
+     * are reported to the console of the window.
+     */
+    public void updateImports(String filePath, GrammarEngine engine, final Console console) {
+        String path = getCanonicalPath(filePath);
+        if(path == null) return;
+
+        register(filePath, engine);
+
+        String folder = XJUtils.getPathByDeletingLastComponent(path);
+        Map<String, GrammarEngine> engines = new HashMap<String, GrammarEngine>();
+        Set<String> visitedPaths = new HashSet<String>();
+        final List<LoadedEngine> acquired = Collections.synchronizedList(new ArrayList<LoadedEngine>());
+        visitedPaths.add(path);
+
+        List<GrammarEngine> level = Collections.singletonList(engine);
+        while(!level.isEmpty()) {
+            // load all the grammars imported by the current level at once
+            Map<String, Future<GrammarEngine>> futures = new LinkedHashMap<String, Future<GrammarEngine>>();
+            for(GrammarEngine e : level) {
+                for(ElementImport i : e.getImports()) {
+                    final String importPath = getCanonicalPath(XJUtils.concatPath(folder, i.getName()+".g"));
+                    if(importPath == null || !visitedPaths.add(importPath)) continue;
+                    futures.put(importPath, executor.submit(new Callable<GrammarEngine>() {
+                        public GrammarEngine call() throws Exception {
+                            return getEngine(importPath, console, acquired);
+                        }
+                    }));
+                }
+            }
+
+            List<GrammarEngine> nextLevel = new ArrayList<GrammarEngine>();
+            for(Future<GrammarEngine> future : futures.values()) {
+                GrammarEngine e = getResult(future, console);
+                if(e == null || e.getGrammarName() == null) continue;
+                engines.put(e.getGrammarName(), e);
+                nextLevel.add(e);
+            }
+            level = nextLevel;
+        }
+
+        visitedPaths.remove(path);
+        synchronized(this) {
+            if(openEngines.get(path) != engine) {
+                // the window was closed in the meantime
+                release(acquired);
+                return;
+            }
+
+            engine.updateHierarchy(engines, new HashSet<GrammarEngine>());
+
+            // release the engines of the previous hierarchy only now that the new one holds its own
+            List<LoadedEngine> previous = usedEngines.put(engine, acquired);
+            if(previous != null) {
+                release(previous);
+            }
+
+            removeDependent(engine);
+            for(String importPath : visitedPaths) {
+                Set<GrammarEngine> e = dependents.get(importPath);
+                if(e == null) {
+                    e = new HashSet<GrammarEngine>();
+                    dependents.put(importPath, e);
+                }
+                e.add(engine);
+            }
+        }
+    }
+
+    /** Invalidates the engines that import the specified grammar */
+    public void grammarDidChange(String filePath) {
+        List<GrammarEngine> engines;
+        synchronized(this) {
+            // called after each change in the editor: don't access the disk if no grammar imports another one
+            if(dependents.isEmpty()) return;
+        }
+
+        String path = getCanonicalPath(filePath);
+        if(path == null) return;
+
+        synchronized(this) {
+            Set<GrammarEngine> e = dependents.get(path);
+            if(e == null) return;
+            engines = new ArrayList<GrammarEngine>(e);
+        }
+        for(GrammarEngine e : engines) {
+            e.markDirty();
+        }
+    }
+
+    private void removeDependent(GrammarEngine engine) {
+        for(Iterator<Set<GrammarEngine>> iter = dependents.values().iterator(); iter.hasNext(); ) {
+            Set<GrammarEngine> engines = iter.next();
+            engines.remove(engine);
+            if(engines.isEmpty()) {
+                iter.remove();
+            }
+        }
+    }
+
+    /**
+     * Returns the engine of the grammar file. An engine loaded from the disk is acquired for the caller
+     * and added to the acquired list: the caller must release it when it doesn't use it anymore.
+     */
+    private GrammarEngine getEngine(String path, Console console, List<LoadedEngine> acquired) {
+        File file = new File(path);
+        if(!file.exists()) return null;
+
+        long modified = file.lastModified();
+        synchronized(this) {
+            GrammarEngine e = openEngines.get(path);
+            if(e != null) return e;
+
+            LoadedEngine le = loadedEngines.get(path);
+            if(le != null && le.modified == modified) {
+                le.references++;
+                acquired.add(le);
+                return le.engine;
+            }
+        }
+
+        GrammarEngine e = loadEngine(path, console);
+        synchronized(this) {
+            // a window may have opened the grammar in the meantime
+            GrammarEngine open = openEngines.get(path);
+            if(open != null) {
+                e.close();
+                return open;
+            }
+
+            // a previous engine of this file stays open until the hierarchies using it release it
+            LoadedEngine le = new LoadedEngine(path, e, modified);
+            le.references++;
+            acquired.add(le);
+            loadedEngines.put(path, le);
+        }
+        return e;
+    }
+
+    /** Releases engines loaded from the disk and closes the ones that are not used anymore */
+    private void release(Collection<LoadedEngine> engines) {
+        for(LoadedEngine le : engines) {
+            if(--le.references > 0) continue;
+
+            if(loadedEngines.get(le.path) == le) {
+                loadedEngines.remove(le.path);
+            }
+            le.engine.close();
+        }
+    }
+
+    /** Returns the number of engines loaded from the disk that are in use */
+    synchronized int getLoadedEngineCount() {
+        return loadedEngines.size();
+    }
+
+    private static GrammarEngine loadEngine(String path, Console console) {
+        FileEngineDelegate delegate = new FileEngineDelegate(path, console);
+        GrammarEngine engine = new GrammarEngineImpl(delegate);
+        engine.getSyntaxEngine().setDelegate(delegate);
+        engine.getSyntaxEngine().processSyntax();
+        engine.parserCompleted();
+        return engine;
+    }
+
+    private static GrammarEngine getResult(Future<GrammarEngine> future, Console console) {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException e) {
+            console.println(e.getCause());
+        }
+        return null;
+    }
+
+    private static String getCanonicalPath(String filePath) {
+        if(filePath == null) return null;
+        try {
+            return new File(filePath).getCanonicalPath();
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    private static class LoadedEngine {
+
+        public final String path;
+        public final GrammarEngine engine;
+        public final long modified;
+
+        /** Number of hierarchies using the engine (guarded by the registry) */
+        public int references;
+
+        public LoadedEngine(String path, GrammarEngine engine, long modified) {
+            this.path = path;
+            this.engine = engine;
+            this.modified = modified;
+        }
+    }
+
+    /** Delegate of the engines loaded from the disk */
+    private static class FileEngineDelegate implements GrammarEngineDelegate, ATESyntaxEngineDelegate {
+
+        private final String path;
+        private final Console console;
+        private String text;
+
+        public FileEngineDelegate(String path, Console console) {
+            this.path = path;
+            this.console = console;
+        }
+
+        public synchronized String getGrammarText() {
+            if(text == null) {
+                try {
+                    text = XJUtils.getStringFromFile(path);
+                } catch (IOException e) {
+                    text = "";
+                    console.println(e);
+                }
+            }
+            return text;
+        }
+
+        public String getText() {
+            return getGrammarText();
+        }
+
+        public String getGrammarFileName() {
+            return XJUtils.getLastPathComponent(path);
+        }
+
+        public Tool getANTLRTool() {
+            return new Tool(new String[] { "-lib", XJUtils.getPathByDeletingLastComponent(path) });
+        }
+
+        public String getTokenVocabFile(String name) {
+            String file = XJUtils.concatPath(XJUtils.getPathByDeletingLastComponent(path), name);
+            return new File(file).exists() ? file : null;
+        }
+
+        public void engineAnalyzeCompleted() {
+            // ignored
+        }
+
+        public void ateEngineBeforeParsing() {
+            // ignored
+        }
+
+        public void ateEngineAfterParsing() {
+            // ignored
+        }
+
+        public void gotoToRule(String grammar, String name) {
+            // ignored
+        }
+
+        public void reportError(Exception e) {
+            console.println(e);
+        }
+
+        public void reportError(String error) {
+            console.println(error, Console.LEVEL_ERROR);
+        }
+    }
+}
@@ -59,7 +59,7 @@ public class GrammarPropertiesImpl implements GrammarProperties {
     private final List<ElementRule> duplicateRules = new ArrayList<ElementRule>();
     private final List<ElementReference> undefinedReferences = new ArrayList<ElementReference>();
 
-    private final Set<String> tokenVocabNames = new HashSet<String>();
+    private Set<String> tokenVocabNames = Collections.emptySet();
     private String tokenVocabName;
 
     private GrammarEngine engine;
@@ -235,15 +235,15 @@ public class GrammarPropertiesImpl implements GrammarProperties {
     }
 
     private void resetTokenVocab() {
+        // the names are kept by the shared cache: only check again the file next time
         tokenVocabName = null;
-        tokenVocabNames.clear();
+        tokenVocabNames = Collections.emptySet();
     }
 
     private Set<String> getTokenVocabNames() {
         String tokenVocab = getTokenVocab();
         if(tokenVocab == null) {
-            tokenVocabName = null;
-            tokenVocabNames.clear();
+            resetTokenVocab();
             return tokenVocabNames;
         }
 
@@ -251,12 +251,12 @@ public class GrammarPropertiesImpl implements GrammarProperties {
             return tokenVocabNames;
 
         tokenVocabName = tokenVocab;
-        tokenVocabNames.clear();
+        tokenVocabNames = Collections.emptySet();
 
         try {
             String file = engine.getTokenVocabFile(tokenVocabName+".tokens");
             if(file != null) {
-                readTokenVocabFromFile(file, tokenVocabNames);
+                tokenVocabNames = TokenVocabCache.shared().getTokenNames(file);
             }
         } catch (IOException e) {
             e.printStackTrace();
@@ -0,0 +1,97 @@
+/*
+
+[The "BSD licence"]
+Copyright (c) 2005 Jean Bovet
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions
+are met:
+
+1. Redistributions of source code must retain the above copyright
+notice, this list of conditions and the following disclaimer.
+2. Redistributions in binary form must reproduce the above copyright
+notice, this list of conditions and the following disclaimer in the
+documentation and/or other materials provided with the distribution.
+3. The name of the author may not be used to endorse or promote products
+derived from this software without specific prior written permission.
+
+THIS SOFTWARE IS PROVIDED BY THE AUTHOR ``AS IS'' AND ANY EXPRESS OR
+IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES
+OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED.
+IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY DIRECT, INDIRECT,
+INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT
+NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+(INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF
+THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+
+*/
+
+package org.antlr.works.grammar.engine;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Process-wide cache of the token names declared in the .tokens files. The files are identified
+ * by their canonical path so every engine that references the same vocabulary shares the same
+ * set of names. A file is read again only when its modification date or its size has changed.
+ */
+public class TokenVocabCache {
+
+    private static TokenVocabCache shared = new TokenVocabCache();
+
+    private final Map<String, Entry> entries = new HashMap<String, Entry>();
+
+    public static TokenVocabCache shared() {
+        return shared;
+    }
+
+    /** Returns the (unmodifiable) set of token names declared in the specified file */
+    public Set<String> getTokenNames(String filePath) throws IOException {
+        File file = new File(filePath).getCanonicalFile();
+        String key = file.getPath();
+        long modified = file.lastModified();
+        long length = file.length();
+
+        synchronized(entries) {
+            Entry entry = entries.get(key);
+            if(entry != null && entry.isValid(modified, length)) {
+                return entry.names;
+            }
+        }
+
+        Set<String> names = new HashSet<String>();
+        GrammarPropertiesImpl.readTokenVocabFromFile(key, names);
+
+        Entry entry = new Entry(modified, length, Collections.unmodifiableSet(names));
+        synchronized(entries) {
+            entries.put(key, entry);
+        }
+        return entry.names;
+    }
+
+    private static class Entry {
+
+        public final long modified;
+        public final long length;
+        public final Set<String> names;
+
+        public Entry(long modified, long length, Set<String> names) {
+            this.modified = modified;
+            this.length = length;
+            this.names = names;
+        }
+
+        public boolean isValid(long modified, long length) {
+            return this.modified == modified && this.length == length;
+        }
+    }
+}
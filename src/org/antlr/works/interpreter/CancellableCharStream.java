@@ -0,0 +1,137 @@
+/*
+
+[The "BSD licence"]
+Copyright (c) 2005 Jean Bovet
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions
+are met:
+
+1. Redistributions of source code must retain the above copyright
+notice, this list of conditions and the following disclaimer.
+2. Redistributions in binary form must reproduce the above copyright
+notice, this list of conditions and the following disclaimer in the
+documentation and/or other materials provided with the distribution.
+3. The name of the author may not be used to endorse or promote products
+derived from this software without specific prior written permission.
+
+THIS SOFTWARE IS PROVIDED BY THE AUTHOR ``AS IS'' AND ANY EXPRESS OR
+IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES
+OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED.
+IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY DIRECT, INDIRECT,
+INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT
+NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+(INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF
+THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+
+*/
+
+package org.antlr.works.interpreter;
+
+import org.antlr.runtime.CharStream;
+
+import java.util.concurrent.CancellationException;
+
+/** A CharStream wrapper used to monitor and cancel a running interpreter: the number
+ * of consumed characters can be read from any thread and, once cancelled, the next
+ * consume() throws a CancellationException which unwinds the interpreter.
+ */
+public class CancellableCharStream implements CharStream {
+
+    /** Number of consumed characters between two updates of the progress */
+    private static final int CHECK_INTERVAL = 1024;
+
+    private final CharStream input;
+    private volatile boolean cancelled;
+    private volatile int consumed;
+    private int count;
+
+    public CancellableCharStream(CharStream input) {
+        this.input = input;
+    }
+
+    public void cancel() {
+        cancelled = true;
+    }
+
+    public boolean isCancelled() {
+        return cancelled;
+    }
+
+    /** Returns the furthest position reached in the input, updated periodically */
+    public int getConsumed() {
+        return consumed;
+    }
+
+    public void consume() {
+        input.consume();
+        if(++count % CHECK_INTERVAL == 0) {
+            consumed = Math.max(consumed, input.index());
+            if(cancelled)
+                throw new CancellationException();
+        }
+    }
+
+    public int LA(int i) {
+        return input.LA(i);
+    }
+
+    public int LT(int i) {
+        return input.LT(i);
+    }
+
+    public int index() {
+        return input.index();
+    }
+
+    public int size() {
+        return input.size();
+    }
+
+    public int mark() {
+        return input.mark();
+    }
+
+    public void rewind(int marker) {
+        input.rewind(marker);
+    }
+
+    public void rewind() {
+        input.rewind();
+    }
+
+    public void release(int marker) {
+        input.release(marker);
+    }
+
+    public void seek(int index) {
+        input.seek(index);
+    }
+
+    public String substring(int start, int stop) {
+        return input.substring(start, stop);
+    }
+
+    public int getLine() {
+        return input.getLine();
+    }
+
+    public void setLine(int line) {
+        input.setLine(line);
+    }
+
+    public int getCharPositionInLine() {
+        return input.getCharPositionInLine();
+    }
+
+    public void setCharPositionInLine(int pos) {
+        input.setCharPositionInLine(pos);
+    }
+
+    public String getSourceName() {
+        return input.getSourceName();
+    }
+}
@@ -0,0 +1,89 @@
+/*
+
+[The "BSD licence"]
+Copyright (c) 2005 Jean Bovet
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions
+are met:
+
+1. Redistributions of source code must retain the above copyright
+notice, this list of conditions and the following disclaimer.
+2. Redistributions in binary form must reproduce the above copyright
+notice, this list of conditions and the following disclaimer in the
+documentation and/or other materials provided with the distribution.
+3. The name of the author may not be used to endorse or promote products
+derived from this software without specific prior written permission.
+
+THIS SOFTWARE IS PROVIDED BY THE AUTHOR ``AS IS'' AND ANY EXPRESS OR
+IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES
+OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED.
+IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY DIRECT, INDIRECT,
+INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT
+NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+(INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF
+THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+
+*/
+
+package org.antlr.works.interpreter;
+
+/** Number of predictions made by the interpreter at one decision and the lookahead they needed */
+public class DecisionCoverage extends ElementCoverage {
+
+    /** Depths greater or equal to this value are counted in the last bucket of the histogram */
+    public static final int HISTOGRAM_SIZE = 10;
+
+    public int decision;
+
+    /** True if the lookahead DFA of the decision uses syntactic predicates */
+    public boolean backtracking;
+
+    public long predictions;
+    public long totalLookahead;
+    public int maxLookahead;
+    public final long[] lookaheadHistogram = new long[HISTOGRAM_SIZE+1];
+
+    /** Number of predictions that a generated recognizer would make by backtracking */
+    public long backtrackingAttempts;
+
+    public DecisionCoverage() {
+    }
+
+    public void predicted(int depth) {
+        predictions++;
+        totalLookahead += depth;
+        maxLookahead = Math.max(maxLookahead, depth);
+        lookaheadHistogram[Math.min(depth, HISTOGRAM_SIZE)]++;
+        if(backtracking)
+            backtrackingAttempts++;
+    }
+
+    public long getHits() {
+        return predictions;
+    }
+
+    public double getAverageLookahead() {
+        return predictions == 0 ? 0 : (double)totalLookahead/predictions;
+    }
+
+    /** Returns the histogram as a list of depth:count pairs, skipping the empty buckets */
+    public String getHistogramDescription() {
+        StringBuilder sb = new StringBuilder();
+        for(int depth = 0; depth < lookaheadHistogram.length; depth++) {
+            if(lookaheadHistogram[depth] == 0)
+                continue;
+            if(sb.length() > 0)
+                sb.append(" ");
+            sb.append(depth);
+            if(depth == HISTOGRAM_SIZE)
+                sb.append("+");
+            sb.append(":");
+            sb.append(lookaheadHistogram[depth]);
+        }
+        return sb.toString();
+    }
+}
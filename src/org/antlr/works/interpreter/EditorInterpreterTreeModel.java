@@ -43,6 +43,7 @@ import javax.swing.tree.MutableTreeNode;
 import javax.swing.tree.TreeNode;
 import java.awt.*;
 import java.util.Enumeration;
+import java.util.NoSuchElementException;
 
 public class EditorInterpreterTreeModel extends DefaultTreeModel {
 
@@ -63,14 +64,33 @@ public class EditorInterpreterTreeModel extends DefaultTreeModel {
     public class InterpreterTreeNode extends AWTreeNode {
 
         protected Tree tree;
+        protected int indexInParent;
+
+        /** The child wrappers are created lazily the first time they are requested
+         * and then cached so each node of the parse tree has exactly one wrapper.
+         */
+        protected InterpreterTreeNode[] childNodes;
 
         public InterpreterTreeNode(TreeNode parent, Tree tree) {
+            this(parent, tree, 0);
+        }
+
+        public InterpreterTreeNode(TreeNode parent, Tree tree, int indexInParent) {
             this.parent = (MutableTreeNode) parent;
             this.tree = tree;
+            this.indexInParent = indexInParent;
         }
 
         public TreeNode getChildAt(int childIndex) {
-            return new InterpreterTreeNode(this, tree.getChild(childIndex));
+            if(childNodes == null)
+                childNodes = new InterpreterTreeNode[tree.getChildCount()];
+
+            InterpreterTreeNode node = childNodes[childIndex];
+            if(node == null) {
+                node = new InterpreterTreeNode(this, tree.getChild(childIndex), childIndex);
+                childNodes[childIndex] = node;
+            }
+            return node;
         }
 
         public int getChildCount() {
@@ -82,11 +102,10 @@ public class EditorInterpreterTreeModel extends DefaultTreeModel {
         }
 
         public int getIndex(TreeNode node) {
-            for(int i=0; i<tree.getChildCount(); i++) {
-                if(tree.getChild(i) == node)
-                    return i;
-            }
-            return -1;
+            if(node instanceof InterpreterTreeNode && node.getParent() == this)
+                return ((InterpreterTreeNode)node).indexInParent;
+            else
+                return -1;
         }
 
         public boolean getAllowsChildren() {
@@ -98,7 +117,19 @@ public class EditorInterpreterTreeModel extends DefaultTreeModel {
         }
 
         public Enumeration children() {
-            return null;
+            return new Enumeration<TreeNode>() {
+                int index = 0;
+
+                public boolean hasMoreElements() {
+                    return index < getChildCount();
+                }
+
+                public TreeNode nextElement() {
+                    if(!hasMoreElements())
+                        throw new NoSuchElementException();
+                    return getChildAt(index++);
+                }
+            };
         }
 
         public Object getPayload() {
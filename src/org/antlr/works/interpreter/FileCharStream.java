@@ -0,0 +1,330 @@
+/*
+
+[The "BSD licence"]
+Copyright (c) 2005 Jean Bovet
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions
+are met:
+
+1. Redistributions of source code must retain the above copyright
+notice, this list of conditions and the following disclaimer.
+2. Redistributions in binary form must reproduce the above copyright
+notice, this list of conditions and the following disclaimer in the
+documentation and/or other materials provided with the distribution.
+3. The name of the author may not be used to endorse or promote products
+derived from this software without specific prior written permission.
+
+THIS SOFTWARE IS PROVIDED BY THE AUTHOR ``AS IS'' AND ANY EXPRESS OR
+IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES
+OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED.
+IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY DIRECT, INDIRECT,
+INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT
+NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+(INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF
+THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+
+*/
+
+package org.antlr.works.interpreter;
+
+import org.antlr.runtime.CharStream;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/** A CharStream reading its characters from a memory-mapped file instead of
+ * a String. The file is decoded page by page on demand and only the most
+ * recently used pages are kept in memory, so the interpreter can run over
+ * inputs much larger than what a text pane (or a char array) could hold.
+ */
+public class FileCharStream implements CharStream {
+
+    public static final int PAGE_SIZE = 64*1024;
+    public static final int MAX_CACHED_PAGES = 32;
+
+    private final String sourceName;
+    private final MappedByteBuffer bytes;
+    private final CharsetDecoder decoder;
+
+    /** Char and byte offset of the start of each page decoded so far */
+    private final List<Integer> pageCharStarts = new ArrayList<Integer>();
+    private final List<Integer> pageByteStarts = new ArrayList<Integer>();
+    /** Total number of chars, known once the last page has been decoded */
+    private int size = -1;
+
+    private final Map<Integer, char[]> pages = new LinkedHashMap<Integer, char[]>(16, 0.75f, true) {
+        protected boolean removeEldestEntry(Map.Entry<Integer, char[]> eldest) {
+            return size() > MAX_CACHED_PAGES;
+        }
+    };
+
+    private int currentPageIndex = -1;
+    private char[] currentPage;
+    private int currentPageStart;
+
+    private int p = 0;
+    private int line = 1;
+    private int charPositionInLine = 0;
+
+    private final List<int[]> markers = new ArrayList<int[]>();
+    private int markDepth = 0;
+    private int lastMarker;
+
+    public FileCharStream(File file) throws IOException {
+        this(file, Charset.defaultCharset());
+    }
+
+    public FileCharStream(File file, Charset charset) throws IOException {
+        this.sourceName = file.getName();
+
+        RandomAccessFile raf = new RandomAccessFile(file, "r");
+        try {
+            FileChannel channel = raf.getChannel();
+            if(channel.size() > Integer.MAX_VALUE) {
+                throw new IOException("File "+file+" is too large to be interpreted");
+            }
+            // the mapping remains valid after the channel is closed
+            bytes = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        } finally {
+            raf.close();
+        }
+
+        decoder = charset.newDecoder()
+                .onMalformedInput(CodingErrorAction.REPLACE)
+                .onUnmappableCharacter(CodingErrorAction.REPLACE);
+
+        pageCharStarts.add(0);
+        pageByteStarts.add(0);
+    }
+
+    public void consume() {
+        int c = LA(1);
+        if(c == EOF) return;
+
+        charPositionInLine++;
+        if(c == '\n') {
+            line++;
+            charPositionInLine = 0;
+        }
+        p++;
+    }
+
+    public int LA(int i) {
+        if(i == 0) {
+            return 0; // undefined
+        }
+        if(i < 0) {
+            i++; // e.g., translate LA(-1) to use offset 0
+            if(p+i-1 < 0) {
+                return EOF;
+            }
+        }
+        return charAt(p+i-1);
+    }
+
+    public int LT(int i) {
+        return LA(i);
+    }
+
+    public int index() {
+        return p;
+    }
+
+    /** Returns the number of chars in the file. This decodes the whole file
+     * the first time it is called.
+     */
+    public int size() {
+        while(size == -1) {
+            decodePage(pageCharStarts.size()-1, false);
+        }
+        return size;
+    }
+
+    public int mark() {
+        markDepth++;
+        int[] state;
+        if(markDepth >= markers.size()) {
+            state = new int[3];
+            while(markers.size() <= markDepth) {
+                markers.add(state);
+            }
+        } else {
+            state = markers.get(markDepth);
+        }
+        state[0] = p;
+        state[1] = line;
+        state[2] = charPositionInLine;
+        lastMarker = markDepth;
+        return markDepth;
+    }
+
+    public void rewind(int marker) {
+        int[] state = markers.get(marker);
+        seek(state[0]);
+        line = state[1];
+        charPositionInLine = state[2];
+        release(marker);
+    }
+
+    public void rewind() {
+        rewind(lastMarker);
+    }
+
+    public void release(int marker) {
+        markDepth = marker;
+        markDepth--;
+    }
+
+    public void seek(int index) {
+        if(index <= p) {
+            p = index; // just jump; don't update stream state (line, ...)
+            return;
+        }
+        // seek forward, consume until p hits index
+        while(p < index && LA(1) != EOF) {
+            consume();
+        }
+    }
+
+    public String substring(int start, int stop) {
+        StringBuilder sb = new StringBuilder(Math.max(0, stop-start+1));
+        for(int index = start; index <= stop; index++) {
+            int c = charAt(index);
+            if(c == EOF) break;
+            sb.append((char)c);
+        }
+        return sb.toString();
+    }
+
+    public int getLine() {
+        return line;
+    }
+
+    public void setLine(int line) {
+        this.line = line;
+    }
+
+    public int getCharPositionInLine() {
+        return charPositionInLine;
+    }
+
+    public void setCharPositionInLine(int pos) {
+        this.charPositionInLine = pos;
+    }
+
+    public String getSourceName() {
+        return sourceName;
+    }
+
+    private int charAt(int index) {
+        if(currentPage != null && index >= currentPageStart && index < currentPageStart+currentPage.length) {
+            return currentPage[index-currentPageStart];
+        }
+        if(index < 0 || size != -1 && index >= size) {
+            return EOF;
+        }
+
+        int pageIndex = findPage(index);
+        while(pageIndex == -1) {
+            // decode forward until the page containing index is known
+            int last = pageCharStarts.size()-1;
+            decodePage(last, true);
+            if(size != -1 && index >= size) {
+                return EOF;
+            }
+            pageIndex = findPage(index);
+        }
+
+        currentPage = getPage(pageIndex);
+        currentPageIndex = pageIndex;
+        currentPageStart = pageCharStarts.get(pageIndex);
+        if(index-currentPageStart >= currentPage.length) {
+            return EOF;
+        }
+        return currentPage[index-currentPageStart];
+    }
+
+    /** Returns the index of the page containing the char at index, or -1
+     * if the pages decoded so far do not reach that far.
+     */
+    private int findPage(int index) {
+        int last = pageCharStarts.size()-1;
+        // the start of the last page is only known once the previous page is decoded,
+        // so the last page can only be selected if it is also the end of the file
+        if(index >= pageCharStarts.get(last)) {
+            return size == -1 ? -1 : last;
+        }
+        int low = 0;
+        int high = last-1;
+        while(low < high) {
+            int mid = (low+high+1) >>> 1;
+            if(pageCharStarts.get(mid) <= index)
+                low = mid;
+            else
+                high = mid-1;
+        }
+        return low;
+    }
+
+    private char[] getPage(int pageIndex) {
+        if(pageIndex == currentPageIndex && currentPage != null) {
+            return currentPage;
+        }
+        char[] page = pages.get(pageIndex);
+        if(page == null) {
+            page = decodePage(pageIndex, true);
+        }
+        return page;
+    }
+
+    /** Decodes the page at pageIndex, recording the start of the next page
+     * the first time it is decoded.
+     */
+    private char[] decodePage(int pageIndex, boolean cache) {
+        ByteBuffer in = bytes.duplicate();
+        in.position(pageByteStarts.get(pageIndex));
+
+        CharBuffer out = CharBuffer.allocate(PAGE_SIZE);
+        decoder.reset();
+        CoderResult result = decoder.decode(in, out, true);
+        if(result.isUnderflow()) {
+            decoder.flush(out);
+        }
+        out.flip();
+
+        char[] page = new char[out.remaining()];
+        out.get(page);
+
+        if(pageIndex == pageCharStarts.size()-1 && size == -1) {
+            int nextCharStart = pageCharStarts.get(pageIndex)+page.length;
+            if(in.hasRemaining()) {
+                pageCharStarts.add(nextCharStart);
+                pageByteStarts.add(in.position());
+            } else {
+                size = nextCharStart;
+            }
+        }
+        if(cache) {
+            pages.put(pageIndex, page);
+        }
+        return page;
+    }
+
+}
@@ -0,0 +1,68 @@
+/*
+
+[The "BSD licence"]
+Copyright (c) 2005 Jean Bovet
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions
+are met:
+
+1. Redistributions of source code must retain the above copyright
+notice, this list of conditions and the following disclaimer.
+2. Redistributions in binary form must reproduce the above copyright
+notice, this list of conditions and the following disclaimer in the
+documentation and/or other materials provided with the distribution.
+3. The name of the author may not be used to endorse or promote products
+derived from this software without specific prior written permission.
+
+THIS SOFTWARE IS PROVIDED BY THE AUTHOR ``AS IS'' AND ANY EXPRESS OR
+IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES
+OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED.
+IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY DIRECT, INDIRECT,
+INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT
+NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+(INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF
+THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+
+*/
+
+package org.antlr.works.interpreter;
+
+import java.io.File;
+
+/** Result of the interpretation of one input file by an InterpreterBenchmark */
+public class InterpretedFile {
+
+    public File file;
+
+    public int chars;
+    public int tokens;
+
+    /** Number of lexer and parser errors, including the exception that aborted the interpretation */
+    public int errors;
+
+    /** Message of the exception that aborted the interpretation, if any */
+    public String failure;
+
+    /** Interpretation time in nanoseconds */
+    public long time;
+
+    public InterpretedFile(File file) {
+        this.file = file;
+    }
+
+    public double getTimeInMS() {
+        return time/1000000.0;
+    }
+
+    public double getCharsPerSecond() {
+        return time == 0 ? 0 : chars*1e9/time;
+    }
+
+    public double getTokensPerSecond() {
+        return time == 0 ? 0 : tokens*1e9/time;
+    }
+}
@@ -0,0 +1,353 @@
+/*
+
+[The "BSD licence"]
+Copyright (c) 2005 Jean Bovet
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions
+are met:
+
+1. Redistributions of source code must retain the above copyright
+notice, this list of conditions and the following disclaimer.
+2. Redistributions in binary form must reproduce the above copyright
+notice, this list of conditions and the following disclaimer in the
+documentation and/or other materials provided with the distribution.
+3. The name of the author may not be used to endorse or promote products
+derived from this software without specific prior written permission.
+
+THIS SOFTWARE IS PROVIDED BY THE AUTHOR ``AS IS'' AND ANY EXPRESS OR
+IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES
+OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED.
+IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY DIRECT, INDIRECT,
+INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT
+NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+(INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF
+THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+
+*/
+
+package org.antlr.works.interpreter;
+
+import org.antlr.Tool;
+import org.antlr.runtime.IntStream;
+import org.antlr.runtime.RecognitionException;
+import org.antlr.runtime.Token;
+import org.antlr.runtime.tree.ParseTree;
+import org.antlr.runtime.tree.Tree;
+import org.antlr.tool.Grammar;
+import org.antlr.tool.Interpreter;
+import org.antlr.works.ate.syntax.generic.ATESyntaxEngineDelegate;
+import org.antlr.works.ate.syntax.misc.ATEToken;
+import org.antlr.works.grammar.antlr.ANTLRGrammarEngine;
+import org.antlr.works.grammar.engine.GrammarEngine;
+import org.antlr.works.grammar.engine.GrammarEngineDelegate;
+import org.antlr.works.grammar.engine.GrammarEngineImpl;
+import org.antlr.works.utils.ErrorListener;
+
+import java.io.File;
+import java.util.*;
+import java.util.concurrent.*;
+
+/** Runs the lexer and parser interpreters over a set of input files in parallel
+ * and measures the time spent on each of them.
+ */
+public class InterpreterBenchmark {
+
+    private final GrammarEngineDelegate grammar;
+    private final String grammarText;
+    private final String startRule;
+    private final Set<String> ignoredTokens;
+
+    private InterpreterBenchmarkDelegate delegate;
+    private volatile boolean cancelled;
+
+    /** Each worker thread creates and analyzes its own grammars: ANTLR grammars are
+     * modified while interpreting and the ErrorManager state is per-thread, so nothing
+     * is shared between the workers.
+     */
+    private final ThreadLocal<WorkerGrammars> workerGrammars = new ThreadLocal<WorkerGrammars>();
+    private final Object prepareLock = new Object();
+    private final List<GrammarEngine> workerEngines = Collections.synchronizedList(new ArrayList<GrammarEngine>());
+
+    public InterpreterBenchmark(GrammarEngineDelegate grammar, String startRule, Collection<String> ignoredTokens) {
+        this.grammar = grammar;
+        this.grammarText = grammar.getGrammarText();
+        this.startRule = startRule;
+        this.ignoredTokens = new HashSet<String>(ignoredTokens);
+    }
+
+    public void setDelegate(InterpreterBenchmarkDelegate delegate) {
+        this.delegate = delegate;
+    }
+
+    public void cancel() {
+        cancelled = true;
+    }
+
+    /** Returns the regular files of a directory sorted by name, excluding the hidden ones */
+    public static List<File> getInputFiles(File directory) {
+        List<File> files = new ArrayList<File>();
+        File[] content = directory.listFiles();
+        if(content != null) {
+            for(File f : content) {
+                if(f.isFile() && !f.isHidden())
+                    files.add(f);
+            }
+        }
+        Collections.sort(files);
+        return files;
+    }
+
+    public InterpreterBenchmarkResult run(List<File> files, int threads) throws InterruptedException {
+        InterpreterBenchmarkResult result = new InterpreterBenchmarkResult(startRule, threads);
+
+        final CountDownLatch prepared = new CountDownLatch(threads);
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(threads, threads, 0L, TimeUnit.MILLISECONDS,
+                new LinkedBlockingQueue<Runnable>(), new ThreadFactory() {
+            public Thread newThread(final Runnable r) {
+                Thread t = new Thread(new Runnable() {
+                    public void run() {
+                        prepareWorker();
+                        prepared.countDown();
+                        r.run();
+                    }
+                }, "Interpreter Benchmark");
+                t.setDaemon(true);
+                return t;
+            }
+        });
+        CompletionService<InterpretedFile> completion = new ExecutorCompletionService<InterpretedFile>(executor);
+
+        long t = 0;
+        try {
+            // no file is submitted before all the workers are prepared
+            executor.prestartAllCoreThreads();
+            prepared.await();
+
+            t = System.nanoTime();
+            for(final File file : files) {
+                completion.submit(new Callable<InterpretedFile>() {
+                    public InterpretedFile call() {
+                        return cancelled ? null : interpret(file);
+                    }
+                });
+            }
+            for(int i=0; i<files.size(); i++) {
+                InterpretedFile f = getResult(completion.take());
+                if(f == null)
+                    continue;
+
+                result.files.add(f);
+                if(delegate != null)
+                    delegate.interpreterBenchmarkDidInterpretFile(f, result.files.size(), files.size());
+            }
+        } finally {
+            executor.shutdownNow();
+            executor.awaitTermination(Long.MAX_VALUE, TimeUnit.MILLISECONDS);
+
+            for(GrammarEngine engine : workerEngines) {
+                engine.close();
+            }
+            workerEngines.clear();
+        }
+        result.time = System.nanoTime()-t;
+        result.cancelled = cancelled;
+        return result;
+    }
+
+    /** Prepares the current worker before it interprets any file. The workers are prepared one
+     * at a time: creating and analyzing their grammars writes the per-thread state of ANTLR
+     * (the dispatcher of ErrorListener and the tool of ErrorManager), which must not happen
+     * while another worker is reporting messages.
+     */
+    private void prepareWorker() {
+        synchronized(prepareLock) {
+            ErrorListener.prepareThread();
+            ErrorListener.getThreadInstance().setPrintToConsole(false);
+            ErrorListener el = ErrorListener.getJobInstance();
+            el.install();
+            try {
+                workerGrammars.set(new WorkerGrammars());
+            } finally {
+                el.uninstall();
+            }
+        }
+    }
+
+    private InterpretedFile interpret(File file) {
+        InterpretedFile result = new InterpretedFile(file);
+
+        ErrorListener el = ErrorListener.getJobInstance();
+        el.install();
+
+        long t = 0;
+        try {
+            WorkerGrammars grammars = getWorkerGrammars();
+            t = System.nanoTime();
+
+            FileCharStream input = new FileCharStream(file);
+            CountingInterpreter lexEngine = new CountingInterpreter(grammars.lexer, input);
+
+            InterpreterTab.FilteringTokenStream tokens = new InterpreterTab.FilteringTokenStream(lexEngine);
+            for(String name : ignoredTokens) {
+                tokens.setTokenTypeChannel(grammars.lexer.getTokenType(name), Token.HIDDEN_CHANNEL);
+            }
+
+            ParseTree tree;
+            if(ATEToken.isLexerName(startRule)) {
+                // the lexer start rule is matched once on the input: it emits one token unless it fails
+                tree = lexEngine.parse(startRule);
+                if(countErrors(tree) == 0) {
+                    lexEngine.emittedTokens++;
+                }
+            } else if(grammars.parser == null) {
+                throw new RuntimeException("No parser grammar to interpret rule "+startRule);
+            } else {
+                tree = new CountingInterpreter(grammars.parser, tokens).parse(startRule);
+            }
+            result.time = System.nanoTime()-t;
+
+            result.chars = input.size();
+            result.tokens = lexEngine.emittedTokens;
+            result.errors = lexEngine.scanErrors+countErrors(tree);
+        } catch (Exception e) {
+            result.time = t == 0 ? 0 : System.nanoTime()-t;
+            result.failure = e.toString();
+            result.errors++;
+        } finally {
+            el.uninstall();
+        }
+        return result;
+    }
+
+    private WorkerGrammars getWorkerGrammars() throws Exception {
+        WorkerGrammars grammars = workerGrammars.get();
+        if(grammars.exception != null)
+            throw grammars.exception;
+        return grammars;
+    }
+
+    private static int countErrors(Tree tree) {
+        int errors = 0;
+        LinkedList<Tree> nodes = new LinkedList<Tree>();
+        if(tree != null) nodes.add(tree);
+        while(!nodes.isEmpty()) {
+            Tree node = nodes.removeFirst();
+            if(node instanceof ParseTree && ((ParseTree)node).payload instanceof RecognitionException)
+                errors++;
+            for(int i=0; i<node.getChildCount(); i++) {
+                nodes.add(node.getChild(i));
+            }
+        }
+        return errors;
+    }
+
+    private static InterpretedFile getResult(Future<InterpretedFile> future) throws InterruptedException {
+        try {
+            return future.get();
+        } catch (ExecutionException e) {
+            throw new RuntimeException(e.getCause());
+        }
+    }
+
+    private class WorkerGrammars implements GrammarEngineDelegate, ATESyntaxEngineDelegate {
+
+        public Grammar parser;
+        public Grammar lexer;
+        public Exception exception;
+
+        public WorkerGrammars() {
+            try {
+                GrammarEngine engine = new GrammarEngineImpl(this);
+                workerEngines.add(engine);
+
+                engine.getSyntaxEngine().setDelegate(this);
+                engine.getSyntaxEngine().processSyntax();
+                engine.parserCompleted();
+                engine.updateAll();
+                engine.analyze();
+
+                ANTLRGrammarEngine eg = engine.getANTLRGrammarEngine();
+                eg.createGrammars();
+                parser = eg.getParserGrammar();
+                lexer = eg.getLexerGrammar();
+                if(lexer == null) {
+                    throw new RuntimeException("Lexer is null. Check the grammar before running the interpreter.");
+                }
+            } catch (Exception e) {
+                exception = e;
+            }
+        }
+
+        public String getGrammarText() {
+            return grammarText;
+        }
+
+        public String getText() {
+            return grammarText;
+        }
+
+        public String getGrammarFileName() {
+            return grammar.getGrammarFileName();
+        }
+
+        public Tool getANTLRTool() {
+            return grammar.getANTLRTool();
+        }
+
+        public String getTokenVocabFile(String name) {
+            return grammar.getTokenVocabFile(name);
+        }
+
+        public void engineAnalyzeCompleted() {
+            // ignored
+        }
+
+        public void ateEngineBeforeParsing() {
+            // ignored
+        }
+
+        public void ateEngineAfterParsing() {
+            // ignored
+        }
+
+        public void gotoToRule(String grammar, String name) {
+            // ignored
+        }
+
+        public void reportError(Exception e) {
+            // ignored: the grammar errors are reported when the grammar is checked
+        }
+
+        public void reportError(String error) {
+            // ignored
+        }
+    }
+
+    private static class CountingInterpreter extends Interpreter {
+
+        public int scanErrors;
+        public int emittedTokens;
+
+        public CountingInterpreter(Grammar grammar, IntStream input) {
+            super(grammar, input);
+        }
+
+        @Override
+        public Token nextToken() {
+            Token token = super.nextToken();
+            if(token.getType() != Token.EOF) {
+                emittedTokens++;
+            }
+            return token;
+        }
+
+        @Override
+        public void reportScanError(RecognitionException re) {
+            scanErrors++;
+        }
+    }
+}
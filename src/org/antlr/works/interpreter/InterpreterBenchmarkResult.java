@@ -0,0 +1,126 @@
+/*
+
+[The "BSD licence"]
+Copyright (c) 2005 Jean Bovet
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions
+are met:
+
+1. Redistributions of source code must retain the above copyright
+notice, this list of conditions and the following disclaimer.
+2. Redistributions in binary form must reproduce the above copyright
+notice, this list of conditions and the following disclaimer in the
+documentation and/or other materials provided with the distribution.
+3. The name of the author may not be used to endorse or promote products
+derived from this software without specific prior written permission.
+
+THIS SOFTWARE IS PROVIDED BY THE AUTHOR ``AS IS'' AND ANY EXPRESS OR
+IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES
+OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED.
+IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY DIRECT, INDIRECT,
+INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT
+NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+(INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF
+THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+
+*/
+
+package org.antlr.works.interpreter;
+
+import java.util.*;
+
+/** Per-file and aggregate results of an InterpreterBenchmark run */
+public class InterpreterBenchmarkResult {
+
+    public static final int SLOWEST_FILES_COUNT = 5;
+
+    public final String startRule;
+    public final int threads;
+    public final List<InterpretedFile> files = new ArrayList<InterpretedFile>();
+
+    /** Wall-clock time of the whole run in nanoseconds */
+    public long time;
+    public boolean cancelled;
+
+    public InterpreterBenchmarkResult(String startRule, int threads) {
+        this.startRule = startRule;
+        this.threads = threads;
+    }
+
+    public long getTotalChars() {
+        long total = 0;
+        for(InterpretedFile f : files) total += f.chars;
+        return total;
+    }
+
+    public long getTotalTokens() {
+        long total = 0;
+        for(InterpretedFile f : files) total += f.tokens;
+        return total;
+    }
+
+    public int getTotalErrors() {
+        int total = 0;
+        for(InterpretedFile f : files) total += f.errors;
+        return total;
+    }
+
+    public int getFilesWithErrorsCount() {
+        int count = 0;
+        for(InterpretedFile f : files) {
+            if(f.errors > 0) count++;
+        }
+        return count;
+    }
+
+    public double getTimeInMS() {
+        return time/1000000.0;
+    }
+
+    public List<InterpretedFile> getSlowestFiles(int count) {
+        List<InterpretedFile> sorted = new ArrayList<InterpretedFile>(files);
+        Collections.sort(sorted, new Comparator<InterpretedFile>() {
+            public int compare(InterpretedFile f1, InterpretedFile f2) {
+                return f1.time < f2.time ? 1 : (f1.time == f2.time ? 0 : -1);
+            }
+        });
+        return sorted.subList(0, Math.min(count, sorted.size()));
+    }
+
+    public String getReport() {
+        StringBuilder sb = new StringBuilder();
+        for(InterpretedFile f : files) {
+            sb.append(String.format(Locale.US, "%s: %.2f ms, %d chars, %d tokens, %.0f chars/s, %.0f tokens/s, %d errors%s\n",
+                    f.file.getName(), f.getTimeInMS(), f.chars, f.tokens, f.getCharsPerSecond(), f.getTokensPerSecond(),
+                    f.errors, f.failure == null ? "" : " ("+f.failure+")"));
+        }
+        double seconds = time/1e9;
+        sb.append(String.format(Locale.US, "Interpreted %d files from rule %s with %d threads in %.1f ms%s\n",
+                files.size(), startRule, threads, getTimeInMS(), cancelled ? " (cancelled)" : ""));
+        sb.append(String.format(Locale.US, "Input: %d chars, %d tokens\n", getTotalChars(), getTotalTokens()));
+        if(seconds > 0) {
+            sb.append(String.format(Locale.US, "Throughput: %.0f chars/s, %.0f tokens/s\n",
+                    getTotalChars()/seconds, getTotalTokens()/seconds));
+        }
+        if(!files.isEmpty()) {
+            long cumulated = 0;
+            for(InterpretedFile f : files) cumulated += f.time;
+            sb.append(String.format(Locale.US, "Average: %.2f ms per file\n", cumulated/1000000.0/files.size()));
+        }
+        sb.append(String.format(Locale.US, "Errors: %d in %d files\n", getTotalErrors(), getFilesWithErrorsCount()));
+
+        List<InterpretedFile> slowest = getSlowestFiles(SLOWEST_FILES_COUNT);
+        if(!slowest.isEmpty()) {
+            sb.append("Slowest files:\n");
+            for(InterpretedFile f : slowest) {
+                sb.append(String.format(Locale.US, "  %s: %.2f ms, %.0f chars/s\n",
+                        f.file.getName(), f.getTimeInMS(), f.getCharsPerSecond()));
+            }
+        }
+        return sb.toString();
+    }
+}
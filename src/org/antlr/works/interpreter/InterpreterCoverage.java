@@ -0,0 +1,155 @@
+/*
+
+[The "BSD licence"]
+Copyright (c) 2005 Jean Bovet
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions
+are met:
+
+1. Redistributions of source code must retain the above copyright
+notice, this list of conditions and the following disclaimer.
+2. Redistributions in binary form must reproduce the above copyright
+notice, this list of conditions and the following disclaimer in the
+documentation and/or other materials provided with the distribution.
+3. The name of the author may not be used to endorse or promote products
+derived from this software without specific prior written permission.
+
+THIS SOFTWARE IS PROVIDED BY THE AUTHOR ``AS IS'' AND ANY EXPRESS OR
+IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES
+OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED.
+IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY DIRECT, INDIRECT,
+INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT
+NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+(INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF
+THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+
+*/
+
+package org.antlr.works.interpreter;
+
+import org.antlr.analysis.DFA;
+import org.antlr.analysis.NFAState;
+import org.antlr.tool.Grammar;
+import org.antlr.tool.Rule;
+
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/** Rule invocations and decision predictions collected while interpreting an input.
+ * All the rules and decisions of the grammars are listed, including the ones that
+ * the input never reached.
+ */
+public class InterpreterCoverage {
+
+    protected final Map<String, RuleCoverage> rules = new LinkedHashMap<String, RuleCoverage>();
+    protected final Map<Grammar, DecisionCoverage[]> decisions = new IdentityHashMap<Grammar, DecisionCoverage[]>();
+    protected final List<DecisionCoverage> decisionList = new ArrayList<DecisionCoverage>();
+
+    public InterpreterCoverage() {
+    }
+
+    /** Adds the rules and the decisions of the grammar. The positions of the rules are looked up
+     * in the positions grammar (the combined grammar for an implicit lexer) and the decisions are
+     * located only if the grammar is itself the positions grammar. The positions grammar is null
+     * if the grammar doesn't come from the edited file.
+     */
+    public void addGrammar(Grammar grammar, Grammar positions) {
+        boolean located = positions == grammar;
+        for(Rule rule : grammar.getRules()) {
+            if(rule.name.equals(Grammar.ARTIFICIAL_TOKENS_RULENAME) || rules.containsKey(rule.name))
+                continue;
+
+            RuleCoverage r = new RuleCoverage();
+            r.grammarName = grammar.name;
+            r.ruleName = rule.name;
+            Rule positioned = positions == null ? null : positions.getRule(rule.name);
+            if(positioned != null && positioned.tree != null) {
+                r.line = positioned.tree.getLine();
+                r.column = positioned.tree.getCharPositionInLine();
+            }
+            rules.put(rule.name, r);
+        }
+
+        DecisionCoverage[] coverages = new DecisionCoverage[grammar.getNumberOfDecisions()+1];
+        for(int decision = 1; decision <= grammar.getNumberOfDecisions(); decision++) {
+            NFAState start = grammar.getDecisionNFAStartState(decision);
+            if(start == null || start.enclosingRule == null || start.enclosingRule.name.equals(Grammar.ARTIFICIAL_TOKENS_RULENAME))
+                continue;
+
+            DecisionCoverage d = new DecisionCoverage();
+            d.grammarName = grammar.name;
+            d.ruleName = start.enclosingRule.name;
+            d.decision = decision;
+            if(located && start.associatedASTNode != null) {
+                d.line = start.associatedASTNode.getLine();
+                d.column = start.associatedASTNode.getCharPositionInLine();
+            }
+            DFA dfa = grammar.getLookaheadDFA(decision);
+            d.backtracking = dfa != null && dfa.hasSynPred();
+            coverages[decision] = d;
+            decisionList.add(d);
+        }
+        decisions.put(grammar, coverages);
+    }
+
+    public void ruleInvoked(String ruleName) {
+        RuleCoverage r = rules.get(ruleName);
+        if(r != null)
+            r.invocations++;
+    }
+
+    /** Records a prediction of the decision that looked ahead depth symbols */
+    public void decisionPredicted(Grammar grammar, int decision, int depth) {
+        DecisionCoverage[] coverages = decisions.get(grammar);
+        if(coverages == null || decision <= 0 || decision >= coverages.length)
+            return;
+
+        DecisionCoverage d = coverages[decision];
+        if(d != null)
+            d.predicted(depth);
+    }
+
+    public List<RuleCoverage> getRules() {
+        return new ArrayList<RuleCoverage>(rules.values());
+    }
+
+    public List<DecisionCoverage> getDecisions() {
+        return decisionList;
+    }
+
+    public List<ElementCoverage> getElements() {
+        List<ElementCoverage> elements = new ArrayList<ElementCoverage>(rules.values());
+        elements.addAll(decisionList);
+        return elements;
+    }
+
+    /** Returns the highest hit count of all the elements, used to scale the heat overlay */
+    public long getMaximumHits() {
+        long max = 0;
+        for(ElementCoverage e : getElements()) {
+            max = Math.max(max, e.getHits());
+        }
+        return max;
+    }
+
+    /** Returns the percentage of the rules and decisions reached at least once */
+    public double getPercentCovered() {
+        List<ElementCoverage> elements = getElements();
+        if(elements.isEmpty())
+            return 0;
+
+        int covered = 0;
+        for(ElementCoverage e : elements) {
+            if(e.getHits() > 0)
+                covered++;
+        }
+        return 100.0*covered/elements.size();
+    }
+}
@@ -0,0 +1,288 @@
+/*
+
+[The "BSD licence"]
+Copyright (c) 2005 Jean Bovet
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions
+are met:
+
+1. Redistributions of source code must retain the above copyright
+notice, this list of conditions and the following disclaimer.
+2. Redistributions in binary form must reproduce the above copyright
+notice, this list of conditions and the following disclaimer in the
+documentation and/or other materials provided with the distribution.
+3. The name of the author may not be used to endorse or promote products
+derived from this software without specific prior written permission.
+
+THIS SOFTWARE IS PROVIDED BY THE AUTHOR ``AS IS'' AND ANY EXPRESS OR
+IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES
+OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED.
+IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY DIRECT, INDIRECT,
+INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT
+NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+(INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF
+THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+
+*/
+
+package org.antlr.works.interpreter;
+
+import org.antlr.works.ate.ATEOverlayManager;
+import org.antlr.works.components.GrammarWindow;
+import org.antlr.works.editor.EditorInspectorItem;
+import org.antlr.works.grammar.element.ElementRule;
+import org.antlr.works.utils.Toolbar;
+import org.antlr.xjlib.appkit.swing.XJTable;
+import org.antlr.xjlib.appkit.swing.XJTableView;
+
+import javax.swing.*;
+import javax.swing.table.AbstractTableModel;
+import java.awt.*;
+import java.awt.event.MouseAdapter;
+import java.awt.event.MouseEvent;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+/** Displays the rule invocations and decision predictions of the last interpreted run
+ * as a table and as a heat overlay in the grammar editor.
+ */
+public class InterpreterCoveragePanel {
+
+    public static final int COLUMN_GRAMMAR = 0;
+    public static final int COLUMN_RULE = 1;
+    public static final int COLUMN_DECISION = 2;
+    public static final int COLUMN_LINE = 3;
+    public static final int COLUMN_HITS = 4;
+    public static final int COLUMN_AVERAGE_LOOKAHEAD = 5;
+    public static final int COLUMN_MAX_LOOKAHEAD = 6;
+    public static final int COLUMN_HISTOGRAM = 7;
+    public static final int COLUMN_BACKTRACKING = 8;
+
+    protected static final Color COLOR_NOT_COVERED = new Color(160, 160, 160);
+
+    protected GrammarWindow window;
+    protected JPanel panel;
+    protected JLabel summaryLabel;
+    protected XJTableView tableView;
+    protected CoverageTableModel model;
+
+    protected InterpreterCoverage coverage;
+
+    public InterpreterCoveragePanel(GrammarWindow window) {
+        this.window = window;
+
+        model = new CoverageTableModel();
+
+        tableView = new XJTableView();
+        final XJTable table = tableView.getTable();
+        table.setModel(model);
+        table.setAutoCreateRowSorter(true);
+        table.addMouseListener(new MouseAdapter() {
+            @Override
+            public void mouseClicked(MouseEvent e) {
+                int row = table.rowAtPoint(e.getPoint());
+                if(row >= 0) {
+                    goToElement(model.getElement(table.convertRowIndexToModel(row)));
+                }
+            }
+        });
+
+        summaryLabel = new JLabel();
+        Toolbar box = Toolbar.createHorizontalToolbar();
+        box.addElement(summaryLabel);
+        box.add(Box.createHorizontalGlue());
+
+        panel = new JPanel(new BorderLayout());
+        panel.add(tableView, BorderLayout.CENTER);
+        panel.add(box, BorderLayout.SOUTH);
+    }
+
+    public void close() {
+        window = null;
+    }
+
+    public Container getContainer() {
+        return panel;
+    }
+
+    public void setCoverage(InterpreterCoverage coverage) {
+        this.coverage = coverage;
+        if(coverage != null)
+            locateRules(coverage);
+        model.setCoverage(coverage);
+        if(coverage == null) {
+            summaryLabel.setText("");
+        } else {
+            summaryLabel.setText(String.format(Locale.US, "%.1f%% of %d rules and decisions covered",
+                    coverage.getPercentCovered(), coverage.getElements().size()));
+        }
+        tableView.autoresizeColumns();
+    }
+
+    public InterpreterCoverage getCoverage() {
+        return coverage;
+    }
+
+    /** The rules extracted to an implicit lexer have no position in the grammar file:
+     * they are located using the rules of the editor.
+     */
+    private void locateRules(InterpreterCoverage coverage) {
+        for(RuleCoverage r : coverage.getRules()) {
+            if(r.line > 0)
+                continue;
+
+            ElementRule rule = window.getGrammarEngine().getRuleWithName(r.ruleName);
+            if(rule != null && rule.start != null) {
+                r.line = rule.start.startLineNumber+1;
+                r.column = rule.start.getStartIndex()-rule.start.startLineIndex;
+            }
+        }
+    }
+
+    /** Returns the items of the heat overlay: each rule name and decision is marked with
+     * a color going from yellow to red with the number of hits, or gray if never reached.
+     */
+    public List<EditorInspectorItem> getOverlayItems() {
+        List<EditorInspectorItem> items = new ArrayList<EditorInspectorItem>();
+        if(coverage == null)
+            return items;
+
+        long max = coverage.getMaximumHits();
+        for(RuleCoverage r : coverage.getRules()) {
+            ElementRule rule = window.getGrammarEngine().getRuleWithName(r.ruleName);
+            if(rule == null || rule.start == null)
+                continue;
+
+            EditorInspectorItem item = new EditorInspectorItem();
+            item.setAttributes(rule.start, rule.start.getStartIndex(), rule.start.getEndIndex(),
+                    rule.start.startLineNumber, getHeatColor(r.invocations, max),
+                    "Rule "+r.ruleName+": "+r.invocations+" invocations");
+            item.shape = ATEOverlayManager.SHAPE_LINE;
+            items.add(item);
+        }
+        for(DecisionCoverage d : coverage.getDecisions()) {
+            if(d.line <= 0)
+                continue;
+
+            int position = window.decisionDFAEngine.getDecisionTextPosition(d.line, d.column);
+            if(position < 0)
+                continue;
+
+            EditorInspectorItem item = new EditorInspectorItem();
+            item.setAttributes(null, position, position+1, d.line-1, getHeatColor(d.predictions, max),
+                    "Decision "+d.decision+": "+d.predictions+" predictions");
+            item.shape = ATEOverlayManager.SHAPE_RECT;
+            items.add(item);
+        }
+        return items;
+    }
+
+    /** The hits are scaled logarithmically so that the cold elements remain distinguishable
+     * from the ones that are never reached.
+     */
+    public static Color getHeatColor(long hits, long max) {
+        if(hits == 0)
+            return COLOR_NOT_COVERED;
+
+        double heat = max <= 1 ? 1 : Math.log(hits)/Math.log(max);
+        return new Color(255, (int)(220*(1-heat)), 0);
+    }
+
+    private void goToElement(ElementCoverage element) {
+        if(element.line > 0 && element instanceof DecisionCoverage) {
+            int position = window.decisionDFAEngine.getDecisionTextPosition(element.line, element.column);
+            if(position >= 0) {
+                window.goToHistoryRememberCurrentPosition();
+                window.setCaretPosition(position);
+                return;
+            }
+        }
+        window.goToRule(element.ruleName);
+    }
+
+    protected class CoverageTableModel extends AbstractTableModel {
+
+        static final long serialVersionUID = 1L;
+
+        protected List<ElementCoverage> elements = new ArrayList<ElementCoverage>();
+
+        public void setCoverage(InterpreterCoverage coverage) {
+            elements.clear();
+            if(coverage != null) {
+                elements.addAll(coverage.getElements());
+            }
+            fireTableDataChanged();
+        }
+
+        public ElementCoverage getElement(int row) {
+            return elements.get(row);
+        }
+
+        public int getRowCount() {
+            return elements.size();
+        }
+
+        public int getColumnCount() {
+            return 9;
+        }
+
+        @Override
+        public String getColumnName(int column) {
+            switch(column) {
+                case COLUMN_GRAMMAR: return "Grammar";
+                case COLUMN_RULE: return "Rule";
+                case COLUMN_DECISION: return "Decision";
+                case COLUMN_LINE: return "Line";
+                case COLUMN_HITS: return "Hits";
+                case COLUMN_AVERAGE_LOOKAHEAD: return "Avg Lookahead";
+                case COLUMN_MAX_LOOKAHEAD: return "Max Lookahead";
+                case COLUMN_HISTOGRAM: return "Lookahead Histogram";
+                case COLUMN_BACKTRACKING: return "Backtracking";
+            }
+            return super.getColumnName(column);
+        }
+
+        @Override
+        public Class<?> getColumnClass(int column) {
+            switch(column) {
+                case COLUMN_DECISION:
+                case COLUMN_LINE:
+                case COLUMN_MAX_LOOKAHEAD:
+                    return Integer.class;
+                case COLUMN_HITS:
+                case COLUMN_BACKTRACKING:
+                    return Long.class;
+                case COLUMN_AVERAGE_LOOKAHEAD:
+                    return Double.class;
+            }
+            return String.class;
+        }
+
+        public Object getValueAt(int row, int column) {
+            ElementCoverage e = elements.get(row);
+            switch(column) {
+                case COLUMN_GRAMMAR: return e.grammarName;
+                case COLUMN_RULE: return e.ruleName;
+                case COLUMN_LINE: return e.line > 0 ? e.line : null;
+                case COLUMN_HITS: return e.getHits();
+            }
+            if(!(e instanceof DecisionCoverage))
+                return null;
+
+            DecisionCoverage d = (DecisionCoverage) e;
+            switch(column) {
+                case COLUMN_DECISION: return d.decision;
+                case COLUMN_AVERAGE_LOOKAHEAD: return d.getAverageLookahead();
+                case COLUMN_MAX_LOOKAHEAD: return d.maxLookahead;
+                case COLUMN_HISTOGRAM: return d.getHistogramDescription();
+                case COLUMN_BACKTRACKING: return d.backtracking ? d.backtrackingAttempts : null;
+            }
+            return null;
+        }
+    }
+}
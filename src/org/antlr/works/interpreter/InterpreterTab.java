@@ -31,13 +31,19 @@ THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
 
 package org.antlr.works.interpreter;
 
+import org.antlr.analysis.DFA;
+import org.antlr.analysis.NFAState;
 import org.antlr.runtime.*;
+import org.antlr.runtime.debug.BlankDebugEventListener;
+import org.antlr.runtime.debug.DebugEventHub;
+import org.antlr.runtime.debug.DebugEventListener;
 import org.antlr.runtime.tree.ParseTree;
 import org.antlr.tool.Grammar;
 import org.antlr.tool.Interpreter;
 import org.antlr.works.ate.syntax.misc.ATEToken;
 import org.antlr.works.components.GrammarWindow;
 import org.antlr.works.components.GrammarWindowMenu;
+import org.antlr.works.editor.EditorInspectorItem;
 import org.antlr.works.editor.GrammarWindowTab;
 import org.antlr.works.grammar.antlr.ANTLRGrammarEngine;
 import org.antlr.works.grammar.element.ElementRule;
@@ -45,6 +51,7 @@ import org.antlr.works.menu.ContextualMenuFactory;
 import org.antlr.works.prefs.AWPrefs;
 import org.antlr.works.stats.StatisticsAW;
 import org.antlr.works.utils.IconManager;
+import org.antlr.works.utils.SerialExecutor;
 import org.antlr.works.utils.TextUtils;
 import org.antlr.works.utils.Toolbar;
 import org.antlr.works.utils.Utils;
@@ -54,18 +61,30 @@ import org.antlr.xjlib.appkit.gview.GView;
 import org.antlr.xjlib.appkit.swing.XJRollOverButton;
 import org.antlr.xjlib.appkit.utils.XJAlert;
 import org.antlr.xjlib.appkit.utils.XJDialogProgress;
+import org.antlr.xjlib.appkit.utils.XJDialogProgressDelegate;
+import org.antlr.xjlib.appkit.utils.XJFileChooser;
 
 import javax.swing.*;
+import javax.swing.event.DocumentEvent;
+import javax.swing.event.DocumentListener;
 import javax.swing.tree.TreeNode;
 import java.awt.*;
 import java.awt.event.ActionEvent;
 import java.awt.event.ActionListener;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
+import java.util.Stack;
 import java.util.StringTokenizer;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
 
-public class InterpreterTab extends GrammarWindowTab implements Runnable, AWTreePanelDelegate {
+public class InterpreterTab extends GrammarWindowTab implements AWTreePanelDelegate {
 
 	public static class FilteringTokenStream extends CommonTokenStream {
 		public FilteringTokenStream(TokenSource src) { super(src); }
@@ -85,11 +104,43 @@ public class InterpreterTab extends GrammarWindowTab implements Runnable, AWTree
     protected JScrollPane textScrollPane;
     protected EditorInterpreterTreeModel treeModel;
     protected AWTreePanel awTreePanel;
+    protected JTabbedPane resultTabs;
+    protected InterpreterCoveragePanel coveragePanel;
     protected JComboBox rulesCombo;
     protected JComboBox eolCombo;
     protected JLabel tokensToIgnoreLabel;
+    protected JLabel inputFileLabel;
+    protected JButton clearInputFileButton;
+
+    /** Number of chars of the input file displayed in the text pane */
+    protected static final int INPUT_FILE_PREVIEW_LENGTH = 32*1024;
+
+    /** When not null, the interpreter reads its input from this file instead of the text pane */
+    protected File inputFile;
+    protected String savedInputText;
+
+    protected JCheckBox liveCheckBox;
+    protected JCheckBox coverageCheckBox;
+    protected JLabel statusLabel;
+
+    /** Delay after the last change before the interpreter is run again in live mode */
+    protected static final int LIVE_DELAY = 750;
+    protected static final int PROGRESS_UPDATE_DELAY = 200;
+
+    /** Executor shared by the interpreter tabs of all the windows */
+    protected static final ExecutorService executor = Executors.newCachedThreadPool(new ThreadFactory() {
+        public Thread newThread(Runnable r) {
+            Thread t = new Thread(r, "Interpreter");
+            t.setDaemon(true);
+            return t;
+        }
+    });
+
+    /** Jobs of this tab run one at a time: a cancelled job may still be using the grammars for a while */
+    protected final SerialExecutor jobs = new SerialExecutor(executor);
 
-    protected XJDialogProgress progress;
+    protected Job currentJob;
+    protected Timer liveTimer;
 
     protected String startSymbol = null;
 
@@ -98,7 +149,10 @@ public class InterpreterTab extends GrammarWindowTab implements Runnable, AWTree
     }
 
     public void close() {
+        liveTimer.stop();
+        cancel();
         awTreePanel.setDelegate(null);
+        coveragePanel.close();
     }
 
     public void awake() {
@@ -120,11 +174,17 @@ public class InterpreterTab extends GrammarWindowTab implements Runnable, AWTree
         awTreePanel = new AWTreePanel(treeModel);
         awTreePanel.setDelegate(this);
 
+        coveragePanel = new InterpreterCoveragePanel(window);
+
+        resultTabs = new JTabbedPane();
+        resultTabs.addTab("Parse Tree", awTreePanel);
+        resultTabs.addTab("Coverage", coveragePanel.getContainer());
+
         splitPane = new JSplitPane();
         splitPane.setBorder(null);
         splitPane.setOrientation(JSplitPane.HORIZONTAL_SPLIT);
         splitPane.setLeftComponent(textScrollPane);
-        splitPane.setRightComponent(awTreePanel);
+        splitPane.setRightComponent(resultTabs);
         splitPane.setContinuousLayout(true);
         splitPane.setOneTouchExpandable(true);
         
@@ -132,16 +192,43 @@ public class InterpreterTab extends GrammarWindowTab implements Runnable, AWTree
         panel.add(splitPane, BorderLayout.CENTER);
 
         window.registerUndo(null, textPane);
+
+        liveTimer = new Timer(LIVE_DELAY, new ActionListener() {
+            public void actionPerformed(ActionEvent event) {
+                liveRun();
+            }
+        });
+        liveTimer.setRepeats(false);
+
+        textPane.getDocument().addDocumentListener(new DocumentListener() {
+            public void insertUpdate(DocumentEvent e) {
+                inputChanged();
+            }
+
+            public void removeUpdate(DocumentEvent e) {
+                inputChanged();
+            }
+
+            public void changedUpdate(DocumentEvent e) {
+                // attributes only
+            }
+        });
     }
 
     public Box createControlPanel() {
         Toolbar box = Toolbar.createHorizontalToolbar();
         box.addElement(createRunButton());
         box.addElement(createRulesPopUp());
+        box.addElement(createBenchmarkButton());
+        box.addElement(createLiveCheckBox());
+        box.addElement(createCoverageCheckBox());
+        box.addElement(statusLabel = new JLabel());
         box.addGroupSeparator();
         box.addElement(new JLabel("Line Endings:"));
         box.addElement(createEOLCombo());
         box.addGroupSeparator();
+        createInputFileField(box);
+        box.addGroupSeparator();
         createTokensToIgnoreField(box);
         return box;
     }
@@ -165,6 +252,43 @@ public class InterpreterTab extends GrammarWindowTab implements Runnable, AWTree
         return button;
     }
 
+    public JButton createBenchmarkButton() {
+        JButton button = new JButton("Benchmark...");
+        button.setFocusable(false);
+        button.setToolTipText("Interpret all the files of a directory and report the throughput and errors");
+        button.addActionListener(new ActionListener() {
+            public void actionPerformed(ActionEvent event) {
+                benchmark();
+            }
+        });
+        return button;
+    }
+
+    public JCheckBox createLiveCheckBox() {
+        liveCheckBox = new JCheckBox("Live");
+        liveCheckBox.setFocusable(false);
+        liveCheckBox.setToolTipText("Run the interpreter again each time the grammar or the input changes");
+        liveCheckBox.addActionListener(new ActionListener() {
+            public void actionPerformed(ActionEvent event) {
+                setLive(liveCheckBox.isSelected());
+            }
+        });
+        return liveCheckBox;
+    }
+
+    public JCheckBox createCoverageCheckBox() {
+        coverageCheckBox = new JCheckBox("Coverage");
+        coverageCheckBox.setFocusable(false);
+        coverageCheckBox.setToolTipText("Count the rule invocations and decision predictions and display them in the grammar");
+        coverageCheckBox.addActionListener(new ActionListener() {
+            public void actionPerformed(ActionEvent event) {
+                if(!coverageCheckBox.isSelected())
+                    setCoverage(null);
+            }
+        });
+        return coverageCheckBox;
+    }
+
     public JComboBox createRulesPopUp() {
         rulesCombo = new JComboBox();
         rulesCombo.setFocusable(false);
@@ -187,6 +311,77 @@ public class InterpreterTab extends GrammarWindowTab implements Runnable, AWTree
         return eolCombo;
     }
 
+    public Box createInputFileField(Toolbar box) {
+        JButton button = new JButton("File...");
+        button.setFocusable(false);
+        button.setToolTipText("Interpret the content of a file instead of the text");
+        button.addActionListener(new ActionListener() {
+            public void actionPerformed(ActionEvent event) {
+                if(XJFileChooser.shared().displayOpenDialog(getContainer(), false)) {
+                    setInputFile(new File(XJFileChooser.shared().getSelectedFilePath()));
+                }
+            }
+        });
+        box.addElement(button);
+
+        inputFileLabel = new JLabel("-");
+        inputFileLabel.setFont(inputFileLabel.getFont().deriveFont(Font.ITALIC));
+        box.addElement(inputFileLabel);
+
+        clearInputFileButton = new JButton("Clear");
+        clearInputFileButton.setFocusable(false);
+        clearInputFileButton.setToolTipText("Interpret the text again");
+        clearInputFileButton.setEnabled(false);
+        clearInputFileButton.addActionListener(new ActionListener() {
+            public void actionPerformed(ActionEvent event) {
+                setInputFile(null);
+            }
+        });
+        box.addElement(clearInputFileButton);
+
+        return box;
+    }
+
+    /** Sets the file used as input. The text pane only displays the beginning of the
+     * file: the content is streamed from the disk when interpreting.
+     */
+    public void setInputFile(File file) {
+        if(file != null) {
+            String preview;
+            try {
+                preview = createInputFilePreview(file);
+            } catch (IOException e) {
+                XJAlert.display(getContainer(), "Error", "Cannot read the input file:\n"+e.getMessage());
+                return;
+            }
+            if(inputFile == null)
+                savedInputText = textPane.getText();
+            inputFile = file;
+            textPane.setText(preview);
+            textPane.setCaretPosition(0);
+        } else if(inputFile != null) {
+            textPane.setText(savedInputText);
+            savedInputText = null;
+        }
+
+        inputFile = file;
+        scheduleLiveRun();
+        textPane.setEditable(file == null);
+        eolCombo.setEnabled(file == null);
+        clearInputFileButton.setEnabled(file != null);
+        inputFileLabel.setText(file == null ? "-" : file.getName());
+        inputFileLabel.setToolTipText(file == null ? null : file.getAbsolutePath());
+    }
+
+    protected String createInputFilePreview(File file) throws IOException {
+        FileCharStream stream = new FileCharStream(file);
+        String preview = stream.substring(0, INPUT_FILE_PREVIEW_LENGTH-1);
+        if(stream.LA(INPUT_FILE_PREVIEW_LENGTH+1) != CharStream.EOF) {
+            preview += "\n[...] (preview of the first "+INPUT_FILE_PREVIEW_LENGTH+" characters of "+file.length()+" bytes)";
+        }
+        return preview;
+    }
+
     public Box createTokensToIgnoreField(Toolbar box) {
         box.addElement(new JLabel("Ignore rules:"));
 
@@ -251,45 +446,251 @@ public class InterpreterTab extends GrammarWindowTab implements Runnable, AWTree
     public void interpret() {
         window.consoleTab.makeCurrent();
 
-        if(progress == null)
-            progress = new XJDialogProgress(window);
+        // AW-42: guess always before running the interpreterTab
+        window.findTokensToIgnore(false);
 
-        progress.setInfo("Interpreting...");
+        start(new Job(false));
+    }
+
+    /** Called when the grammar has been parsed again: re-runs the interpreter in live mode */
+    public void grammarChanged() {
+        scheduleLiveRun();
+    }
+
+    protected void inputChanged() {
+        if(inputFile == null)
+            scheduleLiveRun();
+    }
+
+    public void setLive(boolean flag) {
+        liveCheckBox.setSelected(flag);
+        if(flag) {
+            scheduleLiveRun();
+        } else {
+            liveTimer.stop();
+        }
+    }
+
+    public boolean isLive() {
+        return liveCheckBox.isSelected();
+    }
+
+    protected void scheduleLiveRun() {
+        if(isLive() && startSymbol != null)
+            liveTimer.restart();
+    }
+
+    protected void liveRun() {
+        if(!isLive() || startSymbol == null)
+            return;
 
-        // AW-42: guess always before running the interpreterTab
         window.findTokensToIgnore(false);
+        start(new Job(true));
+    }
 
-        progress.setCancellable(false);
-        progress.setIndeterminate(true);
-        progress.display();
+    /** Cancels the current run, if any, and starts the job once the cancelled one has returned */
+    protected void start(Job job) {
+        cancel();
+        currentJob = job;
+        job.start();
+    }
 
-        new Thread(this).start();
+    public void cancel() {
+        if(currentJob != null) {
+            currentJob.cancel();
+            currentJob = null;
+        }
     }
 
-    public void run() {
-        try {
-            window.getGrammarEngine().analyze();
-            process();
-        } catch(Exception e) {
-            window.consoleTab.println(e);
-        } finally {
-            runEnded();
+    public void benchmark() {
+        if(startSymbol == null)
+            return;
+
+        if(!XJFileChooser.shared().displayChooseDirectory(getContainer()))
+            return;
+
+        List<File> files = InterpreterBenchmark.getInputFiles(new File(XJFileChooser.shared().getSelectedFilePath()));
+        if(files.isEmpty()) {
+            XJAlert.display(getContainer(), "Benchmark", "The selected directory does not contain any file.");
+            return;
+        }
+
+        window.findTokensToIgnore(false);
+        new Benchmark(files).start();
+    }
+
+    public boolean isCoverageEnabled() {
+        return coverageCheckBox != null && coverageCheckBox.isSelected();
+    }
+
+    public void setCoverage(InterpreterCoverage coverage) {
+        coveragePanel.setCoverage(coverage);
+        window.textEditor.damage();
+    }
+
+    /** Returns the heat overlay of the last coverage, or null if the coverage is disabled */
+    public List<EditorInspectorItem> getCoverageOverlayItems() {
+        if(!isCoverageEnabled())
+            return null;
+        return coveragePanel.getOverlayItems();
+    }
+
+    public List<String> getTokensToIgnore() {
+        List<String> names = new ArrayList<String>();
+        StringTokenizer tk = new StringTokenizer(tokensToIgnoreLabel.getText(), " ");
+        while ( tk.hasMoreTokens() ) {
+            String tokenName = tk.nextToken();
+            if(!tokenName.equals("-"))
+                names.add(tokenName);
         }
+        return names;
     }
 
-    public void runEnded() {
-        SwingUtilities.invokeLater(new Runnable() {
-            public void run() {
+    protected class Job implements Runnable, XJDialogProgressDelegate {
+
+        protected final boolean live;
+        protected final String rule;
+        protected final File file;
+        protected final String text;
+        protected final List<String> tokensToIgnore;
+        protected final long length;
+        protected final boolean coverage;
+
+        protected volatile boolean cancelled;
+        protected volatile boolean analyzing;
+        protected volatile CancellableCharStream input;
+
+        protected Timer progressTimer;
+        protected XJDialogProgress progress;
+        protected long startTime;
+
+        /** The input and the settings are captured when the job is created, in the event thread */
+        public Job(boolean live) {
+            this.live = live;
+            this.rule = startSymbol;
+            this.file = inputFile;
+            this.text = inputFile == null ? Utils.convertRawTextWithEOL(textPane.getText(), eolCombo) : null;
+            this.tokensToIgnore = getTokensToIgnore();
+            this.length = inputFile == null ? text.length() : inputFile.length();
+            this.coverage = isCoverageEnabled();
+        }
+
+        public void start() {
+            progressTimer = new Timer(PROGRESS_UPDATE_DELAY, new ActionListener() {
+                public void actionPerformed(ActionEvent event) {
+                    updateProgress();
+                }
+            });
+
+            if(live) {
+                statusLabel.setText("Interpreting...");
+            } else {
+                progress = new XJDialogProgress(window);
+                progress.setInfo("Interpreting...");
+                progress.setCancellable(true);
+                progress.setDelegate(this);
+                progress.setIndeterminate(true);
+                progress.display();
+            }
+            progressTimer.start();
+
+            startTime = System.currentTimeMillis();
+            jobs.execute(this);
+        }
+
+        public void cancel() {
+            cancelled = true;
+            CancellableCharStream s = input;
+            if(s != null)
+                s.cancel();
+            if(analyzing)
+                window.getGrammarEngine().cancelAnalyze();
+        }
+
+        public void dialogDidCancel() {
+            InterpreterTab.this.cancel();
+        }
+
+        public void run() {
+            try {
+                // cancelled while waiting for the previous job
+                if(cancelled)
+                    return;
+
+                analyzing = true;
+                try {
+                    window.getGrammarEngine().analyze();
+                } finally {
+                    analyzing = false;
+                }
+                if(!cancelled)
+                    process(this);
+            } catch(CancellationException e) {
+                // the job has been cancelled while interpreting
+            } catch(Exception e) {
+                if(!cancelled)
+                    window.consoleTab.println(e);
+            } finally {
+                SwingUtilities.invokeLater(new Runnable() {
+                    public void run() {
+                        runEnded();
+                    }
+                });
+            }
+        }
+
+        protected CharStream createInputStream() throws IOException {
+            if(file != null) {
+                return new FileCharStream(file);
+            } else {
+                return new ANTLRStringStream(text);
+            }
+        }
+
+        protected void updateProgress() {
+            CancellableCharStream s = input;
+            if(s == null)
+                return;
+
+            String info = "Interpreting... "+s.getConsumed()+" of "+(file == null ? length+" characters" : "~"+length+" bytes");
+            if(live) {
+                statusLabel.setText(info);
+            } else {
+                progress.setInfo(info);
+                progress.setIndeterminate(false);
+                progress.setProgressMax((int)Math.min(length, Integer.MAX_VALUE));
+                progress.setProgress(s.getConsumed());
+            }
+        }
+
+        protected void runEnded() {
+            progressTimer.stop();
+            if(progress != null)
                 progress.close();
+
+            // the status belongs to the next job if this one has been replaced
+            boolean replaced = currentJob != null && currentJob != this;
+            if(cancelled) {
+                if(!live)
+                    window.consoleTab.println("Interpreter cancelled");
+                else if(!replaced)
+                    statusLabel.setText("Cancelled");
+            } else if(live && !replaced) {
+                statusLabel.setText("Interpreted in "+(System.currentTimeMillis()-startTime)+" ms");
             }
-        });
+            if(currentJob == this)
+                currentJob = null;
+        }
     }
 
-    protected void process() {
-        progress.setInfo("Interpreting...");
-        window.consoleTab.println("Interpreting...");
+    protected void process(Job job) throws IOException {
+        if(!job.live)
+            window.consoleTab.println("Interpreting...");
 
-        CharStream input = new ANTLRStringStream(Utils.convertRawTextWithEOL(textPane.getText(), eolCombo));
+        CancellableCharStream input = new CancellableCharStream(job.createInputStream());
+        job.input = input;
+        if(job.cancelled)
+            return;
 
         ANTLRGrammarEngine eg = window.getGrammarEngine().getANTLRGrammarEngine();
         try {
@@ -305,33 +706,51 @@ public class InterpreterTab extends GrammarWindowTab implements Runnable, AWTree
             throw new RuntimeException("Lexer is null. Check the grammar before running the interpreterTab.");
         }
 
-        Interpreter lexEngine = new CustomInterpreter(lexer, input);
+        InterpreterCoverage coverage = null;
+        if(job.coverage) {
+            coverage = new InterpreterCoverage();
+            if(parser != null)
+                coverage.addGrammar(parser, parser);
+            coverage.addGrammar(lexer, parser == null ? lexer : (lexer.implicitLexer ? parser : null));
+        }
+
+        Interpreter lexEngine = coverage == null ? new CustomInterpreter(lexer, input) : new ProfilingInterpreter(lexer, input, coverage);
 
 
         FilteringTokenStream tokens = new FilteringTokenStream(lexEngine);
 
-        StringTokenizer tk = new StringTokenizer(tokensToIgnoreLabel.getText(), " ");
-        while ( tk.hasMoreTokens() ) {
-            String tokenName = tk.nextToken();
+        for(String tokenName : job.tokensToIgnore) {
             tokens.setTokenTypeChannel(lexer.getTokenType(tokenName), Token.HIDDEN_CHANNEL);
         }
 
-        Interpreter parseEngine = new CustomInterpreter(parser, tokens);
+        Interpreter parseEngine = coverage == null ? new CustomInterpreter(parser, tokens) : new ProfilingInterpreter(parser, tokens, coverage);
 
         ParseTree t = null;
         try {
-            if(ATEToken.isLexerName(startSymbol)) {
-                t = lexEngine.parse(startSymbol);
+            if(ATEToken.isLexerName(job.rule)) {
+                t = lexEngine.parse(job.rule);
             } else {
-                t = parseEngine.parse(startSymbol);
+                t = parseEngine.parse(job.rule);
             }
+        } catch (CancellationException e) {
+            throw e;
         } catch (Exception e) {
             window.consoleTab.println(e);
         }
 
-        if(parser != null && t != null) {
+        if(parser != null && t != null && !job.cancelled) {
             SwingUtilities.invokeLater(new Refresh(parser, t));
         }
+
+        if(coverage != null && !job.cancelled) {
+            final InterpreterCoverage c = coverage;
+            SwingUtilities.invokeLater(new Runnable() {
+                public void run() {
+                    if(isCoverageEnabled())
+                        setCoverage(c);
+                }
+            });
+        }
     }
 
     public class CustomInterpreter extends Interpreter {
@@ -348,6 +767,112 @@ public class InterpreterTab extends GrammarWindowTab implements Runnable, AWTree
         }
     }
 
+    /** Interpreter counting the rule invocations and the lookahead depth of each prediction.
+     * The interpreter doesn't evaluate syntactic predicates: the predictions of the decisions
+     * using them are counted as the backtracking attempts a generated recognizer would make.
+     */
+    public class ProfilingInterpreter extends CustomInterpreter {
+
+        protected final InterpreterCoverage coverage;
+        protected final DebugEventListener ruleCounter;
+
+        public ProfilingInterpreter(Grammar grammar, IntStream input, InterpreterCoverage coverage) {
+            super(grammar, input);
+            this.coverage = coverage;
+            this.ruleCounter = new BlankDebugEventListener() {
+                @Override
+                public void enterRule(String grammarFileName, String ruleName) {
+                    ProfilingInterpreter.this.coverage.ruleInvoked(ruleName);
+                }
+            };
+        }
+
+        @Override
+        protected void parseEngine(String startRule, NFAState start, NFAState stop, IntStream input,
+                                   Stack<NFAState> ruleInvocationStack, DebugEventListener actions,
+                                   List<NFAState> visitedStates) throws RecognitionException
+        {
+            super.parseEngine(startRule, start, stop, input, ruleInvocationStack,
+                    actions == null ? ruleCounter : new DebugEventHub(actions, ruleCounter), visitedStates);
+        }
+
+        @Override
+        public int predict(DFA dfa) {
+            int start = input.index();
+            int alt = super.predict(dfa);
+            coverage.decisionPredicted(grammar, dfa.getDecisionNumber(), getLookaheadDepth(start, input.index()));
+            return alt;
+        }
+
+        /** The prediction consumes the lookahead symbols: for a token stream, only the tokens
+         * on the default channel are counted. A prediction always looks at one symbol at least,
+         * even when it exits a loop without consuming it.
+         */
+        protected int getLookaheadDepth(int start, int stop) {
+            if(!(input instanceof TokenStream))
+                return Math.max(1, stop-start);
+
+            TokenStream tokens = (TokenStream) input;
+            int depth = 0;
+            for(int i = start; i < stop; i++) {
+                if(tokens.get(i).getChannel() == Token.DEFAULT_CHANNEL)
+                    depth++;
+            }
+            return Math.max(1, depth);
+        }
+    }
+
+    protected class Benchmark implements Runnable, XJDialogProgressDelegate, InterpreterBenchmarkDelegate {
+
+        protected List<File> files;
+        protected InterpreterBenchmark benchmark;
+        protected XJDialogProgress benchmarkProgress;
+
+        public Benchmark(List<File> files) {
+            this.files = files;
+        }
+
+        public void start() {
+            window.consoleTab.makeCurrent();
+
+            benchmark = new InterpreterBenchmark(window, startSymbol, getTokensToIgnore());
+            benchmark.setDelegate(this);
+
+            benchmarkProgress = new XJDialogProgress(window);
+            benchmarkProgress.setInfo("Interpreting "+files.size()+" files...");
+            benchmarkProgress.setCancellable(true);
+            benchmarkProgress.setDelegate(this);
+            benchmarkProgress.setIndeterminate(false);
+            benchmarkProgress.setProgressMax(files.size());
+            benchmarkProgress.display();
+
+            new Thread(this).start();
+        }
+
+        public void run() {
+            try {
+                InterpreterBenchmarkResult result = benchmark.run(files, Runtime.getRuntime().availableProcessors());
+                window.consoleTab.println(result.getReport());
+            } catch(Exception e) {
+                window.consoleTab.println(e);
+            } finally {
+                SwingUtilities.invokeLater(new Runnable() {
+                    public void run() {
+                        benchmarkProgress.close();
+                    }
+                });
+            }
+        }
+
+        public void interpreterBenchmarkDidInterpretFile(InterpretedFile file, int interpreted, int total) {
+            benchmarkProgress.setProgress(interpreted);
+        }
+
+        public void dialogDidCancel() {
+            benchmark.cancel();
+        }
+    }
+
     public class Refresh implements Runnable {
         Grammar g;
         ParseTree t;
@@ -1,11 +1,7 @@
-package org.antlr.works.utils;
-
-import java.util.HashSet;
-import java.util.Set;
 /*
 
 [The "BSD licence"]
-Copyright (c) 2005-2006 Jean Bovet
+Copyright (c) 2005 Jean Bovet
 All rights reserved.
 
 Redistribution and use in source and binary forms, with or without
@@ -33,27 +29,17 @@ THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
 
 */
 
-public class NumberSet extends HashSet {
+package org.antlr.works.interpreter;
 
-    public NumberSet() {
-        super();
-    }
+/** Number of times a rule has been invoked by the interpreter */
+public class RuleCoverage extends ElementCoverage {
 
-    public NumberSet(int value) {
-        super();
-        add(new Integer(value));
-    }
+    public long invocations;
 
-    public void add(int value) {
-        add(new Integer(value));
-    }
-    
-    public boolean contains(int value) {
-        return contains(new Integer(value));
+    public RuleCoverage() {
     }
 
-    public void replaceAll(Set s) {
-        clear();
-        addAll(s);
+    public long getHits() {
+        return invocations;
     }
 }
@@ -78,6 +78,18 @@ public class DebugMenu {
         window.getDebuggerTab().launchRemoteDebugger();
     }
 
+    public void openRecording() {
+        window.getDebuggerTab().openRecording();
+    }
+
+    public void saveRecording() {
+        window.getDebuggerTab().saveRecording();
+    }
+
+    public boolean canSaveRecording() {
+        return window.getDebuggerTab().canSaveRecording();
+    }
+
     public void toggleInputTokens() {
         window.getDebuggerTab().toggleInputTokensBox();
         StatisticsAW.shared().recordEvent(StatisticsAW.EVENT_DEBUGGER_TOGGLE_INPUT_TOKENS);
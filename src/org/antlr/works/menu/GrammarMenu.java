@@ -181,6 +181,11 @@ public class GrammarMenu implements CheckGrammarDelegate, XJDialogProgressDelega
         StatisticsAW.shared().recordEvent(StatisticsAW.EVENT_CHECK_GRAMMAR);
     }
 
+    public void toggleContinuousAnalysis() {
+        StatisticsAW.shared().recordEvent(StatisticsAW.EVENT_TOGGLE_CONTINUOUS_ANALYSIS);
+        window.getContinuousAnalysis().setEnabled(!window.getContinuousAnalysis().isEnabled());
+    }
+
     public void checkGrammarDidBegin(CheckGrammar source) {
         checkingGrammar = true;
     }
@@ -86,6 +86,10 @@ public class AWPrefs {
     public static final String PREF_VSTYLE_AUTOCOMPLETION = "PREF_VSTYLE_AUTOCOMPLETION";
     public static final String PREF_PARSER_DELAY = "PREF_PARSER_DELAY";
     public static final String PREF_SMOOTH_SCROLLING = "PREF_SMOOTH_SCROLLING";
+    public static final String PREF_CONTINUOUS_ANALYSIS = "PREF_CONTINUOUS_ANALYSIS";
+    public static final String PREF_CONTINUOUS_ANALYSIS_DELAY = "PREF_CONTINUOUS_ANALYSIS_DELAY";
+    public static final String PREF_CONTINUOUS_ANALYSIS_THREADS = "PREF_CONTINUOUS_ANALYSIS_THREADS";
+    public static final String PREF_ANALYSIS_MAX_DFA_STATES = "PREF_ANALYSIS_MAX_DFA_STATES";
 
     public static final int DEFAULT_TAB_WIDTH = 8;
     public static String DEFAULT_EDITOR_FONT;
@@ -95,6 +99,10 @@ public class AWPrefs {
     public static final boolean DEFAULT_AUTO_INDENT_COLON_RULE = true;
     public static final int DEFAULT_PARSER_DELAY = 250;
     public static final boolean DEFAULT_SMOOTH_SCROLLING = true;
+    public static final boolean DEFAULT_CONTINUOUS_ANALYSIS = false;
+    public static final int DEFAULT_CONTINUOUS_ANALYSIS_DELAY = 1000;
+    public static final int DEFAULT_CONTINUOUS_ANALYSIS_THREADS = 1;
+    public static final int DEFAULT_ANALYSIS_MAX_DFA_STATES = 20000;
 
     // Syntax
 
@@ -389,6 +397,26 @@ public class AWPrefs {
         return getPreferences().getInt(PREF_PARSER_DELAY, DEFAULT_PARSER_DELAY);
     }
 
+    public static void setContinuousAnalysis(boolean flag) {
+        getPreferences().setBoolean(PREF_CONTINUOUS_ANALYSIS, flag);
+    }
+
+    public static boolean getContinuousAnalysis() {
+        return getPreferences().getBoolean(PREF_CONTINUOUS_ANALYSIS, DEFAULT_CONTINUOUS_ANALYSIS);
+    }
+
+    public static int getContinuousAnalysisDelay() {
+        return getPreferences().getInt(PREF_CONTINUOUS_ANALYSIS_DELAY, DEFAULT_CONTINUOUS_ANALYSIS_DELAY);
+    }
+
+    public static int getContinuousAnalysisThreads() {
+        return getPreferences().getInt(PREF_CONTINUOUS_ANALYSIS_THREADS, DEFAULT_CONTINUOUS_ANALYSIS_THREADS);
+    }
+
+    public static int getAnalysisMaxDFAStates() {
+        return getPreferences().getInt(PREF_ANALYSIS_MAX_DFA_STATES, DEFAULT_ANALYSIS_MAX_DFA_STATES);
+    }
+
     public static void setLookAndFeel(String name) {
         getPreferences().setString(PREF_LOOK_AND_FEEL, name);
     }
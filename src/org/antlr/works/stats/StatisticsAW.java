@@ -108,6 +108,7 @@ public class StatisticsAW {
     public static final int EVENT_TOGGLE_SYNTAX_DIAGRAM = 121;
     public static final int EVENT_TOGGLE_IDEAS = 122;
     public static final int EVENT_TOGGLE_RULE_SORT = 123;
+    public static final int EVENT_TOGGLE_CONTINUOUS_ANALYSIS = 124;
 
     /* Misc */
     public static final int EVENT_SHOW_PREFERENCES = 130;
@@ -190,6 +191,7 @@ public class StatisticsAW {
         register(EVENT_TOGGLE_SYNTAX_DIAGRAM, "Toggle syntax diagram");
         register(EVENT_TOGGLE_IDEAS, "Toggle ideas");
         register(EVENT_TOGGLE_RULE_SORT, "Toggle rule sort");
+        register(EVENT_TOGGLE_CONTINUOUS_ANALYSIS, "Toggle continuous analysis");
 
         register(EVENT_SHOW_PREFERENCES, "Show preferences");
         register(EVENT_SHOW_HELP, "Show help");
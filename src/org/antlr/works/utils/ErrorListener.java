@@ -31,8 +31,9 @@ THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
 
 package org.antlr.works.utils;
 
-import org.antlr.analysis.DecisionProbe;
+import org.antlr.misc.BitSet;
 import org.antlr.tool.ANTLRErrorListener;
+import org.antlr.tool.ErrorManager;
 import org.antlr.tool.Message;
 import org.antlr.tool.ToolMessage;
 
@@ -41,7 +42,32 @@ import java.util.List;
 
 public class ErrorListener implements ANTLRErrorListener {
 
-    private static ThreadLocal<ErrorListener> threadLocalListener = new ThreadLocal<ErrorListener>();
+    private static final ThreadLocal<ErrorListener> threadLocalListener = new ThreadLocal<ErrorListener>() {
+        @Override
+        protected ErrorListener initialValue() {
+            return new ErrorListener();
+        }
+    };
+
+    /** Stack of the listeners installed by the current thread: the first one receives the messages */
+    private static final ThreadLocal<LinkedList<ErrorListener>> threadLocalInstalled = new ThreadLocal<LinkedList<ErrorListener>>() {
+        @Override
+        protected LinkedList<ErrorListener> initialValue() {
+            return new LinkedList<ErrorListener>();
+        }
+    };
+
+    /** True once the thread dispatcher of the current thread is set in ErrorManager */
+    private static final ThreadLocal<Boolean> threadLocalPrepared = new ThreadLocal<Boolean>();
+
+    /** ErrorManager keeps its per-thread listeners and error states in unsynchronized maps that
+     * ANTLR reads without any lock each time it reports a message. To keep these maps stable,
+     * each thread sets a single ThreadDispatcher in ErrorManager, once, and never removes it:
+     * installing and uninstalling a listener only changes threadLocalInstalled. The first write
+     * of each thread goes through this lock; a thread that runs jobs next to other ones should
+     * call prepareThread() before they start reporting.
+     */
+    private static final Object errorManagerLock = new Object();
 
     public List<String> infos = new LinkedList<String>();
     public List<Message> errors = new LinkedList<Message>();
@@ -50,17 +76,75 @@ public class ErrorListener implements ANTLRErrorListener {
     public boolean printToConsole = true;
     public ErrorListener forwardListener = null;
 
-    public static synchronized ErrorListener getThreadInstance() {
-        if(threadLocalListener.get() == null) {
-            threadLocalListener.set(new ErrorListener());
-        }
+    public static ErrorListener getThreadInstance() {
         return threadLocalListener.get();
     }
 
+    /**
+     * Returns a new listener to collect the messages of a single job (like the analysis of a grammar)
+     * so its results are not mixed with the ones of another job. The listener inherits the console
+     * setting of the thread instance.
+     */
+    public static ErrorListener getJobInstance() {
+        ErrorListener el = new ErrorListener();
+        el.setPrintToConsole(getThreadInstance().printToConsole);
+        return el;
+    }
+
+    /** Returns the listener receiving the messages of the current thread or null if none is installed */
+    public static ErrorListener getInstalledInstance() {
+        LinkedList<ErrorListener> installed = threadLocalInstalled.get();
+        return installed.isEmpty()?null:installed.getFirst();
+    }
+
+    /**
+     * Sets the dispatcher of the current thread in ANTLR's ErrorManager and creates its error
+     * state. This is the only time ErrorManager is modified for a thread: it is done by install()
+     * if needed.
+     */
+    public static void prepareThread() {
+        if(threadLocalPrepared.get() != null)
+            return;
+
+        synchronized(errorManagerLock) {
+            ErrorManager.setErrorListener(new ThreadDispatcher());
+            ErrorManager.getErrorState();
+        }
+        threadLocalPrepared.set(Boolean.TRUE);
+    }
+
+    /**
+     * Resets the error state of the current thread only. Unlike ErrorManager.resetErrorState(),
+     * the listeners installed by the other threads are left untouched.
+     */
+    public static void resetErrorState() {
+        synchronized(errorManagerLock) {
+            ErrorManager.ErrorState state = ErrorManager.getErrorState();
+            state.errors = 0;
+            state.warnings = 0;
+            state.infos = 0;
+            state.errorMsgIDs = new BitSet();
+            state.warningMsgIDs = new BitSet();
+        }
+    }
+
     public ErrorListener() {
 
     }
 
+    /**
+     * Installs this listener to receive the messages reported by ANTLR on the current thread.
+     * Installations can be nested: uninstall() restores the listener that was installed before.
+     */
+    public void install() {
+        prepareThread();
+        threadLocalInstalled.get().addFirst(this);
+    }
+
+    public void uninstall() {
+        threadLocalInstalled.get().remove(this);
+    }
+
     public void setPrintToConsole(boolean flag) {
         this.printToConsole = flag;
     }
@@ -123,13 +207,50 @@ public class ErrorListener implements ANTLRErrorListener {
         if(!printToConsole)
             return;
 
-        boolean previousVerbose = DecisionProbe.verbose;
-        DecisionProbe.verbose = false;
+        // The message is already formatted: DecisionProbe.verbose, read by ANTLR when
+        // formatting a message, doesn't need to be changed here
         try {
             ConsoleHelper.getCurrent().println(msg, level);
         } catch(Exception e) {
             e.printStackTrace();
         }
-        DecisionProbe.verbose = previousVerbose;
+    }
+
+    /** Listener set in ErrorManager for a thread: forwards the messages to the listener installed
+     * by the current job, or prints them like ANTLR's default listener if none is installed.
+     */
+    private static class ThreadDispatcher implements ANTLRErrorListener {
+
+        public void info(String msg) {
+            ErrorListener listener = getInstalledInstance();
+            if(listener == null)
+                System.err.println(msg);
+            else
+                listener.info(msg);
+        }
+
+        public void error(Message msg) {
+            ErrorListener listener = getInstalledInstance();
+            if(listener == null)
+                System.err.println(msg);
+            else
+                listener.error(msg);
+        }
+
+        public void warning(Message msg) {
+            ErrorListener listener = getInstalledInstance();
+            if(listener == null)
+                System.err.println(msg);
+            else
+                listener.warning(msg);
+        }
+
+        public void error(ToolMessage msg) {
+            ErrorListener listener = getInstalledInstance();
+            if(listener == null)
+                System.err.println(msg);
+            else
+                listener.error(msg);
+        }
     }
 }
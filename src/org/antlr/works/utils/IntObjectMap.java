@@ -0,0 +1,211 @@
+package org.antlr.works.utils;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+/*
+
+[The "BSD licence"]
+Copyright (c) 2005 Jean Bovet
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions
+are met:
+
+1. Redistributions of source code must retain the above copyright
+notice, this list of conditions and the following disclaimer.
+2. Redistributions in binary form must reproduce the above copyright
+notice, this list of conditions and the following disclaimer in the
+documentation and/or other materials provided with the distribution.
+3. The name of the author may not be used to endorse or promote products
+derived from this software without specific prior written permission.
+
+THIS SOFTWARE IS PROVIDED BY THE AUTHOR ``AS IS'' AND ANY EXPRESS OR
+IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES
+OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED.
+IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY DIRECT, INDIRECT,
+INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT
+NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+(INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF
+THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+
+*/
+
+
+/** Map from int keys to objects that does not box the keys. The entries are stored
+ * in open addressing arrays with linear probing. The values cannot be null.
+ *
+ * The entries can be iterated with getCapacity() and valueAt(slot), which returns
+ * null for the free slots.
+ */
+public class IntObjectMap<V> {
+
+    protected static final int DEFAULT_CAPACITY = 16;
+
+    protected int[] keys;
+    protected Object[] values;
+    protected int size;
+    protected int mask;
+
+    public IntObjectMap() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    public IntObjectMap(int expectedSize) {
+        int capacity = DEFAULT_CAPACITY;
+        while(capacity*3 < expectedSize*4)
+            capacity <<= 1;
+        allocate(capacity);
+    }
+
+    public IntObjectMap(IntObjectMap<V> map) {
+        keys = map.keys.clone();
+        values = map.values.clone();
+        size = map.size;
+        mask = map.mask;
+    }
+
+    protected void allocate(int capacity) {
+        keys = new int[capacity];
+        values = new Object[capacity];
+        mask = capacity-1;
+    }
+
+    protected static int hash(int key) {
+        int h = key*0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+
+    protected int find(int key) {
+        int slot = hash(key) & mask;
+        while(values[slot] != null) {
+            if(keys[slot] == key)
+                return slot;
+            slot = (slot+1) & mask;
+        }
+        return -1;
+    }
+
+    @SuppressWarnings("unchecked")
+    public V get(int key) {
+        int slot = find(key);
+        return slot == -1?null:(V)values[slot];
+    }
+
+    public boolean containsKey(int key) {
+        return find(key) != -1;
+    }
+
+    @SuppressWarnings("unchecked")
+    public V put(int key, V value) {
+        if(value == null)
+            throw new IllegalArgumentException("null value");
+
+        int slot = hash(key) & mask;
+        while(values[slot] != null) {
+            if(keys[slot] == key) {
+                V previous = (V)values[slot];
+                values[slot] = value;
+                return previous;
+            }
+            slot = (slot+1) & mask;
+        }
+
+        keys[slot] = key;
+        values[slot] = value;
+        if(++size*4 > values.length*3)
+            rehash(values.length*2);
+        return null;
+    }
+
+    public void putAll(IntObjectMap<V> map) {
+        for(int slot=0; slot<map.values.length; slot++) {
+            if(map.values[slot] != null)
+                put(map.keys[slot], map.valueAt(slot));
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    public V remove(int key) {
+        int slot = find(key);
+        if(slot == -1)
+            return null;
+
+        V previous = (V)values[slot];
+
+        /** Shift back the following entries of the cluster so no lookup stops at the free slot */
+        int free = slot;
+        int next = slot;
+        while(true) {
+            next = (next+1) & mask;
+            if(values[next] == null)
+                break;
+
+            int ideal = hash(keys[next]) & mask;
+            if(free <= next ? (ideal <= free || ideal > next) : (ideal <= free && ideal > next)) {
+                keys[free] = keys[next];
+                values[free] = values[next];
+                free = next;
+            }
+        }
+        values[free] = null;
+        size--;
+        return previous;
+    }
+
+    protected void rehash(int capacity) {
+        int[] oldKeys = keys;
+        Object[] oldValues = values;
+        allocate(capacity);
+        for(int i=0; i<oldValues.length; i++) {
+            if(oldValues[i] == null)
+                continue;
+
+            int slot = hash(oldKeys[i]) & mask;
+            while(values[slot] != null)
+                slot = (slot+1) & mask;
+            keys[slot] = oldKeys[i];
+            values[slot] = oldValues[i];
+        }
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    public void clear() {
+        if(size == 0)
+            return;
+        Arrays.fill(values, null);
+        size = 0;
+    }
+
+    public int getCapacity() {
+        return values.length;
+    }
+
+    public int keyAt(int slot) {
+        return keys[slot];
+    }
+
+    @SuppressWarnings("unchecked")
+    public V valueAt(int slot) {
+        return (V)values[slot];
+    }
+
+    public List<V> values() {
+        List<V> list = new ArrayList<V>(size);
+        for(int slot=0; slot<values.length; slot++) {
+            if(values[slot] != null)
+                list.add(valueAt(slot));
+        }
+        return list;
+    }
+}
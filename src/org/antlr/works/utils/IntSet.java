@@ -0,0 +1,160 @@
+package org.antlr.works.utils;
+
+import java.util.Arrays;
+/*
+
+[The "BSD licence"]
+Copyright (c) 2005 Jean Bovet
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions
+are met:
+
+1. Redistributions of source code must retain the above copyright
+notice, this list of conditions and the following disclaimer.
+2. Redistributions in binary form must reproduce the above copyright
+notice, this list of conditions and the following disclaimer in the
+documentation and/or other materials provided with the distribution.
+3. The name of the author may not be used to endorse or promote products
+derived from this software without specific prior written permission.
+
+THIS SOFTWARE IS PROVIDED BY THE AUTHOR ``AS IS'' AND ANY EXPRESS OR
+IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES
+OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED.
+IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY DIRECT, INDIRECT,
+INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT
+NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+(INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF
+THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+
+*/
+
+
+/** Set of int that does not box its elements. The elements are stored in an open
+ * addressing array with linear probing.
+ */
+public class IntSet {
+
+    protected static final int DEFAULT_CAPACITY = 16;
+
+    protected int[] elements;
+    protected boolean[] used;
+    protected int size;
+    protected int mask;
+
+    public IntSet() {
+        allocate(DEFAULT_CAPACITY);
+    }
+
+    public IntSet(IntSet set) {
+        elements = set.elements.clone();
+        used = set.used.clone();
+        size = set.size;
+        mask = set.mask;
+    }
+
+    protected void allocate(int capacity) {
+        elements = new int[capacity];
+        used = new boolean[capacity];
+        mask = capacity-1;
+    }
+
+    protected static int hash(int element) {
+        int h = element*0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+
+    protected int find(int element) {
+        int slot = hash(element) & mask;
+        while(used[slot]) {
+            if(elements[slot] == element)
+                return slot;
+            slot = (slot+1) & mask;
+        }
+        return -1;
+    }
+
+    public boolean contains(int element) {
+        return find(element) != -1;
+    }
+
+    public boolean add(int element) {
+        int slot = hash(element) & mask;
+        while(used[slot]) {
+            if(elements[slot] == element)
+                return false;
+            slot = (slot+1) & mask;
+        }
+
+        elements[slot] = element;
+        used[slot] = true;
+        if(++size*4 > used.length*3)
+            rehash(used.length*2);
+        return true;
+    }
+
+    public void addAll(IntSet set) {
+        for(int slot=0; slot<set.used.length; slot++) {
+            if(set.used[slot])
+                add(set.elements[slot]);
+        }
+    }
+
+    public boolean remove(int element) {
+        int slot = find(element);
+        if(slot == -1)
+            return false;
+
+        /** Shift back the following elements of the cluster so no lookup stops at the free slot */
+        int free = slot;
+        int next = slot;
+        while(true) {
+            next = (next+1) & mask;
+            if(!used[next])
+                break;
+
+            int ideal = hash(elements[next]) & mask;
+            if(free <= next ? (ideal <= free || ideal > next) : (ideal <= free && ideal > next)) {
+                elements[free] = elements[next];
+                free = next;
+            }
+        }
+        used[free] = false;
+        size--;
+        return true;
+    }
+
+    protected void rehash(int capacity) {
+        int[] oldElements = elements;
+        boolean[] oldUsed = used;
+        allocate(capacity);
+        for(int i=0; i<oldUsed.length; i++) {
+            if(!oldUsed[i])
+                continue;
+
+            int slot = hash(oldElements[i]) & mask;
+            while(used[slot])
+                slot = (slot+1) & mask;
+            elements[slot] = oldElements[i];
+            used[slot] = true;
+        }
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    public void clear() {
+        if(size == 0)
+            return;
+        Arrays.fill(used, false);
+        size = 0;
+    }
+}
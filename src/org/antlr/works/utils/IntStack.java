@@ -0,0 +1,98 @@
+package org.antlr.works.utils;
+/*
+
+[The "BSD licence"]
+Copyright (c) 2005 Jean Bovet
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions
+are met:
+
+1. Redistributions of source code must retain the above copyright
+notice, this list of conditions and the following disclaimer.
+2. Redistributions in binary form must reproduce the above copyright
+notice, this list of conditions and the following disclaimer in the
+documentation and/or other materials provided with the distribution.
+3. The name of the author may not be used to endorse or promote products
+derived from this software without specific prior written permission.
+
+THIS SOFTWARE IS PROVIDED BY THE AUTHOR ``AS IS'' AND ANY EXPRESS OR
+IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES
+OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED.
+IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY DIRECT, INDIRECT,
+INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT
+NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+(INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF
+THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+
+*/
+
+
+/** Stack of int that does not box its elements */
+public class IntStack {
+
+    protected int[] elements;
+    protected int size;
+
+    public IntStack() {
+        elements = new int[16];
+    }
+
+    public IntStack(IntStack stack) {
+        elements = stack.elements.clone();
+        size = stack.size;
+    }
+
+    public void push(int element) {
+        if(size == elements.length) {
+            int[] newElements = new int[elements.length*2];
+            System.arraycopy(elements, 0, newElements, 0, size);
+            elements = newElements;
+        }
+        elements[size++] = element;
+    }
+
+    public int pop() {
+        if(size == 0)
+            throw new IllegalStateException("empty stack");
+        return elements[--size];
+    }
+
+    public int peek() {
+        if(size == 0)
+            throw new IllegalStateException("empty stack");
+        return elements[size-1];
+    }
+
+    /** Returns the element at the top of the stack or defaultValue if the stack is empty */
+    public int peek(int defaultValue) {
+        return size == 0?defaultValue:elements[size-1];
+    }
+
+    public int get(int index) {
+        return elements[index];
+    }
+
+    /** Replaces the content of this stack by the content of another stack */
+    public void set(IntStack stack) {
+        if(elements.length < stack.size)
+            elements = new int[stack.elements.length];
+        System.arraycopy(stack.elements, 0, elements, 0, stack.size);
+        size = stack.size;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    public void clear() {
+        size = 0;
+    }
+}
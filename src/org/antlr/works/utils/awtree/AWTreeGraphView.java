@@ -13,8 +13,9 @@ import org.antlr.xjlib.appkit.gview.shape.SLinkElbow;
 import javax.swing.*;
 import javax.swing.tree.TreeNode;
 import java.awt.*;
-import java.util.HashMap;
-import java.util.Map;
+import java.awt.image.BufferedImage;
+import java.util.*;
+import java.util.List;
 
 /*
 
@@ -47,7 +48,7 @@ THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
 
 */
 
-public class AWTreeGraphView extends GView {
+public class AWTreeGraphView extends GView implements AWTreeLayoutDelegate {
 
     public static final boolean DRAGGABLE = false;
 
@@ -56,7 +57,19 @@ public class AWTreeGraphView extends GView {
 
     public static final int MARGIN = 10;
 
+    /** Maximum number of nodes displayed when a new tree is set: the subtrees
+     * beyond this limit are collapsed and expanded on demand.
+     */
+    public static final int MAX_EXPANDED_NODES = 2000;
+
+    /** Below this zoom factor the nodes are drawn as simple boxes without label and
+     * the nodes closer than SUMMARY_GAP pixels are drawn as a single summary box.
+     */
+    public static final float DETAIL_ZOOM = 0.5f;
+    public static final int SUMMARY_GAP = 3;
+
     public static final Color HIGHLIGHTED_COLOR = new Color(0, 0.5f, 1, 0.4f);
+    public static final Color SUMMARY_COLOR = new Color(0.85f, 0.85f, 0.85f);
     public static final Font DEFAULT_FONT = new Font("Monospaced", Font.PLAIN, 11);
 
     protected TreeNode root;
@@ -65,16 +78,24 @@ public class AWTreeGraphView extends GView {
     protected Map<TreeNode,GElement> treeNodeToGElementMap = new HashMap<TreeNode, GElement>();
     protected Map<GElement,TreeNode> gelementToTreeNodeMap = new HashMap<GElement, TreeNode>();
 
+    /** Nodes whose children are not laid out */
+    protected Set<TreeNode> collapsedNodes = new HashSet<TreeNode>();
+
     protected AWTreePanel panel;
     protected AWTreeModel model;
+    protected AWTreeLayout layout;
 
     protected Graphics2D g2d;
     protected FontMetrics fontMetrics;
 
     protected boolean dirty = true;
 
+    /** True if the tree must be laid out completely instead of incrementally */
+    protected boolean layoutInvalid = true;
+
     public AWTreeGraphView(AWTreePanel panel) {
         this.panel = panel;
+        this.layout = new AWTreeLayout(this, HORIZONTAL_GAP, VERTICAL_GAP, MARGIN);
         setPreferredSize(new Dimension(0, 0));
         setFocusable(true);
     }
@@ -88,13 +109,94 @@ public class AWTreeGraphView extends GView {
     }
 
     public void setRoot(TreeNode root) {
+        if(root != this.root) {
+            collapsedNodes.clear();
+            if(root != null)
+                collapseNodesBeyondLimit(root, false);
+            layoutInvalid = true;
+        }
         this.root = root;
     }
 
+    /** Collapses the nodes of a subtree so that at most MAX_EXPANDED_NODES are
+     * laid out: the subtree is visited breadth-first and only the nodes reached within
+     * the limit are expanded. Only the visited nodes are ever requested from the tree.
+     * If expandNode is true, the children of node are expanded even above the limit.
+     */
+    public void collapseNodesBeyondLimit(TreeNode node, boolean expandNode) {
+        List<TreeNode> level = Collections.singletonList(node);
+        int count = 1;
+        while(!level.isEmpty()) {
+            List<TreeNode> next = new ArrayList<TreeNode>();
+            for(TreeNode n : level) {
+                int childCount = n.getChildCount();
+                if(childCount == 0)
+                    continue;
+
+                if(count+childCount > MAX_EXPANDED_NODES && !(expandNode && n == node)) {
+                    collapsedNodes.add(n);
+                } else {
+                    collapsedNodes.remove(n);
+                    count += childCount;
+                    for(int index=0; index<childCount; index++) {
+                        next.add(n.getChildAt(index));
+                    }
+                }
+            }
+            level = next;
+        }
+    }
+
+    public boolean isNodeCollapsed(TreeNode node) {
+        return collapsedNodes.contains(node);
+    }
+
+    /** Expands or collapses the children of a node and rebuilds the graph */
+    public void toggleNodeCollapsed(TreeNode node) {
+        if(node == null || node.getChildCount() == 0)
+            return;
+
+        if(isNodeCollapsed(node))
+            collapseNodesBeyondLimit(node, true);
+        else
+            collapsedNodes.add(node);
+
+        layoutInvalid = true;
+        refresh();
+        revalidate();
+        scrollNodeToVisible(node);
+    }
+
+    /** Expands all the ancestors of a node so the node becomes visible */
+    public void expandPathToNode(TreeNode node) {
+        if(node == null)
+            return;
+
+        LinkedList<TreeNode> ancestors = new LinkedList<TreeNode>();
+        for(TreeNode n = node.getParent(); n != null; n = n.getParent()) {
+            ancestors.addFirst(n);
+        }
+
+        boolean changed = false;
+        for(TreeNode n : ancestors) {
+            if(isNodeCollapsed(n)) {
+                collapseNodesBeyondLimit(n, true);
+                changed = true;
+            }
+        }
+        if(changed) {
+            layoutInvalid = true;
+            refresh();
+            revalidate();
+        }
+    }
+
     public void clear() {
         if(model != null)
             model.clear();
         clearMaps();
+        layout.clear();
+        layoutInvalid = true;
     }
 
     public void refresh() {
@@ -116,7 +218,7 @@ public class AWTreeGraphView extends GView {
 
         if(dirty) {
             dirty = false;
-            if(model == null)
+            if(model == null || layoutInvalid || layout.getRoot() != root)
                 rebuildNoModel();
             else
                 rebuildWithModel();
@@ -137,11 +239,42 @@ public class AWTreeGraphView extends GView {
         return gelementToTreeNodeMap.get(elem);
     }
 
+    /** Returns the element of a node laid out, or null if the node is not laid out.
+     * The elements are created on demand, when a node is drawn or looked up, together
+     * with the elements of its ancestors so each element is linked to its parent.
+     */
     public GElementNode getGElementForNode(TreeNode node) {
         if(node == null)
             return null;
-        else
-            return (GElementNode)treeNodeToGElementMap.get(node);
+
+        GElementNode element = (GElementNode)treeNodeToGElementMap.get(node);
+        if(element != null || !layout.contains(node))
+            return element;
+
+        LinkedList<TreeNode> path = new LinkedList<TreeNode>();
+        TreeNode layoutRoot = layout.getRoot();
+        for(TreeNode n = node; !treeNodeToGElementMap.containsKey(n); n = n.getParent()) {
+            path.addFirst(n);
+            if(n == layoutRoot)
+                break;
+        }
+
+        for(TreeNode n : path) {
+            element = createGElement(n);
+            element.setPositionOfUpperLeftCorner(layout.getLeft(n), layout.getTop(n));
+            if(n != layoutRoot)
+                addChildElement((GElementNode)treeNodeToGElementMap.get(n.getParent()), element);
+        }
+        return element;
+    }
+
+    /** Creates the elements of all the nodes laid out, for the methods that draw the whole tree */
+    public void createAllElements() {
+        for(int level=0; level<layout.getLevelCount(); level++) {
+            for(int index=0; index<layout.getLevelSize(level); index++) {
+                getGElementForNode(layout.getNode(level, index));
+            }
+        }
     }
 
     /** This method rebuild the tree completely. This can be expensive if the tree
@@ -151,64 +284,177 @@ public class AWTreeGraphView extends GView {
     public void rebuildNoModel() {
         clearMaps();
 
-        GElement element = buildGraph(null);
-        element.move(MARGIN, MARGIN);
+        /** Lay out the tree: the elements are created when the nodes are drawn */
+        layout.setNodeHeight(getNodeHeight());
+        layout.layout(root);
+        layoutInvalid = false;
 
         setSizeMargin(MARGIN);
-        setRootElement(element);
+        setRootElement(getGElementForNode(root));
+
+        if(model != null)
+            model.clearNewNodes();
     }
 
-    public GElementNode buildGraph(TreeNode node) {
-        if(node == null)
-            node = root;
+    /** This method rebuild the tree incrementally using the information provided
+     * by the tree model: only the new nodes and the nodes whose position changed
+     * are updated.
+     */
+    public void rebuildWithModel() {
+        for(int n=0; n<model.getNewNodesCount(); n++) {
+            TreeNode parent = model.getNewNodeParentAtIndex(n);
+            TreeNode child = model.getNewNodeAtIndex(n);
 
-        GElementNode nodeElement = getGElementForNode(node);
-        if(nodeElement == null)
-            nodeElement = createGElement(node);
+            /** The layout ignores the nodes already laid out and the children of collapsed nodes */
+            layout.addNode(parent, child);
+        }
 
-        /** Add all the children of the node */
-        for(int index=0; index<node.getChildCount(); index++) {
-            TreeNode child = node.getChildAt(index);
+        layout.update();
+        autoAdjustSize();
 
-            /** Then add it to the parent node */
-            addChildElement(nodeElement, createGElement(child));
+        model.clearNewNodes();
+    }
 
-            /** Recursively build the children of the child */
-            buildGraph(child);
+    @Override
+    public void autoAdjustSize() {
+        if(layout.getRoot() == null) {
+            super.autoAdjustSize();
+            return;
         }
 
-        /** Adjust the parent element position after adding all its children */
-        adjustElementPositionRelativeToItsChildren(node, false);
+        if(rootElement == null || !autoAdjustSize)
+            return;
+
+        /** The size of the tree is known from the layout: there is no need to compute the bounds of every element */
+        setRealSize((int)(layout.getRight()*zoom), (int)(layout.getBottom()*zoom));
 
-        return nodeElement;
+        if(delegate != null)
+            delegate.viewSizeDidChange();
     }
 
-    /** This method rebuild the tree incrementally using the information provided
-     * by the tree model. This method is faster than rebuildNoModel() for large tree.
-     *
-     * Note: actually it is slower because of the adjustElement...() method which is called too often
+    /** Draws only the nodes in the clip, found using the layout index of each level.
+     * The whole tree is drawn by getImage() and getEPS().
      */
-    public void rebuildWithModel() {
-        for(int n=0; n<model.getNewNodesCount(); n++) {
-            TreeNode parent = model.getNewNodeParentAtIndex(n);
-            TreeNode child = model.getNewNodeAtIndex(n);
+    @Override
+    public void drawElements(Graphics2D g) {
+        Rectangle clip = g.getClipBounds();
+        if(layout.getRoot() == null || rootElement == null || clip == null) {
+            createAllElements();
+            super.drawElements(g);
+            return;
+        }
+
+        /** Include the level above the clip for the links going down into it */
+        int fromLevel = Math.max(0, layout.getLevelAt(clip.y)-1);
+        int toLevel = Math.min(layout.getLevelCount()-1, layout.getLevelAt(clip.y+clip.height));
+
+        if(zoom < DETAIL_ZOOM)
+            drawSummary(g, clip, fromLevel, toLevel);
+        else
+            drawDetails(g, clip, fromLevel, toLevel);
+    }
+
+    @Override
+    public BufferedImage getImage() {
+        createAllElements();
+        return super.getImage();
+    }
+
+    @Override
+    public String getEPS() {
+        createAllElements();
+        return super.getEPS();
+    }
+
+    protected void drawDetails(Graphics2D g, Rectangle clip, int fromLevel, int toLevel) {
+        for(int level=fromLevel; level<=toLevel; level++) {
+            /** Include the nodes on each side of the clip: the links to their children can cross it */
+            int first = Math.max(0, layout.findNodeRightOf(level, clip.x)-1);
+            int last = Math.min(layout.getLevelSize(level), layout.findNodeStartingAfter(level, clip.x+clip.width)+1);
+            for(int index=first; index<last; index++) {
+                TreeNode node = layout.getNode(level, index);
+                GElementNode element = getGElementForNode(node);
+                if(element.link != null)
+                    element.link.draw(g);
+
+                /** The links to the first and last children span the links to all the children */
+                int childCount = node.getChildCount();
+                if(childCount > 0 && !isNodeCollapsed(node)) {
+                    drawLink(g, node.getChildAt(0));
+                    drawLink(g, node.getChildAt(childCount-1));
+                }
+
+                element.draw(g);
+            }
+        }
+    }
+
+    protected void drawLink(Graphics2D g, TreeNode node) {
+        GElementNode element = getGElementForNode(node);
+        if(element != null && element.link != null)
+            element.link.draw(g);
+    }
+
+    /** Draws the nodes as boxes without label. The nodes of a level separated by less
+     * than SUMMARY_GAP pixels are drawn as a single box: each box is found with a binary
+     * search so the cost depends on the size of the clip and not on the number of nodes.
+     */
+    protected void drawSummary(Graphics2D g, Rectangle clip, int fromLevel, int toLevel) {
+        double gap = SUMMARY_GAP/zoom;
+        double height = layout.getNodeHeight();
+        for(int level=fromLevel; level<=toLevel; level++) {
+            int size = layout.getLevelSize(level);
+            int top = (int)layout.getTop(level);
+            int index = layout.findNodeRightOf(level, clip.x);
+            while(index < size && layout.getLeft(level, index) <= clip.x+clip.width) {
+                double left = layout.getLeft(level, index);
+                double right = layout.getRight(level, index);
+                int next = index+1;
+                while(true) {
+                    int end = layout.findNodeStartingAfter(level, right+gap);
+                    if(end <= next)
+                        break;
+                    right = layout.getRight(level, end-1);
+                    next = end;
+                }
 
-            GElementNode parentElement = getGElementForNode(parent);
-            if(parentElement == null) {
-                parentElement = createGElement(root);
-                parentElement.move(MARGIN, MARGIN);
-                setSizeMargin(MARGIN);
-                setRootElement(parentElement);
+                if(next == index+1) {
+                    TreeNode node = layout.getNode(level, index);
+                    drawSimplifiedNode(g, node, (int)left, top, (int)(right-left), (int)height);
+                } else {
+                    g.setColor(SUMMARY_COLOR);
+                    g.fillRect((int)left, top, (int)(right-left), (int)height);
+                    g.setColor(Color.gray);
+                    g.drawRect((int)left, top, (int)(right-left), (int)height);
+                }
+                index = next;
             }
+        }
 
-            GElementNode childElement = createGElement(child);
-            addChildElement(parentElement, childElement);
-            adjustElementPositionRelativeToItsChildren(parent, true);
+        if(highlightedNode != null) {
+            Rectangle r = highlightedNode.getFrame().rectangle();
+            g.setColor(HIGHLIGHTED_COLOR);
+            g.fillRect(r.x, r.y, r.width, r.height);
         }
+    }
 
-        autoAdjustSize();
+    protected void drawSimplifiedNode(Graphics2D g, TreeNode node, int x, int y, int width, int height) {
+        g.setColor(getNodeColor(node));
+        g.drawRect(x, y, width, height);
 
-        model.clearNewNodes();
+        GElementNode parent = getGElementForNode(node.getParent());
+        if(parent != null)
+            g.drawLine(x+width/2, y, (int)parent.getPositionX(), (int)parent.getBottom());
+    }
+
+    /** Finds the element at a point using the layout index instead of matching every element */
+    @Override
+    public GElement getElementAtPoint(Point p) {
+        if(layout.getRoot() == null)
+            return super.getElementAtPoint(p);
+
+        TreeNode node = layout.getNodeAt(p.x, p.y);
+        return node == null?null:getGElementForNode(node);
     }
 
     public void paintComponent(Graphics g) {
@@ -223,18 +469,6 @@ public class AWTreeGraphView extends GView {
     }
 
     public void addChildElement(GElementNode parent, GElementNode child) {
-        /** Get the far right position of the last child */
-        double x = parent.getLastChildRightSpan();
-
-        /** Add a gap if there is already a child otherwise use the parent left coordinate */
-        if(x > 0)
-            x += HORIZONTAL_GAP;
-        else
-            x = parent.getLeft();
-
-        /** Set the child position */
-        child.setPositionOfUpperLeftCorner(x, parent.getBottom()+VERTICAL_GAP);
-
         /** Create the link from the parent to this child */
         GLink link = new GLink(parent, GLink.ANCHOR_BOTTOM,
                 child, GLink.ANCHOR_TOP,
@@ -249,48 +483,27 @@ public class AWTreeGraphView extends GView {
         /** Add the link and the child */
         parent.addElement(link);
         parent.addElement(child);
+        child.link = link;
     }
 
-    /** This method recursively adjusts a node position relative to its children */
-
-    public void adjustElementPositionRelativeToItsChildren(TreeNode node, boolean recursive) {
-        GElementNode element = getGElementForNode(node);
-        if(element == null)
-            return;
-
-        double elementWidth = element.getWidth();
-        double childrenWidth = element.getLastChildRightSpan()-element.getFirstChildLeftSpan();
-
-        /** Nothing to adjust if there is no children */
-        if(childrenWidth == 0)
-            return;
-
-        /** x and y are the coordinates of the upper-left corner of the frame enclosing
-         * the element and all its children.
-         */
-        double x = Math.min(element.getLeft(), element.getFirstChildLeftSpan());
-        double y = element.getTop();
-        double spanWidth = Math.max(elementWidth, childrenWidth);
-
-        /** First move the children if needed. To move all the children at once, we move
-         * the element itself (which will cause all the children to be moved recursively).
-         * The element position is set after this operation.
-         */
-        double childrenOffset = spanWidth*0.5-childrenWidth*0.5;
-
-        /** Compute the offset to move the children given their current position */
-        double offset = x+childrenOffset-element.getFirstChildLeftSpan();
-        element.move(offset, 0);
+    public double awTreeLayoutGetNodeWidth(TreeNode node) {
+        String nodeLabel = getNodeLabel(node);
+        return (nodeLabel==null?0:fontMetrics.stringWidth(nodeLabel))+16;
+    }
 
-        /** Set the element position */
-        element.setPositionOfUpperLeftCorner(x+spanWidth*0.5-elementWidth*0.5, y);
+    public boolean awTreeLayoutIsNodeCollapsed(TreeNode node) {
+        return isNodeCollapsed(node);
+    }
 
-        /** Set the span (children width) of the element */
-        element.setSpanWidth(spanWidth);
+    public void awTreeLayoutNodeDidMove(TreeNode node, double left, double top) {
+        /** Only the elements already created need to move: the others are placed when created */
+        GElementNode element = (GElementNode)treeNodeToGElementMap.get(node);
+        if(element != null)
+            element.setPositionOfUpperLeftCorner(left, top);
+    }
 
-        /** Recursively adjust the parent node */
-        if(recursive)
-            adjustElementPositionRelativeToItsChildren(node.getParent(), recursive);
+    public double getNodeHeight() {
+        return fontMetrics.getHeight()+8;
     }
 
     public String getNodeLabel(TreeNode node) {
@@ -317,8 +530,8 @@ public class AWTreeGraphView extends GView {
         Color nodeColor = getNodeColor(node);
         String nodeLabel = getNodeLabel(node);
 
-        double width = (nodeLabel==null?0:fontMetrics.stringWidth(nodeLabel))+16;
-        double height = fontMetrics.getHeight()+8;
+        double width = awTreeLayoutGetNodeWidth(node);
+        double height = getNodeHeight();
 
         GElementNode element = new GElementNode();
         element.setDraggable(DRAGGABLE);
@@ -330,6 +543,7 @@ public class AWTreeGraphView extends GView {
         element.setPositionOfUpperLeftCorner(0, 0);
 
         element.setLabel(nodeLabel);
+        element.setCollapsed(isNodeCollapsed(node));
         element.setColor(nodeColor);
         element.setLabelColor(nodeColor);
 
@@ -345,6 +559,9 @@ public class AWTreeGraphView extends GView {
             highlightedNode = null;
         }
 
+        if(getGElementForNode(node) == null)
+            expandPathToNode(node);
+
         GElementNode element = getGElementForNode(node);
         if(element == null)
             return;
@@ -388,12 +605,19 @@ public class AWTreeGraphView extends GView {
     public static class GElementNode extends GElementRect {
 
         public boolean highlighted = false;
-        public double spanWidth = 0;
+        public boolean collapsed = false;
+
+        /** Link from the parent node to this node */
+        public GLink link;
 
         public void setHighlighted(boolean flag) {
             this.highlighted = flag;
         }
 
+        public void setCollapsed(boolean flag) {
+            this.collapsed = flag;
+        }
+
         @Override
         public void draw(Graphics2D g) {
             if(highlighted && isVisibleInClip(g)) {
@@ -403,62 +627,15 @@ public class AWTreeGraphView extends GView {
             }
 
             super.draw(g);
-        }
 
-        /** Methods to retrieve the span width of the node. The span width
-         * is the maximum width of the node and its children.
-         */
-        public void setSpanWidth(double width) {
-            spanWidth = width;
-        }
-
-        public double getLeftSpan() {
-            if(spanWidth <= getWidth())
-                return getLeft();
-            else
-                return getLeft()-(spanWidth-getWidth())*0.5;
-        }
-
-        public double getRightSpan() {
-            if(spanWidth <= getWidth())
-                return getRight();
-            else
-                return getRight()+(spanWidth-getWidth())*0.5;
-        }
-
-        /** Return the last children right coordinate of this node. Note that links are
-         * also in the list of children so we must skip them.
-         */
-        public double getLastChildRightSpan() {
-            if(elements == null)
-                return 0;
-
-            for (int i = elements.size()-1; i >= 0; i--) {
-                GElement element = (GElement) elements.get(i);
-                if(element instanceof GElementNode) {
-                    GElementNode n = (GElementNode)element;
-                    return n.getRightSpan();
-                }
+            /** Draw a stub below a collapsed node to indicate that it has hidden children */
+            if(collapsed && isVisibleInClip(g)) {
+                int x = (int)((getLeft()+getRight())*0.5);
+                int y = (int)getBottom();
+                g.setColor(color);
+                g.drawLine(x, y, x, y+VERTICAL_GAP/2);
+                g.drawLine(x-3, y+VERTICAL_GAP/2, x+3, y+VERTICAL_GAP/2);
             }
-
-            return 0;
-        }
-
-        /** Return the first children left coordinate of this node. Note that links are
-         * also in the list of children so we must skip them.
-         */
-        public double getFirstChildLeftSpan() {
-            if(elements == null)
-                return 0;
-
-            for (GElement element : elements) {
-                if (element instanceof GElementNode) {
-                    GElementNode n = (GElementNode) element;
-                    return n.getLeftSpan();
-                }
-            }
-
-            return 0;
         }
 
         /** Methods used to retrieve the coordinate of the frame. Note that
@@ -0,0 +1,576 @@
+package org.antlr.works.utils.awtree;
+
+import javax.swing.tree.TreeNode;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+/*
+
+[The "BSD licence"]
+Copyright (c) 2005 Jean Bovet
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions
+are met:
+
+1. Redistributions of source code must retain the above copyright
+notice, this list of conditions and the following disclaimer.
+2. Redistributions in binary form must reproduce the above copyright
+notice, this list of conditions and the following disclaimer in the
+documentation and/or other materials provided with the distribution.
+3. The name of the author may not be used to endorse or promote products
+derived from this software without specific prior written permission.
+
+THIS SOFTWARE IS PROVIDED BY THE AUTHOR ``AS IS'' AND ANY EXPRESS OR
+IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES
+OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED.
+IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY DIRECT, INDIRECT,
+INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT
+NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+(INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF
+THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+
+*/
+
+
+/** Tidy tree layout of the AWTreeGraphView (Buchheim, Juenger and Leipert improvement of the
+ * Walker algorithm). The layout runs in linear time and is independent of the graphic
+ * elements: the delegate provides the width of each node and is notified when a node moves.
+ *
+ * Nodes appended with addNode() are laid out incrementally by update(): only the
+ * ancestors of the new nodes are walked again and, for each of them, only the children
+ * from the first modified one are apportioned again. To resume at a given child, each
+ * child records the fields modified while it was apportioned so they can be restored.
+ */
+public class AWTreeLayout {
+
+    protected static final int CLEAN = Integer.MAX_VALUE;
+
+    protected AWTreeLayoutDelegate delegate;
+    protected double horizontalGap;
+    protected double verticalGap;
+    protected double margin;
+    protected double nodeHeight;
+
+    protected Node root;
+    protected Map<TreeNode,Node> nodes = new HashMap<TreeNode, Node>();
+    protected List<Node> movedNodes = new ArrayList<Node>();
+
+    /** Spatial index of the nodes: the nodes of each level sorted from left to right.
+     * The layout preserves the order of the nodes so a new node is inserted once and
+     * the index stays sorted when the nodes move.
+     */
+    protected List<List<Node>> levelNodes = new ArrayList<List<Node>>();
+    protected List<Node> newNodes = new ArrayList<Node>();
+
+    /** Offset added to the x coordinate of the nodes so the leftmost node is at the margin */
+    protected double offset = Double.NaN;
+    protected double right;
+    protected int levels;
+
+    public AWTreeLayout(AWTreeLayoutDelegate delegate, double horizontalGap, double verticalGap, double margin) {
+        this.delegate = delegate;
+        this.horizontalGap = horizontalGap;
+        this.verticalGap = verticalGap;
+        this.margin = margin;
+    }
+
+    public void setNodeHeight(double height) {
+        this.nodeHeight = height;
+    }
+
+    public double getNodeHeight() {
+        return nodeHeight;
+    }
+
+    public void clear() {
+        root = null;
+        nodes.clear();
+        levelNodes.clear();
+        newNodes.clear();
+        offset = Double.NaN;
+        right = 0;
+        levels = 0;
+    }
+
+    public TreeNode getRoot() {
+        return root == null?null:root.node;
+    }
+
+    public boolean contains(TreeNode node) {
+        return nodes.containsKey(node);
+    }
+
+    /** Returns the right coordinate of the rightmost node */
+    public double getRight() {
+        return right;
+    }
+
+    /** Returns the bottom coordinate of the deepest node */
+    public double getBottom() {
+        if(levels == 0)
+            return 0;
+        else
+            return getTop(levels-1)+nodeHeight;
+    }
+
+    public double getTop(int depth) {
+        return margin+depth*(nodeHeight+verticalGap);
+    }
+
+    public int getLevelCount() {
+        return levels;
+    }
+
+    /** Returns the level containing or directly below the y coordinate */
+    public int getLevelAt(double y) {
+        return Math.max(0, (int)Math.floor((y-margin+verticalGap)/(nodeHeight+verticalGap)));
+    }
+
+    public int getLevelSize(int level) {
+        return level < levelNodes.size()?levelNodes.get(level).size():0;
+    }
+
+    public TreeNode getNode(int level, int index) {
+        return levelNodes.get(level).get(index).node;
+    }
+
+    public double getLeft(int level, int index) {
+        Node n = levelNodes.get(level).get(index);
+        return n.x-n.width*0.5+offset;
+    }
+
+    public double getRight(int level, int index) {
+        Node n = levelNodes.get(level).get(index);
+        return n.x+n.width*0.5+offset;
+    }
+
+    /** Returns the left coordinate of a node laid out by update() */
+    public double getLeft(TreeNode node) {
+        Node n = nodes.get(node);
+        return n.x-n.width*0.5+offset;
+    }
+
+    /** Returns the top coordinate of a node laid out by update() */
+    public double getTop(TreeNode node) {
+        return getTop(nodes.get(node).depth);
+    }
+
+    /** Returns the index of the first node of the level whose right coordinate is
+     * greater or equal to x. The left and right coordinates both increase along a level.
+     */
+    public int findNodeRightOf(int level, double x) {
+        List<Node> list = levelNodes.get(level);
+        int low = 0;
+        int high = list.size();
+        while(low < high) {
+            int mid = (low+high) >>> 1;
+            Node n = list.get(mid);
+            if(n.x+n.width*0.5+offset < x)
+                low = mid+1;
+            else
+                high = mid;
+        }
+        return low;
+    }
+
+    /** Returns the index of the first node of the level whose left coordinate is
+     * greater or equal to x.
+     */
+    public int findNodeStartingAfter(int level, double x) {
+        List<Node> list = levelNodes.get(level);
+        int low = 0;
+        int high = list.size();
+        while(low < high) {
+            int mid = (low+high) >>> 1;
+            Node n = list.get(mid);
+            if(n.x-n.width*0.5+offset < x)
+                low = mid+1;
+            else
+                high = mid;
+        }
+        return low;
+    }
+
+    /** Returns the node at the given coordinate or null if there is none */
+    public TreeNode getNodeAt(double x, double y) {
+        int level = getLevelAt(y);
+        if(level >= levelNodes.size() || y < getTop(level) || y > getTop(level)+nodeHeight)
+            return null;
+
+        int index = findNodeRightOf(level, x);
+        if(index < getLevelSize(level) && getLeft(level, index) <= x)
+            return getNode(level, index);
+        else
+            return null;
+    }
+
+    /** Lays out a complete tree. The children of the collapsed nodes are ignored */
+    public void layout(TreeNode node) {
+        clear();
+        root = createNode(node, null, 0);
+        update();
+    }
+
+    /** Appends a node as the last child of its parent. The node is laid out by update().
+     * Returns false if the parent is not laid out or is collapsed.
+     */
+    public boolean addNode(TreeNode parent, TreeNode child) {
+        Node p = nodes.get(parent);
+        if(p == null || nodes.containsKey(child) || delegate.awTreeLayoutIsNodeCollapsed(parent))
+            return false;
+
+        Node c = createNode(child, p, p.children.size());
+        p.children.add(c);
+        for(Node n = p, d = c; n != null; d = n, n = n.parent) {
+            if(n.firstDirtyChild <= d.number)
+                break;
+            n.firstDirtyChild = d.number;
+        }
+        return true;
+    }
+
+    /** Updates the layout and notifies the delegate of each node that moved */
+    public void update() {
+        if(root == null)
+            return;
+
+        firstWalk(root);
+        place(root);
+
+        movedNodes.clear();
+        secondWalk(root, 0);
+        indexNewNodes();
+
+        /* Find the extent of the tree by following its contours */
+        double left = Double.MAX_VALUE;
+        double r = -Double.MAX_VALUE;
+        int depth = 0;
+        for(Node n = root; n != null; n = nextLeft(n)) {
+            left = Math.min(left, n.x-n.width*0.5);
+            depth++;
+        }
+        for(Node n = root; n != null; n = nextRight(n)) {
+            r = Math.max(r, n.x+n.width*0.5);
+        }
+
+        double newOffset = margin-left;
+        if(newOffset == offset) {
+            for(Node n : movedNodes) {
+                nodeDidMove(n);
+            }
+        } else {
+            offset = newOffset;
+            for(Node n : nodes.values()) {
+                nodeDidMove(n);
+            }
+        }
+        movedNodes.clear();
+
+        right = r+offset;
+        levels = depth;
+    }
+
+    protected Node createNode(TreeNode treeNode, Node parent, int number) {
+        Node node = new Node(treeNode, parent, number);
+        node.width = delegate.awTreeLayoutGetNodeWidth(treeNode);
+        nodes.put(treeNode, node);
+        newNodes.add(node);
+
+        int childCount = delegate.awTreeLayoutIsNodeCollapsed(treeNode)?0:treeNode.getChildCount();
+        for(int index=0; index<childCount; index++) {
+            node.children.add(createNode(treeNode.getChildAt(index), node, index));
+        }
+        return node;
+    }
+
+    /** Inserts the new nodes in the index of their level. The nodes are created in
+     * depth-first order so they are usually appended at the end of their level.
+     */
+    protected void indexNewNodes() {
+        for(Node n : newNodes) {
+            while(levelNodes.size() <= n.depth) {
+                levelNodes.add(new ArrayList<Node>());
+            }
+            List<Node> list = levelNodes.get(n.depth);
+            if(list.isEmpty() || list.get(list.size()-1).x < n.x) {
+                list.add(n);
+            } else {
+                int low = 0;
+                int high = list.size();
+                while(low < high) {
+                    int mid = (low+high) >>> 1;
+                    if(list.get(mid).x < n.x)
+                        low = mid+1;
+                    else
+                        high = mid;
+                }
+                list.add(low, n);
+            }
+        }
+        newNodes.clear();
+    }
+
+    protected void nodeDidMove(Node n) {
+        delegate.awTreeLayoutNodeDidMove(n.node, n.x-n.width*0.5+offset, getTop(n.depth));
+    }
+
+    protected void firstWalk(Node v) {
+        if(v.firstDirtyChild == CLEAN)
+            return;
+
+        if(v.firstDirtyChild < v.children.size())
+            layoutChildren(v, v.firstDirtyChild);
+        v.firstDirtyChild = CLEAN;
+        v.walked = true;
+    }
+
+    /** Lays out the children of v starting at the child at index first. The children
+     * before it keep the position computed by the previous walk.
+     */
+    protected void layoutChildren(Node v, int first) {
+        List<Node> children = v.children;
+
+        /* Restore the state of the children as it was when the child at index first
+         * was apportioned. The shifts were executed after all the children were apportioned.
+         */
+        for(int i=0; i<first; i++) {
+            Node w = children.get(i);
+            w.prelim = w.walkPrelim;
+            w.mod = w.walkMod;
+        }
+        for(int i=children.size()-1; i>=first; i--) {
+            children.get(i).undoApportion();
+        }
+
+        Node defaultAncestor = first == 0?children.get(0):children.get(first-1).nextDefaultAncestor;
+        for(int i=first; i<children.size(); i++) {
+            Node w = children.get(i);
+            firstWalk(w);
+            place(w);
+            defaultAncestor = apportion(w, defaultAncestor);
+            w.nextDefaultAncestor = defaultAncestor;
+        }
+
+        for(Node w : children) {
+            w.walkPrelim = w.prelim;
+            w.walkMod = w.mod;
+        }
+        executeShifts(v);
+
+        v.midpoint = (children.get(0).prelim+children.get(children.size()-1).prelim)*0.5;
+    }
+
+    /** Places v relative to its left sibling */
+    protected void place(Node v) {
+        Node w = v.getLeftSibling();
+        double midpoint = v.children.isEmpty()?0:v.midpoint;
+        if(w == null) {
+            v.prelim = midpoint;
+            v.mod = 0;
+        } else {
+            v.prelim = w.prelim+distance(w, v);
+            v.mod = v.children.isEmpty()?0:v.prelim-midpoint;
+        }
+        v.change = 0;
+        v.shift = 0;
+    }
+
+    protected Node apportion(Node v, Node defaultAncestor) {
+        Node w = v.getLeftSibling();
+        if(w == null)
+            return defaultAncestor;
+
+        Node vip = v;
+        Node vop = v;
+        Node vim = w;
+        Node vom = v.parent.children.get(0);
+        double sip = vip.mod;
+        double sop = vop.mod;
+        double sim = vim.mod;
+        double som = vom.mod;
+        while(nextRight(vim) != null && nextLeft(vip) != null) {
+            vim = nextRight(vim);
+            vip = nextLeft(vip);
+            vom = nextLeft(vom);
+            vop = nextRight(vop);
+            if(vop.ancestor != v) {
+                v.save(vop);
+                vop.ancestor = v;
+            }
+            double shift = (vim.prelim+sim)-(vip.prelim+sip)+distance(vim, vip);
+            if(shift > 0) {
+                moveSubtree(ancestor(vim, v, defaultAncestor), v, shift);
+                sip += shift;
+                sop += shift;
+            }
+            sim += vim.mod;
+            sip += vip.mod;
+            som += vom.mod;
+            sop += vop.mod;
+        }
+        if(nextRight(vim) != null && nextRight(vop) == null) {
+            v.save(vop);
+            vop.thread = nextRight(vim);
+            vop.mod += sim-sop;
+        }
+        if(nextLeft(vip) != null && nextLeft(vom) == null) {
+            v.save(vom);
+            vom.thread = nextLeft(vip);
+            vom.mod += sip-som;
+            defaultAncestor = v;
+        }
+        return defaultAncestor;
+    }
+
+    protected void moveSubtree(Node wm, Node wp, double shift) {
+        double subtrees = wp.number-wm.number;
+        wp.save(wm);
+        wm.change += shift/subtrees;
+        wp.change -= shift/subtrees;
+        wp.shift += shift;
+        wp.prelim += shift;
+        wp.mod += shift;
+    }
+
+    protected void executeShifts(Node v) {
+        double shift = 0;
+        double change = 0;
+        for(int i=v.children.size()-1; i>=0; i--) {
+            Node w = v.children.get(i);
+            w.prelim += shift;
+            w.mod += shift;
+            change += w.change;
+            shift += w.shift+change;
+        }
+    }
+
+    protected Node ancestor(Node vim, Node v, Node defaultAncestor) {
+        if(vim.ancestor.parent == v.parent)
+            return vim.ancestor;
+        else
+            return defaultAncestor;
+    }
+
+    protected double distance(Node left, Node right) {
+        return (left.width+right.width)*0.5+horizontalGap;
+    }
+
+    protected Node nextLeft(Node v) {
+        return v.children.isEmpty()?v.thread:v.children.get(0);
+    }
+
+    protected Node nextRight(Node v) {
+        return v.children.isEmpty()?v.thread:v.children.get(v.children.size()-1);
+    }
+
+    /** Computes the x coordinate of the nodes. The subtrees that were not walked again
+     * and whose root did not move are skipped.
+     */
+    protected void secondWalk(Node v, double m) {
+        double x = v.prelim+m;
+        if(!v.walked && x == v.x)
+            return;
+
+        v.walked = false;
+        if(x != v.x || !v.reported) {
+            v.x = x;
+            v.reported = true;
+            movedNodes.add(v);
+        }
+        for(Node w : v.children) {
+            secondWalk(w, m+v.mod);
+        }
+    }
+
+    protected static class Node {
+
+        public TreeNode node;
+        public Node parent;
+        public List<Node> children = new ArrayList<Node>();
+        public int number;
+        public int depth;
+        public double width;
+
+        public double prelim;
+        public double mod;
+        public double change;
+        public double shift;
+        public double midpoint;
+        public Node thread;
+        public Node ancestor;
+
+        /** Index of the first child whose subtree changed since the last walk */
+        public int firstDirtyChild = 0;
+        public boolean walked;
+        public boolean reported;
+        public double x;
+
+        /** State saved before executing the shifts and default ancestor after apportion */
+        public double walkPrelim;
+        public double walkMod;
+        public Node nextDefaultAncestor;
+
+        /** Fields of other nodes modified when this node was apportioned */
+        public List<State> apportionLog;
+
+        public Node(TreeNode node, Node parent, int number) {
+            this.node = node;
+            this.parent = parent;
+            this.number = number;
+            this.depth = parent == null?0:parent.depth+1;
+            this.ancestor = this;
+        }
+
+        public Node getLeftSibling() {
+            if(parent == null || number == 0)
+                return null;
+            else
+                return parent.children.get(number-1);
+        }
+
+        public void save(Node n) {
+            if(apportionLog == null)
+                apportionLog = new ArrayList<State>();
+            apportionLog.add(new State(n));
+        }
+
+        public void undoApportion() {
+            if(apportionLog == null)
+                return;
+
+            for(int i=apportionLog.size()-1; i>=0; i--) {
+                apportionLog.get(i).restore();
+            }
+            apportionLog = null;
+        }
+    }
+
+    protected static class State {
+
+        public Node node;
+        public Node thread;
+        public Node ancestor;
+        public double mod;
+        public double change;
+
+        public State(Node node) {
+            this.node = node;
+            this.thread = node.thread;
+            this.ancestor = node.ancestor;
+            this.mod = node.mod;
+            this.change = node.change;
+        }
+
+        public void restore() {
+            node.thread = thread;
+            node.ancestor = ancestor;
+            node.mod = mod;
+            node.change = change;
+        }
+    }
+}
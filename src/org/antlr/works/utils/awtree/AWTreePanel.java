@@ -301,6 +301,12 @@ public class AWTreePanel extends JPanel {
                 if(node == null)
                     return;
 
+                /** Double-click expands or collapses the children of the node */
+                if(e.getClickCount() == 2) {
+                    treeGraphView.toggleNodeCollapsed(node);
+                    return;
+                }
+
                 boolean shiftKey = (e.getModifiersEx() & MouseEvent.SHIFT_DOWN_MASK) == MouseEvent.SHIFT_DOWN_MASK;
                 if(delegate != null)
                     delegate.awTreeDidSelectTreeNode(node, shiftKey);
@@ -392,12 +392,19 @@ public class GView extends XJView implements XJMenuItemDelegate, GTimerDelegate,
         g2d.scale(zoom, zoom);
 
         drawMagnetics(g2d);
-        if(rootElement != null)
-            rootElement.drawRecursive(g2d);
+        drawElements(g2d);
 
         eventManager.performEventObjects(GEventManager.EVENT_DRAW, null, null, g);
     }
 
+    /** Draws the elements of the view. A subclass can override this method to
+     * draw only the elements visible in the clip of the graphics.
+     */
+    public void drawElements(Graphics2D g2d) {
+        if(rootElement != null)
+            rootElement.drawRecursive(g2d);
+    }
+
     public void addMenuItem(JPopupMenu menu, String title, int tag, Object object) {
         XJMenuItem item = new XJMenuItem();
         item.setTitle(title);
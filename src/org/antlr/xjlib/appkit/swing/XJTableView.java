@@ -45,6 +45,7 @@ public class XJTableView extends JScrollPane {
 
     private XJTable table = new XJTable();
     private boolean alternateBackground = true;
+    private int autoresizeSampleSize = 0;
 
     public XJTableView() {
         setViewportView(table);
@@ -80,8 +81,20 @@ public class XJTableView extends JScrollPane {
         }
     }
 
+    /** Sets the number of rows measured when the columns are resized to fit their content.
+     * The rows are taken at the beginning and at the end of the table. A size of 0 measures
+     * every row.
+     */
+    public void setAutoresizeSampleSize(int size) {
+        this.autoresizeSampleSize = size;
+    }
+
+    public int getAutoresizeSampleSize() {
+        return autoresizeSampleSize;
+    }
+
     public void autoresizeColumns() {
-        resizeTableColumnsToFitContent(table, 20);
+        resizeTableColumnsToFitContent(table, 20, autoresizeSampleSize);
 
         TableColumnModel model = table.getColumnModel();
         int columnTotalWidth = 0;
@@ -118,12 +131,20 @@ public class XJTableView extends JScrollPane {
     }
 
     public static void resizeTableColumnsToFitContent(JTable table, int margin) {
+        resizeTableColumnsToFitContent(table, margin, 0);
+    }
+
+    public static void resizeTableColumnsToFitContent(JTable table, int margin, int sampleSize) {
         for(int c = 0; c < table.getColumnCount(); c++) {
-            resizeColumnToFitContent(table, c, margin);
+            resizeColumnToFitContent(table, c, margin, sampleSize);
         }
     }
 
     public static void resizeColumnToFitContent(JTable table, int columnIndex, int margin) {
+        resizeColumnToFitContent(table, columnIndex, margin, 0);
+    }
+
+    public static void resizeColumnToFitContent(JTable table, int columnIndex, int margin, int sampleSize) {
         TableColumn column = table.getColumnModel().getColumn(columnIndex);
         TableCellRenderer renderer = column.getHeaderRenderer();
         if (renderer == null) {
@@ -135,7 +156,17 @@ public class XJTableView extends JScrollPane {
                 0, 0);
         int maxWidth = c.getPreferredSize().width;
 
-        for(int row=0; row<table.getRowCount(); row++) {
+        int rowCount = table.getRowCount();
+        int head = rowCount;
+        if(sampleSize > 0 && rowCount > sampleSize) {
+            head = sampleSize/2;
+        }
+
+        for(int row=0; row<rowCount; row++) {
+            if(row == head) {
+                // Skip the middle of the table: only the last rows are measured
+                row = rowCount-(sampleSize-head);
+            }
             renderer = table.getCellRenderer(row, columnIndex);
             c = renderer.getTableCellRendererComponent(table,
                     table.getValueAt(row, columnIndex),
@@ -0,0 +1,85 @@
+package org.antlr.works.debugger;
+
+import junit.framework.TestCase;
+import org.antlr.xjlib.foundation.XJUtils;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.util.Arrays;
+/*
+
+[The "BSD licence"]
+Copyright (c) 2005 Jean Bovet
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions
+are met:
+
+1. Redistributions of source code must retain the above copyright
+notice, this list of conditions and the following disclaimer.
+2. Redistributions in binary form must reproduce the above copyright
+notice, this list of conditions and the following disclaimer in the
+documentation and/or other materials provided with the distribution.
+3. The name of the author may not be used to endorse or promote products
+derived from this software without specific prior written permission.
+
+THIS SOFTWARE IS PROVIDED BY THE AUTHOR ``AS IS'' AND ANY EXPRESS OR
+IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES
+OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED.
+IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY DIRECT, INDIRECT,
+INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT
+NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+(INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF
+THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+
+*/
+
+
+public class TestDebuggerCompiler extends TestCase {
+
+    public void testInProcessCompiler() throws Exception {
+        File dir = File.createTempFile("compiler", "");
+        dir.delete();
+        File classes = new File(dir, "classes");
+        classes.mkdirs();
+        String a = new File(dir, "A.java").getPath();
+        String b = new File(dir, "B.java").getPath();
+        String outputFileDir = classes.getPath();
+        XJUtils.writeStringToFile("public class A { public static final int ID = 1; }", a);
+        XJUtils.writeStringToFile("public class B { public int b() { return A.ID; } }", b);
+
+        DebuggerCompiler compiler = new DebuggerCompiler();
+        assertNull(compiler.compileFiles(new String[] { a, b }, outputFileDir, outputFileDir, null));
+        assertEquals("compiled", 2, compiler.getCompiledFileCount());
+        assertTrue("class", new File(classes, "B.class").exists());
+
+        /* Unchanged files are not compiled again and their missing classes are written back */
+        new File(classes, "B.class").delete();
+        assertNull(compiler.compileFiles(new String[] { a }, outputFileDir, outputFileDir, null));
+        assertNull(compiler.compileFiles(new String[] { b }, outputFileDir, outputFileDir, null));
+        assertEquals("cached", 2, compiler.getCompiledFileCount());
+        assertTrue("rewritten", new File(classes, "B.class").exists());
+
+        /* A changed file is compiled again with the other files: B inlines the constant of A */
+        byte[] bClass = Files.readAllBytes(new File(classes, "B.class").toPath());
+        XJUtils.writeStringToFile("public class A { public static final int ID = 2; static class Inner { } }", a);
+        assertNull(compiler.compileFiles(new String[] { a }, outputFileDir, outputFileDir, null));
+        assertEquals("changed", 4, compiler.getCompiledFileCount());
+        assertFalse("dependent", Arrays.equals(bClass, Files.readAllBytes(new File(classes, "B.class").toPath())));
+        assertTrue("inner", new File(classes, "A$Inner.class").exists());
+
+        /* The previous classes of a file compiled again are removed */
+        XJUtils.writeStringToFile("public class A { public static final int ID = 3; }", a);
+        assertNull(compiler.compileFiles(new String[] { a, b }, outputFileDir, outputFileDir, null));
+        assertFalse("removed", new File(classes, "A$Inner.class").exists());
+
+        XJUtils.writeStringToFile("public class A { public static int a() { return } }", a);
+        assertNotNull("error", compiler.compileFiles(new String[] { a }, outputFileDir, outputFileDir, null));
+
+        XJUtils.deleteDirectory(dir.getPath());
+    }
+
+}
@@ -0,0 +1,355 @@
+package org.antlr.works.debugger.input;
+
+import junit.framework.TestCase;
+import org.antlr.runtime.CommonToken;
+import org.antlr.runtime.Token;
+import org.antlr.works.debugger.events.*;
+import org.antlr.works.debugger.tivo.DBModelBuilder;
+import org.antlr.works.debugger.tivo.DBPlayer;
+import org.antlr.works.debugger.tivo.DBPlayerContextInfo;
+import org.antlr.works.debugger.tivo.DBPlayerDelegate;
+import org.antlr.works.utils.TextPane;
+
+import javax.swing.text.AttributeSet;
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.util.ArrayList;
+import java.util.List;
+/*
+
+[The "BSD licence"]
+Copyright (c) 2005 Jean Bovet
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions
+are met:
+
+1. Redistributions of source code must retain the above copyright
+notice, this list of conditions and the following disclaimer.
+2. Redistributions in binary form must reproduce the above copyright
+notice, this list of conditions and the following disclaimer in the
+documentation and/or other materials provided with the distribution.
+3. The name of the author may not be used to endorse or promote products
+derived from this software without specific prior written permission.
+
+THIS SOFTWARE IS PROVIDED BY THE AUTHOR ``AS IS'' AND ANY EXPRESS OR
+IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES
+OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED.
+IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY DIRECT, INDIRECT,
+INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT
+NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+(INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF
+THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+
+*/
+
+
+public class TestDBInputProcessorToken extends TestCase {
+
+    private static final int TOKENS = 24;
+
+    public void testInsertTokenIndex() {
+        DBInputProcessorToken processor = new DBInputProcessorToken(null, new TextPane());
+        int[] indexes = { 5, 1, 3, 3, 7, 1, 0, 7, 5 };
+        for(int index : indexes) {
+            processor.insertTokenIndex(index);
+        }
+        assertIndexes(processor, 0, 1, 3, 5, 7);
+
+        /** Out of order inserts beyond the initial capacity of the array */
+        processor.reset();
+        for(int index=600; index>0; index-=2) {
+            processor.insertTokenIndex(index);
+            processor.insertTokenIndex(index);
+        }
+        for(int index=1; index<600; index+=2) {
+            processor.insertTokenIndex(index);
+        }
+        assertEquals("count", 600, processor.inputTokenCount);
+        for(int i=0; i<processor.inputTokenCount; i++) {
+            assertEquals("index", i+1, processor.inputTokenIndexes[i]);
+        }
+    }
+
+    public void testRewind() {
+        DBInputProcessorToken processor = new DBInputProcessorToken(null, new TextPane());
+        for(int index=0; index<20; index+=2) {
+            processor.consumeToken(createToken(index, "t"+index), DBInputProcessor.TOKEN_NORMAL);
+        }
+        processor.LT(createToken(20, "t20"));
+        processor.LT(createToken(22, "t22"));
+
+        assertEquals("first", 0, processor.findTokenIndexPosition(-1));
+        assertEquals("present", 4, processor.findTokenIndexPosition(8));
+        assertEquals("absent", 5, processor.findTokenIndexPosition(9));
+        assertEquals("after", 12, processor.findTokenIndexPosition(30));
+
+        /** The tokens from the start index keep their text but lose their attributes */
+        processor.rewind(9);
+        assertEquals("current", 9, processor.getCurrentTokenIndex());
+        assertEquals("tokens", 12, processor.inputTokenCount);
+        for(int index=0; index<=22; index+=2) {
+            assertNotNull("info "+index, processor.getTokenInfoAtTokenIndex(index));
+            assertEquals("consumed "+index, index < 9, processor.indexToConsumeAttributeMap.get(index) != null);
+            assertFalse("lookahead "+index, processor.lookaheadTokenIndexes.contains(index));
+        }
+
+        processor.rewind(4);
+        assertNotNull("consumed before", processor.indexToConsumeAttributeMap.get(2));
+        assertNull("consumed start", processor.indexToConsumeAttributeMap.get(4));
+
+        processor.rewindAll();
+        assertEquals("current", -1, processor.getCurrentTokenIndex());
+        assertTrue("consumed", processor.indexToConsumeAttributeMap.isEmpty());
+    }
+
+    public void testFindRenderedToken() {
+        DBInputProcessorToken processor = createRenderedProcessor("aa", " ", "bb", "\n", "cc", " ", "dd", "\n", "ee");
+
+        assertEquals("first", 0, processor.findRenderedTokenAtPosition(0));
+        assertEquals("inside first", 0, processor.findRenderedTokenAtPosition(1));
+        assertEquals("start", 2, processor.findRenderedTokenAtPosition(3));
+        assertEquals("last", 8, processor.findRenderedTokenAtPosition(12));
+        assertEquals("end of text", 8, processor.findRenderedTokenAtPosition(14));
+        assertEquals("before", -1, processor.findRenderedTokenAtPosition(-1));
+        assertEquals("info", "dd", processor.getTokenInfoAtPositionIndex(9).getText());
+        assertNull("outside", processor.getTokenInfoAtPositionIndex(14));
+    }
+
+    /** Only the tokens of the lines in the clip are painted: their shapes are the only ones created */
+    public void testPaintClip() throws Exception {
+        DBInputProcessorToken processor = createRenderedProcessor("aa", " ", "bb", "\n", "cc", " ", "dd", "\n", "ee");
+        processor.setDrawTokensBox(true);
+
+        Rectangle line1 = processor.getCharacterBounds(0);
+        Rectangle line2 = processor.getCharacterBounds(processor.renderedTokens[4].start);
+        assertTrue("lines", line2.y > line1.y);
+
+        BufferedImage image = new BufferedImage(400, 200, BufferedImage.TYPE_INT_ARGB);
+        Graphics2D g = image.createGraphics();
+        g.setClip(0, line2.y, 400, line2.height-1);
+        processor.textPaneDidPaint(g);
+        g.dispose();
+
+        for(int i=0; i<processor.renderedTokens.length; i++) {
+            assertEquals("painted "+i, i >= 4 && i <= 7, processor.renderedTokenShapes[i] != null);
+        }
+    }
+
+    public void testCreateTokenShape() throws Exception {
+        DBInputProcessorToken processor = createRenderedProcessor("aa", " ", "bbbb\ncc", " ", "dd");
+        Rectangle a = processor.getCharacterBounds(0);
+        Rectangle space = processor.getCharacterBounds(2);
+
+        /** A token on one line */
+        Shape shape = processor.createTokenShape(processor.renderedTokens[0]);
+        assertEquals("single line", new Rectangle(a.x, a.y, space.x-a.x, a.height), shape);
+
+        /** A token on two lines: the union of its part on each line */
+        shape = processor.createTokenShape(processor.renderedTokens[2]);
+        Rectangle bounds = shape.getBounds();
+        Rectangle b = processor.getCharacterBounds(processor.renderedTokens[2].start);
+        Rectangle c = processor.getCharacterBounds(processor.renderedTokens[2].start+5);
+        Rectangle after = processor.getCharacterBounds(processor.renderedTokens[3].start);
+        assertTrue("two lines", c.y > b.y);
+        assertEquals("top", b.y, bounds.y);
+        assertEquals("bottom", c.y+c.height, bounds.y+bounds.height);
+        assertTrue("first line", shape.contains(b.x+1, b.y+1));
+        assertTrue("second line", shape.contains(c.x+1, c.y+1));
+        assertFalse("after the token", shape.contains(after.x+1, after.y+1));
+        assertFalse("before the token", shape.contains(a.x+1, a.y+1));
+    }
+
+    private static DBInputProcessorToken createRenderedProcessor(String... texts) {
+        TextPane textPane = new TextPane();
+        textPane.setSize(400, 200);
+        DBInputProcessorToken processor = new DBInputProcessorToken(null, textPane);
+        for(int index=0; index<texts.length; index++) {
+            processor.consumeToken(createToken(index, texts[index]), DBInputProcessor.TOKEN_NORMAL);
+        }
+        processor.render();
+        return processor;
+    }
+
+    private static Token createToken(int index, String text) {
+        CommonToken token = new CommonToken(1, text);
+        token.setTokenIndex(index);
+        return token;
+    }
+
+    private static void assertIndexes(DBInputProcessorToken processor, int... indexes) {
+        assertEquals("count", indexes.length, processor.inputTokenCount);
+        for(int i=0; i<indexes.length; i++) {
+            assertEquals("index "+i, indexes[i], processor.inputTokenIndexes[i]);
+        }
+    }
+
+    /** The lookahead bursts applied in one step give the same state as the LT events applied one by one,
+     * whatever the event the debugger breaks on (including the last LT of a burst).
+     */
+    public void testLookaheadBursts() throws Exception {
+        List<DBEvent> events = createEvents();
+
+        DBModelBuilder expectedModels = new DBModelBuilder(null, events, 0, events.size());
+        DBPlayer expected = new EventByEventPlayer(expectedModels);
+        expected.setInputBuffer(new DBInputProcessorToken(null, new TextPane()));
+        expected.resetPlayEvents(false);
+
+        DBModelBuilder steppedModels = new DBModelBuilder(null, events, 0, events.size());
+        DBPlayer stepped = steppedModels.getPlayer();
+        stepped.setInputBuffer(new DBInputProcessorToken(null, new TextPane()));
+        stepped.resetPlayEvents(false);
+
+        int burstEnds = 0;
+        for(int position=1; position<=events.size(); position++) {
+            if(events.get(position-1).getEventType() == DBEvent.LT
+                    && (position == events.size() || events.get(position).getEventType() != DBEvent.LT))
+                burstEnds++;
+
+            expected.playEvents(events, position, false);
+
+            /** Break on each event like the debugger stepping forward */
+            stepped.playEvents(events, position, false);
+            assertSameState("step "+position, expected, expectedModels, stepped, steppedModels);
+
+            /** Replay all the events up to the break */
+            DBModelBuilder replayedModels = new DBModelBuilder(null, events, 0, position);
+            DBPlayer replayed = replayedModels.getPlayer();
+            replayed.setInputBuffer(new DBInputProcessorToken(null, new TextPane()));
+            replayed.resetPlayEvents(false);
+            replayed.playEvents(events, position, false);
+            assertSameState("replay "+position, expected, expectedModels, replayed, replayedModels);
+        }
+        assertTrue("bursts", burstEnds > TOKENS);
+    }
+
+    private void assertSameState(String message, DBPlayer expectedPlayer, DBModelBuilder expectedModels,
+                                 DBPlayer player, DBModelBuilder models)
+    {
+        DBInputProcessorToken expected = (DBInputProcessorToken) expectedPlayer.getProcessor();
+        DBInputProcessorToken processor = (DBInputProcessorToken) player.getProcessor();
+
+        assertEquals(message+" current token", expected.getCurrentTokenIndex(), processor.getCurrentTokenIndex());
+        assertEquals(message+" token count", expected.inputTokenCount, processor.inputTokenCount);
+        for(int i=0; i<expected.inputTokenCount; i++) {
+            assertEquals(message+" token index", expected.inputTokenIndexes[i], processor.inputTokenIndexes[i]);
+        }
+        for(int index=-1; index<=TOKENS; index++) {
+            assertEquals(message+" lookahead "+index, expected.lookaheadTokenIndexes.contains(index),
+                    processor.lookaheadTokenIndexes.contains(index));
+            assertEquals(message+" consume "+index, getConsumeFlavor(expected, index), getConsumeFlavor(processor, index));
+            DBInputTextTokenInfo expectedInfo = expected.getTokenInfoAtTokenIndex(index);
+            DBInputTextTokenInfo info = processor.getTokenInfoAtTokenIndex(index);
+            assertEquals(message+" token info "+index, expectedInfo == null, info == null);
+            if(info != null) {
+                assertSame(message+" token "+index, expectedInfo.token, info.token);
+                assertSame(message+" location "+index, expectedInfo.location, info.location);
+            }
+        }
+
+        assertEquals(message+" contexts", expectedModels.getContextCount(), models.getContextCount());
+        for(int i=0; i<models.getContextCount()*DBPlayerContextInfo.PACKED_SIZE; i++) {
+            assertEquals(message+" context", expectedModels.getContexts()[i], models.getContexts()[i]);
+        }
+    }
+
+    private static int getConsumeFlavor(DBInputProcessorToken processor, int index) {
+        AttributeSet attribute = processor.indexToConsumeAttributeMap.get(index);
+        if(attribute == null)
+            return 0;
+        else if(attribute == processor.attributeConsume)
+            return DBInputProcessor.TOKEN_NORMAL;
+        else if(attribute == processor.attributeConsumeHidden)
+            return DBInputProcessor.TOKEN_HIDDEN;
+        else if(attribute == processor.attributeConsumeDead)
+            return DBInputProcessor.TOKEN_DEAD;
+        else
+            return -1;
+    }
+
+    /** Rules made of decisions looking ahead a few tokens, sometimes several times, in a mark
+     * or outside of any decision, followed by the consumption of the tokens.
+     */
+    private static List<DBEvent> createEvents() {
+        List<Token> tokens = new ArrayList<Token>();
+        for(int index=0; index<TOKENS; index++) {
+            CommonToken token = new CommonToken(1, index % 2 == 0 ? "t"+index : " ");
+            token.setTokenIndex(index);
+            tokens.add(token);
+        }
+        CommonToken eof = new CommonToken(Token.EOF, "<EOF>");
+        eof.setTokenIndex(TOKENS);
+
+        List<DBEvent> events = new ArrayList<DBEvent>();
+        events.add(new DBEventEnterRule("g", "start"));
+        for(int index=0; index<TOKENS; index+=2) {
+            Token token = tokens.get(index);
+            Token next = index+2 < TOKENS ? tokens.get(index+2) : eof;
+
+            events.add(new DBEventEnterRule("g", "r"+(index % 3)));
+            events.add(new DBEventLocation(index, 0));
+            /** Outside of any decision: ignored */
+            events.add(new DBEventLT(1, token));
+            events.add(new DBEventEnterDecision(index));
+            events.add(new DBEventLT(1, token));
+            events.add(new DBEventLT(2, next));
+            events.add(new DBEventLT(1, token));
+            if(index > 0)
+                events.add(new DBEventLT(-1, tokens.get(index-2)));
+            if(index % 4 == 0) {
+                events.add(new DBEventMark(index));
+                events.add(new DBEventLT(1, token));
+                events.add(new DBEventLT(2, next));
+                events.add(new DBEventConsumeToken(token));
+                events.add(new DBEventLT(1, next));
+                events.add(new DBEventRewind());
+                events.add(new DBEventRewind(index));
+            }
+            events.add(new DBEventExitDecision(index));
+            events.add(new DBEventEnterSubRule(index));
+            events.add(new DBEventEnterDecision(index+1));
+            /** The same token seen through another token object */
+            CommonToken copy = new CommonToken(token);
+            copy.setTokenIndex(token.getTokenIndex());
+            events.add(new DBEventLT(2, next));
+            events.add(new DBEventLT(1, copy));
+            events.add(new DBEventConsumeToken(copy));
+            events.add(new DBEventLT(1, tokens.get(index+1)));
+            events.add(new DBEventLT(2, next));
+            events.add(new DBEventConsumeHiddenToken(tokens.get(index+1)));
+            events.add(new DBEventLT(1, next));
+            events.add(new DBEventExitDecision(index+1));
+            events.add(new DBEventExitSubRule(index));
+            events.add(new DBEventExitRule("g", "r"+(index % 3)));
+        }
+        events.add(new DBEventLT(1, eof));
+        events.add(new DBEventExitRule("g", "start"));
+        return events;
+    }
+
+    /** Applies each LT event to the processor as soon as it is played */
+    private static class EventByEventPlayer extends DBPlayer {
+
+        public EventByEventPlayer(DBPlayerDelegate delegate) {
+            super(delegate);
+        }
+
+        @Override
+        public void playLT(DBEventLT event) {
+            super.playLT(event);
+            for(Token token : lookaheadTokens) {
+                getProcessor().LT(token);
+            }
+            lookaheadTokens.clear();
+        }
+
+        @Override
+        public void removeAllLT() {
+            getProcessor().removeAllLT();
+        }
+    }
+
+}
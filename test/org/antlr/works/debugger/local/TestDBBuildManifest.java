@@ -0,0 +1,74 @@
+package org.antlr.works.debugger.local;
+
+import junit.framework.TestCase;
+import org.antlr.xjlib.foundation.XJUtils;
+
+import java.io.File;
+import java.util.Collections;
+/*
+
+[The "BSD licence"]
+Copyright (c) 2005 Jean Bovet
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions
+are met:
+
+1. Redistributions of source code must retain the above copyright
+notice, this list of conditions and the following disclaimer.
+2. Redistributions in binary form must reproduce the above copyright
+notice, this list of conditions and the following disclaimer in the
+documentation and/or other materials provided with the distribution.
+3. The name of the author may not be used to endorse or promote products
+derived from this software without specific prior written permission.
+
+THIS SOFTWARE IS PROVIDED BY THE AUTHOR ``AS IS'' AND ANY EXPRESS OR
+IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES
+OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED.
+IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY DIRECT, INDIRECT,
+INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT
+NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+(INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF
+THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+
+*/
+
+
+public class TestDBBuildManifest extends TestCase {
+
+    public void testBuildManifest() throws Exception {
+        File dir = File.createTempFile("manifest", "");
+        dir.delete();
+        dir.mkdirs();
+        String output = new File(dir, "TParser.java").getPath();
+        String manifestFile = new File(dir, "manifest.properties").getPath();
+        XJUtils.writeStringToFile("class TParser { }", output);
+
+        assertFalse("null", DBBuildManifest.hash((String)null).equals(DBBuildManifest.hash("")));
+        assertFalse("parts", DBBuildManifest.hash("ab", "c").equals(DBBuildManifest.hash("a", "bc")));
+
+        String inputs = DBBuildManifest.hash("grammar T;", "-debug");
+        DBBuildManifest manifest = new DBBuildManifest(manifestFile);
+        assertFalse("empty", manifest.isUpToDate(DBBuildManifest.STAGE_GENERATE, inputs));
+        manifest.completeStage(DBBuildManifest.STAGE_GENERATE, inputs, Collections.singletonList(output));
+        assertTrue("completed", manifest.isUpToDate(DBBuildManifest.STAGE_GENERATE, inputs));
+        assertFalse("other stage", manifest.isUpToDate(DBBuildManifest.STAGE_COMPILE, inputs));
+
+        /* The manifest is read back from disk in the next session */
+        manifest = new DBBuildManifest(manifestFile);
+        assertTrue("loaded", manifest.isUpToDate(DBBuildManifest.STAGE_GENERATE, inputs));
+        assertFalse("inputs", manifest.isUpToDate(DBBuildManifest.STAGE_GENERATE, DBBuildManifest.hash("grammar U;", "-debug")));
+
+        XJUtils.writeStringToFile("class TParser { int debug; }", output);
+        assertFalse("modified output", manifest.isUpToDate(DBBuildManifest.STAGE_GENERATE, inputs));
+        manifest.completeStage(DBBuildManifest.STAGE_GENERATE, inputs, Collections.singletonList(output));
+        new File(output).delete();
+        assertFalse("deleted output", manifest.isUpToDate(DBBuildManifest.STAGE_GENERATE, inputs));
+
+        XJUtils.deleteDirectory(dir.getPath());
+    }
+
+}
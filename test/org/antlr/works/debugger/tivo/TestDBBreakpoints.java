@@ -0,0 +1,71 @@
+package org.antlr.works.debugger.tivo;
+
+import junit.framework.TestCase;
+import org.antlr.runtime.CommonToken;
+import org.antlr.works.debugger.events.DBEvent;
+
+import java.util.*;
+/*
+
+[The "BSD licence"]
+Copyright (c) 2005 Jean Bovet
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions
+are met:
+
+1. Redistributions of source code must retain the above copyright
+notice, this list of conditions and the following disclaimer.
+2. Redistributions in binary form must reproduce the above copyright
+notice, this list of conditions and the following disclaimer in the
+documentation and/or other materials provided with the distribution.
+3. The name of the author may not be used to endorse or promote products
+derived from this software without specific prior written permission.
+
+THIS SOFTWARE IS PROVIDED BY THE AUTHOR ``AS IS'' AND ANY EXPRESS OR
+IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES
+OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED.
+IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY DIRECT, INDIRECT,
+INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT
+NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+(INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF
+THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+
+*/
+
+
+public class TestDBBreakpoints extends TestCase {
+
+    public void testBreakpoints() throws Exception {
+        Map<Integer, Set<String>> lines = new HashMap<Integer, Set<String>>();
+        lines.put(3, new HashSet<String>(Arrays.asList("T", "L")));
+        lines.put(70, Collections.singleton("T"));
+        BitSet tokens = new BitSet();
+        tokens.set(5);
+
+        DBBreakpoints breakpoints = new DBBreakpoints(lines, tokens);
+        assertTrue("line", breakpoints.isBreakpointAtLine(3, "L"));
+        assertTrue("line", breakpoints.isBreakpointAtLine(70, "T"));
+        assertFalse("line", breakpoints.isBreakpointAtLine(70, "L"));
+        assertFalse("grammar", breakpoints.isBreakpointAtLine(3, null));
+
+        CommonToken token = new CommonToken(4, "id");
+        token.setTokenIndex(5);
+        assertTrue("token", breakpoints.isBreakpointAtToken(token));
+        token.setTokenIndex(6);
+        assertFalse("token", breakpoints.isBreakpointAtToken(token));
+
+        assertTrue("same", breakpoints.isSame(lines, tokens));
+        tokens.set(6);
+        assertFalse("changed", breakpoints.isSame(lines, tokens));
+
+        long mask = DBBreakpoints.mask(DBEvent.LOCATION) | DBBreakpoints.mask(DBEvent.LT);
+        assertTrue("mask", DBBreakpoints.contains(mask, DBEvent.LT));
+        assertFalse("mask", DBBreakpoints.contains(mask, DBEvent.CONSUME_TOKEN));
+        assertFalse("mask", DBBreakpoints.contains(mask, DBEvent.NO_EVENT));
+    }
+
+}
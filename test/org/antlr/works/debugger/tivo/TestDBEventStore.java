@@ -0,0 +1,73 @@
+package org.antlr.works.debugger.tivo;
+
+import junit.framework.TestCase;
+import org.antlr.runtime.CommonToken;
+import org.antlr.works.debugger.events.*;
+/*
+
+[The "BSD licence"]
+Copyright (c) 2005 Jean Bovet
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions
+are met:
+
+1. Redistributions of source code must retain the above copyright
+notice, this list of conditions and the following disclaimer.
+2. Redistributions in binary form must reproduce the above copyright
+notice, this list of conditions and the following disclaimer in the
+documentation and/or other materials provided with the distribution.
+3. The name of the author may not be used to endorse or promote products
+derived from this software without specific prior written permission.
+
+THIS SOFTWARE IS PROVIDED BY THE AUTHOR ``AS IS'' AND ANY EXPRESS OR
+IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES
+OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED.
+IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY DIRECT, INDIRECT,
+INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT
+NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+(INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF
+THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+
+*/
+
+
+public class TestDBEventStore extends TestCase {
+
+    public void testEventStore() throws Exception {
+        DBEventStore store = new DBEventStore();
+        CommonToken token = new CommonToken(4, "id");
+        token.setTokenIndex(7);
+
+        int count = (DBEventStore.MAX_HEAP_SEGMENTS+2)*DBEventStore.SEGMENT_SIZE;
+        for(int i=0; i<count; i+=4) {
+            store.add(DBEventFactory.createLocation(i, 3));
+            store.add(DBEventFactory.createLT(1, token));
+            DBEvent enter = DBEventFactory.createEnterRule("dir/T.g", "expr");
+            store.add(enter);
+            store.add(DBEventFactory.createCreateNode(i, "imaginary", 9));
+        }
+        assertEquals("size", count, store.size());
+        assertTrue("spilled", store.getNumberOfSpilledSegments() > 0);
+
+        DBEventLocation location = (DBEventLocation) store.get(400);
+        assertEquals("line", 400, location.line);
+        assertEquals("pos", 3, location.pos);
+        DBEventLT lt = (DBEventLT) store.get(401);
+        assertEquals("lt", 1, lt.index);
+        assertSame("token", token, lt.token);
+        DBEventEnterRule enter = (DBEventEnterRule) store.get(402);
+        assertEquals("rule", "expr", enter.name);
+        assertEquals("grammar", "T", enter.getGrammarName());
+        DBEventCreateNode node = (DBEventCreateNode) store.get(count-1);
+        assertEquals("node", count-4, node.id);
+        assertEquals("text", "imaginary", node.text);
+        assertEquals("type", DBEvent.CREATE_NODE, store.getEventType(count-1));
+
+        store.close();
+    }
+
+}
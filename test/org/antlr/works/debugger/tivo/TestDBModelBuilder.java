@@ -0,0 +1,97 @@
+package org.antlr.works.debugger.tivo;
+
+import junit.framework.TestCase;
+import org.antlr.runtime.CommonToken;
+import org.antlr.works.debugger.events.*;
+import org.antlr.works.debugger.input.DBInputProcessorToken;
+import org.antlr.works.utils.TextPane;
+
+import java.util.ArrayList;
+import java.util.List;
+/*
+
+[The "BSD licence"]
+Copyright (c) 2005 Jean Bovet
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions
+are met:
+
+1. Redistributions of source code must retain the above copyright
+notice, this list of conditions and the following disclaimer.
+2. Redistributions in binary form must reproduce the above copyright
+notice, this list of conditions and the following disclaimer in the
+documentation and/or other materials provided with the distribution.
+3. The name of the author may not be used to endorse or promote products
+derived from this software without specific prior written permission.
+
+THIS SOFTWARE IS PROVIDED BY THE AUTHOR ``AS IS'' AND ANY EXPRESS OR
+IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES
+OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED.
+IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY DIRECT, INDIRECT,
+INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT
+NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+(INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF
+THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+
+*/
+
+
+public class TestDBModelBuilder extends TestCase {
+
+    public void testModelBuilder() throws Exception {
+        List<DBEvent> events = new ArrayList<DBEvent>();
+        events.add(new DBEventEnterRule("g", "start"));
+        events.add(new DBEventNilNode(0));
+        for(int index=0; events.size()<DBModelBuilder.MIN_EVENTS+20000; index++) {
+            CommonToken token = new CommonToken(1, "t"+index);
+            token.setTokenIndex(index);
+            events.add(new DBEventEnterRule("g", "r"+(index % 3)));
+            events.add(new DBEventEnterDecision(index % 5));
+            events.add(new DBEventLT(1, token));
+            events.add(new DBEventExitDecision(index % 5));
+            events.add(new DBEventConsumeToken(token));
+            events.add(new DBEventCreateNode(index+1, index));
+            events.add(new DBEventAddChild(0, index+1));
+            events.add(new DBEventExitRule("g", "r"+(index % 3)));
+        }
+        int last = events.size()-3;
+
+        /** Play the first events on the player of the debugger */
+        DBModelBuilder models = new DBModelBuilder(null, events, 0, last);
+        DBPlayer player = models.getPlayer();
+        player.setInputBuffer(new DBInputProcessorToken(null, new TextPane()));
+        player.resetPlayEvents(false);
+        player.playEvents(events, DBPlayer.CHECKPOINT_INTERVAL+100, false);
+        assertNull("few events", player.createModelBuilder(null, events, DBPlayer.CHECKPOINT_INTERVAL+200, false));
+
+        /** The builder starts from the last checkpoint and plays the events up to the end */
+        DBModelBuilder builder = player.createModelBuilder(null, events, last, false);
+        assertNotNull("builder", builder);
+        assertEquals("first event", DBPlayer.CHECKPOINT_INTERVAL, builder.getFirstEventPosition());
+        builder.getPlayer().cancel();
+        builder.getPlayer().playEvents(events, last, false);
+        assertTrue("cancelled", builder.isCancelled());
+        assertEquals("cancelled", builder.getFirstEventPosition(), builder.getPlayer().getEventPlayedCount());
+
+        builder = player.createModelBuilder(null, events, last, false);
+        builder.getPlayer().playEvents(events, last, false);
+
+        /** Same models as the events played on the event dispatch thread */
+        player.playEvents(events, last, false);
+        assertEquals("events", last, builder.getPlayer().getEventPlayedCount());
+        assertEquals("rules", models.getRules(), builder.getRules());
+        assertEquals("parse tree", models.getParseTreeModel().getRootRule().getChildAt(0).getChildCount(),
+                builder.getParseTreeModel().getRootRule().getChildAt(0).getChildCount());
+        assertEquals("ast", models.getASTModel().nodesMap.size(), builder.getASTModel().nodesMap.size());
+        assertEquals("token", player.getProcessor().getCurrentTokenIndex(), builder.getPlayer().getProcessor().getCurrentTokenIndex());
+        assertEquals("contexts", last-builder.getFirstEventPosition(), builder.getContextCount());
+        for(int i=0; i<builder.getContextCount()*DBPlayerContextInfo.PACKED_SIZE; i++) {
+            assertEquals("context", models.getContexts()[builder.getFirstEventPosition()*DBPlayerContextInfo.PACKED_SIZE+i], builder.getContexts()[i]);
+        }
+    }
+
+}
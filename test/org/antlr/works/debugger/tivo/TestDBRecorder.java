@@ -0,0 +1,114 @@
+package org.antlr.works.debugger.tivo;
+
+import junit.framework.TestCase;
+import org.antlr.works.debugger.events.DBEvent;
+import org.antlr.works.debugger.events.DBEventEnterRule;
+import org.antlr.works.debugger.events.DBEventLocation;
+
+import java.util.concurrent.atomic.AtomicInteger;
+/*
+
+[The "BSD licence"]
+Copyright (c) 2005 Jean Bovet
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions
+are met:
+
+1. Redistributions of source code must retain the above copyright
+notice, this list of conditions and the following disclaimer.
+2. Redistributions in binary form must reproduce the above copyright
+notice, this list of conditions and the following disclaimer in the
+documentation and/or other materials provided with the distribution.
+3. The name of the author may not be used to endorse or promote products
+derived from this software without specific prior written permission.
+
+THIS SOFTWARE IS PROVIDED BY THE AUTHOR ``AS IS'' AND ANY EXPRESS OR
+IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES
+OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED.
+IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY DIRECT, INDIRECT,
+INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT
+NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+(INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF
+THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+
+*/
+
+
+public class TestDBRecorder extends TestCase {
+
+    public void testBreakPausesTheProducer() throws Exception {
+        final TestRecorder recorder = new TestRecorder();
+        recorder.setStatus(DBRecorder.STATUS_RUNNING);
+        recorder.setBreakEvents(DBBreakpoints.mask(DBEvent.LOCATION));
+        recorder.startRing();
+
+        /* The thread reading the socket acknowledges each event when listenerEvent() returns */
+        final AtomicInteger acknowledged = new AtomicInteger();
+        Thread producer = new Thread(new Runnable() {
+            public void run() {
+                for(int i=0; i<1000; i++) {
+                    recorder.listenerEvent(i == 10 ? new DBEventLocation(1, 0) : new DBEventEnterRule("g", "r"+i));
+                    acknowledged.incrementAndGet();
+                }
+            }
+        });
+        producer.setDaemon(true);
+        producer.start();
+
+        waitForStatus(recorder, DBRecorder.STATUS_BREAK);
+        Thread.sleep(200);
+        assertEquals("acknowledged before the break", 10, acknowledged.get());
+        assertEquals("recorded", 11, recorder.getCurrentEvents().size());
+
+        /* Resume: the producer runs to the end */
+        recorder.setBreakEvents(0);
+        recorder.setStatus(DBRecorder.STATUS_RUNNING);
+        recorder.threadNotify();
+        producer.join(5000);
+        assertEquals("acknowledged", 1000, acknowledged.get());
+        recorder.closeRing();
+    }
+
+    public void testProducerRunsAheadWithoutBreakpoints() throws Exception {
+        TestRecorder recorder = new TestRecorder();
+        recorder.setStatus(DBRecorder.STATUS_RUNNING);
+        recorder.setIgnoreBreakpoints(true);
+        assertFalse(recorder.canBreakOnEvent(new DBEventEnterRule("g", "r")));
+        assertFalse(recorder.canBreakOnEvent(new DBEventLocation(1, 0)));
+
+        recorder.setBreakEvents(DBBreakpoints.mask(DBEvent.LOCATION));
+        assertTrue(recorder.canBreakOnEvent(new DBEventLocation(1, 0)));
+
+        recorder.setStatus(DBRecorder.STATUS_BREAK);
+        assertTrue(recorder.canBreakOnEvent(new DBEventEnterRule("g", "r")));
+    }
+
+    private static void waitForStatus(DBRecorder recorder, int status) throws InterruptedException {
+        long end = System.currentTimeMillis()+5000;
+        while(recorder.getStatus() != status && System.currentTimeMillis() < end) {
+            Thread.sleep(10);
+        }
+        assertEquals("status", status, recorder.getStatus());
+    }
+
+    /** Recorder without debugger tab */
+    private static class TestRecorder extends DBRecorder {
+
+        public TestRecorder() {
+            super(null);
+        }
+
+        @Override
+        public synchronized void setStatus(int status) {
+            this.status = status;
+        }
+
+        @Override
+        protected synchronized void playEvents(boolean reset) {
+        }
+    }
+}
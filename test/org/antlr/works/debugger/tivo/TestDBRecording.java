@@ -0,0 +1,92 @@
+package org.antlr.works.debugger.tivo;
+
+import junit.framework.TestCase;
+import org.antlr.runtime.CommonToken;
+import org.antlr.works.debugger.events.DBEvent;
+import org.antlr.works.debugger.events.DBEventConsumeToken;
+import org.antlr.works.debugger.events.DBEventEnterRule;
+import org.antlr.works.debugger.events.DBEventFactory;
+
+import java.io.File;
+import java.io.RandomAccessFile;
+/*
+
+[The "BSD licence"]
+Copyright (c) 2005 Jean Bovet
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions
+are met:
+
+1. Redistributions of source code must retain the above copyright
+notice, this list of conditions and the following disclaimer.
+2. Redistributions in binary form must reproduce the above copyright
+notice, this list of conditions and the following disclaimer in the
+documentation and/or other materials provided with the distribution.
+3. The name of the author may not be used to endorse or promote products
+derived from this software without specific prior written permission.
+
+THIS SOFTWARE IS PROVIDED BY THE AUTHOR ``AS IS'' AND ANY EXPRESS OR
+IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES
+OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED.
+IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY DIRECT, INDIRECT,
+INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT
+NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+(INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF
+THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+
+*/
+
+
+public class TestDBRecording extends TestCase {
+
+    public void testRecording() throws Exception {
+        File file = File.createTempFile("test", "."+DBRecording.EXTENSION);
+        File saved = File.createTempFile("test-saved", "."+DBRecording.EXTENSION);
+        file.deleteOnExit();
+        saved.deleteOnExit();
+
+        DBRecordingWriter writer = new DBRecordingWriter(file, "T.g");
+        CommonToken token = new CommonToken(4, "id");
+        int count = DBRecording.INDEX_INTERVAL*3+12;
+        for(int i=0; i<count; i+=5) {
+            token.setTokenIndex(i);
+            DBEvent enter = DBEventFactory.createEnterRule("T.g", "rule"+(i%7));
+            enter.setGrammarName("T.g");
+            writer.write(enter);
+            writer.write(DBEventFactory.createLocation(i, 2));
+            writer.write(DBEventFactory.createConsumeToken(token));
+            writer.write(DBEventFactory.createEndBacktrack(1, true));
+            writer.write(DBEventFactory.createCreateNode(i, "imaginary", 9));
+        }
+        writer.saveTo(saved);
+
+        DBRecordingReader reader = new DBRecordingReader(saved);
+        assertTrue("indexed", reader.isIndexed());
+        assertEquals("grammar", "T.g", reader.getGrammarFileName());
+        assertEquals("size", count, reader.size());
+        assertEquals("last", "Create node "+(count-5)+" (imaginary/9)", reader.get(count-1).toString());
+        DBEventConsumeToken consume = (DBEventConsumeToken) reader.get(DBRecording.INDEX_INTERVAL*2);
+        assertEquals("token index", DBRecording.INDEX_INTERVAL*2-2, consume.token.getTokenIndex());
+        assertEquals("token text", "id", consume.token.getText());
+        DBEventEnterRule enter = (DBEventEnterRule) reader.get(5);
+        assertEquals("rule", "rule5", enter.name);
+        assertEquals("grammar name", "T", enter.getGrammarName());
+        reader.close();
+
+        /* A recording interrupted in the middle of an event is scanned to rebuild its index */
+        writer.discard();
+        RandomAccessFile access = new RandomAccessFile(saved, "rw");
+        access.setLength(access.length()-(access.length()/3));
+        access.close();
+        reader = new DBRecordingReader(saved);
+        assertFalse("indexed", reader.isIndexed());
+        assertTrue("recovered", reader.size() > 0 && reader.size() < count);
+        assertEquals("location", "Location (4095,2)", reader.get(DBRecording.INDEX_INTERVAL).toString());
+        reader.close();
+    }
+
+}
@@ -0,0 +1,139 @@
+package org.antlr.works.debugger.tree;
+
+import junit.framework.TestCase;
+import org.antlr.runtime.CommonToken;
+
+import javax.swing.tree.TreeNode;
+import java.awt.*;
+/*
+
+[The "BSD licence"]
+Copyright (c) 2005 Jean Bovet
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions
+are met:
+
+1. Redistributions of source code must retain the above copyright
+notice, this list of conditions and the following disclaimer.
+2. Redistributions in binary form must reproduce the above copyright
+notice, this list of conditions and the following disclaimer in the
+documentation and/or other materials provided with the distribution.
+3. The name of the author may not be used to endorse or promote products
+derived from this software without specific prior written permission.
+
+THIS SOFTWARE IS PROVIDED BY THE AUTHOR ``AS IS'' AND ANY EXPRESS OR
+IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES
+OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED.
+IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY DIRECT, INDIRECT,
+INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT
+NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+(INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF
+THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+
+*/
+
+
+public class TestDBTreeCheckpoints extends TestCase {
+
+    public void testParseTreeCheckpoints() throws Exception {
+        DBParseTreeModel model = new DBParseTreeModel(null);
+        model.pushRule("a");
+        model.addToken(new CommonToken(1, "t1"));
+        DBParseTreeModel.Checkpoint first = model.createCheckpoint();
+
+        model.beginBacktrack(1);
+        model.addToken(new CommonToken(1, "t2"));
+        model.pushRule("b");
+        model.addToken(new CommonToken(1, "t3"));
+        DBParseTreeModel.Checkpoint second = model.createCheckpoint();
+        Color lookahead = ((DBTreeNode) model.getLastNode()).getColor();
+
+        model.popRule();
+        model.endBacktrack(1, true);
+        model.addToken(new CommonToken(1, "t4"));
+
+        /** The checkpoints share the nodes of the model but keep their own state */
+        DBParseTreeModel restored = new DBParseTreeModel(null);
+        restored.restoreCheckpoint(second);
+        TreeNode a = restored.getRootRule().getChildAt(0);
+        assertEquals("[t1, t2, b]", children(a));
+        assertEquals("[t3]", children(a.getChildAt(2)));
+        assertEquals("backtrack color", lookahead, ((DBTreeNode) a.getChildAt(1)).getColor());
+        assertSame("last node", a.getChildAt(2).getChildAt(0), restored.getLastNode());
+
+        /** The restored tree continues from the state of the checkpoint */
+        restored.popRule();
+        restored.endBacktrack(1, false);
+        restored.addToken(new CommonToken(1, "u4"));
+        assertEquals("[t1, t2, b, u4]", children(a));
+
+        restored.restoreCheckpoint(first);
+        assertEquals("[t1]", children(restored.getRootRule().getChildAt(0)));
+
+        TreeNode live = model.getRootRule().getChildAt(0);
+        assertEquals("[t1, t2, b, t4]", children(live));
+        assertFalse("live color", lookahead.equals(((DBTreeNode) live.getChildAt(1)).getColor()));
+    }
+
+    public void testASTCheckpoints() throws Exception {
+        DBASTModel model = new DBASTModel(null);
+        model.pushRule("r");
+        model.nilNode(0);
+        model.createNode(1, new CommonToken(1, "x"));
+        model.addChild(0, 1);
+        DBASTModel.Checkpoint first = model.createCheckpoint();
+
+        model.createNode(2, new CommonToken(1, "y"));
+        model.becomeRoot(2, 0);
+        DBASTModel.Checkpoint second = model.createCheckpoint();
+
+        model.createNode(3, new CommonToken(1, "z"));
+        model.addChild(2, 3);
+        DBASTModel.Checkpoint third = model.createCheckpoint();
+
+        model.createNode(4, new CommonToken(1, "w"));
+        model.addChild(2, 4);
+
+        DBASTModel restored = new DBASTModel(null);
+        restored.restoreCheckpoint(first);
+        assertEquals("nil [x]", root(restored));
+        assertEquals(2, restored.nodesMap.size());
+
+        restored.restoreCheckpoint(second);
+        assertEquals("y [x]", root(restored));
+
+        /** Only the added child is stored in the last checkpoint */
+        restored.restoreCheckpoint(third);
+        assertEquals("y [x, z]", root(restored));
+        assertEquals(4, restored.nodesMap.size());
+        assertSame("parent", restored.getRuleAtIndex(0).getRootAtIndex(0), restored.nodesMap.get(3).parentNode);
+
+        /** The checkpoints of the restored model are complete */
+        restored.createNode(5, new CommonToken(1, "v"));
+        restored.addChild(2, 5);
+        DBASTModel.Checkpoint fourth = restored.createCheckpoint();
+        DBASTModel other = new DBASTModel(null);
+        other.restoreCheckpoint(fourth);
+        assertEquals("y [x, z, v]", root(other));
+
+        assertEquals("y [x, z, w]", root(model));
+    }
+
+    private static String children(TreeNode node) {
+        StringBuilder sb = new StringBuilder("[");
+        for(int i=0; i<node.getChildCount(); i++) {
+            if(i > 0) sb.append(", ");
+            sb.append(node.getChildAt(i));
+        }
+        return sb.append("]").toString();
+    }
+
+    private static String root(DBASTModel model) {
+        DBASTModel.ASTNode root = model.getRuleAtIndex(0).getRootAtIndex(0);
+        return root+" "+children(root);
+    }
+}
@@ -0,0 +1,135 @@
+package org.antlr.works.grammar;
+
+import junit.framework.TestCase;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+/*
+
+[The "BSD licence"]
+Copyright (c) 2005 Jean Bovet
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions
+are met:
+
+1. Redistributions of source code must retain the above copyright
+notice, this list of conditions and the following disclaimer.
+2. Redistributions in binary form must reproduce the above copyright
+notice, this list of conditions and the following disclaimer in the
+documentation and/or other materials provided with the distribution.
+3. The name of the author may not be used to endorse or promote products
+derived from this software without specific prior written permission.
+
+THIS SOFTWARE IS PROVIDED BY THE AUTHOR ``AS IS'' AND ANY EXPRESS OR
+IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES
+OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED.
+IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY DIRECT, INDIRECT,
+INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT
+NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+(INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF
+THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+
+*/
+
+
+public class TestContinuousAnalysis extends TestCase {
+
+    public void testRequestDuringAnalysisIsNotLost() throws Exception {
+        BlockingAnalysis analysis = new BlockingAnalysis(1);
+        try {
+            analysis.grammarDidParse();
+            assertTrue("started", analysis.started.await(5, TimeUnit.SECONDS));
+
+            /* Requests arriving during the analysis are coalesced into one more run */
+            analysis.grammarDidParse();
+            analysis.grammarDidParse();
+            analysis.release.countDown();
+
+            assertTrue("analyzed again", waitForRuns(analysis, 2));
+            Thread.sleep(200);
+            assertEquals("runs", 2, analysis.runs.get());
+        } finally {
+            analysis.close();
+        }
+    }
+
+    public void testRequestWhileWaitingForSlot() throws Exception {
+        BlockingAnalysis first = new BlockingAnalysis(1);
+        BlockingAnalysis second = new BlockingAnalysis(1);
+        second.release.countDown();
+        try {
+            first.grammarDidParse();
+            assertTrue("started", first.started.await(5, TimeUnit.SECONDS));
+
+            /* The second analysis waits for the only slot; a request arriving meanwhile
+               neither aborts it nor gets lost */
+            second.grammarDidParse();
+            Thread.sleep(100);
+            second.grammarDidParse();
+            Thread.sleep(100);
+            assertEquals("waiting", 0, second.runs.get());
+
+            first.release.countDown();
+            assertTrue("analyzed twice", waitForRuns(second, 2));
+        } finally {
+            first.close();
+            second.close();
+        }
+    }
+
+    public void testSlotsFollowPreference() throws Exception {
+        Semaphore one = ContinuousAnalysis.getSlots(1);
+        assertSame("same", one, ContinuousAnalysis.getSlots(1));
+        Semaphore three = ContinuousAnalysis.getSlots(3);
+        assertNotSame("rebuilt", one, three);
+        assertEquals("permits", 3, three.availablePermits());
+        assertEquals("at least one", 1, ContinuousAnalysis.getSlots(0).availablePermits());
+    }
+
+    private static boolean waitForRuns(BlockingAnalysis analysis, int runs) throws InterruptedException {
+        long end = System.currentTimeMillis()+5000;
+        while(analysis.runs.get() < runs && System.currentTimeMillis() < end) {
+            Thread.sleep(10);
+        }
+        return analysis.runs.get() >= runs;
+    }
+
+    /** Analysis whose first run blocks until released */
+    private static class BlockingAnalysis extends ContinuousAnalysis {
+
+        public final CountDownLatch started = new CountDownLatch(1);
+        public final CountDownLatch release = new CountDownLatch(1);
+        public final AtomicInteger runs = new AtomicInteger();
+        private final int maxThreads;
+
+        public BlockingAnalysis(int maxThreads) {
+            super(null);
+            this.maxThreads = maxThreads;
+        }
+
+        public boolean isEnabled() {
+            return true;
+        }
+
+        protected int getDelay() {
+            return 10;
+        }
+
+        protected int getMaxThreads() {
+            return maxThreads;
+        }
+
+        protected void analyze() throws Exception {
+            started.countDown();
+            release.await();
+            runs.incrementAndGet();
+        }
+    }
+
+}
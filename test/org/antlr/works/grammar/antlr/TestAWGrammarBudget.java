@@ -0,0 +1,127 @@
+package org.antlr.works.grammar.antlr;
+
+import junit.framework.TestCase;
+import org.antlr.Tool;
+import org.antlr.tool.ErrorManager;
+import org.antlr.tool.GrammarNonDeterminismMessage;
+import org.antlr.tool.Message;
+import org.antlr.works.utils.ErrorListener;
+
+/*
+
+[The "BSD licence"]
+Copyright (c) 2005 Jean Bovet
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions
+are met:
+
+1. Redistributions of source code must retain the above copyright
+notice, this list of conditions and the following disclaimer.
+2. Redistributions in binary form must reproduce the above copyright
+notice, this list of conditions and the following disclaimer in the
+documentation and/or other materials provided with the distribution.
+3. The name of the author may not be used to endorse or promote products
+derived from this software without specific prior written permission.
+
+THIS SOFTWARE IS PROVIDED BY THE AUTHOR ``AS IS'' AND ANY EXPRESS OR
+IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES
+OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED.
+IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY DIRECT, INDIRECT,
+INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT
+NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+(INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF
+THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+
+*/
+
+
+public class TestAWGrammarBudget extends TestCase {
+
+    /** Decision 1 (rule a) is the only one that needs more than a few DFA states and it is ambiguous like decision 2 */
+    private static final String GRAMMAR = "grammar T;\n"+
+            "a : 'x' 'y' 'z' 'w' | 'x' 'y' 'z' 'w' ;\n"+
+            "b : 'v' 'u' | 'v' 'u' ;\n"+
+            "c : 'x' 'y' | 'x' 'z' ;\n"+
+            "d : 'p' 'q' | 'r' ;\n";
+
+    private AWGrammar grammar;
+    private AnalysisProfile profile;
+    private ErrorListener listener;
+
+    public void testWithinBudget() throws Exception {
+        analyze(AWGrammar.DEFAULT_MAX_DFA_STATES_PER_DECISION);
+
+        for(DecisionProfile p : profile.decisions) {
+            assertFalse("over budget "+p.decision, p.overBudget);
+            assertNotNull("dfa "+p.decision, grammar.getLookaheadDFA(p.decision));
+        }
+        assertEquals("errors", 2, listener.errors.size());
+        assertEquals("warnings", 2, listener.warnings.size());
+        assertErrorStateMatchesListener();
+    }
+
+    public void testDecisionOverBudget() throws Exception {
+        analyze(3);
+
+        assertEquals("decisions", 4, profile.decisions.size());
+        for(DecisionProfile p : profile.decisions) {
+            assertEquals("over budget "+p.decision, p.decision == 1, p.overBudget);
+            assertEquals("dfa "+p.decision, p.decision != 1, grammar.getLookaheadDFA(p.decision) != null);
+        }
+
+        // the messages of decision 1 are replaced by the budget warning, the ones of decision 2 are kept
+        assertEquals("errors", 1, listener.errors.size());
+        assertEquals("warnings", 2, listener.warnings.size());
+        AnalysisBudgetMessage budget = null;
+        for(Message m : listener.warnings) {
+            if(m instanceof AnalysisBudgetMessage) {
+                assertNull("one budget warning", budget);
+                budget = (AnalysisBudgetMessage) m;
+            } else {
+                assertEquals("kept warning", "b", ((GrammarNonDeterminismMessage) m).probe.dfa.getNFADecisionStartState().enclosingRule.name);
+            }
+        }
+        assertNotNull("budget warning", budget);
+        assertEquals("budget rule", "a", budget.decisionState.enclosingRule.name);
+        assertErrorStateMatchesListener();
+        assertTrue("budget id", ErrorManager.getErrorState().warningMsgIDs.member(ErrorManager.MSG_ANALYSIS_ABORTED));
+    }
+
+    private void assertErrorStateMatchesListener() {
+        ErrorManager.ErrorState state = ErrorManager.getErrorState();
+        assertEquals("error count", listener.errors.size(), state.errors);
+        assertEquals("warning count", listener.warnings.size(), state.warnings);
+        for(Message m : listener.errors) {
+            assertTrue("error id "+m.msgID, state.errorMsgIDs.member(m.msgID));
+        }
+        for(Message m : listener.warnings) {
+            assertTrue("warning id "+m.msgID, state.warningMsgIDs.member(m.msgID));
+        }
+    }
+
+    private void analyze(int maxDFAStates) throws Exception {
+        ErrorListener.prepareThread();
+        grammar = new AWGrammar();
+        grammar.setMaxDFAStatesPerDecision(maxDFAStates);
+        grammar.setTool(new Tool());
+        grammar.setFileName("T.g");
+        grammar.setGrammarContent(GRAMMAR);
+        grammar.composite.createNFAs();
+        ErrorListener.resetErrorState();
+
+        listener = ErrorListener.getJobInstance();
+        listener.setPrintToConsole(false);
+        listener.install();
+        try {
+            profile = new AnalysisProfile();
+            grammar.createLookaheadDFAs(null, profile);
+        } finally {
+            listener.uninstall();
+        }
+    }
+
+}
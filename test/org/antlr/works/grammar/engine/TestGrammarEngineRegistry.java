@@ -0,0 +1,210 @@
+package org.antlr.works.grammar.engine;
+
+import junit.framework.TestCase;
+import org.antlr.Tool;
+import org.antlr.works.ate.syntax.generic.ATESyntaxEngineDelegate;
+import org.antlr.works.utils.Console;
+import org.antlr.xjlib.foundation.XJUtils;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+/*
+
+[The "BSD licence"]
+Copyright (c) 2005 Jean Bovet
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions
+are met:
+
+1. Redistributions of source code must retain the above copyright
+notice, this list of conditions and the following disclaimer.
+2. Redistributions in binary form must reproduce the above copyright
+notice, this list of conditions and the following disclaimer in the
+documentation and/or other materials provided with the distribution.
+3. The name of the author may not be used to endorse or promote products
+derived from this software without specific prior written permission.
+
+THIS SOFTWARE IS PROVIDED BY THE AUTHOR ``AS IS'' AND ANY EXPRESS OR
+IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES
+OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED.
+IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY DIRECT, INDIRECT,
+INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT
+NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+(INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF
+THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+
+*/
+
+
+public class TestGrammarEngineRegistry extends TestCase {
+
+    private File folder;
+    private final List<String> errors = Collections.synchronizedList(new ArrayList<String>());
+    private final Console console = new RecordingConsole();
+
+    @Override
+    protected void setUp() throws Exception {
+        folder = File.createTempFile("registry", "");
+        assertTrue(folder.delete());
+        assertTrue(folder.mkdir());
+        write("Shared.g", "parser grammar Shared;\na : 'x' ;\n");
+        write("A.g", "grammar A;\nimport Shared;\na : 'y' ;\n");
+        write("B.g", "grammar B;\nimport Shared;\nb : 'z' ;\n");
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        for(File f : folder.listFiles()) {
+            f.delete();
+        }
+        folder.delete();
+    }
+
+    public void testSharedImportKeepsEachHierarchy() throws Exception {
+        GrammarEngineRegistry registry = new GrammarEngineRegistry();
+        GrammarEngine a = open("A.g");
+        GrammarEngine b = open("B.g");
+
+        registry.updateImports(path("A.g"), a, console);
+        registry.updateImports(path("B.g"), b, console);
+
+        /* Resolving the shared grammar for B must not take it away from A */
+        assertEquals(Arrays.asList("Shared"), a.getGrammarsOverriddenByRule("a"));
+        assertEquals(Arrays.asList("Shared"), b.getGrammarsOverriddenByRule("a"));
+        assertTrue(a.getUndefinedImports().isEmpty());
+        assertTrue(b.getUndefinedImports().isEmpty());
+        assertSame(a, a.getRootEngine());
+        assertTrue(errors.isEmpty());
+    }
+
+    public void testLoadedEnginesAreReleasedWithTheirLastUser() throws Exception {
+        GrammarEngineRegistry registry = new GrammarEngineRegistry();
+        GrammarEngine a = open("A.g");
+        GrammarEngine b = open("B.g");
+
+        registry.updateImports(path("A.g"), a, console);
+        registry.updateImports(path("B.g"), b, console);
+        assertEquals(1, registry.getLoadedEngineCount());
+
+        /* Updating again reuses the cached engine */
+        registry.updateImports(path("A.g"), a, console);
+        assertEquals(1, registry.getLoadedEngineCount());
+
+        registry.unregister(path("A.g"), a);
+        assertEquals(1, registry.getLoadedEngineCount());
+        assertEquals(Arrays.asList("Shared"), b.getGrammarsOverriddenByRule("a"));
+
+        registry.unregister(path("B.g"), b);
+        assertEquals(0, registry.getLoadedEngineCount());
+    }
+
+    private GrammarEngine open(String name) {
+        FileDelegate delegate = new FileDelegate(path(name));
+        GrammarEngine engine = new GrammarEngineImpl(delegate);
+        engine.getSyntaxEngine().setDelegate(delegate);
+        engine.getSyntaxEngine().processSyntax();
+        engine.parserCompleted();
+        return engine;
+    }
+
+    private String path(String name) {
+        return new File(folder, name).getPath();
+    }
+
+    private void write(String name, String text) throws IOException {
+        FileWriter writer = new FileWriter(new File(folder, name));
+        try {
+            writer.write(text);
+        } finally {
+            writer.close();
+        }
+    }
+
+    private class FileDelegate implements GrammarEngineDelegate, ATESyntaxEngineDelegate {
+
+        private final String path;
+
+        public FileDelegate(String path) {
+            this.path = path;
+        }
+
+        public String getGrammarFileName() {
+            return XJUtils.getLastPathComponent(path);
+        }
+
+        public String getGrammarText() {
+            try {
+                return XJUtils.getStringFromFile(path);
+            } catch (IOException e) {
+                throw new RuntimeException(e);
+            }
+        }
+
+        public String getText() {
+            return getGrammarText();
+        }
+
+        public String getTokenVocabFile(String name) {
+            return null;
+        }
+
+        public Tool getANTLRTool() {
+            return new Tool(new String[] { "-lib", folder.getPath() });
+        }
+
+        public void reportError(String error) {
+            errors.add(error);
+        }
+
+        public void reportError(Exception e) {
+            errors.add(e.toString());
+        }
+
+        public void gotoToRule(String grammar, String name) {
+        }
+
+        public void engineAnalyzeCompleted() {
+        }
+
+        public void ateEngineBeforeParsing() {
+        }
+
+        public void ateEngineAfterParsing() {
+        }
+    }
+
+    private class RecordingConsole implements Console {
+
+        public void setMode(int mode) {
+        }
+
+        public void println(String s) {
+            errors.add(s);
+        }
+
+        public void println(String s, int level) {
+            errors.add(s);
+        }
+
+        public void println(Throwable e) {
+            errors.add(e.toString());
+        }
+
+        public void print(String string, int level) {
+            errors.add(string);
+        }
+
+        public void print(Throwable e) {
+            errors.add(e.toString());
+        }
+    }
+}
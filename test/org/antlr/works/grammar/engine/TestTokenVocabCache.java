@@ -0,0 +1,55 @@
+package org.antlr.works.grammar.engine;
+
+import junit.framework.TestCase;
+import org.antlr.xjlib.foundation.XJUtils;
+
+import java.io.File;
+import java.util.Set;
+/*
+
+[The "BSD licence"]
+Copyright (c) 2005 Jean Bovet
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions
+are met:
+
+1. Redistributions of source code must retain the above copyright
+notice, this list of conditions and the following disclaimer.
+2. Redistributions in binary form must reproduce the above copyright
+notice, this list of conditions and the following disclaimer in the
+documentation and/or other materials provided with the distribution.
+3. The name of the author may not be used to endorse or promote products
+derived from this software without specific prior written permission.
+
+THIS SOFTWARE IS PROVIDED BY THE AUTHOR ``AS IS'' AND ANY EXPRESS OR
+IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES
+OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED.
+IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY DIRECT, INDIRECT,
+INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT
+NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+(INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF
+THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+
+*/
+
+
+public class TestTokenVocabCache extends TestCase {
+
+    public void testTokenVocabCache() throws Exception {
+        File file = File.createTempFile("vocab", ".tokens");
+        file.deleteOnExit();
+        XJUtils.writeStringToFile("ID=4\nINT=5\n", file.getAbsolutePath());
+
+        Set<String> names = TokenVocabCache.shared().getTokenNames(file.getAbsolutePath());
+        assertTrue("names", names.contains("ID") && names.contains("INT"));
+        assertSame("shared", names, TokenVocabCache.shared().getTokenNames(file.getPath()));
+
+        XJUtils.writeStringToFile("ID=4\nINT=5\nFLOAT=6\n", file.getAbsolutePath());
+        assertTrue("modified", TokenVocabCache.shared().getTokenNames(file.getAbsolutePath()).contains("FLOAT"));
+    }
+
+}
@@ -0,0 +1,73 @@
+package org.antlr.works.interpreter;
+
+import junit.framework.TestCase;
+import org.antlr.runtime.ANTLRStringStream;
+import org.antlr.runtime.CharStream;
+import org.antlr.xjlib.foundation.XJUtils;
+
+import java.io.File;
+/*
+
+[The "BSD licence"]
+Copyright (c) 2005 Jean Bovet
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions
+are met:
+
+1. Redistributions of source code must retain the above copyright
+notice, this list of conditions and the following disclaimer.
+2. Redistributions in binary form must reproduce the above copyright
+notice, this list of conditions and the following disclaimer in the
+documentation and/or other materials provided with the distribution.
+3. The name of the author may not be used to endorse or promote products
+derived from this software without specific prior written permission.
+
+THIS SOFTWARE IS PROVIDED BY THE AUTHOR ``AS IS'' AND ANY EXPRESS OR
+IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES
+OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED.
+IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY DIRECT, INDIRECT,
+INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT
+NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+(INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF
+THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+
+*/
+
+
+public class TestFileCharStream extends TestCase {
+
+    public void testFileCharStream() throws Exception {
+        StringBuilder sb = new StringBuilder();
+        for(int i=0; i<FileCharStream.PAGE_SIZE/4; i++) {
+            sb.append("line ").append(i).append('\n');
+        }
+        String text = sb.toString();
+
+        File file = File.createTempFile("input", ".txt");
+        file.deleteOnExit();
+        XJUtils.writeStringToFile(text, file.getAbsolutePath());
+
+        CharStream expected = new ANTLRStringStream(text);
+        CharStream stream = new FileCharStream(file);
+        while(expected.LA(1) != CharStream.EOF) {
+            assertEquals("char", expected.LA(1), stream.LA(1));
+            expected.consume();
+            stream.consume();
+        }
+        assertEquals("eof", CharStream.EOF, stream.LA(1));
+        assertEquals("line", expected.getLine(), stream.getLine());
+        assertEquals("size", text.length(), stream.size());
+
+        int marker = stream.mark();
+        stream.seek(0);
+        stream.rewind(marker);
+        assertEquals("rewind", text.length(), stream.index());
+        assertEquals("substring", text.substring(FileCharStream.PAGE_SIZE-10, FileCharStream.PAGE_SIZE+10),
+                stream.substring(FileCharStream.PAGE_SIZE-10, FileCharStream.PAGE_SIZE+9));
+    }
+
+}
@@ -0,0 +1,119 @@
+package org.antlr.works.interpreter;
+
+import junit.framework.TestCase;
+import org.antlr.Tool;
+import org.antlr.tool.ErrorManager;
+import org.antlr.works.grammar.engine.GrammarEngineDelegate;
+import org.antlr.works.utils.ErrorListener;
+import org.antlr.xjlib.foundation.XJUtils;
+
+import java.io.File;
+import java.util.Collections;
+import java.util.List;
+/*
+
+[The "BSD licence"]
+Copyright (c) 2005 Jean Bovet
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions
+are met:
+
+1. Redistributions of source code must retain the above copyright
+notice, this list of conditions and the following disclaimer.
+2. Redistributions in binary form must reproduce the above copyright
+notice, this list of conditions and the following disclaimer in the
+documentation and/or other materials provided with the distribution.
+3. The name of the author may not be used to endorse or promote products
+derived from this software without specific prior written permission.
+
+THIS SOFTWARE IS PROVIDED BY THE AUTHOR ``AS IS'' AND ANY EXPRESS OR
+IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES
+OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED.
+IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY DIRECT, INDIRECT,
+INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT
+NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+(INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF
+THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+
+*/
+
+
+public class TestInterpreterBenchmark extends TestCase {
+
+    /** The optional else clause is ambiguous: the analysis of the grammar reports a warning */
+    private static final String GRAMMAR = "grammar T;\n" +
+            "prog : stat+ ;\n" +
+            "stat : 'if' ID stat ('else' stat)? | ID ';' ;\n" +
+            "ID : ('a'..'z')+ ;\n" +
+            "WS : (' '|'\\n')+ ;\n";
+
+    public void testParallelWorkers() throws Exception {
+        File dir = File.createTempFile("benchmark", "");
+        dir.delete();
+        dir.mkdirs();
+        int fileCount = 24;
+        for(int i=0; i<fileCount; i++) {
+            XJUtils.writeStringToFile("if a if b x ;\nelse y ;\n", new File(dir, "input"+i+".txt").getPath());
+        }
+
+        /* The messages reported by the workers must not reach the listener of this thread */
+        ErrorListener listener = new ErrorListener();
+        listener.setPrintToConsole(false);
+        listener.install();
+        try {
+            InterpreterBenchmark benchmark = new InterpreterBenchmark(new BenchmarkGrammar(), "prog", Collections.singletonList("WS"));
+            List<File> files = InterpreterBenchmark.getInputFiles(dir);
+            InterpreterBenchmarkResult result = benchmark.run(files, 4);
+
+            assertEquals("files", fileCount, result.files.size());
+            for(InterpretedFile f : result.files) {
+                assertNull("failure "+f.failure, f.failure);
+                assertEquals("errors", 0, f.errors);
+                // the hidden whitespace tokens are counted too
+                assertEquals("tokens", 18, f.tokens);
+            }
+            ErrorManager.info("test");
+            assertEquals("isolated", Collections.singletonList("test"), listener.infos);
+            assertTrue("isolated", listener.warnings.isEmpty() && listener.errors.isEmpty());
+        } finally {
+            listener.uninstall();
+            XJUtils.deleteDirectory(dir.getPath());
+        }
+    }
+
+    private static class BenchmarkGrammar implements GrammarEngineDelegate {
+
+        public String getGrammarFileName() {
+            return "T.g";
+        }
+
+        public String getGrammarText() {
+            return GRAMMAR;
+        }
+
+        public String getTokenVocabFile(String name) {
+            return null;
+        }
+
+        public Tool getANTLRTool() {
+            return new Tool();
+        }
+
+        public void reportError(String error) {
+        }
+
+        public void reportError(Exception e) {
+        }
+
+        public void gotoToRule(String grammar, String name) {
+        }
+
+        public void engineAnalyzeCompleted() {
+        }
+    }
+
+}
@@ -0,0 +1,128 @@
+package org.antlr.works.test.bench;
+
+import org.antlr.runtime.CommonToken;
+import org.antlr.works.debugger.events.*;
+import org.antlr.works.debugger.input.DBInputProcessorToken;
+import org.antlr.works.debugger.tivo.DBModelBuilder;
+import org.antlr.works.debugger.tivo.DBPlayer;
+import org.antlr.works.utils.TextPane;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+/*
+
+[The "BSD licence"]
+Copyright (c) 2005 Jean Bovet
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions
+are met:
+
+1. Redistributions of source code must retain the above copyright
+notice, this list of conditions and the following disclaimer.
+2. Redistributions in binary form must reproduce the above copyright
+notice, this list of conditions and the following disclaimer in the
+documentation and/or other materials provided with the distribution.
+3. The name of the author may not be used to endorse or promote products
+derived from this software without specific prior written permission.
+
+THIS SOFTWARE IS PROVIDED BY THE AUTHOR ``AS IS'' AND ANY EXPRESS OR
+IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES
+OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED.
+IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY DIRECT, INDIRECT,
+INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT
+NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+(INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF
+THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+
+*/
+
+
+/** Measures the memory allocated by the debugger while replaying events: the events are
+ * played by DBPlayer.playEvents() on the models of a DBModelBuilder with a headless token
+ * input processor, like the model builder does on its background thread.
+ *
+ * For each token, the generated events enter a rule and a decision, look ahead two tokens,
+ * exit the decision, consume the token and a hidden token, create an AST node and exit
+ * the rule. Every 16 tokens a mark is pushed and rewound. The events are created before
+ * the measure so only the allocations of the replay are counted.
+ *
+ * Usage: ReplayAllocationBenchmark [tokens]
+ */
+public class ReplayAllocationBenchmark {
+
+    public static void main(String[] args) {
+        System.setProperty("java.awt.headless", "true");
+
+        int tokens = args.length > 0?Integer.parseInt(args[0]):100000;
+        List<DBEvent> events = createEvents(tokens);
+
+        /** Warm up the replay before measuring */
+        for(int i=0; i<3; i++) {
+            replay(events);
+        }
+
+        com.sun.management.ThreadMXBean bean = (com.sun.management.ThreadMXBean)ManagementFactory.getThreadMXBean();
+        long threadId = Thread.currentThread().getId();
+        DBPlayer player = createPlayer(events);
+        long start = bean.getThreadAllocatedBytes(threadId);
+        long time = System.nanoTime();
+        player.playEvents(events, events.size(), false);
+        time = System.nanoTime()-time;
+        long allocated = bean.getThreadAllocatedBytes(threadId)-start;
+
+        System.out.println("Replay of "+events.size()+" events ("+tokens+" tokens) in "+time/1000000+" ms");
+        System.out.println("  allocated: "+allocated/1024+" KB, "+allocated/events.size()+" bytes per event");
+    }
+
+    private static void replay(List<DBEvent> events) {
+        createPlayer(events).playEvents(events, events.size(), false);
+    }
+
+    private static DBPlayer createPlayer(List<DBEvent> events) {
+        DBModelBuilder builder = new DBModelBuilder(null, events, 0, events.size());
+        DBPlayer player = builder.getPlayer();
+        player.setInputBuffer(new DBInputProcessorToken(null, new TextPane()));
+        player.resetPlayEvents(false);
+        return player;
+    }
+
+    private static List<DBEvent> createEvents(int tokens) {
+        CommonToken[] visible = new CommonToken[tokens+1];
+        for(int i=0; i<=tokens; i++) {
+            visible[i] = new CommonToken(1, "t"+i);
+            visible[i].setTokenIndex(2*i);
+        }
+
+        List<DBEvent> events = new ArrayList<DBEvent>();
+        events.add(new DBEventEnterRule("g", "start"));
+        events.add(new DBEventNilNode(0));
+        for(int i=0; i<tokens; i++) {
+            CommonToken token = visible[i];
+            CommonToken hidden = new CommonToken(2, " ");
+            hidden.setTokenIndex(2*i+1);
+
+            events.add(new DBEventEnterRule("g", "r"+(i % 3)));
+            events.add(new DBEventLocation(i, 0));
+            events.add(new DBEventEnterDecision(i % 50));
+            if(i % 16 == 0)
+                events.add(new DBEventMark(i));
+            events.add(new DBEventLT(1, token));
+            events.add(new DBEventLT(2, visible[i+1]));
+            if(i % 16 == 0)
+                events.add(new DBEventRewind(i));
+            events.add(new DBEventExitDecision(i % 50));
+            events.add(new DBEventConsumeToken(token));
+            events.add(new DBEventConsumeHiddenToken(hidden));
+            events.add(new DBEventCreateNode(i+1, token.getTokenIndex()));
+            events.add(new DBEventAddChild(0, i+1));
+            events.add(new DBEventExitRule("g", "r"+(i % 3)));
+        }
+        events.add(new DBEventExitRule("g", "start"));
+        return events;
+    }
+}
@@ -0,0 +1,129 @@
+package org.antlr.works.utils;
+
+import junit.framework.TestCase;
+import org.antlr.tool.ANTLRErrorListener;
+import org.antlr.tool.ErrorManager;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CyclicBarrier;
+/*
+
+[The "BSD licence"]
+Copyright (c) 2005 Jean Bovet
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions
+are met:
+
+1. Redistributions of source code must retain the above copyright
+notice, this list of conditions and the following disclaimer.
+2. Redistributions in binary form must reproduce the above copyright
+notice, this list of conditions and the following disclaimer in the
+documentation and/or other materials provided with the distribution.
+3. The name of the author may not be used to endorse or promote products
+derived from this software without specific prior written permission.
+
+THIS SOFTWARE IS PROVIDED BY THE AUTHOR ``AS IS'' AND ANY EXPRESS OR
+IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES
+OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED.
+IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY DIRECT, INDIRECT,
+INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT
+NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+(INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF
+THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+
+*/
+
+
+public class TestErrorListener extends TestCase {
+
+    public void testNestedInstall() throws Exception {
+        ErrorListener outer = createListener();
+        ErrorListener inner = createListener();
+
+        outer.install();
+        ANTLRErrorListener dispatcher = ErrorManager.getErrorListener();
+        ErrorManager.info("outer 1");
+        inner.install();
+        ErrorManager.info("inner");
+        inner.uninstall();
+        ErrorManager.info("outer 2");
+        outer.uninstall();
+
+        assertEquals("outer", Arrays.asList("outer 1", "outer 2"), outer.infos);
+        assertEquals("inner", Arrays.asList("inner"), inner.infos);
+        assertNull("uninstalled", ErrorListener.getInstalledInstance());
+
+        /* ErrorManager is not modified by the installations once the thread is prepared */
+        inner.install();
+        assertSame("dispatcher", dispatcher, ErrorManager.getErrorListener());
+        inner.uninstall();
+        assertSame("dispatcher", dispatcher, ErrorManager.getErrorListener());
+    }
+
+    public void testConcurrentJobs() throws Exception {
+        final int threadCount = 4;
+        final int jobCount = 50;
+        final int messageCount = 20;
+        final CyclicBarrier barrier = new CyclicBarrier(threadCount);
+        final List<List<ErrorListener>> listeners = new ArrayList<List<ErrorListener>>();
+        final List<Throwable> failures = new ArrayList<Throwable>();
+        List<Thread> threads = new ArrayList<Thread>();
+
+        for(int t=0; t<threadCount; t++) {
+            final String name = "job"+t;
+            final List<ErrorListener> jobs = new ArrayList<ErrorListener>();
+            listeners.add(jobs);
+            Thread thread = new Thread(new Runnable() {
+                public void run() {
+                    try {
+                        /* Each thread runs one job after the other: the listeners are installed
+                           and uninstalled while the jobs of the other threads are reporting */
+                        barrier.await();
+                        for(int j=0; j<jobCount; j++) {
+                            ErrorListener listener = createListener();
+                            jobs.add(listener);
+                            listener.install();
+                            for(int i=0; i<messageCount; i++) {
+                                ErrorManager.info(name);
+                            }
+                            listener.uninstall();
+                        }
+                    } catch(Throwable e) {
+                        synchronized(failures) {
+                            failures.add(e);
+                        }
+                    }
+                }
+            });
+            threads.add(thread);
+            thread.start();
+        }
+        for(Thread thread : threads) {
+            thread.join(10000);
+        }
+
+        assertTrue("failures "+failures, failures.isEmpty());
+        for(int t=0; t<threadCount; t++) {
+            assertEquals("jobs", jobCount, listeners.get(t).size());
+            for(ErrorListener listener : listeners.get(t)) {
+                assertEquals("count", messageCount, listener.infos.size());
+                for(String info : listener.infos) {
+                    assertEquals("isolated", "job"+t, info);
+                }
+            }
+        }
+    }
+
+    private static ErrorListener createListener() {
+        ErrorListener listener = new ErrorListener();
+        listener.setPrintToConsole(false);
+        return listener;
+    }
+
+}
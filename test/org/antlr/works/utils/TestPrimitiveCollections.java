@@ -0,0 +1,96 @@
+package org.antlr.works.utils;
+
+import junit.framework.TestCase;
+
+import java.util.*;
+/*
+
+[The "BSD licence"]
+Copyright (c) 2005 Jean Bovet
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions
+are met:
+
+1. Redistributions of source code must retain the above copyright
+notice, this list of conditions and the following disclaimer.
+2. Redistributions in binary form must reproduce the above copyright
+notice, this list of conditions and the following disclaimer in the
+documentation and/or other materials provided with the distribution.
+3. The name of the author may not be used to endorse or promote products
+derived from this software without specific prior written permission.
+
+THIS SOFTWARE IS PROVIDED BY THE AUTHOR ``AS IS'' AND ANY EXPRESS OR
+IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES
+OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED.
+IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY DIRECT, INDIRECT,
+INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT
+NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+(INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF
+THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+
+*/
+
+
+public class TestPrimitiveCollections extends TestCase {
+
+    public void testPrimitiveCollections() throws Exception {
+        Random random = new Random(7);
+        IntObjectMap<String> map = new IntObjectMap<String>(4);
+        Map<Integer,String> expectedMap = new HashMap<Integer, String>();
+        IntSet set = new IntSet();
+        Set<Integer> expectedSet = new HashSet<Integer>();
+        IntStack stack = new IntStack();
+        Stack<Integer> expectedStack = new Stack<Integer>();
+        for(int i=0; i<20000; i++) {
+            int key = random.nextInt(500)-100;
+            switch(random.nextInt(3)) {
+                case 0:
+                    assertEquals("put", expectedMap.put(key, "v"+i), map.put(key, "v"+i));
+                    assertEquals("add", expectedSet.add(key), set.add(key));
+                    expectedStack.push(key);
+                    stack.push(key);
+                    break;
+                case 1:
+                    assertEquals("remove", expectedMap.remove(key), map.remove(key));
+                    assertEquals("remove", expectedSet.remove(key), set.remove(key));
+                    if(!expectedStack.isEmpty())
+                        assertEquals("pop", expectedStack.pop().intValue(), stack.pop());
+                    break;
+                case 2:
+                    assertEquals("get", expectedMap.get(key), map.get(key));
+                    assertEquals("containsKey", expectedMap.containsKey(key), map.containsKey(key));
+                    assertEquals("contains", expectedSet.contains(key), set.contains(key));
+                    assertEquals("peek", expectedStack.isEmpty()?-1:expectedStack.peek(), stack.peek(-1));
+                    break;
+            }
+            assertEquals("size", expectedMap.size(), map.size());
+            assertEquals("size", expectedSet.size(), set.size());
+            assertEquals("size", expectedStack.size(), stack.size());
+        }
+
+        /** Copies are independent of the original */
+        IntObjectMap<String> mapCopy = new IntObjectMap<String>(map);
+        IntSet setCopy = new IntSet(set);
+        IntStack stackCopy = new IntStack(stack);
+        map.clear();
+        set.clear();
+        stack.clear();
+        assertTrue("clear", map.isEmpty() && set.isEmpty() && stack.isEmpty());
+        for(Map.Entry<Integer,String> entry : expectedMap.entrySet()) {
+            assertEquals("copy", entry.getValue(), mapCopy.get(entry.getKey()));
+        }
+        for(Integer element : expectedSet) {
+            assertTrue("copy", setCopy.contains(element));
+        }
+        for(int i=0; i<expectedStack.size(); i++) {
+            assertEquals("copy", expectedStack.get(i).intValue(), stackCopy.get(i));
+        }
+        stack.set(stackCopy);
+        assertEquals("set", stackCopy.size(), stack.size());
+    }
+
+}
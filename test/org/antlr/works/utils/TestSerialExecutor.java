@@ -0,0 +1,121 @@
+package org.antlr.works.utils;
+
+import junit.framework.TestCase;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+/*
+
+[The "BSD licence"]
+Copyright (c) 2005 Jean Bovet
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions
+are met:
+
+1. Redistributions of source code must retain the above copyright
+notice, this list of conditions and the following disclaimer.
+2. Redistributions in binary form must reproduce the above copyright
+notice, this list of conditions and the following disclaimer in the
+documentation and/or other materials provided with the distribution.
+3. The name of the author may not be used to endorse or promote products
+derived from this software without specific prior written permission.
+
+THIS SOFTWARE IS PROVIDED BY THE AUTHOR ``AS IS'' AND ANY EXPRESS OR
+IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES
+OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED.
+IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY DIRECT, INDIRECT,
+INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT
+NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+(INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF
+THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+
+*/
+
+
+public class TestSerialExecutor extends TestCase {
+
+    public void testNextTaskWaitsForTheRunningOne() throws Exception {
+        ExecutorService shared = Executors.newCachedThreadPool();
+        try {
+            SerialExecutor jobs = new SerialExecutor(shared);
+            final CountDownLatch started = new CountDownLatch(1);
+            final CountDownLatch release = new CountDownLatch(1);
+            final CountDownLatch done = new CountDownLatch(2);
+            final AtomicInteger running = new AtomicInteger();
+            final AtomicInteger overlaps = new AtomicInteger();
+
+            jobs.execute(new Runnable() {
+                public void run() {
+                    enter(running, overlaps);
+                    started.countDown();
+                    try {
+                        /* A cancelled job that has not yet noticed it */
+                        release.await();
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                    running.decrementAndGet();
+                    done.countDown();
+                }
+            });
+            assertTrue("started", started.await(5, TimeUnit.SECONDS));
+
+            final CountDownLatch secondStarted = new CountDownLatch(1);
+            jobs.execute(new Runnable() {
+                public void run() {
+                    enter(running, overlaps);
+                    secondStarted.countDown();
+                    running.decrementAndGet();
+                    done.countDown();
+                }
+            });
+
+            assertFalse("second job waits", secondStarted.await(200, TimeUnit.MILLISECONDS));
+            release.countDown();
+            assertTrue("done", done.await(5, TimeUnit.SECONDS));
+            assertEquals("overlaps", 0, overlaps.get());
+        } finally {
+            shared.shutdownNow();
+        }
+    }
+
+    public void testTasksRunInOrder() throws Exception {
+        ExecutorService shared = Executors.newCachedThreadPool();
+        try {
+            SerialExecutor jobs = new SerialExecutor(shared);
+            final StringBuffer order = new StringBuffer();
+            final CountDownLatch done = new CountDownLatch(50);
+            for(int i=0; i<50; i++) {
+                final int index = i;
+                jobs.execute(new Runnable() {
+                    public void run() {
+                        order.append(index).append(' ');
+                        done.countDown();
+                    }
+                });
+            }
+            assertTrue("done", done.await(5, TimeUnit.SECONDS));
+
+            StringBuilder expected = new StringBuilder();
+            for(int i=0; i<50; i++) {
+                expected.append(i).append(' ');
+            }
+            assertEquals(expected.toString(), order.toString());
+        } finally {
+            shared.shutdownNow();
+        }
+    }
+
+    private static void enter(AtomicInteger running, AtomicInteger overlaps) {
+        if(running.incrementAndGet() > 1) {
+            overlaps.incrementAndGet();
+        }
+    }
+}
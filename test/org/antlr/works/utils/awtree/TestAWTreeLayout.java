@@ -0,0 +1,116 @@
+package org.antlr.works.utils.awtree;
+
+import junit.framework.TestCase;
+
+import javax.swing.tree.DefaultMutableTreeNode;
+import javax.swing.tree.TreeNode;
+import java.util.*;
+/*
+
+[The "BSD licence"]
+Copyright (c) 2005 Jean Bovet
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions
+are met:
+
+1. Redistributions of source code must retain the above copyright
+notice, this list of conditions and the following disclaimer.
+2. Redistributions in binary form must reproduce the above copyright
+notice, this list of conditions and the following disclaimer in the
+documentation and/or other materials provided with the distribution.
+3. The name of the author may not be used to endorse or promote products
+derived from this software without specific prior written permission.
+
+THIS SOFTWARE IS PROVIDED BY THE AUTHOR ``AS IS'' AND ANY EXPRESS OR
+IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES
+OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED.
+IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY DIRECT, INDIRECT,
+INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT
+NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+(INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF
+THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+
+*/
+
+
+public class TestAWTreeLayout extends TestCase {
+
+    public void testTreeLayout() throws Exception {
+        TreeLayoutDelegate incremental = new TreeLayoutDelegate();
+        AWTreeLayout layout = new AWTreeLayout(incremental, 20, 20, 10);
+        layout.setNodeHeight(10);
+
+        List<DefaultMutableTreeNode> nodes = new ArrayList<DefaultMutableTreeNode>();
+        DefaultMutableTreeNode root = new DefaultMutableTreeNode("root");
+        nodes.add(root);
+        layout.layout(root);
+
+        Random random = new Random(7);
+        for(int step=0; step<200; step++) {
+            for(int n=random.nextInt(8); n>=0; n--) {
+                /* Grow mostly the last nodes, as the debugger does */
+                int index = Math.max(0, nodes.size()-1-random.nextInt(Math.min(nodes.size(), 12)));
+                DefaultMutableTreeNode parent = nodes.get(random.nextInt(4) == 0?random.nextInt(nodes.size()):index);
+                DefaultMutableTreeNode child = new DefaultMutableTreeNode("n"+nodes.size()+(random.nextInt(3)==0?"-long-label":""));
+                parent.add(child);
+                nodes.add(child);
+                assertTrue("add", layout.addNode(parent, child));
+            }
+            layout.update();
+
+            TreeLayoutDelegate full = new TreeLayoutDelegate();
+            AWTreeLayout fullLayout = new AWTreeLayout(full, 20, 20, 10);
+            fullLayout.setNodeHeight(10);
+            fullLayout.layout(root);
+
+            assertEquals("size", full.positions.size(), incremental.positions.size());
+            for(TreeNode node : full.positions.keySet()) {
+                double[] a = full.positions.get(node);
+                double[] b = incremental.positions.get(node);
+                assertEquals("x of "+node, a[0], b[0], 1e-6);
+                assertEquals("y of "+node, a[1], b[1], 1e-6);
+            }
+            assertEquals("right", fullLayout.getRight(), layout.getRight(), 1e-6);
+        }
+
+        /* The nodes of a level must not overlap and must keep the order of the tree */
+        Map<Double, List<DefaultMutableTreeNode>> levels = new TreeMap<Double, List<DefaultMutableTreeNode>>();
+        Enumeration<?> e = root.breadthFirstEnumeration();
+        while(e.hasMoreElements()) {
+            DefaultMutableTreeNode node = (DefaultMutableTreeNode)e.nextElement();
+            double y = incremental.positions.get(node)[1];
+            if(!levels.containsKey(y))
+                levels.put(y, new ArrayList<DefaultMutableTreeNode>());
+            levels.get(y).add(node);
+        }
+        for(List<DefaultMutableTreeNode> level : levels.values()) {
+            for(int i=1; i<level.size(); i++) {
+                double[] left = incremental.positions.get(level.get(i-1));
+                double[] right = incremental.positions.get(level.get(i));
+                assertTrue("overlap", left[0]+incremental.awTreeLayoutGetNodeWidth(level.get(i-1))+20 <= right[0]+1e-6);
+            }
+        }
+    }
+
+    private static class TreeLayoutDelegate implements AWTreeLayoutDelegate {
+
+        public Map<TreeNode,double[]> positions = new HashMap<TreeNode, double[]>();
+
+        public double awTreeLayoutGetNodeWidth(TreeNode node) {
+            return node.toString().length()*7+16;
+        }
+
+        public boolean awTreeLayoutIsNodeCollapsed(TreeNode node) {
+            return false;
+        }
+
+        public void awTreeLayoutNodeDidMove(TreeNode node, double left, double top) {
+            positions.put(node, new double[] { left, top });
+        }
+    }
+
+}